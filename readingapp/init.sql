@@ -38,6 +38,8 @@ DROP TABLE IF EXISTS `document_processing_queue`;
 DROP TABLE IF EXISTS `documents`;
 DROP TABLE IF EXISTS `folders`;
 DROP TABLE IF EXISTS `password_reset_tokens`;
+DROP TABLE IF EXISTS `revoked_sessions`;
+DROP TABLE IF EXISTS `mail_outbox`;
 DROP TABLE IF EXISTS `user_sessions`;
 DROP TABLE IF EXISTS `user_settings`;
 DROP TABLE IF EXISTS `document_pages`;
@@ -122,6 +124,39 @@ CREATE TABLE `user_sessions` (
                                  CONSTRAINT `user_sessions_ibfk_1` FOREIGN KEY (`user_id`) REFERENCES `users` (`user_id`) ON DELETE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
+-- Table structure for `revoked_sessions` (deny-list for signed access tokens)
+CREATE TABLE `revoked_sessions` (
+                                    `revocation_id` BIGINT(20) NOT NULL AUTO_INCREMENT,
+                                    `scope` VARCHAR(20) NOT NULL DEFAULT 'session',
+                                    `target_id` INT(11) NOT NULL,
+                                    `user_id` INT(11) NOT NULL,
+                                    `revoked_at_ms` BIGINT(20) NOT NULL,
+                                    `expires_at` TIMESTAMP NOT NULL,
+                                    PRIMARY KEY (`revocation_id`),
+                                    KEY `expires_at` (`expires_at`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- Table structure for `mail_outbox` (outbound mail queue, sent asynchronously)
+CREATE TABLE `mail_outbox` (
+                               `outbox_id` BIGINT(20) NOT NULL AUTO_INCREMENT,
+                               `to_address` VARCHAR(255) NOT NULL,
+                               `subject` VARCHAR(255) NOT NULL,
+                               `body` TEXT NOT NULL,
+                               `category` VARCHAR(50) DEFAULT NULL,
+                               `status` VARCHAR(20) NOT NULL DEFAULT 'pending',
+                               `attempts` INT(11) NOT NULL DEFAULT 0,
+                               `next_attempt_at` TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                               `expires_at` TIMESTAMP NULL DEFAULT NULL,
+                               `claim_token` VARCHAR(64) DEFAULT NULL,
+                               `locked_until` TIMESTAMP NULL DEFAULT NULL,
+                               `last_error` VARCHAR(500) DEFAULT NULL,
+                               `created_at` TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                               `sent_at` TIMESTAMP NULL DEFAULT NULL,
+                               PRIMARY KEY (`outbox_id`),
+                               KEY `status_next_attempt` (`status`, `next_attempt_at`),
+                               KEY `claim_token` (`claim_token`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
 -- Table structure for `user_settings`
 CREATE TABLE `user_settings` (
                                  `setting_id` INT(11) NOT NULL AUTO_INCREMENT,
@@ -1238,4 +1273,66 @@ CREATE INDEX IF NOT EXISTS idx_daily_learning_stats_user_id ON daily_learning_st
 CREATE INDEX IF NOT EXISTS idx_daily_learning_stats_learning_date ON daily_learning_stats (learning_date);
 
 CREATE INDEX IF NOT EXISTS idx_user_achievements_user_id ON user_achievements (user_id);
-CREATE INDEX IF NOT EXISTS idx_user_achievements_achievement_id ON user_achievements (achievement_id);
\ No newline at end of file
+CREATE INDEX IF NOT EXISTS idx_user_achievements_achievement_id ON user_achievements (achievement_id);
+
+-- Indexes used by the expired session / reset token reaper
+CREATE INDEX IF NOT EXISTS idx_user_sessions_expires_at ON user_sessions (expires_at);
+CREATE INDEX IF NOT EXISTS idx_password_reset_tokens_expires_at ON password_reset_tokens (expires_at);
+
+-- FULLTEXT indexes (ngram parser) used by the fulltext search backend (app.search.backend.*=fulltext)
+-- Column lists must match the MATCH(...) columns in SearchTextMatcher callers
+CREATE FULLTEXT INDEX ft_documents_title_description ON documents (title, description) WITH PARSER ngram;
+CREATE FULLTEXT INDEX ft_document_pages_content ON document_pages (content) WITH PARSER ngram;
+CREATE FULLTEXT INDEX ft_document_notes_content ON document_notes (content) WITH PARSER ngram;
+CREATE FULLTEXT INDEX ft_document_highlights_text_note ON document_highlights (text, note) WITH PARSER ngram;
+CREATE FULLTEXT INDEX ft_user_feedback_title_content ON user_feedback (title, content) WITH PARSER ngram;
+
+-- Search statistics rollups maintained by SearchStatsRollupService (hourly rows are pruned, daily rows are kept)
+CREATE TABLE `search_stats_hourly` (
+                                       `user_id` INT(11) NOT NULL,
+                                       `bucket_hour` DATETIME NOT NULL,
+                                       `search_type` VARCHAR(50) NOT NULL,
+                                       `search_count` INT(11) NOT NULL DEFAULT 0,
+                                       `result_sum` BIGINT(20) NOT NULL DEFAULT 0,
+                                       `result_min` INT(11) NOT NULL DEFAULT 0,
+                                       `result_max` INT(11) NOT NULL DEFAULT 0,
+                                       PRIMARY KEY (`user_id`, `bucket_hour`, `search_type`),
+                                       CONSTRAINT `search_stats_hourly_ibfk_1` FOREIGN KEY (`user_id`) REFERENCES `users` (`user_id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE `search_stats_daily` (
+                                      `user_id` INT(11) NOT NULL,
+                                      `bucket_date` DATE NOT NULL,
+                                      `search_type` VARCHAR(50) NOT NULL,
+                                      `search_count` INT(11) NOT NULL DEFAULT 0,
+                                      `result_sum` BIGINT(20) NOT NULL DEFAULT 0,
+                                      `result_min` INT(11) NOT NULL DEFAULT 0,
+                                      `result_max` INT(11) NOT NULL DEFAULT 0,
+                                      PRIMARY KEY (`user_id`, `bucket_date`, `search_type`),
+                                      CONSTRAINT `search_stats_daily_ibfk_1` FOREIGN KEY (`user_id`) REFERENCES `users` (`user_id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE INDEX idx_search_history_user_timestamp ON search_history (user_id, timestamp);
+
+-- Long-range (month/quarter/year) site-wide popular searches still aggregate search_history by time range
+CREATE INDEX idx_search_history_timestamp ON search_history (timestamp);
+
+-- Standing saved searches matched at index time by SavedSearchPercolator
+ALTER TABLE saved_search_results
+    ADD COLUMN `notify` TINYINT(1) NOT NULL DEFAULT 0,
+    ADD COLUMN `new_match_count` INT(11) NOT NULL DEFAULT 0,
+    ADD COLUMN `last_checked_at` TIMESTAMP NULL DEFAULT NULL,
+    ADD COLUMN `last_seen_match_id` BIGINT(20) NOT NULL DEFAULT 0;
+
+-- matched_at 只精确到秒，查看进度按自增的 match_id 推进
+CREATE TABLE `saved_search_matches` (
+                                        `match_id` BIGINT(20) NOT NULL AUTO_INCREMENT,
+                                        `saved_id` BIGINT(20) NOT NULL,
+                                        `item_type` VARCHAR(20) NOT NULL,
+                                        `item_id` INT(11) NOT NULL,
+                                        `matched_at` TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                                        PRIMARY KEY (`match_id`),
+                                        UNIQUE KEY `uk_saved_search_matches_item` (`saved_id`, `item_type`, `item_id`),
+                                        KEY `idx_saved_search_matches_saved_match` (`saved_id`, `match_id`),
+                                        CONSTRAINT `saved_search_matches_ibfk_1` FOREIGN KEY (`saved_id`) REFERENCES `saved_search_results` (`saved_id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
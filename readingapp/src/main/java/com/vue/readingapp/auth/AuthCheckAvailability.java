@@ -0,0 +1,151 @@
+package com.vue.readingapp.auth;
+
+import org.springframework.web.bind.annotation.*;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import com.vue.readingapp.auth.service.UserIdentityFilter;
+
+@RestController
+@RequestMapping("/api/v1/auth")
+public class AuthCheckAvailability {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserIdentityFilter userIdentityFilter;
+
+    // 打印接收到的请求
+    private void printRequest(Object request) {
+        System.out.println("=== 收到可用性检查请求 ===");
+        System.out.println("请求数据: " + request);
+        System.out.println("=======================");
+    }
+
+    // 打印返回数据
+    private void printResponse(Object response) {
+        System.out.println("=== 准备返回的响应 ===");
+        System.out.println("响应数据: " + response);
+        System.out.println("===================");
+    }
+
+    // 响应DTO
+    public static class AvailabilityResponse {
+        private boolean success;
+        private String message;
+        private AvailabilityData data;
+
+        public AvailabilityResponse(boolean success, String message, AvailabilityData data) {
+            this.success = success;
+            this.message = message;
+            this.data = data;
+        }
+
+        public boolean isSuccess() { return success; }
+        public void setSuccess(boolean success) { this.success = success; }
+
+        public String getMessage() { return message; }
+        public void setMessage(String message) { this.message = message; }
+
+        public AvailabilityData getData() { return data; }
+        public void setData(AvailabilityData data) { this.data = data; }
+
+        @Override
+        public String toString() {
+            return "AvailabilityResponse{success=" + success + ", message='" + message + "', data=" + data + "}";
+        }
+    }
+
+    public static class AvailabilityData {
+        private FieldAvailability email;
+        private FieldAvailability username;
+
+        public FieldAvailability getEmail() { return email; }
+        public void setEmail(FieldAvailability email) { this.email = email; }
+
+        public FieldAvailability getUsername() { return username; }
+        public void setUsername(FieldAvailability username) { this.username = username; }
+
+        @Override
+        public String toString() {
+            return "AvailabilityData{email=" + email + ", username=" + username + "}";
+        }
+    }
+
+    public static class FieldAvailability {
+        private String value;
+        private Boolean available;
+
+        public FieldAvailability(String value, Boolean available) {
+            this.value = value;
+            this.available = available;
+        }
+
+        public String getValue() { return value; }
+        public void setValue(String value) { this.value = value; }
+
+        public Boolean getAvailable() { return available; }
+        public void setAvailable(Boolean available) { this.available = available; }
+
+        @Override
+        public String toString() {
+            return "FieldAvailability{value='" + value + "', available=" + available + "}";
+        }
+    }
+
+    @GetMapping("/check-availability")
+    public ResponseEntity<AvailabilityResponse> checkAvailability(
+            @RequestParam(required = false) String email,
+            @RequestParam(required = false) String username) {
+        // 打印接收到的请求
+        printRequest("email=" + email + ", username=" + username);
+
+        try {
+            // 1. 验证请求参数
+            boolean hasEmail = email != null && !email.trim().isEmpty();
+            boolean hasUsername = username != null && !username.trim().isEmpty();
+            if (!hasEmail && !hasUsername) {
+                return ResponseEntity.badRequest().body(
+                        new AvailabilityResponse(false, "邮箱和用户名至少提供一个", null)
+                );
+            }
+
+            AvailabilityData data = new AvailabilityData();
+
+            // 2. 检查邮箱：过滤器判定一定不存在时直接可用，不查库；可能存在（含误判、已注销、过滤器未构建）时查库确认
+            if (hasEmail) {
+                boolean available = !userIdentityFilter.mightContainEmail(email)
+                        || countUsers("SELECT COUNT(*) FROM users WHERE email = ?", email) == 0;
+                data.setEmail(new FieldAvailability(email, available));
+            }
+
+            // 3. 检查用户名
+            if (hasUsername) {
+                boolean available = !userIdentityFilter.mightContainUsername(username)
+                        || countUsers("SELECT COUNT(*) FROM users WHERE username = ?", username) == 0;
+                data.setUsername(new FieldAvailability(username, available));
+            }
+
+            AvailabilityResponse response = new AvailabilityResponse(true, "检查完成", data);
+
+            // 打印返回数据
+            printResponse(response);
+
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            System.err.println("检查可用性过程中发生错误: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+                    new AvailabilityResponse(false, "服务器内部错误: " + e.getMessage(), null)
+            );
+        }
+    }
+
+    private int countUsers(String sql, String value) {
+        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, value);
+        return count == null ? 0 : count;
+    }
+}
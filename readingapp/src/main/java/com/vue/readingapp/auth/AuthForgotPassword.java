@@ -3,8 +3,6 @@ package com.vue.readingapp.auth;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate; // 导入 JdbcTemplate
@@ -18,13 +16,14 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
 import java.util.List;
+import com.vue.readingapp.auth.service.MailOutboxService;
 
 @RestController
 @RequestMapping("/api/v1/auth")
 public class AuthForgotPassword {
 
     @Autowired
-    private JavaMailSender mailSender;
+    private MailOutboxService mailOutboxService;
 
     @Autowired
     private JdbcTemplate jdbcTemplate; // 注入 JdbcTemplate
@@ -32,9 +31,6 @@ public class AuthForgotPassword {
     @Value("${app.frontend.url:http://localhost:8080}")
     private String frontendUrl;
 
-    @Value("${spring.mail.username}")
-    private String fromEmail;
-
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到请求 ===");
@@ -108,7 +104,7 @@ public class AuthForgotPassword {
         return String.valueOf(code);
     }
 
-    // 发送验证码邮件并存储到数据库
+    // 存储验证码并将邮件加入发件箱
     private boolean sendVerificationEmailAndStoreToken(String toEmail, String verificationCode, LocalDateTime expiresAt) {
         try {
             // 1. 尝试插入token到数据库
@@ -134,11 +130,8 @@ public class AuthForgotPassword {
                 return ps;
             }, keyHolder);
 
-            // 2. 发送邮件
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setFrom(fromEmail);
-            message.setTo(toEmail);
-            message.setSubject("密码重置验证码 - 阅读应用");
+            // 2. 写入邮件发件箱，由后台线程发送，接口不再等待 SMTP
+            String subject = "密码重置验证码 - 阅读应用";
 
             String emailContent = "您的密码重置验证码是：\n\n" +
                     verificationCode + "\n\n" +
@@ -147,10 +140,9 @@ public class AuthForgotPassword {
                     "谢谢，\n" +
                     "阅读应用团队";
 
-            message.setText(emailContent);
-
-            mailSender.send(message);
-            System.out.println("验证码邮件已发送到: " + toEmail);
+            // 验证码过期后邮件不再重试
+            long outboxId = mailOutboxService.enqueue(toEmail, subject, emailContent, "password_reset", expiresAt);
+            System.out.println("验证码邮件已加入发送队列: " + toEmail + ", outbox_id: " + outboxId);
             System.out.println("Token 已存入数据库，token_id: " + keyHolder.getKey().intValue());
             return true;
         } catch (Exception e) {
@@ -206,7 +198,7 @@ public class AuthForgotPassword {
             LocalDateTime now = LocalDateTime.now();
             LocalDateTime expiresAt = now.plusMinutes(10); // 10分钟后过期
 
-            // 5. 发送验证码邮件并存储到数据库
+            // 5. 存储验证码并将邮件加入发件箱
             boolean success = sendVerificationEmailAndStoreToken(email, verificationCode, expiresAt);
 
             if (!success) {
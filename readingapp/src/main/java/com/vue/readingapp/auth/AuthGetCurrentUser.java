@@ -3,12 +3,15 @@ package com.vue.readingapp.auth;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.CacheControl;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import javax.servlet.http.HttpServletRequest;
 import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.List;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.auth.service.CurrentUserSnapshotCache;
 
 @RestController
 @RequestMapping("/api/v1/auth")
@@ -17,6 +20,12 @@ public class AuthGetCurrentUser {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private CurrentUserSnapshotCache currentUserCache;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到获取当前用户请求 ===");
@@ -54,12 +63,8 @@ public class AuthGetCurrentUser {
 
             String token = authHeader.substring(7); // 去掉"Bearer "前缀
 
-            // 2. 查找对应的会话
-            // 注意：这里直接查询 LocalDateTime.now() 可能会因为数据库时区问题导致不匹配。
-            // 更好的做法是使用数据库函数来获取当前时间，或者传递一个与数据库时区一致的时间对象。
-            // 为了保持与原代码一致，这里暂时保留 LocalDateTime.now()。
-            String findSessionSql = "SELECT s.user_id FROM user_sessions s WHERE s.access_token = ? AND s.expires_at > ?";
-            List<Map<String, Object>> sessions = jdbcTemplate.queryForList(findSessionSql, token, LocalDateTime.now());
+            // 2. 查找对应的会话（命中缓存时不查库）
+            List<Map<String, Object>> sessions = sessionResolver.findSession(token);
             printQueryResult(sessions);
 
             if (sessions.isEmpty()) {
@@ -71,108 +76,80 @@ public class AuthGetCurrentUser {
             Map<String, Object> session = sessions.get(0);
             Integer userId = (Integer) session.get("user_id");
 
-            // 3. 查询用户详细信息
-            String userSql = "SELECT user_id, username, email, nickname, avatar_url, role, is_verified, created_at, last_login_at " +
-                    "FROM users WHERE user_id = ?";
-            List<Map<String, Object>> users = jdbcTemplate.queryForList(userSql, userId);
+            // 3. 读取用户快照（用户行与设置合并缓存，资料或设置变化时失效）
+            CurrentUserSnapshotCache.Snapshot snapshot = currentUserCache.get(userId);
 
-            if (users.isEmpty()) {
+            if (snapshot == null) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
                         new CurrentUserResponse(false, "用户不存在", null)
                 );
             }
 
-            Map<String, Object> user = users.get(0);
-
-            // 4. 获取日期时间对象
-            // Spring JDBC 可能会将数据库的 timestamp/datetime 类型映射为 java.sql.Timestamp 或 java.time.LocalDateTime。
-            // 这里需要处理这两种情况，以确保得到正确的 LocalDateTime 对象。
-            LocalDateTime createdAt = null;
-            LocalDateTime lastLoginAt = null;
-
-            Object createdAtObj = user.get("created_at");
-            Object lastLoginAtObj = user.get("last_login_at");
-
-            if (createdAtObj instanceof java.sql.Timestamp) {
-                createdAt = ((java.sql.Timestamp) createdAtObj).toLocalDateTime();
-            } else if (createdAtObj instanceof LocalDateTime) {
-                createdAt = (LocalDateTime) createdAtObj;
-            }
-
-            if (lastLoginAtObj instanceof java.sql.Timestamp) {
-                lastLoginAt = ((java.sql.Timestamp) lastLoginAtObj).toLocalDateTime();
-            } else if (lastLoginAtObj instanceof LocalDateTime) {
-                lastLoginAt = (LocalDateTime) lastLoginAtObj;
+            // 4. 客户端持有的版本未变化时直接返回 304
+            String etag = snapshot.getEtag();
+            String ifNoneMatch = httpRequest.getHeader("If-None-Match");
+            if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(etag)
+                        .cacheControl(CacheControl.noCache().cachePrivate())
+                        .build();
             }
 
-            // 5. 获取用户设置（从user_settings表）
+            // 5. 解析用户设置
             Preferences preferences = new Preferences();
 
-            try {
-                String settingsSql = "SELECT setting_key, setting_value FROM user_settings WHERE user_id = ?";
-                List<Map<String, Object>> settings = jdbcTemplate.queryForList(settingsSql, userId);
-
-                for (Map<String, Object> setting : settings) {
-                    String key = (String) setting.get("setting_key");
-                    String value = (String) setting.get("setting_value");
-
-                    if (key == null || value == null) {
-                        continue; // 跳过无效的设置项
-                    }
-
-                    switch (key) {
-                        case "theme":
-                            preferences.setTheme(value);
-                            break;
-                        case "language":
-                            preferences.setLanguage(value);
-                            break;
-                        case "notification_enabled":
-                            preferences.setNotificationEnabled(Boolean.parseBoolean(value));
-                            break;
-                        case "auto_save":
-                            preferences.setAutoSave(Boolean.parseBoolean(value));
-                            break;
-                        case "reading_mode":
-                            preferences.setReadingMode(value);
-                            break;
-                        case "font_size":
-                            try {
-                                preferences.setFontSize(Integer.parseInt(value));
-                            } catch (NumberFormatException e) {
-                                System.err.println("无法将 font_size '" + value + "' 解析为整数: " + e.getMessage());
-                            }
-                            break;
-                        case "line_height":
-                            try {
-                                preferences.setLineHeight(Double.parseDouble(value));
-                            } catch (NumberFormatException e) {
-                                System.err.println("无法将 line_height '" + value + "' 解析为双精度浮点数: " + e.getMessage());
-                            }
-                            break;
-                        default:
-                            // 可以选择记录未知设置键，或者忽略
-                            System.out.println("未知用户设置键: " + key);
-                            break;
-                    }
+            for (Map.Entry<String, String> setting : snapshot.getSettings().entrySet()) {
+                String key = setting.getKey();
+                String value = setting.getValue();
+
+                switch (key) {
+                    case "theme":
+                        preferences.setTheme(value);
+                        break;
+                    case "language":
+                        preferences.setLanguage(value);
+                        break;
+                    case "notification_enabled":
+                        preferences.setNotificationEnabled(Boolean.parseBoolean(value));
+                        break;
+                    case "auto_save":
+                        preferences.setAutoSave(Boolean.parseBoolean(value));
+                        break;
+                    case "reading_mode":
+                        preferences.setReadingMode(value);
+                        break;
+                    case "font_size":
+                        try {
+                            preferences.setFontSize(Integer.parseInt(value));
+                        } catch (NumberFormatException e) {
+                            System.err.println("无法将 font_size '" + value + "' 解析为整数: " + e.getMessage());
+                        }
+                        break;
+                    case "line_height":
+                        try {
+                            preferences.setLineHeight(Double.parseDouble(value));
+                        } catch (NumberFormatException e) {
+                            System.err.println("无法将 line_height '" + value + "' 解析为双精度浮点数: " + e.getMessage());
+                        }
+                        break;
+                    default:
+                        // 可以选择记录未知设置键，或者忽略
+                        System.out.println("未知用户设置键: " + key);
+                        break;
                 }
-            } catch (Exception e) {
-                System.out.println("获取用户设置失败，将使用默认设置: " + e.getMessage());
-                // 可以在这里根据需要打印堆栈跟踪
-                // e.printStackTrace();
             }
 
             // 6. 构建用户对象
             CurrentUserDTO currentUser = new CurrentUserDTO(
-                    (Integer) user.get("user_id"),
-                    (String) user.get("username"),
-                    (String) user.get("email"),
-                    (String) user.get("nickname"),
-                    (String) user.get("avatar_url"),
-                    (String) user.get("role"),
-                    (Boolean) user.get("is_verified"),
-                    createdAt,
-                    lastLoginAt,
+                    snapshot.getUserId(),
+                    snapshot.getUsername(),
+                    snapshot.getEmail(),
+                    snapshot.getNickname(),
+                    snapshot.getAvatarUrl(),
+                    snapshot.getRole(),
+                    snapshot.getIsVerified(),
+                    snapshot.getCreatedAt(),
+                    snapshot.getLastLoginAt(),
                     preferences
             );
 
@@ -182,7 +159,10 @@ public class AuthGetCurrentUser {
             // 打印返回数据
             printResponse(response);
 
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .body(response);
 
         } catch (Exception e) {
             System.err.println("获取当前用户过程中发生错误: " + e.getMessage());
@@ -3,16 +3,20 @@ package com.vue.readingapp.auth;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpHeaders;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import java.sql.ResultSet; // 保留，但可能不再直接使用
 import java.sql.SQLException;
 import java.time.LocalDateTime;
-import java.util.UUID;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.auth.service.SignedTokenService;
+import com.vue.readingapp.auth.service.PasswordHashingService;
+import com.vue.readingapp.auth.service.CurrentUserSnapshotCache;
 
 @RestController
 @RequestMapping("/api/v1/auth")
@@ -21,6 +25,18 @@ public class AuthLogin {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private SignedTokenService signedTokenService;
+
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private CurrentUserSnapshotCache currentUserCache;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到登录请求 ===");
@@ -78,48 +94,39 @@ public class AuthLogin {
 
             Map<String, Object> user = users.get(0);
 
-            // 3. 验证密码（支持BCrypt和明文）
+            // 3. 验证密码（支持BCrypt和尚未迁移的明文，BCrypt在独立的哈希线程池中计算）
             String passwordHash = (String) user.get("password_hash");
-            boolean passwordValid = false;
-            // 检查是否为BCrypt哈希（以$2a$, $2b$, $2y$开头）
-            if (passwordHash.startsWith("$2a$") || passwordHash.startsWith("$2b$") || passwordHash.startsWith("$2y$")) {
-                BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
-                passwordValid = passwordEncoder.matches(request.getPassword(), passwordHash);
-            } else {
-                // 明文比较
-                passwordValid = passwordHash.equals(request.getPassword());
-            }
+            boolean passwordValid = passwordHashingService.matches(request.getPassword(), passwordHash);
             if (!passwordValid) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
                         new LoginResponse(false, "邮箱/用户名或密码错误", null)
                 );
             }
 
+            // 明文或低强度哈希在后台升级，不影响本次登录耗时
+            if (passwordHashingService.needsRehash(passwordHash)) {
+                passwordHashingService.rehashInBackground(user.get("user_id"), request.getPassword(), passwordHash);
+            }
+
             // 4. 删除用户旧的会话
             String deleteSessionSql = "DELETE FROM user_sessions WHERE user_id = ?";
             jdbcTemplate.update(deleteSessionSql, user.get("user_id"));
+            sessionResolver.revokeUser(user.get("user_id"));
 
-            // 5. 生成新的token
-            String accessToken = "access_" + UUID.randomUUID().toString();
-            String refreshToken = "refresh_" + UUID.randomUUID().toString();
+            // 5. 生成新的token并创建会话（签名模式下访问令牌为HMAC签名令牌）
             LocalDateTime now = LocalDateTime.now();
             // 1小时后过期
             // 注意：这里 expires_in 是秒，1小时是 3600 秒
             int expiresInSeconds = 3600;
 
-            // 6. 创建新的会话
-            String insertSessionSql = "INSERT INTO user_sessions (user_id, access_token, refresh_token, expires_at, created_at) VALUES (?, ?, ?, ?, ?)";
-            jdbcTemplate.update(insertSessionSql,
-                    user.get("user_id"),
-                    accessToken,
-                    refreshToken,
-                    now.plusSeconds(expiresInSeconds), // 使用秒作为过期时间
-                    now
-            );
+            String[] tokens = signedTokenService.createSession(user.get("user_id"), now.plusSeconds(expiresInSeconds), now);
+            String accessToken = tokens[0];
+            String refreshToken = tokens[1];
 
             // 7. 更新用户最后登录时间
             String updateUserSql = "UPDATE users SET last_login_at = ? WHERE user_id = ?";
             jdbcTemplate.update(updateUserSql, now, user.get("user_id"));
+            currentUserCache.invalidate(user.get("user_id"));
 
             // 8. 准备响应数据
             LoginData loginData = new LoginData(accessToken, refreshToken, expiresInSeconds);
@@ -130,6 +137,11 @@ public class AuthLogin {
 
             return ResponseEntity.ok(response);
 
+        } catch (RejectedExecutionException e) {
+            System.err.println("密码哈希线程池繁忙，拒绝登录请求: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(passwordHashingService.getRetryAfterSeconds()))
+                    .body(new LoginResponse(false, "登录请求过多，请稍后重试", null));
         } catch (Exception e) {
             System.err.println("登录过程中发生错误: " + e.getMessage());
             e.printStackTrace();
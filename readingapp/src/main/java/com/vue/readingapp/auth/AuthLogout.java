@@ -8,6 +8,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import javax.servlet.http.HttpServletRequest;
 import java.util.Map;
 import java.util.List;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
 
 @RestController
 @RequestMapping("/api/v1/auth")
@@ -16,6 +17,9 @@ public class AuthLogout {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到登出请求 ===");
@@ -89,6 +93,7 @@ public class AuthLogout {
 
             String deleteSessionSql = "DELETE FROM user_sessions WHERE session_id = ?";
             jdbcTemplate.update(deleteSessionSql, sessionId);
+            sessionResolver.revokeSession(sessionId, userId);
 
             System.out.println("用户ID " + userId + " 的会话已删除");
 
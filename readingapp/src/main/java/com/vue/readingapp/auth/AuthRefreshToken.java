@@ -9,6 +9,8 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 import java.util.Map;
 import java.util.List;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.auth.service.SignedTokenService;
 
 @RestController
 @RequestMapping("/api/v1/auth")
@@ -17,6 +19,12 @@ public class AuthRefreshToken {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private SignedTokenService signedTokenService;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到刷新令牌请求 ===");
@@ -124,16 +132,20 @@ public class AuthRefreshToken {
                 // 删除过期的会话
                 String deleteSessionSql = "DELETE FROM user_sessions WHERE session_id = ?";
                 jdbcTemplate.update(deleteSessionSql, sessionId);
+                sessionResolver.revokeSession(sessionId, userId);
 
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
                         new RefreshTokenResponse(false, "刷新令牌已过期", null)
                 );
             }
 
-            // 4. 生成新的访问令牌和刷新令牌
-            String newAccessToken = "access_" + UUID.randomUUID().toString();
-            String newRefreshToken = "refresh_" + UUID.randomUUID().toString();
+            // 4. 吊销旧的访问令牌，再生成新的访问令牌和刷新令牌
+            sessionResolver.revokeSession(sessionId, userId);
             LocalDateTime newExpiresAt = now.plusHours(1);
+            String newAccessToken = signedTokenService.isEnabled()
+                    ? signedTokenService.sign(userId, sessionId, newExpiresAt)
+                    : "access_" + UUID.randomUUID().toString();
+            String newRefreshToken = "refresh_" + UUID.randomUUID().toString();
 
             // 5. 更新会话
             String updateSessionSql = "UPDATE user_sessions SET access_token = ?, refresh_token = ?, expires_at = ? WHERE session_id = ?";
@@ -143,6 +155,8 @@ public class AuthRefreshToken {
                     newExpiresAt,
                     sessionId
             );
+            // 更新期间可能有请求重新缓存了旧令牌，再清理一次缓存
+            sessionResolver.evictSession(sessionId);
 
             // 6. 准备响应数据
             TokenData tokenData = new TokenData(newAccessToken, newRefreshToken, 3600);
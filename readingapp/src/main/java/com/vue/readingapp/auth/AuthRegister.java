@@ -3,14 +3,23 @@ package com.vue.readingapp.auth;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpHeaders;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.List;
-import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import com.vue.readingapp.auth.service.SignedTokenService;
+import com.vue.readingapp.auth.service.PasswordHashingService;
+import com.vue.readingapp.auth.service.UserIdentityFilter;
 
 @RestController
 @RequestMapping("/api/v1/auth")
@@ -19,7 +28,14 @@ public class AuthRegister {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
-    private BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    @Autowired
+    private SignedTokenService signedTokenService;
+
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private UserIdentityFilter userIdentityFilter;
 
     // 打印接收到的请求
     private void printRequest(Object request) {
@@ -82,7 +98,7 @@ public class AuthRegister {
                 );
             }
 
-            // 4. 检查邮箱是否已存在
+            // 4. 检查邮箱是否已存在（本节点的过滤器可能过期，一律查库）
             String checkEmailSql = "SELECT COUNT(*) FROM users WHERE email = ?";
             Integer emailCount = jdbcTemplate.queryForObject(checkEmailSql, Integer.class, request.getEmail());
 
@@ -113,41 +129,39 @@ public class AuthRegister {
             String insertUserSql = "INSERT INTO users (username, email, password_hash, nickname, avatar_url, role, is_verified, created_at, last_login_at) " +
                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
-            // 密码简单处理（实际项目应该加密）
-            String passwordHash = request.getPassword();
+            // 密码使用BCrypt哈希（在独立的哈希线程池中计算）
+            String passwordHash = passwordHashingService.encode(request.getPassword());
             String avatarUrl = "";
             String role = "user";
             Boolean isVerified = false;
 
-            jdbcTemplate.update(insertUserSql,
-                    request.getUsername(),
-                    request.getEmail(),
-                    passwordHash,
-                    nickname,
-                    avatarUrl,
-                    role,
-                    isVerified,
-                    now,
-                    now
-            );
-
-            // 8. 获取新创建的用户ID
-            String getUserIdSql = "SELECT user_id FROM users WHERE email = ?";
-            Integer userId = jdbcTemplate.queryForObject(getUserIdSql, Integer.class, request.getEmail());
+            // 8. 插入并直接取回自增的用户ID；并发注册时由唯一索引兜底
+            String finalNickname = nickname;
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            try {
+                jdbcTemplate.update(connection -> {
+                    PreparedStatement ps = connection.prepareStatement(insertUserSql, Statement.RETURN_GENERATED_KEYS);
+                    ps.setString(1, request.getUsername());
+                    ps.setString(2, request.getEmail());
+                    ps.setString(3, passwordHash);
+                    ps.setString(4, finalNickname);
+                    ps.setString(5, avatarUrl);
+                    ps.setString(6, role);
+                    ps.setBoolean(7, isVerified);
+                    ps.setTimestamp(8, Timestamp.valueOf(now));
+                    ps.setTimestamp(9, Timestamp.valueOf(now));
+                    return ps;
+                }, keyHolder);
+            } catch (DuplicateKeyException e) {
+                return ResponseEntity.badRequest().body(
+                        new RegisterResponse(false, "该邮箱或用户名已被使用", null)
+                );
+            }
+            Integer userId = keyHolder.getKey().intValue();
+            userIdentityFilter.add(request.getEmail(), request.getUsername());
 
             // 9. 创建用户会话（自动登录）
-            String accessToken = "access_" + UUID.randomUUID().toString();
-            String refreshToken = "refresh_" + UUID.randomUUID().toString();
-
-            String insertSessionSql = "INSERT INTO user_sessions (user_id, access_token, refresh_token, expires_at, created_at) " +
-                    "VALUES (?, ?, ?, ?, ?)";
-            jdbcTemplate.update(insertSessionSql,
-                    userId,
-                    accessToken,
-                    refreshToken,
-                    now.plusHours(1),
-                    now
-            );
+            signedTokenService.createSession(userId, now.plusHours(1), now);
 
             // 10. 准备响应数据
             User user = new User();
@@ -176,6 +190,11 @@ public class AuthRegister {
 
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
 
+        } catch (RejectedExecutionException e) {
+            System.err.println("密码哈希线程池繁忙，拒绝注册请求: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(passwordHashingService.getRetryAfterSeconds()))
+                    .body(new RegisterResponse(false, "注册请求过多，请稍后重试", null));
         } catch (Exception e) {
             System.err.println("注册过程中发生错误: " + e.getMessage());
             e.printStackTrace();
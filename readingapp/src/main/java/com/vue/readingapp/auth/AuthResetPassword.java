@@ -3,6 +3,7 @@ package com.vue.readingapp.auth;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpHeaders;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -10,6 +11,9 @@ import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.auth.service.PasswordHashingService;
 
 @RestController
 @RequestMapping("/api/v1/auth")
@@ -18,6 +22,12 @@ public class AuthResetPassword {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到重置密码请求 ===");
@@ -175,9 +185,9 @@ public class AuthResetPassword {
                 );
             }
 
-            // 7. 更新用户密码 (已移除加密)
+            // 7. 更新用户密码（BCrypt哈希）
             String updatePasswordSql = "UPDATE users SET password_hash = ? WHERE user_id = ?";
-            jdbcTemplate.update(updatePasswordSql, request.getPassword(), userId); // 直接使用明文密码
+            jdbcTemplate.update(updatePasswordSql, passwordHashingService.encode(request.getPassword()), userId);
 
             // 8. 删除已使用的重置令牌
             String deleteUsedTokenSql = "DELETE FROM password_reset_tokens WHERE token_id = ?";
@@ -186,6 +196,7 @@ public class AuthResetPassword {
             // 9. 删除用户的所有会话（安全考虑，强制重新登录）
             String deleteSessionsSql = "DELETE FROM user_sessions WHERE user_id = ?";
             jdbcTemplate.update(deleteSessionsSql, userId);
+            sessionResolver.revokeUser(userId);
 
             // 10. 返回成功响应
             ResetPasswordResponse response = new ResetPasswordResponse(true, "密码重置成功，请使用新密码登录");
@@ -193,6 +204,11 @@ public class AuthResetPassword {
 
             return ResponseEntity.ok(response);
 
+        } catch (RejectedExecutionException e) {
+            System.err.println("密码哈希线程池繁忙，拒绝重置密码请求: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(passwordHashingService.getRetryAfterSeconds()))
+                    .body(new ResetPasswordResponse(false, "请求过多，请稍后重试"));
         } catch (Exception e) {
             System.err.println("重置密码过程中发生错误: " + e.getMessage());
             e.printStackTrace();
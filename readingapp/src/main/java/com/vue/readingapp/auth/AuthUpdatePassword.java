@@ -3,12 +3,16 @@ package com.vue.readingapp.auth;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpHeaders;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import javax.servlet.http.HttpServletRequest;
 import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.auth.service.PasswordHashingService;
 
 @RestController
 @RequestMapping("/api/v1/auth")
@@ -17,6 +21,12 @@ public class AuthUpdatePassword {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到更新密码请求 ===");
@@ -146,7 +156,7 @@ public class AuthUpdatePassword {
             String currentPasswordHash = (String) user.get("password_hash");
 
             // 7. 验证当前密码是否正确
-            if (!currentPasswordHash.equals(request.getCurrent_password())) {
+            if (!passwordHashingService.matches(request.getCurrent_password(), currentPasswordHash)) {
                 return ResponseEntity.badRequest().body(
                         new UpdatePasswordResponse(false, "当前密码错误")
                 );
@@ -154,11 +164,12 @@ public class AuthUpdatePassword {
 
             // 8. 更新密码
             String updatePasswordSql = "UPDATE users SET password_hash = ? WHERE user_id = ?";
-            jdbcTemplate.update(updatePasswordSql, request.getNew_password(), userId);
+            jdbcTemplate.update(updatePasswordSql, passwordHashingService.encode(request.getNew_password()), userId);
 
             // 9. 删除用户的所有会话（安全考虑，强制重新登录）
             String deleteSessionsSql = "DELETE FROM user_sessions WHERE user_id = ?";
             jdbcTemplate.update(deleteSessionsSql, userId);
+            sessionResolver.revokeUser(userId);
 
             System.out.println("用户ID " + userId + " 的密码已更新，所有会话已清除");
 
@@ -168,6 +179,11 @@ public class AuthUpdatePassword {
 
             return ResponseEntity.ok(response);
 
+        } catch (RejectedExecutionException e) {
+            System.err.println("密码哈希线程池繁忙，拒绝更新密码请求: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(passwordHashingService.getRetryAfterSeconds()))
+                    .body(new UpdatePasswordResponse(false, "请求过多，请稍后重试"));
         } catch (Exception e) {
             System.err.println("更新密码过程中发生错误: " + e.getMessage());
             e.printStackTrace();
@@ -9,6 +9,7 @@ import javax.servlet.http.HttpServletRequest;
 import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.List;
+import com.vue.readingapp.auth.service.CurrentUserSnapshotCache;
 
 @RestController
 @RequestMapping("/api/v1/auth")
@@ -17,6 +18,9 @@ public class AuthVerifyEmail {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private CurrentUserSnapshotCache currentUserCache;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到验证邮箱请求 ===");
@@ -123,6 +127,7 @@ public class AuthVerifyEmail {
             // 6. 更新用户邮箱验证状态
             String updateVerificationSql = "UPDATE users SET is_verified = TRUE WHERE user_id = ?";
             int updatedRows = jdbcTemplate.update(updateVerificationSql, userId);
+            currentUserCache.invalidate(userId);
 
             if (updatedRows == 0) {
                 return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
@@ -0,0 +1,192 @@
+package com.vue.readingapp.auth.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import javax.annotation.PostConstruct;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 统一的会话解析组件
+ * 按 access token 缓存 user_sessions 查询结果，命中缓存时不再访问数据库；
+ * 签名令牌直接在本地校验，完全不访问数据库
+ */
+@Service
+public class AuthSessionResolver {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SignedTokenService signedTokenService;
+
+    @Autowired
+    private TokenRevocationList revocationList;
+
+    @Value("${app.session-cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${app.session-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private Cache<String, CachedSession> sessionCache;
+
+    @PostConstruct
+    public void init() {
+        sessionCache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 根据 Authorization 请求头解析用户ID，无效或过期返回 null
+     */
+    public Integer resolveUserId(String authHeader) {
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            return null;
+        }
+        List<Map<String, Object>> sessions = findSession(authHeader.substring(7));
+        if (sessions.isEmpty()) {
+            return null;
+        }
+        return ((Number) sessions.get(0).get("user_id")).intValue();
+    }
+
+    /**
+     * 根据 access token 查找未过期的会话
+     * 返回结构与原先的 user_sessions 查询一致（user_id, expires_at），便于各控制器直接替换
+     */
+    public List<Map<String, Object>> findSession(String accessToken) {
+        if (accessToken == null || accessToken.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        if (signedTokenService.isSignedToken(accessToken)) {
+            Map<String, Object> row = signedTokenService.verify(accessToken);
+            return row == null ? Collections.<Map<String, Object>>emptyList() : Collections.singletonList(row);
+        }
+
+        CachedSession cached = sessionCache.getIfPresent(accessToken);
+        if (cached != null) {
+            if (cached.expiresAtMillis > System.currentTimeMillis()) {
+                return Collections.singletonList(cached.row);
+            }
+            sessionCache.invalidate(accessToken);
+            return Collections.emptyList();
+        }
+
+        String sql = "SELECT session_id, user_id, expires_at FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
+        List<Map<String, Object>> sessions = jdbcTemplate.queryForList(sql, accessToken);
+        if (sessions.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<String, Object> session = sessions.get(0);
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("user_id", session.get("user_id"));
+        row.put("expires_at", session.get("expires_at"));
+
+        CachedSession entry = new CachedSession(
+                ((Number) session.get("session_id")).intValue(),
+                ((Number) session.get("user_id")).intValue(),
+                toEpochMillis(session.get("expires_at")),
+                Collections.unmodifiableMap(row)
+        );
+        sessionCache.put(accessToken, entry);
+        return Collections.singletonList(entry.row);
+    }
+
+    /**
+     * 登出时移除单个 token
+     */
+    public void evictToken(String accessToken) {
+        if (accessToken != null) {
+            sessionCache.invalidate(accessToken);
+        }
+    }
+
+    /**
+     * 会话被更新或删除时（如刷新令牌）移除对应缓存
+     */
+    public void evictSession(Object sessionId) {
+        if (sessionId == null) {
+            return;
+        }
+        int id = ((Number) sessionId).intValue();
+        sessionCache.asMap().values().removeIf(s -> s.sessionId == id);
+    }
+
+    /**
+     * 用户的所有会话失效时（如修改密码、重新登录、注销账号）移除该用户的全部缓存
+     */
+    public void evictUser(Object userId) {
+        if (userId == null) {
+            return;
+        }
+        int id = ((Number) userId).intValue();
+        sessionCache.asMap().values().removeIf(s -> s.userId == id);
+    }
+
+    /**
+     * 吊销单个会话：移除缓存，并使该会话此前签发的签名令牌失效
+     */
+    public void revokeSession(Object sessionId, Object userId) {
+        evictSession(sessionId);
+        if (signedTokenService.isEnabled() && sessionId != null && userId != null) {
+            revocationList.revokeSession(((Number) sessionId).intValue(), ((Number) userId).intValue());
+        }
+    }
+
+    /**
+     * 吊销用户的全部会话：移除缓存，并使该用户此前签发的签名令牌失效
+     */
+    public void revokeUser(Object userId) {
+        evictUser(userId);
+        if (signedTokenService.isEnabled() && userId != null) {
+            revocationList.revokeUser(((Number) userId).intValue());
+        }
+    }
+
+    public long size() {
+        return sessionCache.estimatedSize();
+    }
+
+    private long toEpochMillis(Object expiresAt) {
+        if (expiresAt instanceof Timestamp) {
+            return ((Timestamp) expiresAt).getTime();
+        }
+        if (expiresAt instanceof LocalDateTime) {
+            return ((LocalDateTime) expiresAt).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+        if (expiresAt instanceof java.util.Date) {
+            return ((java.util.Date) expiresAt).getTime();
+        }
+        // 无法识别的类型只依赖缓存自身的过期时间
+        return Long.MAX_VALUE;
+    }
+
+    private static class CachedSession {
+        private final int sessionId;
+        private final int userId;
+        private final long expiresAtMillis;
+        private final Map<String, Object> row;
+
+        CachedSession(int sessionId, int userId, long expiresAtMillis, Map<String, Object> row) {
+            this.sessionId = sessionId;
+            this.userId = userId;
+            this.expiresAtMillis = expiresAtMillis;
+            this.row = row;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.vue.readingapp.auth.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 当前用户快照缓存
+ * 把 users 行和 user_settings 合并成一个不可变快照，按用户ID缓存；
+ * 资料、设置、验证状态变化时调用 invalidate 递增版本号，加载期间版本变化的结果不会写入缓存。
+ */
+@Service
+public class CurrentUserSnapshotCache {
+
+    private static final int VERSION_STRIPES = 4096;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.current-user-cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${app.current-user-cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    private Cache<Integer, Snapshot> snapshots;
+    // 按用户ID分段的版本号，内存固定；不同用户落在同一段只会导致多一次回源
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        // TTL 兜底其他节点上的修改，本节点的修改通过 invalidate 立即生效
+        snapshots = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 获取用户快照，用户不存在返回 null
+     */
+    public Snapshot get(int userId) {
+        Snapshot cached = snapshots.getIfPresent(userId);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+
+        int stripe = stripeOf(userId);
+        long version = versions.get(stripe);
+        Snapshot loaded = load(userId, version);
+        if (loaded == null) {
+            return null;
+        }
+        // 只有加载期间没有发生修改时才写入缓存
+        snapshots.asMap().compute(userId, (key, existing) ->
+                versions.get(stripe) == version ? loaded : existing);
+        return loaded;
+    }
+
+    /**
+     * 用户资料、设置或验证状态发生变化后调用
+     */
+    public void invalidate(Object userId) {
+        if (userId == null) {
+            return;
+        }
+        int id = ((Number) userId).intValue();
+        versions.incrementAndGet(stripeOf(id));
+        snapshots.invalidate(id);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", snapshots.estimatedSize());
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        return stats;
+    }
+
+    private int stripeOf(int userId) {
+        return userId & (VERSION_STRIPES - 1);
+    }
+
+    private Snapshot load(int userId, long version) {
+        String userSql = "SELECT user_id, username, email, nickname, avatar_url, role, is_verified, created_at, last_login_at " +
+                "FROM users WHERE user_id = ?";
+        List<Map<String, Object>> users = jdbcTemplate.queryForList(userSql, userId);
+        if (users.isEmpty()) {
+            return null;
+        }
+
+        Map<String, String> settings = new LinkedHashMap<>();
+        try {
+            String settingsSql = "SELECT setting_key, setting_value FROM user_settings WHERE user_id = ? ORDER BY setting_id";
+            for (Map<String, Object> setting : jdbcTemplate.queryForList(settingsSql, userId)) {
+                String key = (String) setting.get("setting_key");
+                String value = (String) setting.get("setting_value");
+                if (key != null && value != null) {
+                    settings.put(key, value);
+                }
+            }
+        } catch (Exception e) {
+            System.out.println("获取用户设置失败，将使用默认设置: " + e.getMessage());
+        }
+
+        Map<String, Object> user = users.get(0);
+        return new Snapshot(
+                userId,
+                (String) user.get("username"),
+                (String) user.get("email"),
+                (String) user.get("nickname"),
+                (String) user.get("avatar_url"),
+                (String) user.get("role"),
+                toBoolean(user.get("is_verified")),
+                toLocalDateTime(user.get("created_at")),
+                toLocalDateTime(user.get("last_login_at")),
+                Collections.unmodifiableMap(settings),
+                version
+        );
+    }
+
+    private Boolean toBoolean(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).intValue() != 0;
+        }
+        return null;
+    }
+
+    private LocalDateTime toLocalDateTime(Object value) {
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toLocalDateTime();
+        }
+        if (value instanceof LocalDateTime) {
+            return (LocalDateTime) value;
+        }
+        return null;
+    }
+
+    /**
+     * 不可变的用户快照，ETag 由内容计算，多节点和重启后保持一致
+     */
+    public static final class Snapshot {
+        private final int userId;
+        private final String username;
+        private final String email;
+        private final String nickname;
+        private final String avatarUrl;
+        private final String role;
+        private final Boolean isVerified;
+        private final LocalDateTime createdAt;
+        private final LocalDateTime lastLoginAt;
+        private final Map<String, String> settings;
+        private final long version;
+        private final String etag;
+
+        Snapshot(int userId, String username, String email, String nickname, String avatarUrl, String role,
+                 Boolean isVerified, LocalDateTime createdAt, LocalDateTime lastLoginAt,
+                 Map<String, String> settings, long version) {
+            this.userId = userId;
+            this.username = username;
+            this.email = email;
+            this.nickname = nickname;
+            this.avatarUrl = avatarUrl;
+            this.role = role;
+            this.isVerified = isVerified;
+            this.createdAt = createdAt;
+            this.lastLoginAt = lastLoginAt;
+            this.settings = settings;
+            this.version = version;
+            this.etag = computeEtag();
+        }
+
+        public int getUserId() { return userId; }
+        public String getUsername() { return username; }
+        public String getEmail() { return email; }
+        public String getNickname() { return nickname; }
+        public String getAvatarUrl() { return avatarUrl; }
+        public String getRole() { return role; }
+        public Boolean getIsVerified() { return isVerified; }
+        public LocalDateTime getCreatedAt() { return createdAt; }
+        public LocalDateTime getLastLoginAt() { return lastLoginAt; }
+        public Map<String, String> getSettings() { return settings; }
+        public long getVersion() { return version; }
+        public String getEtag() { return etag; }
+
+        private String computeEtag() {
+            StringBuilder content = new StringBuilder();
+            content.append(userId).append('\u0000')
+                    .append(username).append('\u0000')
+                    .append(email).append('\u0000')
+                    .append(nickname).append('\u0000')
+                    .append(avatarUrl).append('\u0000')
+                    .append(role).append('\u0000')
+                    .append(isVerified).append('\u0000')
+                    .append(createdAt).append('\u0000')
+                    .append(lastLoginAt);
+            for (Map.Entry<String, String> entry : settings.entrySet()) {
+                content.append('\u0000').append(entry.getKey()).append('=').append(entry.getValue());
+            }
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.toString().getBytes(StandardCharsets.UTF_8));
+                StringBuilder hex = new StringBuilder("\"u").append(userId).append('-');
+                for (int i = 0; i < 12; i++) {
+                    hex.append(String.format("%02x", digest[i]));
+                }
+                return hex.append('"').toString();
+            } catch (Exception e) {
+                return "\"u" + userId + "-" + Integer.toHexString(content.toString().hashCode()) + "\"";
+            }
+        }
+    }
+}
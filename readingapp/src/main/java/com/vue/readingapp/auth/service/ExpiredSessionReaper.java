@@ -0,0 +1,168 @@
+package com.vue.readingapp.auth.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 过期会话和密码重置令牌清理任务
+ * 按主键顺序分批删除，每批只锁少量行；通过 MySQL GET_LOCK 保证集群中同一时间只有一个节点执行。
+ */
+@Service
+public class ExpiredSessionReaper {
+
+    private static final String LOCK_NAME = "readingapp.expired_session_reaper";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.session-reaper.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.session-reaper.pause-ms:50}")
+    private long pauseMs;
+
+    @Value("${app.session-reaper.max-batches:200}")
+    private int maxBatches;
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong skippedRuns = new AtomicLong();
+    private final AtomicLong sessionsReclaimed = new AtomicLong();
+    private final AtomicLong resetTokensReclaimed = new AtomicLong();
+    private volatile String lastRunAt;
+    private volatile long lastRunMillis;
+
+    @Scheduled(initialDelayString = "${app.session-reaper.initial-delay-ms:60000}",
+            fixedDelayString = "${app.session-reaper.interval-ms:600000}")
+    public void scheduledRun() {
+        try {
+            runOnce();
+        } catch (Exception e) {
+            System.err.println("清理过期会话失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 执行一轮清理，返回各表删除的行数；其他节点持有锁时返回 null
+     */
+    public Map<String, Integer> runOnce() {
+        return jdbcTemplate.execute((ConnectionCallback<Map<String, Integer>>) connection -> {
+            // GET_LOCK 作用于连接，加锁、删除、解锁都必须在同一个连接上完成
+            if (!acquireLock(connection)) {
+                skippedRuns.incrementAndGet();
+                return null;
+            }
+            long start = System.currentTimeMillis();
+            try {
+                Map<String, Integer> result = new LinkedHashMap<>();
+                int sessions = deleteInChunks(connection, "user_sessions", "session_id");
+                int tokens = deleteInChunks(connection, "password_reset_tokens", "token_id");
+                result.put("user_sessions", sessions);
+                result.put("password_reset_tokens", tokens);
+
+                sessionsReclaimed.addAndGet(sessions);
+                resetTokensReclaimed.addAndGet(tokens);
+                runs.incrementAndGet();
+                lastRunAt = LocalDateTime.now().toString();
+                lastRunMillis = System.currentTimeMillis() - start;
+                if (sessions > 0 || tokens > 0) {
+                    System.out.println("已清理过期会话 " + sessions + " 条，过期重置令牌 " + tokens + " 条，耗时 " + lastRunMillis + "ms");
+                }
+                return result;
+            } finally {
+                releaseLock(connection);
+            }
+        });
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("runs", runs.get());
+        stats.put("skippedRuns", skippedRuns.get());
+        stats.put("sessionsReclaimed", sessionsReclaimed.get());
+        stats.put("resetTokensReclaimed", resetTokensReclaimed.get());
+        stats.put("lastRunAt", lastRunAt);
+        stats.put("lastRunMillis", lastRunMillis);
+        return stats;
+    }
+
+    private int deleteInChunks(Connection connection, String table, String idColumn) throws SQLException {
+        // 先按主键顺序取出一批过期ID，再按主键删除，避免在 expires_at 上做范围锁
+        String selectSql = "SELECT " + idColumn + " FROM " + table +
+                " WHERE " + idColumn + " > ? AND expires_at < NOW() ORDER BY " + idColumn + " LIMIT ?";
+        int total = 0;
+        long lastId = 0;
+
+        for (int batch = 0; batch < maxBatches; batch++) {
+            StringBuilder ids = new StringBuilder();
+            int count = 0;
+            try (PreparedStatement ps = connection.prepareStatement(selectSql)) {
+                ps.setLong(1, lastId);
+                ps.setInt(2, batchSize);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        lastId = rs.getLong(1);
+                        if (count++ > 0) {
+                            ids.append(',');
+                        }
+                        ids.append(lastId);
+                    }
+                }
+            }
+            if (count == 0) {
+                break;
+            }
+
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "DELETE FROM " + table + " WHERE " + idColumn + " IN (" + ids + ") AND expires_at < NOW()")) {
+                total += ps.executeUpdate();
+            }
+
+            if (count < batchSize) {
+                break;
+            }
+            pause();
+        }
+        return total;
+    }
+
+    private boolean acquireLock(Connection connection) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT GET_LOCK(?, 0)")) {
+            ps.setString(1, LOCK_NAME);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private void releaseLock(Connection connection) {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.executeQuery().close();
+        } catch (SQLException e) {
+            System.err.println("释放清理任务锁失败: " + e.getMessage());
+        }
+    }
+
+    private void pause() {
+        if (pauseMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(pauseMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package com.vue.readingapp.auth.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.mail.internet.MimeMessage;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 邮件发件箱
+ * 接口只负责把邮件写入 mail_outbox 表并立即返回；后台按批领取待发送邮件，
+ * 由发送线程池分组发送，同一组邮件复用一个 SMTP 连接。发送失败按指数退避重试，超过次数后标记为失败。
+ * 带有效期的邮件（如密码重置验证码）到期后不再发送也不再重试，标记为 dead。
+ * 含验证码等敏感内容的类别（redact-categories）在发送成功或最终失败后清除正文，发件箱里不长期保留明文。
+ */
+@Service
+public class MailOutboxService {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private JavaMailSender mailSender;
+
+    @Value("${spring.mail.username}")
+    private String fromEmail;
+
+    @Value("${app.mail-outbox.threads:2}")
+    private int threads;
+
+    @Value("${app.mail-outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.mail-outbox.messages-per-connection:20}")
+    private int messagesPerConnection;
+
+    @Value("${app.mail-outbox.max-attempts:6}")
+    private int maxAttempts;
+
+    @Value("${app.mail-outbox.backoff-base-seconds:30}")
+    private int backoffBaseSeconds;
+
+    @Value("${app.mail-outbox.backoff-max-seconds:3600}")
+    private int backoffMaxSeconds;
+
+    @Value("${app.mail-outbox.lock-seconds:300}")
+    private int lockSeconds;
+
+    @Value("${app.mail-outbox.retention-days:7}")
+    private int retentionDays;
+
+    @Value("${app.mail-outbox.redact-categories:password_reset}")
+    private String[] redactCategories;
+
+    static final String REDACTED_BODY = "[邮件正文已在发送后清除]";
+
+    private ThreadPoolExecutor executor;
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    private final AtomicLong enqueuedCount = new AtomicLong();
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+    private volatile String lastDrainAt;
+    private volatile String lastError;
+
+    @PostConstruct
+    public void init() {
+        int poolSize = Math.max(1, threads);
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "mail-sender-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 写入发件箱，返回 outbox_id；实际发送由后台完成
+     */
+    public long enqueue(String toAddress, String subject, String body, String category) {
+        return enqueue(toAddress, subject, body, category, null);
+    }
+
+    /**
+     * 写入发件箱，expiresAt 之后不再发送（为 null 时不过期）
+     */
+    public long enqueue(String toAddress, String subject, String body, String category, LocalDateTime expiresAt) {
+        String sql = "INSERT INTO mail_outbox (to_address, subject, body, category, status, attempts, next_attempt_at, expires_at, created_at) " +
+                "VALUES (?, ?, ?, ?, 'pending', 0, NOW(), ?, NOW())";
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            ps.setString(1, toAddress);
+            ps.setString(2, subject);
+            ps.setString(3, body);
+            ps.setString(4, category);
+            ps.setTimestamp(5, expiresAt == null ? null : Timestamp.valueOf(expiresAt));
+            return ps;
+        }, keyHolder);
+        enqueuedCount.incrementAndGet();
+        return keyHolder.getKey().longValue();
+    }
+
+    @Scheduled(initialDelayString = "${app.mail-outbox.initial-delay-ms:10000}",
+            fixedDelayString = "${app.mail-outbox.poll-interval-ms:2000}")
+    public void scheduledDrain() {
+        try {
+            drain();
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            System.err.println("处理邮件发件箱失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 领取并发送到期的邮件，返回本轮处理的邮件数；已有一轮在执行时直接返回 0
+     */
+    public int drain() {
+        if (!draining.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            int total = 0;
+            while (true) {
+                List<Map<String, Object>> batch = claimBatch();
+                if (batch.isEmpty()) {
+                    break;
+                }
+                sendBatch(batch);
+                total += batch.size();
+                if (batch.size() < batchSize) {
+                    break;
+                }
+            }
+            lastDrainAt = LocalDateTime.now().toString();
+            return total;
+        } finally {
+            draining.set(false);
+        }
+    }
+
+    /**
+     * 每天清理一次已发送超过保留期的记录
+     */
+    @Scheduled(initialDelayString = "${app.mail-outbox.initial-delay-ms:10000}", fixedDelay = 86400000)
+    public void purgeSent() {
+        try {
+            int deleted;
+            do {
+                deleted = jdbcTemplate.update(
+                        "DELETE FROM mail_outbox WHERE status = 'sent' AND sent_at < DATE_SUB(NOW(), INTERVAL ? DAY) LIMIT 500",
+                        retentionDays);
+            } while (deleted >= 500);
+        } catch (Exception e) {
+            System.err.println("清理邮件发件箱失败: " + e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threads", executor.getPoolSize());
+        stats.put("activeCount", executor.getActiveCount());
+        stats.put("enqueued", enqueuedCount.get());
+        stats.put("sent", sentCount.get());
+        stats.put("retried", retryCount.get());
+        stats.put("failed", failedCount.get());
+        stats.put("expired", expiredCount.get());
+        stats.put("lastDrainAt", lastDrainAt);
+        stats.put("lastError", lastError);
+        return stats;
+    }
+
+    private List<Map<String, Object>> claimBatch() {
+        expireOverdue();
+        // 先用 claim_token 标记一批到期邮件，再按标记读取，多个节点同时领取也不会重复发送；
+        // 发送中途宕机的邮件在锁定超时后会被重新领取
+        String claimToken = UUID.randomUUID().toString();
+        String claimSql = "UPDATE mail_outbox SET status = 'sending', claim_token = ?, " +
+                "locked_until = DATE_ADD(NOW(), INTERVAL ? SECOND) " +
+                "WHERE ((status = 'pending' AND next_attempt_at <= NOW()) " +
+                "OR (status = 'sending' AND locked_until < NOW())) " +
+                "AND (expires_at IS NULL OR expires_at > NOW()) " +
+                "ORDER BY outbox_id LIMIT ?";
+        int claimed = jdbcTemplate.update(claimSql, claimToken, lockSeconds, batchSize);
+        if (claimed == 0) {
+            return new ArrayList<>();
+        }
+        return jdbcTemplate.queryForList(
+                "SELECT outbox_id, to_address, subject, body, attempts, expires_at FROM mail_outbox WHERE claim_token = ? ORDER BY outbox_id",
+                claimToken);
+    }
+
+    // 已过有效期、还在等待发送或重试的邮件直接标记为 dead，敏感正文一并清除
+    private void expireOverdue() {
+        List<Object> params = new ArrayList<>();
+        params.add("邮件已过有效期，不再发送");
+        String redact = redactClause(params);
+        int expired = jdbcTemplate.update("UPDATE mail_outbox SET status = 'dead', last_error = ?, claim_token = NULL, locked_until = NULL" +
+                redact + " WHERE expires_at <= NOW() AND status IN ('pending', 'sending') " +
+                "AND (locked_until IS NULL OR locked_until < NOW())", params.toArray());
+        if (expired > 0) {
+            expiredCount.addAndGet(expired);
+            System.out.println("过期邮件不再发送: " + expired + " 封");
+        }
+    }
+
+    private void sendBatch(List<Map<String, Object>> batch) {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i += messagesPerConnection) {
+            List<Map<String, Object>> chunk = batch.subList(i, Math.min(batch.size(), i + messagesPerConnection));
+            tasks.add(() -> {
+                sendChunk(chunk);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            lastError = String.valueOf(e.getCause());
+            System.err.println("邮件发送任务异常: " + e.getCause());
+        }
+    }
+
+    private void sendChunk(List<Map<String, Object>> chunk) {
+        Map<MimeMessage, Map<String, Object>> messages = new IdentityHashMap<>();
+        List<MimeMessage> toSend = new ArrayList<>();
+        for (Map<String, Object> row : chunk) {
+            try {
+                MimeMessage message = mailSender.createMimeMessage();
+                MimeMessageHelper helper = new MimeMessageHelper(message, "UTF-8");
+                helper.setFrom(fromEmail);
+                helper.setTo((String) row.get("to_address"));
+                helper.setSubject((String) row.get("subject"));
+                helper.setText((String) row.get("body"));
+                messages.put(message, row);
+                toSend.add(message);
+            } catch (Exception e) {
+                // 地址等内容本身有问题，重试也不会成功
+                markFailed(row, e, true);
+            }
+        }
+        if (toSend.isEmpty()) {
+            return;
+        }
+
+        Map<Object, Exception> failures = new IdentityHashMap<>();
+        try {
+            // 一次 send 调用内的所有邮件共用同一个 SMTP 连接
+            mailSender.send(toSend.toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            failures.putAll(e.getFailedMessages());
+            if (failures.isEmpty()) {
+                for (MimeMessage message : toSend) {
+                    failures.put(message, e);
+                }
+            }
+        } catch (Exception e) {
+            // 连接或认证失败，整组都需要重试
+            for (MimeMessage message : toSend) {
+                failures.put(message, e);
+            }
+        }
+
+        List<Object> sentIds = new ArrayList<>();
+        for (MimeMessage message : toSend) {
+            Map<String, Object> row = messages.get(message);
+            Exception failure = failures.get(message);
+            if (failure == null) {
+                sentIds.add(row.get("outbox_id"));
+            } else {
+                markFailed(row, failure, false);
+            }
+        }
+        markSent(sentIds);
+    }
+
+    private void markSent(List<Object> outboxIds) {
+        if (outboxIds.isEmpty()) {
+            return;
+        }
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < outboxIds.size(); i++) {
+            placeholders.append(i == 0 ? "?" : ", ?");
+        }
+        List<Object> params = new ArrayList<>();
+        String redact = redactClause(params);
+        params.addAll(outboxIds);
+        jdbcTemplate.update("UPDATE mail_outbox SET status = 'sent', sent_at = NOW(), claim_token = NULL, locked_until = NULL" + redact +
+                " WHERE outbox_id IN (" + placeholders + ")", params.toArray());
+        sentCount.addAndGet(outboxIds.size());
+    }
+
+    private void markFailed(Map<String, Object> row, Exception error, boolean permanent) {
+        int attempts = ((Number) row.get("attempts")).intValue() + 1;
+        String message = error.getMessage() == null ? error.getClass().getSimpleName() : error.getMessage();
+        if (message.length() > 500) {
+            message = message.substring(0, 500);
+        }
+        lastError = message;
+
+        if (permanent || attempts >= maxAttempts) {
+            List<Object> params = new ArrayList<>(Arrays.asList(attempts, message));
+            String redact = redactClause(params);
+            params.add(row.get("outbox_id"));
+            jdbcTemplate.update("UPDATE mail_outbox SET status = 'failed', attempts = ?, last_error = ?, claim_token = NULL, locked_until = NULL" +
+                    redact + " WHERE outbox_id = ?", params.toArray());
+            failedCount.incrementAndGet();
+            System.err.println("邮件发送失败，不再重试: outbox_id=" + row.get("outbox_id") + ", " + message);
+            return;
+        }
+
+        int backoff = backoffSeconds(attempts);
+        Object expiresAt = row.get("expires_at");
+        if (expiresAt instanceof Timestamp
+                && !LocalDateTime.now().plusSeconds(backoff).isBefore(((Timestamp) expiresAt).toLocalDateTime())) {
+            // 下次重试时已经过期（如验证码只有 10 分钟有效），不再重试
+            List<Object> params = new ArrayList<>(Arrays.asList(attempts, message));
+            String redact = redactClause(params);
+            params.add(row.get("outbox_id"));
+            jdbcTemplate.update("UPDATE mail_outbox SET status = 'dead', attempts = ?, last_error = ?, claim_token = NULL, locked_until = NULL" +
+                    redact + " WHERE outbox_id = ?", params.toArray());
+            expiredCount.incrementAndGet();
+            System.err.println("邮件在有效期内未能发送，不再重试: outbox_id=" + row.get("outbox_id") + ", " + message);
+            return;
+        }
+
+        jdbcTemplate.update("UPDATE mail_outbox SET status = 'pending', attempts = ?, last_error = ?, claim_token = NULL, locked_until = NULL, " +
+                "next_attempt_at = DATE_ADD(NOW(), INTERVAL ? SECOND) WHERE outbox_id = ?",
+                attempts, message, backoff, row.get("outbox_id"));
+        retryCount.incrementAndGet();
+    }
+
+    // 敏感类别的正文替换为占位文字；没有配置敏感类别时返回空串
+    private String redactClause(List<Object> params) {
+        List<String> categories = new ArrayList<>();
+        for (String category : redactCategories) {
+            if (!category.trim().isEmpty()) {
+                categories.add(category.trim());
+            }
+        }
+        if (categories.isEmpty()) {
+            return "";
+        }
+        params.addAll(categories);
+        params.add(REDACTED_BODY);
+        return ", body = CASE WHEN category IN (" + String.join(", ", Collections.nCopies(categories.size(), "?")) +
+                ") THEN ? ELSE body END";
+    }
+
+    // 指数退避，带 ±20% 抖动，避免大量邮件在同一时刻重试
+    private int backoffSeconds(int attempts) {
+        long delay = (long) backoffBaseSeconds << Math.min(attempts - 1, 20);
+        delay = Math.min(delay, backoffMaxSeconds);
+        double jitter = 0.8 + ThreadLocalRandom.current().nextDouble() * 0.4;
+        return (int) Math.max(1, delay * jitter);
+    }
+}
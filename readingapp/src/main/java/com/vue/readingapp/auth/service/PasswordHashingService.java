@@ -0,0 +1,206 @@
+package com.vue.readingapp.auth.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 密码哈希服务
+ * BCrypt 计算放在独立的有界线程池中执行，登录高峰时排队或快速拒绝，不会占满 Tomcat 工作线程：
+ * 请求线程最多等待 timeout-ms；按最近的哈希耗时估算排队时间，超过等待上限的请求在入队前就拒绝。
+ * 拒绝时抛出 RejectedExecutionException，调用方返回 503 并带上 Retry-After。
+ * 旧的明文密码或低强度哈希在登录成功后于后台重新哈希。
+ */
+@Service
+public class PasswordHashingService {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.auth.bcrypt.strength:10}")
+    private int strength;
+
+    @Value("${app.auth.hashing.threads:0}")
+    private int threads;
+
+    @Value("${app.auth.hashing.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${app.auth.hashing.timeout-ms:5000}")
+    private long timeoutMs;
+
+    private BCryptPasswordEncoder encoder;
+    private ThreadPoolExecutor executor;
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong rehashedCount = new AtomicLong();
+    // 最近哈希耗时的指数移动平均（纳秒），用于估算排队等待时间
+    private final AtomicLong averageHashNanos = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        encoder = new BCryptPasswordEncoder(strength);
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "password-hash-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 校验密码，兼容尚未迁移的明文密码
+     * 线程池已满时抛出 RejectedExecutionException，调用方应返回 503
+     */
+    public boolean matches(String rawPassword, String storedHash) {
+        if (rawPassword == null || storedHash == null) {
+            return false;
+        }
+        if (!isBCryptHash(storedHash)) {
+            return MessageDigest.isEqual(storedHash.getBytes(StandardCharsets.UTF_8),
+                    rawPassword.getBytes(StandardCharsets.UTF_8));
+        }
+        return await(() -> encoder.matches(rawPassword, storedHash));
+    }
+
+    /**
+     * 生成 BCrypt 哈希
+     */
+    public String encode(String rawPassword) {
+        return await(() -> encoder.encode(rawPassword));
+    }
+
+    /**
+     * 明文密码或强度低于当前配置的哈希需要升级
+     */
+    public boolean needsRehash(String storedHash) {
+        return storedHash == null || !isBCryptHash(storedHash) || encoder.upgradeEncoding(storedHash);
+    }
+
+    /**
+     * 登录成功后在后台重新哈希；线程池繁忙时直接跳过，下次登录再升级
+     */
+    public void rehashInBackground(Object userId, String rawPassword, String oldHash) {
+        try {
+            executor.execute(() -> {
+                try {
+                    String newHash = encoder.encode(rawPassword);
+                    // 仅当密码未被并发修改时才覆盖
+                    String sql = "UPDATE users SET password_hash = ? WHERE user_id = ? AND password_hash = ?";
+                    if (jdbcTemplate.update(sql, newHash, userId, oldHash) > 0) {
+                        rehashedCount.incrementAndGet();
+                        System.out.println("用户ID " + userId + " 的密码哈希已升级");
+                    }
+                } catch (Exception e) {
+                    System.err.println("后台升级密码哈希失败: " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 线程池运行指标
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("strength", strength);
+        stats.put("poolSize", executor.getPoolSize());
+        stats.put("activeCount", executor.getActiveCount());
+        stats.put("queueDepth", executor.getQueue().size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("completedTasks", executor.getCompletedTaskCount());
+        stats.put("rejectedCount", rejectedCount.get());
+        stats.put("rehashedCount", rehashedCount.get());
+        stats.put("averageHashMs", TimeUnit.NANOSECONDS.toMillis(averageHashNanos.get()));
+        return stats;
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * 线程池繁忙被拒绝时建议客户端等待的秒数（Retry-After）
+     */
+    public long getRetryAfterSeconds() {
+        return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(timeoutMs + 999));
+    }
+
+    private boolean isBCryptHash(String hash) {
+        return hash.startsWith("$2a$") || hash.startsWith("$2b$") || hash.startsWith("$2y$");
+    }
+
+    private <T> T await(Callable<T> task) {
+        // 预计排到时已经超过等待上限的请求直接拒绝，不占用队列和请求线程
+        long expectedWaitNanos = (executor.getQueue().size() + 1L) * averageHashNanos.get() / executor.getMaximumPoolSize();
+        if (expectedWaitNanos > TimeUnit.MILLISECONDS.toNanos(timeoutMs)) {
+            rejectedCount.incrementAndGet();
+            throw new RejectedExecutionException("密码哈希排队时间预计超过 " + timeoutMs + "ms");
+        }
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long begin = System.nanoTime();
+                try {
+                    return task.call();
+                } finally {
+                    recordDuration(System.nanoTime() - begin);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+            throw e;
+        }
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 取消后从队列中移除，尚未开始的哈希不再占用名额
+            future.cancel(true);
+            executor.purge();
+            rejectedCount.incrementAndGet();
+            throw new RejectedExecutionException("密码哈希等待超时");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("密码哈希被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("密码哈希失败", e.getCause());
+        }
+    }
+
+    private void recordDuration(long nanos) {
+        averageHashNanos.accumulateAndGet(nanos, (average, sample) -> average == 0 ? sample : (average * 7 + sample) / 8);
+    }
+}
@@ -0,0 +1,176 @@
+package com.vue.readingapp.auth.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import javax.annotation.PostConstruct;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * HMAC 签名的访问令牌
+ * 令牌格式: st1.{base64url(userId:sessionId:issuedAtMs:expiresAtSec)}.{base64url(HMAC-SHA256)}
+ * 校验只需要 CPU 计算，吊销由 TokenRevocationList 负责。
+ * 签名密钥只从配置（环境变量 APP_AUTH_SIGNED_TOKEN_SECRET）读取，没有内置默认值；
+ * 开启了签名令牌但没有配置密钥时退回随机令牌，不影响启动。
+ */
+@Service
+public class SignedTokenService {
+
+    private static final String PREFIX = "st1.";
+    private static final String ALGORITHM = "HmacSHA256";
+    // HMAC-SHA256 密钥至少 32 字节
+    private static final int MIN_SECRET_BYTES = 32;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TokenRevocationList revocationList;
+
+    @Value("${app.auth.signed-token.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.auth.signed-token.secret:}")
+    private String secret;
+
+    private final ThreadLocal<Mac> macHolder = ThreadLocal.withInitial(this::newMac);
+
+    /**
+     * 启用签名令牌时必须配置足够长的密钥，否则打印警告并退回随机令牌（不使用弱密钥签名）
+     */
+    @PostConstruct
+    public void checkSecret() {
+        if (enabled && (secret == null || secret.trim().getBytes(StandardCharsets.UTF_8).length < MIN_SECRET_BYTES)) {
+            enabled = false;
+            System.err.println("警告: 已启用签名访问令牌，但没有配置至少 " + MIN_SECRET_BYTES
+                    + " 字节的签名密钥，改用随机访问令牌；请设置环境变量 APP_AUTH_SIGNED_TOKEN_SECRET");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isSignedToken(String token) {
+        return token != null && token.startsWith(PREFIX);
+    }
+
+    /**
+     * 创建会话并返回访问令牌和刷新令牌
+     * 签名模式下先插入会话拿到 session_id，再写回签名令牌；否则沿用原来的随机令牌
+     */
+    public String[] createSession(Object userId, LocalDateTime expiresAt, LocalDateTime now) {
+        String refreshToken = "refresh_" + UUID.randomUUID().toString();
+        String insertSessionSql = "INSERT INTO user_sessions (user_id, access_token, refresh_token, expires_at, created_at) VALUES (?, ?, ?, ?, ?)";
+
+        if (!enabled) {
+            String accessToken = "access_" + UUID.randomUUID().toString();
+            jdbcTemplate.update(insertSessionSql, userId, accessToken, refreshToken, expiresAt, now);
+            return new String[]{accessToken, refreshToken};
+        }
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(insertSessionSql, Statement.RETURN_GENERATED_KEYS);
+            ps.setObject(1, userId);
+            ps.setString(2, "pending_" + UUID.randomUUID().toString());
+            ps.setString(3, refreshToken);
+            ps.setTimestamp(4, Timestamp.valueOf(expiresAt));
+            ps.setTimestamp(5, Timestamp.valueOf(now));
+            return ps;
+        }, keyHolder);
+
+        int sessionId = keyHolder.getKey().intValue();
+        String accessToken = sign(((Number) userId).intValue(), sessionId, expiresAt);
+        jdbcTemplate.update("UPDATE user_sessions SET access_token = ? WHERE session_id = ?", accessToken, sessionId);
+        return new String[]{accessToken, refreshToken};
+    }
+
+    /**
+     * 签发访问令牌
+     */
+    public String sign(int userId, int sessionId, LocalDateTime expiresAt) {
+        long expiresAtSec = expiresAt.atZone(ZoneId.systemDefault()).toEpochSecond();
+        String payload = userId + ":" + sessionId + ":" + System.currentTimeMillis() + ":" + expiresAtSec;
+        String encodedPayload = base64(payload.getBytes(StandardCharsets.UTF_8));
+        return PREFIX + encodedPayload + "." + base64(hmac(encodedPayload));
+    }
+
+    /**
+     * 校验签名令牌，返回与 user_sessions 查询同结构的行（user_id, expires_at），无效返回 null
+     */
+    public Map<String, Object> verify(String token) {
+        if (!enabled || !isSignedToken(token)) {
+            return null;
+        }
+        int dot = token.indexOf('.', PREFIX.length());
+        if (dot < 0) {
+            return null;
+        }
+        String encodedPayload = token.substring(PREFIX.length(), dot);
+        try {
+            byte[] signature = Base64.getUrlDecoder().decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(signature, hmac(encodedPayload))) {
+                return null;
+            }
+
+            String[] parts = new String(Base64.getUrlDecoder().decode(encodedPayload), StandardCharsets.UTF_8).split(":");
+            if (parts.length != 4) {
+                return null;
+            }
+            int userId = Integer.parseInt(parts[0]);
+            int sessionId = Integer.parseInt(parts[1]);
+            long issuedAtMillis = Long.parseLong(parts[2]);
+            long expiresAtSec = Long.parseLong(parts[3]);
+
+            if (expiresAtSec * 1000 <= System.currentTimeMillis()) {
+                return null;
+            }
+            if (revocationList.isRevoked(userId, sessionId, issuedAtMillis)) {
+                return null;
+            }
+
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("user_id", userId);
+            row.put("expires_at", LocalDateTime.ofInstant(Instant.ofEpochSecond(expiresAtSec), ZoneId.systemDefault()));
+            return Collections.unmodifiableMap(row);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private byte[] hmac(String data) {
+        return macHolder.get().doFinal(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+            return mac;
+        } catch (Exception e) {
+            throw new IllegalStateException("初始化令牌签名算法失败", e);
+        }
+    }
+
+    private String base64(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,109 @@
+package com.vue.readingapp.auth.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 签名令牌的吊销名单
+ * 记录被吊销的会话ID（或整个用户）及吊销时间，签发时间早于吊销时间的令牌一律视为无效。
+ * 名单持久化在 revoked_sessions 表中，各节点定期拉取，保证集群内一致。
+ */
+@Service
+public class TokenRevocationList {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // 吊销记录需保留的时长，不能短于签名令牌的最长有效期
+    @Value("${app.auth.revocation.retention-seconds:86400}")
+    private long retentionSeconds;
+
+    private volatile Map<Integer, Long> revokedSessions = new ConcurrentHashMap<>();
+    private volatile Map<Integer, Long> revokedUsers = new ConcurrentHashMap<>();
+
+    /**
+     * 吊销单个会话（登出、刷新令牌）
+     */
+    public void revokeSession(int sessionId, int userId) {
+        long revokedAt = System.currentTimeMillis();
+        revokedSessions.merge(sessionId, revokedAt, Math::max);
+        persist("session", sessionId, userId, revokedAt);
+    }
+
+    /**
+     * 吊销某个用户此前签发的全部令牌（修改密码、重新登录、注销账号）
+     */
+    public void revokeUser(int userId) {
+        long revokedAt = System.currentTimeMillis();
+        revokedUsers.merge(userId, revokedAt, Math::max);
+        persist("user", userId, userId, revokedAt);
+    }
+
+    /**
+     * 判断在 issuedAtMillis 签发的令牌是否已被吊销
+     */
+    public boolean isRevoked(int userId, int sessionId, long issuedAtMillis) {
+        Long sessionCutoff = revokedSessions.get(sessionId);
+        if (sessionCutoff != null && issuedAtMillis < sessionCutoff) {
+            return true;
+        }
+        Long userCutoff = revokedUsers.get(userId);
+        return userCutoff != null && issuedAtMillis < userCutoff;
+    }
+
+    public int size() {
+        return revokedSessions.size() + revokedUsers.size();
+    }
+
+    /**
+     * 定期从数据库刷新吊销名单，同时清理已过保留期的记录
+     */
+    @Scheduled(fixedDelayString = "${app.auth.revocation.refresh-interval-ms:30000}")
+    public void refresh() {
+        try {
+            String sql = "SELECT scope, target_id, revoked_at_ms FROM revoked_sessions WHERE expires_at > NOW()";
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(sql);
+
+            Map<Integer, Long> sessions = new ConcurrentHashMap<>();
+            Map<Integer, Long> users = new ConcurrentHashMap<>();
+            for (Map<String, Object> row : rows) {
+                int targetId = ((Number) row.get("target_id")).intValue();
+                long revokedAt = ((Number) row.get("revoked_at_ms")).longValue();
+                if ("user".equals(row.get("scope"))) {
+                    users.merge(targetId, revokedAt, Math::max);
+                } else {
+                    sessions.merge(targetId, revokedAt, Math::max);
+                }
+            }
+
+            // 保留本地尚未过期的记录，避免写库失败时丢失吊销
+            long oldest = System.currentTimeMillis() - retentionSeconds * 1000;
+            revokedSessions.forEach((id, at) -> { if (at > oldest) sessions.merge(id, at, Math::max); });
+            revokedUsers.forEach((id, at) -> { if (at > oldest) users.merge(id, at, Math::max); });
+
+            revokedSessions = sessions;
+            revokedUsers = users;
+
+            jdbcTemplate.update("DELETE FROM revoked_sessions WHERE expires_at <= NOW()");
+        } catch (Exception e) {
+            System.err.println("刷新令牌吊销名单失败: " + e.getMessage());
+        }
+    }
+
+    private void persist(String scope, int targetId, int userId, long revokedAt) {
+        try {
+            String sql = "INSERT INTO revoked_sessions (scope, target_id, user_id, revoked_at_ms, expires_at) VALUES (?, ?, ?, ?, ?)";
+            jdbcTemplate.update(sql, scope, targetId, userId, revokedAt,
+                    LocalDateTime.now().plusSeconds(retentionSeconds));
+        } catch (Exception e) {
+            System.err.println("保存令牌吊销记录失败: " + e.getMessage());
+        }
+    }
+}
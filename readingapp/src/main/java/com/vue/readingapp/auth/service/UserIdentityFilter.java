@@ -0,0 +1,215 @@
+package com.vue.readingapp.auth.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 已占用邮箱和用户名的内存布隆过滤器，用于注册前的可用性检查
+ * 判定"一定不存在"时直接视为可用，省掉查询；判定"可能存在"时（误判、已注销的账号、过滤器尚未构建）由调用方查库确认。
+ * 过滤器只在本节点维护、定时重建，其他节点在上次重建之后的注册它看不到，这时会提前报告可用；
+ * 可用性检查只是提示，注册接口始终查库并由唯一索引保证不重复。不支持移除，注销的账号在下次重建前需要查库确认。
+ */
+@Service
+public class UserIdentityFilter {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.user-filter.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Value("${app.user-filter.min-capacity:100000}")
+    private int minCapacity;
+
+    private volatile BloomFilter emails;
+    private volatile BloomFilter usernames;
+    // 重建期间的新注册同时写入正在构建的过滤器，避免切换后丢失
+    private volatile BloomFilter buildingEmails;
+    private volatile BloomFilter buildingUsernames;
+    // 登记新条目与切换过滤器互斥，避免新条目只写进被替换掉的旧过滤器
+    private final Object swapLock = new Object();
+
+    private final AtomicLong definitelyAbsent = new AtomicLong();
+    private final AtomicLong mightContain = new AtomicLong();
+    private volatile int entries;
+    private volatile String lastBuiltAt;
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${app.user-filter.rebuild-interval-ms:3600000}")
+    public void scheduledRebuild() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            System.err.println("构建用户名/邮箱过滤器失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 从 users 表全量重建过滤器，容量按当前用户数的两倍估算
+     */
+    public synchronized void rebuild() {
+        Integer userCount = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Integer.class);
+        int capacity = Math.max(minCapacity, (userCount == null ? 0 : userCount) * 2);
+
+        BloomFilter newEmails = new BloomFilter(capacity, falsePositiveRate);
+        BloomFilter newUsernames = new BloomFilter(capacity, falsePositiveRate);
+        synchronized (swapLock) {
+            buildingEmails = newEmails;
+            buildingUsernames = newUsernames;
+        }
+        int[] count = {0};
+        try {
+            jdbcTemplate.query("SELECT email, username FROM users", (RowCallbackHandler) rs -> {
+                newEmails.add(normalize(rs.getString("email")));
+                newUsernames.add(normalize(rs.getString("username")));
+                count[0]++;
+            });
+            synchronized (swapLock) {
+                emails = newEmails;
+                usernames = newUsernames;
+                buildingEmails = null;
+                buildingUsernames = null;
+            }
+        } finally {
+            synchronized (swapLock) {
+                buildingEmails = null;
+                buildingUsernames = null;
+            }
+        }
+        entries = count[0];
+        lastBuiltAt = LocalDateTime.now().toString();
+    }
+
+    /**
+     * 邮箱一定未被占用时返回 false；过滤器尚未构建时保守返回 true
+     */
+    public boolean mightContainEmail(String email) {
+        return mightContain(emails, email);
+    }
+
+    /**
+     * 用户名一定未被占用时返回 false；过滤器尚未构建时保守返回 true
+     */
+    public boolean mightContainUsername(String username) {
+        return mightContain(usernames, username);
+    }
+
+    /**
+     * 注册成功后登记
+     */
+    public void add(String email, String username) {
+        synchronized (swapLock) {
+            addTo(emails, buildingEmails, normalize(email));
+            addTo(usernames, buildingUsernames, normalize(username));
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        BloomFilter current = emails;
+        stats.put("ready", current != null);
+        stats.put("entries", entries);
+        stats.put("capacity", current == null ? 0 : current.capacity);
+        stats.put("bits", current == null ? 0 : current.bitCount);
+        stats.put("hashFunctions", current == null ? 0 : current.hashCount);
+        stats.put("definitelyAbsent", definitelyAbsent.get());
+        stats.put("mightContain", mightContain.get());
+        stats.put("lastBuiltAt", lastBuiltAt);
+        return stats;
+    }
+
+    private boolean mightContain(BloomFilter filter, String value) {
+        if (filter == null || value == null) {
+            return true;
+        }
+        if (filter.mightContain(normalize(value))) {
+            mightContain.incrementAndGet();
+            return true;
+        }
+        definitelyAbsent.incrementAndGet();
+        return false;
+    }
+
+    private void addTo(BloomFilter current, BloomFilter building, String value) {
+        if (value == null) {
+            return;
+        }
+        if (current != null) {
+            current.add(value);
+        }
+        if (building != null) {
+            building.add(value);
+        }
+    }
+
+    // users 表使用大小写不敏感的排序规则，过滤器按同样的方式归一化
+    private String normalize(String value) {
+        return value == null ? null : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 位数组布隆过滤器，双重哈希生成 k 个位置
+     */
+    private static class BloomFilter {
+        private final int capacity;
+        private final long bitCount;
+        private final long[] bits;
+        private final int hashCount;
+
+        BloomFilter(int capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            double ln2 = Math.log(2);
+            long size = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (ln2 * ln2));
+            this.bits = new long[(int) ((Math.max(64, size) + 63) / 64)];
+            this.bitCount = (long) bits.length * 64;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * ln2));
+        }
+
+        synchronized void add(String value) {
+            long[] hashes = hash(value);
+            for (int i = 0; i < hashCount; i++) {
+                long index = index(hashes, i);
+                bits[(int) (index >>> 6)] |= 1L << index;
+            }
+        }
+
+        boolean mightContain(String value) {
+            long[] hashes = hash(value);
+            for (int i = 0; i < hashCount; i++) {
+                long index = index(hashes, i);
+                if ((bits[(int) (index >>> 6)] & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private long index(long[] hashes, int i) {
+            return Math.floorMod(hashes[0] + i * hashes[1], bitCount);
+        }
+
+        // 两个不同种子的 FNV-1a 64 位哈希
+        private long[] hash(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            long h1 = 0xcbf29ce484222325L;
+            long h2 = 0x84222325cbf29ce4L;
+            for (byte b : bytes) {
+                h1 ^= (b & 0xFF);
+                h1 *= 0x100000001b3L;
+                h2 ^= (b & 0xFF);
+                h2 *= 0x100000001b3L;
+                h2 ^= (h2 >>> 29);
+            }
+            return new long[]{h1, h2 | 1};
+        }
+    }
+}
@@ -8,6 +8,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
 import java.time.LocalDateTime;
 import java.sql.Timestamp;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.SearchIndexService;
 
 @RestController
 @RequestMapping("/api/v1/documents")
@@ -16,6 +18,12 @@ public class DocumentsBatchDelete {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
     // 打印接收到的请求
     private void printRequest(BatchDeleteRequest request) {
         System.out.println("=== 收到批量删除文档请求 ===");
@@ -113,8 +121,7 @@ public class DocumentsBatchDelete {
             String token = authHeader.substring(7);
 
             // 验证token
-            String tokenSql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-            List<Map<String, Object>> tokenResults = jdbcTemplate.queryForList(tokenSql, token);
+            List<Map<String, Object>> tokenResults = sessionResolver.findSession(token);
 
             if (tokenResults.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -188,6 +195,8 @@ public class DocumentsBatchDelete {
                 message = "成功删除 " + successCount + " 个文档，" + failedIds.size() + " 个文档删除失败";
             }
 
+            searchIndexService.invalidateUser(userId);
+
             BatchDeleteResponse response = new BatchDeleteResponse(true, message, data);
 
             // 打印返回数据
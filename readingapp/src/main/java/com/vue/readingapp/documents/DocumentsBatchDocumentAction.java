@@ -8,6 +8,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
 import java.time.LocalDateTime;
 import java.sql.Timestamp;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.SearchIndexService;
 
 @RestController
 @RequestMapping("/api/v1/documents")
@@ -16,6 +18,12 @@ public class DocumentsBatchDocumentAction {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
     // 打印接收到的请求
     private void printRequest(String action, BatchActionRequest request, String authHeader) {
         System.out.println("=== 收到批量操作文档请求 ===");
@@ -129,8 +137,7 @@ public class DocumentsBatchDocumentAction {
             String token = authHeader.substring(7);
 
             // 验证token
-            String tokenSql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-            List<Map<String, Object>> tokenResults = jdbcTemplate.queryForList(tokenSql, token);
+            List<Map<String, Object>> tokenResults = sessionResolver.findSession(token);
 
             if (tokenResults.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -212,6 +219,8 @@ public class DocumentsBatchDocumentAction {
                 message = "成功对 " + successCount + " 个文档执行 " + action + " 操作，" + failedIds.size() + " 个文档操作失败";
             }
 
+            searchIndexService.invalidateUser(userId);
+
             BatchActionResponse response = new BatchActionResponse(true, message, data);
 
             // 打印返回数据
@@ -8,6 +8,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
 import java.time.LocalDateTime;
 import java.sql.Timestamp;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.SearchIndexService;
 
 @RestController
 @RequestMapping("/api/v1/documents")
@@ -16,6 +18,12 @@ public class DocumentsBatchUpdate {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
     // 打印接收到的请求
     private void printRequest(BatchUpdateRequest request) {
         System.out.println("=== 收到批量更新文档请求 ===");
@@ -138,8 +146,7 @@ public class DocumentsBatchUpdate {
             String token = authHeader.substring(7);
 
             // 验证token
-            String tokenSql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-            List<Map<String, Object>> tokenResults = jdbcTemplate.queryForList(tokenSql, token);
+            List<Map<String, Object>> tokenResults = sessionResolver.findSession(token);
 
             if (tokenResults.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -287,6 +294,8 @@ public class DocumentsBatchUpdate {
                 message = "成功更新 " + successCount + " 个文档，" + failedIds.size() + " 个文档更新失败";
             }
 
+            searchIndexService.invalidateUser(userId);
+
             BatchUpdateResponse response = new BatchUpdateResponse(true, message, data);
 
             // 打印返回数据
@@ -8,6 +8,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
 import java.time.LocalDateTime;
 import java.sql.Timestamp;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.SearchIndexService;
 
 @RestController
 @RequestMapping("/api/v1/documents")
@@ -16,6 +18,12 @@ public class DocumentsDelete {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
     // 打印接收到的请求
     private void printRequest(Integer documentId, String authHeader) {
         System.out.println("=== 收到删除文档请求 ===");
@@ -83,8 +91,7 @@ public class DocumentsDelete {
             String token = authHeader.substring(7);
 
             // 验证token
-            String tokenSql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-            List<Map<String, Object>> tokenResults = jdbcTemplate.queryForList(tokenSql, token);
+            List<Map<String, Object>> tokenResults = sessionResolver.findSession(token);
 
             if (tokenResults.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -119,6 +126,7 @@ public class DocumentsDelete {
                         new DeleteResponse(false, "文档删除失败", null)
                 );
             }
+            searchIndexService.refresh(userId, SearchIndexService.TYPE_DOCUMENT, documentId);
 
             // 4. 从处理队列中移除（如果存在）
             String deleteQueueSql = "DELETE FROM document_processing_queue WHERE document_id = ?";
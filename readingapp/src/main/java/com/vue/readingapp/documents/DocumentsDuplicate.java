@@ -10,6 +10,8 @@ import java.time.LocalDateTime;
 import java.sql.Timestamp;
 import java.io.IOException;
 import java.nio.file.*;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.SearchIndexService;
 
 @RestController
 @RequestMapping("/api/v1/documents")
@@ -18,6 +20,12 @@ public class DocumentsDuplicate {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
     // 文件存储路径
     private final String UPLOAD_DIR = "uploads/documents/";
 
@@ -128,8 +136,7 @@ public class DocumentsDuplicate {
             String token = authHeader.substring(7);
 
             // 验证token
-            String tokenSql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-            List<Map<String, Object>> tokenResults = jdbcTemplate.queryForList(tokenSql, token);
+            List<Map<String, Object>> tokenResults = sessionResolver.findSession(token);
 
             if (tokenResults.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -221,6 +228,7 @@ public class DocumentsDuplicate {
             // 获取插入的文档ID
             String lastIdSql = "SELECT LAST_INSERT_ID() as id";
             Integer newDocumentId = jdbcTemplate.queryForObject(lastIdSql, Integer.class);
+            searchIndexService.refresh(userId, SearchIndexService.TYPE_DOCUMENT, newDocumentId);
 
             // 5. 复制标签关系
             String tagRelationsSql = "SELECT tag_id FROM document_tag_relations WHERE document_id = ?";
@@ -13,6 +13,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
 
 @RestController
 @RequestMapping("/api/v1/documents")
@@ -21,6 +22,9 @@ public class DocumentsExport {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
     // 打印接收到的请求
     private void printRequest(Integer documentId, String format, String authHeader) {
         System.out.println("=== 收到导出文档请求 ===");
@@ -48,8 +52,7 @@ public class DocumentsExport {
             String token = authHeader.substring(7);
 
             // 验证token
-            String tokenSql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-            List<Map<String, Object>> tokenResults = jdbcTemplate.queryForList(tokenSql, token);
+            List<Map<String, Object>> tokenResults = sessionResolver.findSession(token);
 
             if (tokenResults.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
@@ -9,6 +9,7 @@ import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
 
 @RestController
 @RequestMapping("/api/v1/documents")
@@ -17,6 +18,9 @@ public class DocumentsGet {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
     // 打印接收到的请求
     private void printRequest(Map<String, Object> params) {
         System.out.println("=== 收到获取文档列表请求 ===");
@@ -312,8 +316,7 @@ public class DocumentsGet {
             String token = authHeader.substring(7);
 
             // 验证token
-            String tokenSql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-            List<Map<String, Object>> tokenResults = jdbcTemplate.queryForList(tokenSql, token);
+            List<Map<String, Object>> tokenResults = sessionResolver.findSession(token);
 
             if (tokenResults.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -10,6 +10,7 @@ import java.sql.SQLException; // 导入 SQLException
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
 
 @RestController
 @RequestMapping("/api/v1/documents")
@@ -18,6 +19,9 @@ public class DocumentsGetById {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
     // 打印接收到的请求
     private void printRequest(String documentId, String authHeader) {
         System.out.println("=== 收到获取文档详情请求 ===");
@@ -187,8 +191,7 @@ public class DocumentsGetById {
 
             // 验证token
             // 注意：NOW() 是 MySQL 的函数，如果数据库是 PostgreSQL，可能需要使用 CURRENT_TIMESTAMP
-            String tokenSql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-            List<Map<String, Object>> tokenResults = jdbcTemplate.queryForList(tokenSql, token);
+            List<Map<String, Object>> tokenResults = sessionResolver.findSession(token);
 
             if (tokenResults.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -6,6 +6,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
 
 @RestController
 @RequestMapping("/api/v1/documents")
@@ -14,6 +15,9 @@ public class DocumentsGetProcessingStatus {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
     // 打印接收到的请求
     private void printRequest(Integer documentId, String authHeader) {
         System.out.println("=== 收到获取文档处理状态请求 ===");
@@ -120,8 +124,7 @@ public class DocumentsGetProcessingStatus {
             String token = authHeader.substring(7);
 
             // 验证token
-            String tokenSql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-            List<Map<String, Object>> tokenResults = jdbcTemplate.queryForList(tokenSql, token);
+            List<Map<String, Object>> tokenResults = sessionResolver.findSession(token);
 
             if (tokenResults.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -8,6 +8,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
 import java.time.LocalDateTime;
 import java.sql.Timestamp;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.SearchIndexService;
 
 @RestController
 @RequestMapping("/api/v1/documents")
@@ -16,6 +18,12 @@ public class DocumentsUpdate {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
     // 打印接收到的请求
     private void printRequest(Integer documentId, UpdateRequest request) {
         System.out.println("=== 收到更新文档请求 ===");
@@ -155,8 +163,7 @@ public class DocumentsUpdate {
             String token = authHeader.substring(7);
 
             // 验证token
-            String tokenSql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-            List<Map<String, Object>> tokenResults = jdbcTemplate.queryForList(tokenSql, token);
+            List<Map<String, Object>> tokenResults = sessionResolver.findSession(token);
 
             if (tokenResults.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -232,6 +239,7 @@ public class DocumentsUpdate {
                         new UpdateResponse(false, "文档更新失败", null)
                 );
             }
+            searchIndexService.refresh(userId, SearchIndexService.TYPE_DOCUMENT, documentId);
 
             // 6. 处理标签更新
             if (request.getTags() != null) {
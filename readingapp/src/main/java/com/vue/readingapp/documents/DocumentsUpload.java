@@ -11,6 +11,8 @@ import java.time.LocalDateTime;
 import java.io.IOException;
 import java.nio.file.*;
 import java.sql.Timestamp;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.SearchIndexService;
 
 @RestController
 @RequestMapping("/api/v1/documents")
@@ -19,6 +21,12 @@ public class DocumentsUpload {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
     // 文件存储路径
     private final String UPLOAD_DIR = "uploads/documents/";
 
@@ -153,8 +161,7 @@ public class DocumentsUpload {
             String token = authHeader.substring(7);
 
             // 验证token
-            String tokenSql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-            List<Map<String, Object>> tokenResults = jdbcTemplate.queryForList(tokenSql, token);
+            List<Map<String, Object>> tokenResults = sessionResolver.findSession(token);
 
             if (tokenResults.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -236,6 +243,7 @@ public class DocumentsUpload {
             // 获取插入的文档ID
             String lastIdSql = "SELECT LAST_INSERT_ID() as id";
             Integer documentId = jdbcTemplate.queryForObject(lastIdSql, Integer.class);
+            searchIndexService.refresh(userId, SearchIndexService.TYPE_DOCUMENT, documentId);
 
             // 5. 处理标签
             if (tags != null && !tags.trim().isEmpty()) {
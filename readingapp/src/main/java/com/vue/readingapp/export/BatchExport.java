@@ -18,6 +18,7 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
 
 @RestController
 @RequestMapping("/api/v1/export")
@@ -26,6 +27,9 @@ public class BatchExport {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到批量导出请求 ===");
@@ -124,8 +128,7 @@ public class BatchExport {
             String token = authHeader.substring(7);
 
             // 验证token并获取用户ID
-            String userSql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-            List<Map<String, Object>> sessions = jdbcTemplate.queryForList(userSql, token);
+            List<Map<String, Object>> sessions = sessionResolver.findSession(token);
 
             if (sessions.isEmpty()) {
                 Map<String, Object> details = new HashMap<>();
@@ -7,6 +7,7 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.time.LocalDateTime;
 import java.util.*;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
 
 @RestController
 @RequestMapping("/api/v1/export")
@@ -15,6 +16,9 @@ public class CleanupExportFiles {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到清理导出文件请求 ===");
@@ -139,8 +143,7 @@ public class CleanupExportFiles {
             String token = authHeader.substring(7);
 
             // 验证token并获取用户ID
-            String userSql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-            List<Map<String, Object>> sessions = jdbcTemplate.queryForList(userSql, token);
+            List<Map<String, Object>> sessions = sessionResolver.findSession(token);
 
             if (sessions.isEmpty()) {
                 Map<String, Object> details = new HashMap<>();
@@ -11,6 +11,7 @@ import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.time.format.DateTimeFormatter;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
 
 @RestController
 @RequestMapping("/api/v1/export")
@@ -19,6 +20,9 @@ public class CreateExportTemplate {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到创建导出模板请求 ===");
@@ -229,8 +233,7 @@ public class CreateExportTemplate {
             String token = authHeader.substring(7);
 
             // 验证token并获取用户ID
-            String userSql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-            List<Map<String, Object>> sessions = jdbcTemplate.queryForList(userSql, token);
+            List<Map<String, Object>> sessions = sessionResolver.findSession(token);
 
             if (sessions.isEmpty()) {
                 Map<String, Object> details = new HashMap<>();
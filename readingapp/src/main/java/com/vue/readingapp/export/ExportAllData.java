@@ -16,6 +16,7 @@ import java.util.*;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
 
 @RestController
 @RequestMapping("/api/v1/export")
@@ -24,6 +25,9 @@ public class ExportAllData {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到所有数据导出请求 ===");
@@ -120,8 +124,7 @@ public class ExportAllData {
             String token = authHeader.substring(7);
 
             // 验证token并获取用户ID
-            String userSql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-            List<Map<String, Object>> sessions = jdbcTemplate.queryForList(userSql, token);
+            List<Map<String, Object>> sessions = sessionResolver.findSession(token);
 
             if (sessions.isEmpty()) {
                 Map<String, Object> details = new HashMap<>();
@@ -16,6 +16,7 @@ import java.util.List;
 import java.util.ArrayList;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.vue.readingapp.search.service.SearchTextMatcher;
 
 @RestController
 @RequestMapping("/api/v1/feedback")
@@ -24,6 +25,9 @@ public class FeedbackSearch {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private SearchTextMatcher textMatcher;
+
     private ObjectMapper objectMapper = new ObjectMapper();
 
     // 打印接收到的请求
@@ -244,20 +248,20 @@ public class FeedbackSearch {
             StringBuilder whereClause = new StringBuilder(" WHERE 1=1 ");
 
             // 处理关键词搜索
+            SearchTextMatcher.Match match = null;
             if (keyword != null && !keyword.trim().isEmpty()) {
-                String searchKeyword = "%" + keyword + "%";
-                whereClause.append(" AND (title LIKE ? OR content LIKE ?) ");
-                params.add(searchKeyword);
-                params.add(searchKeyword);
+                match = textMatcher.match(SearchTextMatcher.ENDPOINT_FEEDBACK, keyword, "f.title", "f.content");
+                whereClause.append(" AND ").append(match.getCondition()).append(" ");
+                params.addAll(match.getConditionParams());
             }
 
             // 处理是否包含已关闭的反馈
             if (!includeClosed) {
-                whereClause.append(" AND status NOT IN ('completed', 'rejected', 'duplicate') ");
+                whereClause.append(" AND f.status NOT IN ('completed', 'rejected', 'duplicate') ");
             }
 
             // 3. 获取总数
-            String countSql = "SELECT COUNT(*) as total FROM user_feedback " + whereClause.toString();
+            String countSql = "SELECT COUNT(*) as total FROM user_feedback f " + whereClause.toString();
             Integer total = jdbcTemplate.queryForObject(countSql, Integer.class, params.toArray());
             if (total == null) total = 0;
 
@@ -267,13 +271,17 @@ public class FeedbackSearch {
 
             // 5. 构建排序
             String orderByClause = " ORDER BY ";
-            if ("relevance".equals(sortBy) && keyword != null && !keyword.trim().isEmpty()) {
+            if ("relevance".equals(sortBy) && match != null && match.isFulltext()) {
+                // 全文索引相关度排序
+                orderByClause += match.getScore() + " DESC, ";
+                params.addAll(match.getScoreParams());
+            } else if ("relevance".equals(sortBy) && match != null) {
                 // 简单相关性排序：标题匹配优先于内容匹配
-                orderByClause += "CASE WHEN title LIKE ? THEN 1 ELSE 2 END, ";
+                orderByClause += "CASE WHEN f.title LIKE ? THEN 1 ELSE 2 END, ";
                 params.add("%" + keyword + "%");
             }
 
-            orderByClause += "created_at ";
+            orderByClause += "f.created_at ";
             orderByClause += "desc".equalsIgnoreCase(sortOrder) ? "DESC" : "ASC";
 
             // 6. 查询数据
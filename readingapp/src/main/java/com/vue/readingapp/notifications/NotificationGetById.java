@@ -10,6 +10,7 @@ import java.time.format.DateTimeFormatter;
 import java.time.Duration;
 import java.util.*;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
 
 @RestController
 @RequestMapping("/api/v1/notifications")
@@ -18,6 +19,9 @@ public class NotificationGetById {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
     private ObjectMapper objectMapper = new ObjectMapper();
 
     // 打印接收到的请求
@@ -191,8 +195,7 @@ public class NotificationGetById {
             String token = authHeader.substring(7);
 
             // 2. 根据token获取用户ID
-            String getUserSql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-            List<Map<String, Object>> sessions = jdbcTemplate.queryForList(getUserSql, token);
+            List<Map<String, Object>> sessions = sessionResolver.findSession(token);
 
             if (sessions.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -10,6 +10,8 @@ import java.util.Map;
 import java.util.HashMap;
 import java.util.UUID;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.SearchIndexService;
 
 @RestController
 @RequestMapping("/api/v1/offline")
@@ -18,6 +20,12 @@ public class OfflineSyncDocument {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
     private ObjectMapper objectMapper = new ObjectMapper();
 
     // 打印接收到的请求
@@ -129,8 +137,7 @@ public class OfflineSyncDocument {
         }
 
         try {
-            String sql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-            List<Map<String, Object>> sessions = jdbcTemplate.queryForList(sql, token);
+            List<Map<String, Object>> sessions = sessionResolver.findSession(token);
 
             if (sessions.isEmpty()) {
                 return null;
@@ -202,6 +209,7 @@ public class OfflineSyncDocument {
                 jdbcTemplate.update(updateDocSql, documentData.getTitle(),
                         documentData.getContent(), documentData.getId(), userId);
             }
+            searchIndexService.refresh(userId, SearchIndexService.TYPE_DOCUMENT, documentData.getId());
 
             // 4. 检查是否已有离线文档记录
             String checkOfflineSql = "SELECT offline_doc_id, offline_version FROM offline_documents " +
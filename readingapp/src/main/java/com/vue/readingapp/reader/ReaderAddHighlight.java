@@ -7,6 +7,8 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.time.LocalDateTime;
 import java.util.*;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.SearchIndexService;
 
 @RestController
 @RequestMapping("/api/v1/reader")
@@ -15,6 +17,12 @@ public class ReaderAddHighlight {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到添加高亮请求 ===");
@@ -149,8 +157,7 @@ public class ReaderAddHighlight {
             String token = authHeader.substring(7);
 
             // 验证token
-            String tokenSql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-            List<Map<String, Object>> sessions = jdbcTemplate.queryForList(tokenSql, token);
+            List<Map<String, Object>> sessions = sessionResolver.findSession(token);
 
             if (sessions.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -223,6 +230,7 @@ public class ReaderAddHighlight {
             String lastIdSql = "SELECT LAST_INSERT_ID() as highlight_id";
             List<Map<String, Object>> lastIds = jdbcTemplate.queryForList(lastIdSql);
             int highlightId = lastIds.isEmpty() ? 0 : ((Number) lastIds.get(0).get("highlight_id")).intValue();
+            searchIndexService.refresh(userId, SearchIndexService.TYPE_HIGHLIGHT, highlightId);
 
             // 7. 获取完整的高亮数据
             String highlightSql = "SELECT * FROM document_highlights WHERE highlight_id = ?";
@@ -6,6 +6,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.SearchIndexService;
 
 @RestController
 @RequestMapping("/api/v1/reader")
@@ -14,6 +16,12 @@ public class ReaderDeleteHighlight {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到删除高亮请求 ===");
@@ -92,8 +100,7 @@ public class ReaderDeleteHighlight {
             String token = authHeader.substring(7);
 
             // 验证token
-            String tokenSql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-            List<Map<String, Object>> sessions = jdbcTemplate.queryForList(tokenSql, token);
+            List<Map<String, Object>> sessions = sessionResolver.findSession(token);
 
             if (sessions.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -129,6 +136,8 @@ public class ReaderDeleteHighlight {
                         new DeleteHighlightResponse(false, "删除高亮失败", null)
                 );
             }
+            // 关联笔记也一并删除了，整体重建该用户的索引
+            searchIndexService.invalidateUser(userId);
 
             // 6. 构建响应数据
             DeleteData deleteData = new DeleteData();
@@ -6,6 +6,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.SearchIndexService;
 
 @RestController
 @RequestMapping("/api/v1/reader")
@@ -14,6 +16,12 @@ public class ReaderDeleteNote {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到删除笔记请求 ===");
@@ -92,8 +100,7 @@ public class ReaderDeleteNote {
             String token = authHeader.substring(7);
 
             // 验证token
-            String tokenSql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-            List<Map<String, Object>> sessions = jdbcTemplate.queryForList(tokenSql, token);
+            List<Map<String, Object>> sessions = sessionResolver.findSession(token);
 
             if (sessions.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -125,6 +132,7 @@ public class ReaderDeleteNote {
                         new DeleteNoteResponse(false, "删除笔记失败", null)
                 );
             }
+            searchIndexService.refresh(userId, SearchIndexService.TYPE_NOTE, noteId);
 
             // 5. 构建响应数据
             DeleteData deleteData = new DeleteData();
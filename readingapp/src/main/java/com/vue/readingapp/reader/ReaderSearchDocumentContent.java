@@ -6,6 +6,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.SearchTokenizer;
 
 @RestController
 @RequestMapping("/api/v1/reader")
@@ -14,6 +16,9 @@ public class ReaderSearchDocumentContent {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到搜索文档内容请求 ===");
@@ -131,8 +136,7 @@ public class ReaderSearchDocumentContent {
             String token = authHeader.substring(7);
 
             // 验证token
-            String tokenSql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-            List<Map<String, Object>> sessions = jdbcTemplate.queryForList(tokenSql, token);
+            List<Map<String, Object>> sessions = sessionResolver.findSession(token);
 
             if (sessions.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -170,6 +174,8 @@ public class ReaderSearchDocumentContent {
             if (!caseSensitive) {
                 searchQuery = searchQuery.toLowerCase();
             }
+            // 查询只有停用词、符号时没有可匹配的词项，整词匹配退回字符串查找
+            boolean byTerms = wholeWord && !SearchTokenizer.tokenizeQuery(searchQuery).isEmpty();
 
             for (Map<String, Object> pageData : pages) {
                 int pageNumber = ((Number) pageData.get("page_number")).intValue();
@@ -184,16 +190,27 @@ public class ReaderSearchDocumentContent {
                     searchContent = content.toLowerCase();
                 }
 
-                // 简单的字符串搜索（实际项目中可能需要全文搜索）
-                int index = 0;
-                while ((index = searchContent.indexOf(searchQuery, index)) != -1) {
+                // 按整词匹配时走搜索分析链：忽略大小写、全角和词形变化，中文按分词结果匹配；否则按字符串查找
+                List<int[]> spans = new ArrayList<>();
+                if (byTerms) {
+                    spans = SearchTokenizer.findPhrase(searchQuery, content);
+                } else {
+                    int index = 0;
+                    while ((index = searchContent.indexOf(searchQuery, index)) != -1) {
+                        spans.add(new int[]{index, index + searchQuery.length()});
+                        // 移动到下一个位置
+                        index += searchQuery.length();
+                    }
+                }
+
+                for (int[] span : spans) {
                     SearchMatch match = new SearchMatch();
                     match.setPage(pageNumber);
 
                     // 提取匹配的文本
-                    int start = Math.max(0, index - 50);
-                    int end = Math.min(content.length(), index + searchQuery.length() + 50);
-                    String matchedText = content.substring(index, index + searchQuery.length());
+                    int start = Math.max(0, span[0] - 50);
+                    int end = Math.min(content.length(), span[1] + 50);
+                    String matchedText = content.substring(span[0], span[1]);
                     String contextText = content.substring(start, end);
 
                     match.setText(matchedText);
@@ -205,9 +222,6 @@ public class ReaderSearchDocumentContent {
                     match.setHighlights(highlights);
 
                     matches.add(match);
-
-                    // 移动到下一个位置
-                    index += searchQuery.length();
                 }
             }
 
@@ -6,6 +6,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.SearchIndexService;
 
 @RestController
 @RequestMapping("/api/v1/reader")
@@ -14,6 +16,12 @@ public class ReaderUpdateHighlight {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到更新高亮请求 ===");
@@ -138,8 +146,7 @@ public class ReaderUpdateHighlight {
             String token = authHeader.substring(7);
 
             // 验证token
-            String tokenSql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-            List<Map<String, Object>> sessions = jdbcTemplate.queryForList(tokenSql, token);
+            List<Map<String, Object>> sessions = sessionResolver.findSession(token);
 
             if (sessions.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -199,6 +206,7 @@ public class ReaderUpdateHighlight {
                         new UpdateHighlightResponse(false, "更新高亮失败", null)
                 );
             }
+            searchIndexService.refresh(userId, SearchIndexService.TYPE_HIGHLIGHT, highlightId);
 
             // 5. 获取更新后的高亮数据
             String getUpdatedSql = "SELECT * FROM document_highlights WHERE highlight_id = ?";
@@ -7,6 +7,7 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.time.LocalDateTime;
 import java.util.*;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
 
 @RestController
 @RequestMapping("/api/v1/review")
@@ -15,6 +16,9 @@ public class ReviewClearHistory {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
     private void printRequest(Object request) {
         System.out.println("=== 收到清空复习历史请求 ===");
         System.out.println("请求参数: " + request);
@@ -81,11 +85,8 @@ public class ReviewClearHistory {
             }
 
             String token = authHeader.substring(7);
-            String userSql = "SELECT u.user_id FROM users u " +
-                    "JOIN user_sessions us ON u.user_id = us.user_id " +
-                    "WHERE us.access_token = ? AND us.expires_at > NOW()";
 
-            List<Map<String, Object>> users = jdbcTemplate.queryForList(userSql, token);
+            List<Map<String, Object>> users = sessionResolver.findSession(token);
             if (users.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
                         new ClearHistoryResponse(false, "登录已过期，请重新登录", null)
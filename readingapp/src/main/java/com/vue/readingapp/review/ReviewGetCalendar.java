@@ -10,6 +10,7 @@ import java.util.*;
 import java.time.LocalDate;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
 
 @RestController
 @RequestMapping("/api/v1/review")
@@ -18,6 +19,9 @@ public class ReviewGetCalendar {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
     private void printRequest(Object request) {
         System.out.println("=== 收到获取复习日历请求 ===");
         System.out.println("请求参数: " + request);
@@ -151,11 +155,8 @@ public class ReviewGetCalendar {
             }
 
             String token = authHeader.substring(7);
-            String userSql = "SELECT u.user_id FROM users u " +
-                    "JOIN user_sessions us ON u.user_id = us.user_id " +
-                    "WHERE us.access_token = ? AND us.expires_at > NOW()";
 
-            List<Map<String, Object>> users = jdbcTemplate.queryForList(userSql, token);
+            List<Map<String, Object>> users = sessionResolver.findSession(token);
             if (users.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
                         new ReviewCalendarResponse(false, "登录已过期，请重新登录", null)
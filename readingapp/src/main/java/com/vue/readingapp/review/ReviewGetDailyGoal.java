@@ -8,6 +8,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import java.time.LocalDateTime;
 import java.time.LocalDate;
 import java.util.*;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
 
 @RestController
 @RequestMapping("/api/v1/review")
@@ -16,6 +17,9 @@ public class ReviewGetDailyGoal {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
     private void printRequest(Object request) {
         System.out.println("=== 收到获取每日目标请求 ===");
         System.out.println("请求参数: " + request);
@@ -119,11 +123,8 @@ public class ReviewGetDailyGoal {
             }
 
             String token = authHeader.substring(7);
-            String userSql = "SELECT u.user_id FROM users u " +
-                    "JOIN user_sessions us ON u.user_id = us.user_id " +
-                    "WHERE us.access_token = ? AND us.expires_at > NOW()";
 
-            List<Map<String, Object>> users = jdbcTemplate.queryForList(userSql, token);
+            List<Map<String, Object>> users = sessionResolver.findSession(token);
             printQueryResult(users);
             if (users.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -9,6 +9,7 @@ import java.time.LocalDateTime;
 import java.util.*;
 import java.time.LocalDate;
 import java.util.stream.Collectors; // 用于 Stream API
+import com.vue.readingapp.auth.service.AuthSessionResolver;
 
 @RestController
 @RequestMapping("/api/v1/review")
@@ -17,6 +18,9 @@ public class ReviewUpdatePlan {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
     // --- 辅助打印方法 ---
     private void printRequest(Object request) {
         System.out.println("=== 收到更新复习计划请求 ===");
@@ -286,10 +290,8 @@ public class ReviewUpdatePlan {
             }
 
             String token = authHeader.substring(7);
-            // 注意：这里的 SQL 是为了演示，实际项目中不应直接硬编码 Token，应使用更安全的 Session/Token 管理机制
-            String userSql = "SELECT u.user_id FROM users u JOIN user_sessions us ON u.user_id = us.user_id WHERE us.access_token = ? AND us.expires_at > NOW()";
 
-            List<Map<String, Object>> users = jdbcTemplate.queryForList(userSql, token);
+            List<Map<String, Object>> users = sessionResolver.findSession(token);
             if (users.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
                         new UpdatePlanResponse(false, "登录已过期，请重新登录", null)
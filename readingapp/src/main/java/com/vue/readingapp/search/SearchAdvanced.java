@@ -6,6 +6,14 @@ import org.springframework.http.HttpStatus;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.AdvancedQuery;
+import com.vue.readingapp.search.service.AdvancedQueryPlanner;
+import com.vue.readingapp.search.service.SearchEnrichmentService;
+import com.vue.readingapp.search.service.SearchResultCache;
+import com.vue.readingapp.search.service.SearchHistoryWriter;
+import com.vue.readingapp.search.service.SearchTokenizer;
+import com.vue.readingapp.search.service.SnippetBuilder;
 
 @RestController
 @RequestMapping("/api/v1/search")
@@ -14,6 +22,21 @@ public class SearchAdvanced {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private SearchHistoryWriter historyWriter;
+
+    @Autowired
+    private SearchEnrichmentService enrichmentService;
+
+    @Autowired
+    private SearchResultCache resultCache;
+
+    @Autowired
+    private AdvancedQueryPlanner queryPlanner;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到高级搜索请求 ===");
@@ -38,6 +61,10 @@ public class SearchAdvanced {
     // 请求DTO
     public static class AdvancedSearchRequest {
         private Map<String, Object> filters;
+        // 查询语言，例如 tag:grammar AND (title:"past tense" OR lang:en) -type:notes，与 filters 取交集
+        private String query;
+        // 为 true 时在响应中返回执行计划和各阶段耗时，不读写结果缓存
+        private boolean explain;
         private String type = "all";
         private Integer page = 1;
         private Integer pageSize = 20;
@@ -47,6 +74,12 @@ public class SearchAdvanced {
         public Map<String, Object> getFilters() { return filters; }
         public void setFilters(Map<String, Object> filters) { this.filters = filters; }
 
+        public String getQuery() { return query; }
+        public void setQuery(String query) { this.query = query; }
+
+        public boolean isExplain() { return explain; }
+        public void setExplain(boolean explain) { this.explain = explain; }
+
         public String getType() { return type; }
         public void setType(String type) { this.type = type; }
 
@@ -94,6 +127,10 @@ public class SearchAdvanced {
         private Map<String, Object> facets;
         private long queryTime;
         private String type;
+        // 结果来自缓存
+        private boolean cached;
+        // 执行计划，仅 explain 模式下有值
+        private Map<String, Object> plan;
 
         public AdvancedSearchData(int total, int page, int pageSize, int totalPages,
                                   List<AdvancedSearchItem> items, Map<String, Object> facets,
@@ -131,13 +168,18 @@ public class SearchAdvanced {
 
         public String getType() { return type; }
         public void setType(String type) { this.type = type; }
+
+        public boolean isCached() { return cached; }
+        public void setCached(boolean cached) { this.cached = cached; }
+
+        public Map<String, Object> getPlan() { return plan; }
+        public void setPlan(Map<String, Object> plan) { this.plan = plan; }
     }
 
     public static class AdvancedSearchItem {
         private String id;
         private String type;
         private String title;
-        private String content;
         private String excerpt;
         private String author;
         private List<String> tags;
@@ -148,14 +190,11 @@ public class SearchAdvanced {
         private Map<String, Object> highlight;
         private String createdAt;
         private String updatedAt;
-        private String thumbnail;
         private String url;
         private String word;
         private String phonetic;
         private String definition;
-        private String translation;
         private List<String> examples;
-        private String audioUrl;
         private boolean inVocabulary;
         private String documentTitle;
         private Long documentId;
@@ -173,9 +212,6 @@ public class SearchAdvanced {
         public String getTitle() { return title; }
         public void setTitle(String title) { this.title = title; }
 
-        public String getContent() { return content; }
-        public void setContent(String content) { this.content = content; }
-
         public String getExcerpt() { return excerpt; }
         public void setExcerpt(String excerpt) { this.excerpt = excerpt; }
 
@@ -206,9 +242,6 @@ public class SearchAdvanced {
         public String getUpdatedAt() { return updatedAt; }
         public void setUpdatedAt(String updatedAt) { this.updatedAt = updatedAt; }
 
-        public String getThumbnail() { return thumbnail; }
-        public void setThumbnail(String thumbnail) { this.thumbnail = thumbnail; }
-
         public String getUrl() { return url; }
         public void setUrl(String url) { this.url = url; }
 
@@ -221,15 +254,9 @@ public class SearchAdvanced {
         public String getDefinition() { return definition; }
         public void setDefinition(String definition) { this.definition = definition; }
 
-        public String getTranslation() { return translation; }
-        public void setTranslation(String translation) { this.translation = translation; }
-
         public List<String> getExamples() { return examples; }
         public void setExamples(List<String> examples) { this.examples = examples; }
 
-        public String getAudioUrl() { return audioUrl; }
-        public void setAudioUrl(String audioUrl) { this.audioUrl = audioUrl; }
-
         public boolean isInVocabulary() { return inVocabulary; }
         public void setInVocabulary(boolean inVocabulary) { this.inVocabulary = inVocabulary; }
 
@@ -261,9 +288,11 @@ public class SearchAdvanced {
 
         try {
             // 1. 验证请求数据
-            if (request.getFilters() == null || request.getFilters().isEmpty()) {
+            boolean hasFilters = request.getFilters() != null && !request.getFilters().isEmpty();
+            boolean hasQuery = request.getQuery() != null && !request.getQuery().trim().isEmpty();
+            if (!hasFilters && !hasQuery) {
                 return ResponseEntity.badRequest().body(
-                        new AdvancedSearchResponse(false, "搜索过滤器不能为空", null)
+                        new AdvancedSearchResponse(false, "搜索过滤器和查询不能同时为空", null)
                 );
             }
 
@@ -275,34 +304,78 @@ public class SearchAdvanced {
                 );
             }
 
-            // 2. 获取当前用户ID
-            Long userId = getUserIdFromToken(authHeader);
-
-            // 3. 根据类型执行搜索
-            List<AdvancedSearchItem> allResults = new ArrayList<>();
-
-            if ("all".equals(request.getType()) || "documents".equals(request.getType())) {
-                List<AdvancedSearchItem> documentResults = searchDocumentsAdvanced(request.getFilters(), userId,
-                        request.getPage(), request.getPageSize());
-                allResults.addAll(documentResults);
+            // 解析查询语言，旧版 filters 转成等价的条件后一起参与计划
+            long parseBegin = System.nanoTime();
+            AdvancedQuery.Node query;
+            try {
+                query = buildQuery(request);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(
+                        new AdvancedSearchResponse(false, "查询语法错误: " + e.getMessage(), null)
+                );
             }
+            long parseMicros = (System.nanoTime() - parseBegin) / 1000;
+            String text = String.join(" ", AdvancedQuery.positiveTexts(query));
+            String historyKeyword = "高级搜索: " + (hasQuery ? request.getQuery().trim() : "")
+                    + (hasFilters ? (hasQuery ? " " : "") + request.getFilters() : "");
 
-            if ("all".equals(request.getType()) || "vocabulary".equals(request.getType())) {
-                List<AdvancedSearchItem> vocabularyResults = searchVocabularyAdvanced(request.getFilters(), userId,
-                        request.getPage(), request.getPageSize());
-                allResults.addAll(vocabularyResults);
-            }
+            // 2. 获取当前用户ID
+            Long userId = getUserIdFromToken(authHeader);
 
-            if ("all".equals(request.getType()) || "notes".equals(request.getType())) {
-                List<AdvancedSearchItem> noteResults = searchNotesAdvanced(request.getFilters(), userId,
-                        request.getPage(), request.getPageSize());
-                allResults.addAll(noteResults);
+            // 登录用户先查结果缓存：过滤条件按键排序后参与缓存键，与客户端传入的字段顺序无关
+            String cacheKey = null;
+            long dataVersion = 0;
+            if (userId != null && !request.isExplain()) {
+                cacheKey = SearchResultCache.key("advanced",
+                        hasFilters ? new TreeMap<>(request.getFilters()) : null, request.getQuery(), request.getType(),
+                        request.getPage(), request.getPageSize(), request.getSortBy(), request.getSortOrder());
+                dataVersion = resultCache.version(userId);
+                AdvancedSearchData cached = (AdvancedSearchData) resultCache.get(userId, cacheKey);
+                if (cached != null) {
+                    saveSearchHistory(userId, historyKeyword, "advanced", cached.getTotal());
+                    AdvancedSearchData searchData = new AdvancedSearchData(cached.getTotal(), cached.getPage(),
+                            cached.getPageSize(), cached.getTotalPages(), cached.getItems(), cached.getFacets(),
+                            System.currentTimeMillis() - startTime, cached.getType());
+                    searchData.setCached(true);
+                    AdvancedSearchResponse response = new AdvancedSearchResponse(true, "高级搜索成功", searchData);
+                    printQueryResult("命中结果缓存，返回 " + cached.getItems().size() + " 个");
+                    printResponse(response);
+                    return ResponseEntity.ok(response);
+                }
             }
 
-            if ("all".equals(request.getType()) || "highlights".equals(request.getType())) {
-                List<AdvancedSearchItem> highlightResults = searchHighlightsAdvanced(request.getFilters(), userId,
-                        request.getPage(), request.getPageSize());
-                allResults.addAll(highlightResults);
+            // 3. 为每个来源生成计划，跳过查询不可能匹配的来源；每个来源取到当前页末尾为止的结果再合并排序
+            // 某个来源取满上限时另外计数，total 是各来源的准确总数而不是合并列表的长度
+            int fetchLimit = request.getPage() * request.getPageSize();
+            List<AdvancedQueryPlanner.Plan> plans = new ArrayList<>();
+            List<AdvancedSearchItem> allResults = new ArrayList<>();
+            int total = 0;
+            for (String source : AdvancedQueryPlanner.SOURCES) {
+                if (!"all".equals(request.getType()) && !source.equals(request.getType())) {
+                    continue;
+                }
+                AdvancedQueryPlanner.Plan plan = queryPlanner.plan(source, query, userId);
+                plans.add(plan);
+                if (plan.isSkipped()) {
+                    continue;
+                }
+                List<AdvancedSearchItem> found;
+                switch (source) {
+                    case AdvancedQueryPlanner.SOURCE_DOCUMENTS:
+                        found = searchDocumentsAdvanced(plan, text, fetchLimit);
+                        break;
+                    case AdvancedQueryPlanner.SOURCE_VOCABULARY:
+                        found = searchVocabularyAdvanced(plan, text, fetchLimit);
+                        break;
+                    case AdvancedQueryPlanner.SOURCE_NOTES:
+                        found = searchNotesAdvanced(plan, text, fetchLimit);
+                        break;
+                    default:
+                        found = searchHighlightsAdvanced(plan, text, fetchLimit);
+                        break;
+                }
+                allResults.addAll(found);
+                total += countPlan(plan, found.size(), fetchLimit);
             }
 
             // 4. 排序结果
@@ -315,30 +388,29 @@ public class SearchAdvanced {
                     }
                 });
             } else if ("createdAt".equals(request.getSortBy())) {
-                allResults.sort((a, b) -> {
-                    if ("desc".equalsIgnoreCase(request.getSortOrder())) {
-                        return b.getCreatedAt().compareTo(a.getCreatedAt());
-                    } else {
-                        return a.getCreatedAt().compareTo(b.getCreatedAt());
-                    }
-                });
+                // 单词没有创建时间，排在最后
+                Comparator<String> byTime = "desc".equalsIgnoreCase(request.getSortOrder())
+                        ? Comparator.reverseOrder() : Comparator.naturalOrder();
+                allResults.sort(Comparator.comparing(AdvancedSearchItem::getCreatedAt,
+                        Comparator.nullsLast(byTime)));
             }
 
             // 5. 分页处理
-            int startIndex = (request.getPage() - 1) * request.getPageSize();
+            int startIndex = Math.min((request.getPage() - 1) * request.getPageSize(), allResults.size());
             int endIndex = Math.min(startIndex + request.getPageSize(), allResults.size());
-            List<AdvancedSearchItem> pagedResults = allResults.subList(startIndex, endIndex);
+            List<AdvancedSearchItem> pagedResults = new ArrayList<>(allResults.subList(startIndex, endIndex));
+            // 批量补全当前页的标签、例句和生词本状态
+            enrichPage(pagedResults, userId);
 
             // 6. 计算分页信息
-            int totalPages = (int) Math.ceil((double) allResults.size() / request.getPageSize());
+            int totalPages = (int) Math.ceil((double) total / request.getPageSize());
 
             // 7. 构建facet数据
             Map<String, Object> facets = new HashMap<>();
 
             // 8. 记录搜索历史
             if (userId != null) {
-                String keyword = "高级搜索: " + request.getFilters().toString();
-                saveSearchHistory(userId, keyword, "advanced", allResults.size());
+                saveSearchHistory(userId, historyKeyword, "advanced", total);
             }
 
             // 9. 计算查询时间
@@ -346,7 +418,7 @@ public class SearchAdvanced {
 
             // 10. 准备响应数据
             AdvancedSearchData searchData = new AdvancedSearchData(
-                    allResults.size(),
+                    total,
                     request.getPage(),
                     request.getPageSize(),
                     totalPages,
@@ -356,10 +428,28 @@ public class SearchAdvanced {
                     request.getType()
             );
 
+            if (request.isExplain()) {
+                Map<String, Object> explain = new LinkedHashMap<>();
+                explain.put("query", query.toString());
+                explain.put("parseMicros", parseMicros);
+                explain.put("statsLoadedAt", queryPlanner.getStatsLoadedAt());
+                List<Map<String, Object>> sourcePlans = new ArrayList<>();
+                for (AdvancedQueryPlanner.Plan plan : plans) {
+                    sourcePlans.add(plan.explain());
+                }
+                explain.put("sources", sourcePlans);
+                explain.put("totalMs", queryTime);
+                searchData.setPlan(explain);
+            }
+
+            if (cacheKey != null) {
+                resultCache.put(userId, cacheKey, dataVersion, searchData);
+            }
+
             AdvancedSearchResponse response = new AdvancedSearchResponse(true, "高级搜索成功", searchData);
 
             // 打印查询结果
-            printQueryResult("找到 " + allResults.size() + " 个结果，返回 " + pagedResults.size() + " 个");
+            printQueryResult("找到 " + total + " 个结果，返回 " + pagedResults.size() + " 个");
 
             // 打印返回数据
             printResponse(response);
@@ -375,134 +465,61 @@ public class SearchAdvanced {
         }
     }
 
-    // 高级文档搜索
-    private List<AdvancedSearchItem> searchDocumentsAdvanced(Map<String, Object> filters, Long userId,
-                                                             int page, int pageSize) {
+    // 高级文档搜索：WHERE 条件由查询计划生成
+    private List<AdvancedSearchItem> searchDocumentsAdvanced(AdvancedQueryPlanner.Plan plan, String query, int limit) {
         List<AdvancedSearchItem> results = new ArrayList<>();
 
         try {
             StringBuilder sqlBuilder = new StringBuilder();
-            sqlBuilder.append("SELECT d.document_id, d.title, d.content, d.author, d.language, ");
-            sqlBuilder.append("d.word_count, d.difficulty, d.created_at, d.updated_at, ");
-            sqlBuilder.append("d.thumbnail_url, d.status ");
-            sqlBuilder.append("FROM documents d ");
-            sqlBuilder.append("WHERE d.status = 'processed' ");
-
+            // 正文按页存储：摘要取第一个包含查询文本的页，字数为各页之和
+            sqlBuilder.append("SELECT d.document_id, d.title, d.description, d.author, d.language, ");
+            sqlBuilder.append("d.created_at, d.updated_at, d.status, ");
+            sqlBuilder.append("(SELECT dp.content FROM document_pages dp WHERE dp.document_id = d.document_id ");
+            sqlBuilder.append("AND dp.content LIKE ? ORDER BY dp.page_number LIMIT 1) AS page_content, ");
+            sqlBuilder.append("(SELECT COALESCE(SUM(dp.word_count), 0) FROM document_pages dp ");
+            sqlBuilder.append("WHERE dp.document_id = d.document_id) AS word_count ");
+            sqlBuilder.append("FROM ").append(plan.getFrom()).append(" ");
+            sqlBuilder.append("WHERE ").append(plan.getWhere()).append(" ");
+
+            // 添加排序和条数限制
+            sqlBuilder.append("ORDER BY d.created_at DESC LIMIT ?");
             List<Object> params = new ArrayList<>();
+            params.add("%" + query + "%");
+            params.addAll(plan.getParams());
+            params.add(limit);
 
-            // 添加用户过滤
-            if (userId != null) {
-                sqlBuilder.append("AND d.user_id = ? ");
-                params.add(userId);
-            }
-
-            // 处理各种过滤器
-            if (filters.containsKey("query") && filters.get("query") != null) {
-                String query = (String) filters.get("query");
-                sqlBuilder.append("AND (d.title LIKE ? OR d.content LIKE ?) ");
-                params.add("%" + query + "%");
-                params.add("%" + query + "%");
-            }
-
-            if (filters.containsKey("language") && filters.get("language") != null) {
-                String language = (String) filters.get("language");
-                sqlBuilder.append("AND d.language = ? ");
-                params.add(language);
-            }
-
-            if (filters.containsKey("difficulty") && filters.get("difficulty") != null) {
-                String difficulty = (String) filters.get("difficulty");
-                sqlBuilder.append("AND d.difficulty = ? ");
-                params.add(difficulty);
-            }
-
-            if (filters.containsKey("minWordCount") && filters.get("minWordCount") != null) {
-                Integer minWordCount = (Integer) filters.get("minWordCount");
-                sqlBuilder.append("AND d.word_count >= ? ");
-                params.add(minWordCount);
-            }
-
-            if (filters.containsKey("maxWordCount") && filters.get("maxWordCount") != null) {
-                Integer maxWordCount = (Integer) filters.get("maxWordCount");
-                sqlBuilder.append("AND d.word_count <= ? ");
-                params.add(maxWordCount);
-            }
-
-            if (filters.containsKey("dateFrom") && filters.get("dateFrom") != null) {
-                String dateFrom = (String) filters.get("dateFrom");
-                sqlBuilder.append("AND DATE(d.created_at) >= ? ");
-                params.add(dateFrom);
-            }
-
-            if (filters.containsKey("dateTo") && filters.get("dateTo") != null) {
-                String dateTo = (String) filters.get("dateTo");
-                sqlBuilder.append("AND DATE(d.created_at) <= ? ");
-                params.add(dateTo);
-            }
-
-            if (filters.containsKey("tags") && filters.get("tags") != null) {
-                List<String> tags = (List<String>) filters.get("tags");
-                if (!tags.isEmpty()) {
-                    sqlBuilder.append("AND EXISTS (SELECT 1 FROM document_tag_relations r ");
-                    sqlBuilder.append("INNER JOIN document_tags t ON r.tag_id = t.tag_id ");
-                    sqlBuilder.append("WHERE r.document_id = d.document_id AND t.tag_name IN (");
-
-                    for (int i = 0; i < tags.size(); i++) {
-                        if (i > 0) sqlBuilder.append(", ");
-                        sqlBuilder.append("?");
-                        params.add(tags.get(i));
-                    }
-                    sqlBuilder.append(")) ");
-                }
-            }
-
-            // 添加排序和分页
-            sqlBuilder.append("ORDER BY d.created_at DESC LIMIT ? OFFSET ?");
-            params.add(pageSize);
-            params.add((page - 1) * pageSize);
-
-            List<Map<String, Object>> documents = jdbcTemplate.queryForList(sqlBuilder.toString(), params.toArray());
+            List<Map<String, Object>> documents = queryPlan(plan, sqlBuilder.toString(), params);
 
             for (Map<String, Object> doc : documents) {
                 AdvancedSearchItem item = new AdvancedSearchItem();
                 item.setId("doc_" + doc.get("document_id"));
                 item.setType("document");
                 item.setTitle((String) doc.get("title"));
-                item.setContent((String) doc.get("content"));
-
-                // 生成摘要
-                String content = (String) doc.get("content");
-                if (content != null && content.length() > 200) {
-                    item.setExcerpt(content.substring(0, 200) + "...");
-                } else {
-                    item.setExcerpt(content);
-                }
+
+                // 生成摘要，正文没有命中时用简介
+                String content = doc.get("page_content") != null ? (String) doc.get("page_content")
+                        : (String) doc.get("description");
+                SnippetBuilder.Snippet snippet = SnippetBuilder.snippet(query, content, 200);
+                item.setExcerpt(snippet.getText());
 
                 item.setAuthor((String) doc.get("author"));
                 item.setLanguage((String) doc.get("language"));
                 item.setWordCount(doc.get("word_count") != null ? ((Number) doc.get("word_count")).intValue() : 0);
-                item.setDifficulty((String) doc.get("difficulty"));
 
                 // 计算相关性
-                String query = filters.containsKey("query") ? (String) filters.get("query") : "";
                 double relevance = calculateDocumentRelevance(query, (String) doc.get("title"), content);
                 item.setRelevance(relevance);
 
                 // 构建高亮信息
                 Map<String, Object> highlight = new HashMap<>();
-                highlight.put("title", highlightText(query, (String) doc.get("title")));
-                highlight.put("content", highlightText(query, content));
+                highlight.put("title", SnippetBuilder.ranges(query, (String) doc.get("title")));
+                highlight.put("excerpt", snippet.getRanges());
                 item.setHighlight(highlight);
 
                 item.setCreatedAt(doc.get("created_at") != null ? doc.get("created_at").toString() : null);
                 item.setUpdatedAt(doc.get("updated_at") != null ? doc.get("updated_at").toString() : null);
-                item.setThumbnail((String) doc.get("thumbnail_url"));
                 item.setUrl("/documents/" + doc.get("document_id"));
 
-                // 获取标签
-                List<String> tags = getDocumentTags(((Number) doc.get("document_id")).longValue());
-                item.setTags(tags);
-
                 results.add(item);
             }
 
@@ -513,64 +530,25 @@ public class SearchAdvanced {
         return results;
     }
 
-    // 高级词汇搜索
-    private List<AdvancedSearchItem> searchVocabularyAdvanced(Map<String, Object> filters, Long userId,
-                                                              int page, int pageSize) {
+    // 高级词汇搜索：WHERE 条件由查询计划生成
+    private List<AdvancedSearchItem> searchVocabularyAdvanced(AdvancedQueryPlanner.Plan plan, String query, int limit) {
         List<AdvancedSearchItem> results = new ArrayList<>();
 
         try {
             StringBuilder sqlBuilder = new StringBuilder();
-            sqlBuilder.append("SELECT w.word_id, w.word, w.phonetic, wd.definition, wd.translation, ");
-            sqlBuilder.append("w.created_at, w.updated_at, w.audio_url, w.difficulty, w.language ");
-            sqlBuilder.append("FROM words w ");
-            sqlBuilder.append("LEFT JOIN word_definitions wd ON w.word_id = wd.word_id ");
-            sqlBuilder.append("WHERE 1=1 ");
-
-            List<Object> params = new ArrayList<>();
-
-            // 处理各种过滤器
-            if (filters.containsKey("query") && filters.get("query") != null) {
-                String query = (String) filters.get("query");
-                sqlBuilder.append("AND (w.word LIKE ? OR wd.definition LIKE ? OR wd.translation LIKE ?) ");
-                params.add("%" + query + "%");
-                params.add("%" + query + "%");
-                params.add("%" + query + "%");
-            }
-
-            if (filters.containsKey("language") && filters.get("language") != null) {
-                String language = (String) filters.get("language");
-                sqlBuilder.append("AND w.language = ? ");
-                params.add(language);
-            }
-
-            if (filters.containsKey("difficulty") && filters.get("difficulty") != null) {
-                String difficulty = (String) filters.get("difficulty");
-                sqlBuilder.append("AND w.difficulty = ? ");
-                params.add(difficulty);
-            }
-
-            if (filters.containsKey("tags") && filters.get("tags") != null) {
-                List<String> tags = (List<String>) filters.get("tags");
-                if (!tags.isEmpty()) {
-                    sqlBuilder.append("AND EXISTS (SELECT 1 FROM user_vocabulary_tags ut ");
-                    sqlBuilder.append("INNER JOIN vocabulary_tags vt ON ut.tag_id = vt.tag_id ");
-                    sqlBuilder.append("WHERE ut.word_id = w.word_id AND vt.tag_name IN (");
-
-                    for (int i = 0; i < tags.size(); i++) {
-                        if (i > 0) sqlBuilder.append(", ");
-                        sqlBuilder.append("?");
-                        params.add(tags.get(i));
-                    }
-                    sqlBuilder.append(")) ");
-                }
-            }
+            // 每个单词一行，释义取排在第一位的一条
+            sqlBuilder.append("SELECT w.word_id, w.word, w.phonetic, w.difficulty, w.language, ");
+            sqlBuilder.append("(SELECT wd.definition FROM word_definitions wd WHERE wd.word_id = w.word_id ");
+            sqlBuilder.append("ORDER BY wd.order_index, wd.definition_id LIMIT 1) AS definition ");
+            sqlBuilder.append("FROM ").append(plan.getFrom()).append(" ");
+            sqlBuilder.append("WHERE ").append(plan.getWhere()).append(" ");
 
-            // 添加排序和分页
-            sqlBuilder.append("ORDER BY w.word ASC LIMIT ? OFFSET ?");
-            params.add(pageSize);
-            params.add((page - 1) * pageSize);
+            // 添加排序和条数限制
+            sqlBuilder.append("ORDER BY w.word ASC LIMIT ?");
+            List<Object> params = new ArrayList<>(plan.getParams());
+            params.add(limit);
 
-            List<Map<String, Object>> words = jdbcTemplate.queryForList(sqlBuilder.toString(), params.toArray());
+            List<Map<String, Object>> words = queryPlan(plan, sqlBuilder.toString(), params);
 
             for (Map<String, Object> word : words) {
                 AdvancedSearchItem item = new AdvancedSearchItem();
@@ -581,39 +559,22 @@ public class SearchAdvanced {
                 item.setWord((String) word.get("word"));
                 item.setPhonetic((String) word.get("phonetic"));
                 item.setDefinition((String) word.get("definition"));
-                item.setTranslation((String) word.get("translation"));
+                item.setLanguage((String) word.get("language"));
                 item.setDifficulty((String) word.get("difficulty"));
 
                 // 计算相关性
-                String query = filters.containsKey("query") ? (String) filters.get("query") : "";
                 double relevance = calculateVocabularyRelevance(query, (String) word.get("word"),
                         (String) word.get("definition"));
                 item.setRelevance(relevance);
 
                 // 构建高亮信息
                 Map<String, Object> highlight = new HashMap<>();
-                highlight.put("word", highlightText(query, (String) word.get("word")));
-                highlight.put("definition", highlightText(query, (String) word.get("definition")));
-                highlight.put("translation", highlightText(query, (String) word.get("translation")));
+                highlight.put("word", SnippetBuilder.ranges(query, (String) word.get("word")));
+                highlight.put("definition", SnippetBuilder.ranges(query, (String) word.get("definition")));
                 item.setHighlight(highlight);
 
-                item.setCreatedAt(word.get("created_at") != null ? word.get("created_at").toString() : null);
-                item.setUpdatedAt(word.get("updated_at") != null ? word.get("updated_at").toString() : null);
-                item.setAudioUrl((String) word.get("audio_url"));
                 item.setUrl("/vocabulary/" + wordId);
 
-                // 获取例句
-                List<String> examples = getWordExamples(wordId);
-                item.setExamples(examples);
-
-                // 获取标签
-                List<String> tags = getWordTags(wordId);
-                item.setTags(tags);
-
-                // 检查是否在用户生词本中
-                boolean inVocabulary = checkIfInVocabulary(userId, wordId);
-                item.setInVocabulary(inVocabulary);
-
                 results.add(item);
             }
 
@@ -624,53 +585,23 @@ public class SearchAdvanced {
         return results;
     }
 
-    // 高级笔记搜索
-    private List<AdvancedSearchItem> searchNotesAdvanced(Map<String, Object> filters, Long userId,
-                                                         int page, int pageSize) {
+    // 高级笔记搜索：WHERE 条件由查询计划生成
+    private List<AdvancedSearchItem> searchNotesAdvanced(AdvancedQueryPlanner.Plan plan, String query, int limit) {
         List<AdvancedSearchItem> results = new ArrayList<>();
 
         try {
             StringBuilder sqlBuilder = new StringBuilder();
             sqlBuilder.append("SELECT n.note_id, n.content, n.created_at, n.updated_at, ");
             sqlBuilder.append("d.document_id, d.title as document_title ");
-            sqlBuilder.append("FROM document_notes n ");
-            sqlBuilder.append("INNER JOIN documents d ON n.document_id = d.document_id ");
-            sqlBuilder.append("WHERE n.user_id = ? ");
+            sqlBuilder.append("FROM ").append(plan.getFrom()).append(" ");
+            sqlBuilder.append("WHERE ").append(plan.getWhere()).append(" ");
 
-            List<Object> params = new ArrayList<>();
-            params.add(userId);
+            // 添加排序和条数限制
+            sqlBuilder.append("ORDER BY n.created_at DESC LIMIT ?");
+            List<Object> params = new ArrayList<>(plan.getParams());
+            params.add(limit);
 
-            // 处理各种过滤器
-            if (filters.containsKey("query") && filters.get("query") != null) {
-                String query = (String) filters.get("query");
-                sqlBuilder.append("AND n.content LIKE ? ");
-                params.add("%" + query + "%");
-            }
-
-            if (filters.containsKey("documentId") && filters.get("documentId") != null) {
-                Long documentId = Long.parseLong((String) filters.get("documentId"));
-                sqlBuilder.append("AND n.document_id = ? ");
-                params.add(documentId);
-            }
-
-            if (filters.containsKey("dateFrom") && filters.get("dateFrom") != null) {
-                String dateFrom = (String) filters.get("dateFrom");
-                sqlBuilder.append("AND DATE(n.created_at) >= ? ");
-                params.add(dateFrom);
-            }
-
-            if (filters.containsKey("dateTo") && filters.get("dateTo") != null) {
-                String dateTo = (String) filters.get("dateTo");
-                sqlBuilder.append("AND DATE(n.created_at) <= ? ");
-                params.add(dateTo);
-            }
-
-            // 添加排序和分页
-            sqlBuilder.append("ORDER BY n.created_at DESC LIMIT ? OFFSET ?");
-            params.add(pageSize);
-            params.add((page - 1) * pageSize);
-
-            List<Map<String, Object>> notes = jdbcTemplate.queryForList(sqlBuilder.toString(), params.toArray());
+            List<Map<String, Object>> notes = queryPlan(plan, sqlBuilder.toString(), params);
 
             for (Map<String, Object> note : notes) {
                 AdvancedSearchItem item = new AdvancedSearchItem();
@@ -679,7 +610,6 @@ public class SearchAdvanced {
 
                 item.setId("note_" + noteId);
                 item.setType("note");
-                item.setContent((String) note.get("content"));
                 item.setDocumentTitle((String) note.get("document_title"));
                 item.setDocumentId(docId);
 
@@ -692,23 +622,19 @@ public class SearchAdvanced {
                     } else {
                         item.setTitle(content);
                     }
-
-                    // 取前150个字符作为摘要
-                    if (content.length() > 150) {
-                        item.setExcerpt(content.substring(0, 150) + "...");
-                    } else {
-                        item.setExcerpt(content);
-                    }
                 }
 
+                // 摘要取命中最集中的一段
+                SnippetBuilder.Snippet snippet = SnippetBuilder.snippet(query, content, 150);
+                item.setExcerpt(snippet.getText());
+
                 // 计算相关性
-                String query = filters.containsKey("query") ? (String) filters.get("query") : "";
                 double relevance = calculateNoteRelevance(query, content);
                 item.setRelevance(relevance);
 
                 // 构建高亮信息
                 Map<String, Object> highlight = new HashMap<>();
-                highlight.put("content", highlightText(query, content));
+                highlight.put("excerpt", snippet.getRanges());
                 item.setHighlight(highlight);
 
                 item.setCreatedAt(note.get("created_at") != null ? note.get("created_at").toString() : null);
@@ -725,54 +651,23 @@ public class SearchAdvanced {
         return results;
     }
 
-    // 高级高亮搜索
-    private List<AdvancedSearchItem> searchHighlightsAdvanced(Map<String, Object> filters, Long userId,
-                                                              int page, int pageSize) {
+    // 高级高亮搜索：WHERE 条件由查询计划生成
+    private List<AdvancedSearchItem> searchHighlightsAdvanced(AdvancedQueryPlanner.Plan plan, String query, int limit) {
         List<AdvancedSearchItem> results = new ArrayList<>();
 
         try {
             StringBuilder sqlBuilder = new StringBuilder();
-            sqlBuilder.append("SELECT h.highlight_id, h.selected_text, h.note, h.created_at, ");
-            sqlBuilder.append("h.page_number, d.document_id, d.title as document_title ");
-            sqlBuilder.append("FROM document_highlights h ");
-            sqlBuilder.append("INNER JOIN documents d ON h.document_id = d.document_id ");
-            sqlBuilder.append("WHERE h.user_id = ? ");
+            sqlBuilder.append("SELECT h.highlight_id, h.text, h.note, h.created_at, ");
+            sqlBuilder.append("h.page, d.document_id, d.title as document_title ");
+            sqlBuilder.append("FROM ").append(plan.getFrom()).append(" ");
+            sqlBuilder.append("WHERE ").append(plan.getWhere()).append(" ");
 
-            List<Object> params = new ArrayList<>();
-            params.add(userId);
-
-            // 处理各种过滤器
-            if (filters.containsKey("query") && filters.get("query") != null) {
-                String query = (String) filters.get("query");
-                sqlBuilder.append("AND (h.selected_text LIKE ? OR h.note LIKE ?) ");
-                params.add("%" + query + "%");
-                params.add("%" + query + "%");
-            }
-
-            if (filters.containsKey("documentId") && filters.get("documentId") != null) {
-                Long documentId = Long.parseLong((String) filters.get("documentId"));
-                sqlBuilder.append("AND h.document_id = ? ");
-                params.add(documentId);
-            }
+            // 添加排序和条数限制
+            sqlBuilder.append("ORDER BY h.created_at DESC LIMIT ?");
+            List<Object> params = new ArrayList<>(plan.getParams());
+            params.add(limit);
 
-            if (filters.containsKey("dateFrom") && filters.get("dateFrom") != null) {
-                String dateFrom = (String) filters.get("dateFrom");
-                sqlBuilder.append("AND DATE(h.created_at) >= ? ");
-                params.add(dateFrom);
-            }
-
-            if (filters.containsKey("dateTo") && filters.get("dateTo") != null) {
-                String dateTo = (String) filters.get("dateTo");
-                sqlBuilder.append("AND DATE(h.created_at) <= ? ");
-                params.add(dateTo);
-            }
-
-            // 添加排序和分页
-            sqlBuilder.append("ORDER BY h.created_at DESC LIMIT ? OFFSET ?");
-            params.add(pageSize);
-            params.add((page - 1) * pageSize);
-
-            List<Map<String, Object>> highlights = jdbcTemplate.queryForList(sqlBuilder.toString(), params.toArray());
+            List<Map<String, Object>> highlights = queryPlan(plan, sqlBuilder.toString(), params);
 
             for (Map<String, Object> highlight : highlights) {
                 AdvancedSearchItem item = new AdvancedSearchItem();
@@ -781,15 +676,15 @@ public class SearchAdvanced {
 
                 item.setId("highlight_" + highlightId);
                 item.setType("highlight");
-                item.setSelectedText((String) highlight.get("selected_text"));
+                item.setSelectedText((String) highlight.get("text"));
                 item.setNote((String) highlight.get("note"));
                 item.setDocumentTitle((String) highlight.get("document_title"));
                 item.setDocumentId(docId);
-                item.setPageNumber(highlight.get("page_number") != null ?
-                        ((Number) highlight.get("page_number")).intValue() : 0);
+                item.setPageNumber(highlight.get("page") != null ?
+                        ((Number) highlight.get("page")).intValue() : 0);
 
                 // 生成标题和摘要
-                String selectedText = (String) highlight.get("selected_text");
+                String selectedText = (String) highlight.get("text");
                 String noteText = (String) highlight.get("note");
 
                 if (selectedText != null) {
@@ -806,22 +701,19 @@ public class SearchAdvanced {
                         excerptSource = noteText;
                     }
 
-                    if (excerptSource != null && excerptSource.length() > 120) {
-                        item.setExcerpt(excerptSource.substring(0, 120) + "...");
-                    } else {
-                        item.setExcerpt(excerptSource);
-                    }
+                    SnippetBuilder.Snippet snippet = SnippetBuilder.snippet(query, excerptSource, 120);
+                    item.setExcerpt(snippet.getText());
                 }
 
                 // 计算相关性
-                String query = filters.containsKey("query") ? (String) filters.get("query") : "";
                 double relevance = calculateHighlightRelevance(query, selectedText, noteText);
                 item.setRelevance(relevance);
 
                 // 构建高亮信息
                 Map<String, Object> hl = new HashMap<>();
-                hl.put("selectedText", highlightText(query, selectedText));
-                hl.put("note", highlightText(query, noteText));
+                hl.put("selectedText", SnippetBuilder.ranges(query, selectedText));
+                hl.put("note", SnippetBuilder.ranges(query, noteText));
+                hl.put("excerpt", SnippetBuilder.ranges(query, item.getExcerpt()));
                 item.setHighlight(hl);
 
                 item.setCreatedAt(highlight.get("created_at") != null ?
@@ -838,13 +730,96 @@ public class SearchAdvanced {
         return results;
     }
 
+    // 查询语言与旧版 filters 合并成一棵语法树；filters 转成的条件在不支持该字段的来源上忽略，与原来逐来源拼 SQL 的行为一致
+    private AdvancedQuery.Node buildQuery(AdvancedSearchRequest request) {
+        List<AdvancedQuery.Node> clauses = new ArrayList<>();
+        if (request.getQuery() != null && !request.getQuery().trim().isEmpty()) {
+            clauses.add(AdvancedQuery.parse(request.getQuery()));
+        }
+        Map<String, Object> filters = request.getFilters() != null ? request.getFilters() : new HashMap<>();
+
+        String text = filterValue(filters, "query");
+        if (text != null) {
+            clauses.add(new AdvancedQuery.Term(null, text, true, true));
+        }
+        String language = filterValue(filters, "language");
+        if (language != null) {
+            clauses.add(new AdvancedQuery.Term(AdvancedQuery.FIELD_LANG, language, false, true));
+        }
+        String difficulty = filterValue(filters, "difficulty");
+        if (difficulty != null) {
+            clauses.add(new AdvancedQuery.Term(AdvancedQuery.FIELD_DIFFICULTY, difficulty, false, true));
+        }
+        String documentId = filterValue(filters, "documentId");
+        if (documentId != null) {
+            if (!documentId.matches("\\d{1,18}")) {
+                throw new IllegalArgumentException("documentId 必须是数字: " + documentId);
+            }
+            clauses.add(new AdvancedQuery.Term(AdvancedQuery.FIELD_DOC, documentId, false, true));
+        }
+        String dateFrom = filterValue(filters, "dateFrom");
+        String dateTo = filterValue(filters, "dateTo");
+        if (dateFrom != null || dateTo != null) {
+            clauses.add(new AdvancedQuery.Range(AdvancedQuery.FIELD_DATE, parseFilterDate(dateFrom),
+                    parseFilterDate(dateTo), true));
+        }
+        if (filters.get("tags") instanceof List) {
+            List<AdvancedQuery.Node> tags = new ArrayList<>();
+            for (Object tag : (List<?>) filters.get("tags")) {
+                if (tag != null && !tag.toString().trim().isEmpty()) {
+                    tags.add(new AdvancedQuery.Term(AdvancedQuery.FIELD_TAG, tag.toString().trim(), false, true));
+                }
+            }
+            if (!tags.isEmpty()) {
+                clauses.add(tags.size() == 1 ? tags.get(0) : new AdvancedQuery.Or(tags));
+            }
+        }
+        return AdvancedQuery.and(clauses);
+    }
+
+    private String filterValue(Map<String, Object> filters, String key) {
+        Object value = filters.get(key);
+        if (value == null || value.toString().trim().isEmpty()) {
+            return null;
+        }
+        return value.toString().trim();
+    }
+
+    private java.time.LocalDate parseFilterDate(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return java.time.LocalDate.parse(value);
+        } catch (java.time.format.DateTimeParseException e) {
+            throw new IllegalArgumentException("无效的日期: " + value);
+        }
+    }
+
+    // 来源的结果总数：取到的行数不足上限时就是总数，否则用同样的条件计数
+    private int countPlan(AdvancedQueryPlanner.Plan plan, int fetched, int limit) {
+        if (fetched < limit) {
+            return fetched;
+        }
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + plan.getFrom() + " WHERE " + plan.getWhere(),
+                Integer.class, plan.getParams().toArray());
+        return count == null ? fetched : count;
+    }
+
+    // 执行一个来源的查询，记录行数和耗时供 explain 使用
+    private List<Map<String, Object>> queryPlan(AdvancedQueryPlanner.Plan plan, String sql, List<Object> params) {
+        long begin = System.currentTimeMillis();
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(sql, params.toArray());
+        plan.recordExecution(rows.size(), System.currentTimeMillis() - begin);
+        return rows;
+    }
+
     // 从token获取用户ID
     private Long getUserIdFromToken(String authHeader) {
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
             try {
-                String sql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-                List<Map<String, Object>> sessions = jdbcTemplate.queryForList(sql, token);
+                List<Map<String, Object>> sessions = sessionResolver.findSession(token);
                 if (!sessions.isEmpty()) {
                     return ((Number) sessions.get(0).get("user_id")).longValue();
                 }
@@ -860,19 +835,11 @@ public class SearchAdvanced {
         if (title == null) title = "";
         if (content == null) content = "";
 
-        String lowerQuery = query.toLowerCase();
-        String lowerTitle = title.toLowerCase();
-        String lowerContent = content.toLowerCase();
-
         double score = 0.0;
 
-        if (lowerTitle.contains(lowerQuery)) {
-            score += 0.7;
-        }
+        score += 0.7 * SearchTokenizer.coverage(query, title);
 
-        if (lowerContent.contains(lowerQuery)) {
-            score += 0.3;
-        }
+        score += 0.3 * SearchTokenizer.coverage(query, content);
 
         if (title.contains(query) || content.contains(query)) {
             score += 0.2;
@@ -888,7 +855,6 @@ public class SearchAdvanced {
 
         String lowerQuery = query.toLowerCase();
         String lowerWord = word.toLowerCase();
-        String lowerDefinition = definition.toLowerCase();
 
         double score = 0.0;
 
@@ -898,11 +864,11 @@ public class SearchAdvanced {
             score += 0.6;
         } else if (lowerWord.contains(lowerQuery)) {
             score += 0.4;
+        } else {
+            score += 0.4 * SearchTokenizer.coverage(query, word);
         }
 
-        if (lowerDefinition.contains(lowerQuery)) {
-            score += 0.2;
-        }
+        score += 0.2 * SearchTokenizer.coverage(query, definition);
 
         return Math.min(score, 1.0);
     }
@@ -911,14 +877,9 @@ public class SearchAdvanced {
     private double calculateNoteRelevance(String query, String content) {
         if (content == null) content = "";
 
-        String lowerQuery = query.toLowerCase();
-        String lowerContent = content.toLowerCase();
-
         double score = 0.0;
 
-        if (lowerContent.contains(lowerQuery)) {
-            score += 1.0;
-        }
+        score += SearchTokenizer.coverage(query, content);
 
         if (content.contains(query)) {
             score += 0.3;
@@ -932,19 +893,11 @@ public class SearchAdvanced {
         if (selectedText == null) selectedText = "";
         if (note == null) note = "";
 
-        String lowerQuery = query.toLowerCase();
-        String lowerSelectedText = selectedText.toLowerCase();
-        String lowerNote = note.toLowerCase();
-
         double score = 0.0;
 
-        if (lowerSelectedText.contains(lowerQuery)) {
-            score += 0.7;
-        }
+        score += 0.7 * SearchTokenizer.coverage(query, selectedText);
 
-        if (lowerNote.contains(lowerQuery)) {
-            score += 0.3;
-        }
+        score += 0.3 * SearchTokenizer.coverage(query, note);
 
         if (selectedText.contains(query) || note.contains(query)) {
             score += 0.2;
@@ -953,87 +906,40 @@ public class SearchAdvanced {
         return Math.min(score, 1.0);
     }
 
-    // 高亮文本
-    private String highlightText(String query, String text) {
-        if (text == null || query == null || query.isEmpty()) {
-            return text;
-        }
-
-        return text.replaceAll("(?i)(" + query + ")", "<mark>$1</mark>");
-    }
-
-    // 获取文档标签
-    private List<String> getDocumentTags(Long documentId) {
-        List<String> tags = new ArrayList<>();
-        try {
-            String sql = "SELECT t.tag_name FROM document_tags t " +
-                    "INNER JOIN document_tag_relations r ON t.tag_id = r.tag_id " +
-                    "WHERE r.document_id = ?";
-            List<Map<String, Object>> tagList = jdbcTemplate.queryForList(sql, documentId);
-            for (Map<String, Object> tag : tagList) {
-                tags.add((String) tag.get("tag_name"));
+    // 当前页结果的关联数据每种只查一次
+    private void enrichPage(List<AdvancedSearchItem> items, Long userId) {
+        List<Long> documentIds = new ArrayList<>();
+        List<Long> wordIds = new ArrayList<>();
+        for (AdvancedSearchItem item : items) {
+            Long documentId = SearchEnrichmentService.parseId(item.getId(), "doc_");
+            Long wordId = SearchEnrichmentService.parseId(item.getId(), "word_");
+            if (documentId != null) {
+                documentIds.add(documentId);
+            } else if (wordId != null) {
+                wordIds.add(wordId);
             }
-        } catch (Exception e) {
-            System.err.println("获取文档标签失败: " + e.getMessage());
         }
-        return tags;
-    }
-
-    // 获取单词例句
-    private List<String> getWordExamples(Long wordId) {
-        List<String> examples = new ArrayList<>();
-        try {
-            String sql = "SELECT example_text FROM word_examples WHERE word_id = ? LIMIT 3";
-            List<Map<String, Object>> exampleList = jdbcTemplate.queryForList(sql, wordId);
-            for (Map<String, Object> example : exampleList) {
-                examples.add((String) example.get("example_text"));
-            }
-        } catch (Exception e) {
-            System.err.println("获取单词例句失败: " + e.getMessage());
+        if (documentIds.isEmpty() && wordIds.isEmpty()) {
+            return;
         }
-        return examples;
-    }
 
-    // 获取单词标签
-    private List<String> getWordTags(Long wordId) {
-        List<String> tags = new ArrayList<>();
-        try {
-            String sql = "SELECT vt.tag_name FROM vocabulary_tags vt " +
-                    "INNER JOIN user_vocabulary_tags ut ON vt.tag_id = ut.tag_id " +
-                    "WHERE ut.word_id = ?";
-            List<Map<String, Object>> tagList = jdbcTemplate.queryForList(sql, wordId);
-            for (Map<String, Object> tag : tagList) {
-                tags.add((String) tag.get("tag_name"));
+        SearchEnrichmentService.Enrichment enrichment = enrichmentService.load(documentIds, wordIds, userId);
+        for (AdvancedSearchItem item : items) {
+            Long documentId = SearchEnrichmentService.parseId(item.getId(), "doc_");
+            Long wordId = SearchEnrichmentService.parseId(item.getId(), "word_");
+            if (documentId != null) {
+                item.setTags(enrichment.getDocumentTags(documentId));
+            } else if (wordId != null) {
+                item.setExamples(enrichment.getWordExamples(wordId));
+                item.setTags(enrichment.getWordTags(wordId));
+                item.setInVocabulary(enrichment.isInVocabulary(wordId));
             }
-        } catch (Exception e) {
-            System.err.println("获取单词标签失败: " + e.getMessage());
-        }
-        return tags;
-    }
-
-    // 检查是否在用户生词本中
-    private boolean checkIfInVocabulary(Long userId, Long wordId) {
-        if (userId == null) return false;
-
-        try {
-            String sql = "SELECT COUNT(*) FROM user_vocabulary WHERE user_id = ? AND word_id = ?";
-            Integer count = jdbcTemplate.queryForObject(sql, Integer.class, userId, wordId);
-            return count != null && count > 0;
-        } catch (Exception e) {
-            System.err.println("检查生词本失败: " + e.getMessage());
-            return false;
         }
     }
 
     // 保存搜索历史
     private void saveSearchHistory(Long userId, String keyword, String searchType, int resultCount) {
-        try {
-            String sql = "INSERT INTO search_history (user_id, keyword, search_type, result_count, timestamp) " +
-                    "VALUES (?, ?, ?, ?, NOW())";
-            jdbcTemplate.update(sql, userId, keyword, searchType, resultCount);
-            System.out.println("已保存高级搜索历史: 用户=" + userId + ", 关键词=" + keyword);
-        } catch (Exception e) {
-            System.err.println("保存搜索历史失败: " + e.getMessage());
-        }
+        // 由后台批量写入，搜索请求不等待数据库
+        historyWriter.record(userId, keyword, searchType, resultCount);
     }
 }
\ No newline at end of file
@@ -6,6 +6,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.AutocompleteService;
+import com.vue.readingapp.search.service.CompletionTrie;
 
 @RestController
 @RequestMapping("/api/v1/search")
@@ -14,6 +17,12 @@ public class SearchAutocomplete {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private AutocompleteService autocompleteService;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到搜索联想请求 ===");
@@ -165,42 +174,13 @@ public class SearchAutocomplete {
         List<AutocompleteItem> items = new ArrayList<>();
 
         try {
-            StringBuilder sqlBuilder = new StringBuilder();
-            sqlBuilder.append("SELECT document_id, title FROM documents ");
-            sqlBuilder.append("WHERE title LIKE ? AND status = 'processed' ");
-
-            List<Object> params = new ArrayList<>();
-            params.add("%" + query + "%");
-
-            if (userId != null) {
-                sqlBuilder.append("AND user_id = ? ");
-                params.add(userId);
-            }
-
-            sqlBuilder.append("ORDER BY created_at DESC LIMIT ?");
-            params.add(limit);
-
-            List<Map<String, Object>> documents = jdbcTemplate.queryForList(sqlBuilder.toString(), params.toArray());
-
-            for (int i = 0; i < documents.size(); i++) {
-                Map<String, Object> doc = documents.get(i);
-                String title = (String) doc.get("title");
-
+            for (CompletionTrie.Entry entry : autocompleteService.completeDocuments(query, userId, limit)) {
                 // 计算相关性
-                double relevance = calculateRelevance(query, title, null);
+                double relevance = calculateRelevance(query, entry.getText(), null);
 
                 // 构建联想项
-                AutocompleteItem item = new AutocompleteItem(
-                        "doc_" + doc.get("document_id"),
-                        title,
-                        "document",
-                        relevance,
-                        "",
-                        ""
-                );
-                items.add(item);
+                items.add(new AutocompleteItem(entry.getId(), entry.getText(), "document", relevance, "", ""));
             }
-
         } catch (Exception e) {
             System.err.println("获取文档联想失败: " + e.getMessage());
         }
@@ -213,37 +193,13 @@ public class SearchAutocomplete {
         List<AutocompleteItem> items = new ArrayList<>();
 
         try {
-            StringBuilder sqlBuilder = new StringBuilder();
-            sqlBuilder.append("SELECT word_id, word FROM words ");
-            sqlBuilder.append("WHERE word LIKE ? ");
-
-            List<Object> params = new ArrayList<>();
-            params.add(query + "%");
-
-            sqlBuilder.append("ORDER BY word ASC LIMIT ?");
-            params.add(limit);
-
-            List<Map<String, Object>> words = jdbcTemplate.queryForList(sqlBuilder.toString(), params.toArray());
-
-            for (int i = 0; i < words.size(); i++) {
-                Map<String, Object> word = words.get(i);
-                String wordText = (String) word.get("word");
-
+            for (CompletionTrie.Entry entry : autocompleteService.completeWords(query, limit)) {
                 // 计算相关性
-                double relevance = calculateRelevance(query, wordText, null);
+                double relevance = calculateRelevance(query, entry.getText(), null);
 
                 // 构建联想项
-                AutocompleteItem item = new AutocompleteItem(
-                        "word_" + word.get("word_id"),
-                        wordText,
-                        "vocabulary",
-                        relevance,
-                        "",
-                        ""
-                );
-                items.add(item);
+                items.add(new AutocompleteItem(entry.getId(), entry.getText(), "vocabulary", relevance, "", ""));
             }
-
         } catch (Exception e) {
             System.err.println("获取词汇联想失败: " + e.getMessage());
         }
@@ -256,42 +212,18 @@ public class SearchAutocomplete {
         List<AutocompleteItem> items = new ArrayList<>();
 
         try {
-            StringBuilder sqlBuilder = new StringBuilder();
-            sqlBuilder.append("SELECT DISTINCT keyword FROM search_history ");
-            sqlBuilder.append("WHERE keyword LIKE ? ");
-
-            List<Object> params = new ArrayList<>();
-            params.add(query + "%");
-
-            if (userId != null) {
-                sqlBuilder.append("AND user_id = ? ");
-                params.add(userId);
-            }
-
-            sqlBuilder.append("ORDER BY MAX(timestamp) DESC LIMIT ?");
-            params.add(limit);
-
-            List<Map<String, Object>> history = jdbcTemplate.queryForList(sqlBuilder.toString(), params.toArray());
-
-            for (int i = 0; i < history.size(); i++) {
-                Map<String, Object> record = history.get(i);
-                String keyword = (String) record.get("keyword");
-
+            // 同一关键词在不同搜索类型下各有一条，这里只保留一条
+            Set<String> keywords = new HashSet<>();
+            for (CompletionTrie.Entry entry : autocompleteService.completeHistory(query, userId, null, limit * 2)) {
+                if (items.size() >= limit || !keywords.add(entry.getText())) {
+                    continue;
+                }
                 // 计算相关性
-                double relevance = calculateRelevance(query, keyword, null);
+                double relevance = calculateRelevance(query, entry.getText(), null);
 
                 // 构建联想项
-                AutocompleteItem item = new AutocompleteItem(
-                        "history_" + i,
-                        keyword,
-                        "history",
-                        relevance,
-                        "",
-                        ""
-                );
-                items.add(item);
+                items.add(new AutocompleteItem("history_" + items.size(), entry.getText(), "history", relevance, "", ""));
             }
-
         } catch (Exception e) {
             System.err.println("获取历史联想失败: " + e.getMessage());
         }
@@ -333,8 +265,7 @@ public class SearchAutocomplete {
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
             try {
-                String sql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-                List<Map<String, Object>> sessions = jdbcTemplate.queryForList(sql, token);
+                List<Map<String, Object>> sessions = sessionResolver.findSession(token);
                 if (!sessions.isEmpty()) {
                     return ((Number) sessions.get(0).get("user_id")).longValue();
                 }
@@ -6,6 +6,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.AutocompleteService;
+import com.vue.readingapp.search.service.SearchStatsRollupService;
 
 @RestController
 @RequestMapping("/api/v1/search")
@@ -14,6 +17,15 @@ public class SearchClearHistory {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private AutocompleteService autocompleteService;
+
+    @Autowired
+    private SearchStatsRollupService rollupService;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到清空搜索历史请求 ===");
@@ -133,6 +145,8 @@ public class SearchClearHistory {
 
             // 3. 执行删除
             int deletedCount = jdbcTemplate.update(sqlBuilder.toString(), params.toArray());
+            autocompleteService.invalidateUser(userId);
+            rollupService.rebuildUser(userId);
 
             // 4. 准备响应数据
             ClearHistoryData data = new ClearHistoryData(
@@ -169,8 +183,7 @@ public class SearchClearHistory {
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
             try {
-                String sql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-                List<Map<String, Object>> sessions = jdbcTemplate.queryForList(sql, token);
+                List<Map<String, Object>> sessions = sessionResolver.findSession(token);
                 if (!sessions.isEmpty()) {
                     return ((Number) sessions.get(0).get("user_id")).longValue();
                 }
@@ -6,6 +6,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
 
 @RestController
 @RequestMapping("/api/v1/search")
@@ -14,6 +15,9 @@ public class SearchCreateFilter {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到创建搜索过滤器请求 ===");
@@ -299,8 +303,7 @@ public class SearchCreateFilter {
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
             try {
-                String sql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-                List<Map<String, Object>> sessions = jdbcTemplate.queryForList(sql, token);
+                List<Map<String, Object>> sessions = sessionResolver.findSession(token);
                 if (!sessions.isEmpty()) {
                     return ((Number) sessions.get(0).get("user_id")).longValue();
                 }
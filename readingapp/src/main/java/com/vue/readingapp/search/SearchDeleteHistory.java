@@ -6,6 +6,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.AutocompleteService;
+import com.vue.readingapp.search.service.SearchStatsRollupService;
 
 @RestController
 @RequestMapping("/api/v1/search")
@@ -14,6 +17,15 @@ public class SearchDeleteHistory {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private AutocompleteService autocompleteService;
+
+    @Autowired
+    private SearchStatsRollupService rollupService;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到删除搜索历史请求 ===");
@@ -114,6 +126,10 @@ public class SearchDeleteHistory {
             // 3. 删除记录
             String deleteSql = "DELETE FROM search_history WHERE search_id = ? AND user_id = ?";
             int deletedCount = jdbcTemplate.update(deleteSql, searchId, userId);
+            autocompleteService.invalidateUser(userId);
+            if (deletedCount > 0) {
+                rollupService.rebuildUser(userId);
+            }
 
             if (deletedCount == 0) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
@@ -147,8 +163,7 @@ public class SearchDeleteHistory {
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
             try {
-                String sql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-                List<Map<String, Object>> sessions = jdbcTemplate.queryForList(sql, token);
+                List<Map<String, Object>> sessions = sessionResolver.findSession(token);
                 if (!sessions.isEmpty()) {
                     return ((Number) sessions.get(0).get("user_id")).longValue();
                 }
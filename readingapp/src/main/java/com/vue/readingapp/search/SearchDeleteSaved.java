@@ -6,6 +6,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.SavedSearchPercolator;
 
 @RestController
 @RequestMapping("/api/v1/search")
@@ -14,6 +16,12 @@ public class SearchDeleteSaved {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private SavedSearchPercolator percolator;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到删除保存搜索请求 ===");
@@ -132,6 +140,7 @@ public class SearchDeleteSaved {
                         new DeleteSavedResponse(false, "删除失败，记录不存在", null)
                 );
             }
+            percolator.unregister(savedId);
 
             // 5. 准备响应数据
             DeleteSavedData data = new DeleteSavedData(savedId, keyword, searchType, updatedAt);
@@ -159,8 +168,7 @@ public class SearchDeleteSaved {
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
             try {
-                String sql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-                List<Map<String, Object>> sessions = jdbcTemplate.queryForList(sql, token);
+                List<Map<String, Object>> sessions = sessionResolver.findSession(token);
                 if (!sessions.isEmpty()) {
                     return ((Number) sessions.get(0).get("user_id")).longValue();
                 }
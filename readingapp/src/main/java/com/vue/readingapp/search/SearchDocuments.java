@@ -7,14 +7,45 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
 import java.time.LocalDateTime;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.AutocompleteService;
+import com.vue.readingapp.search.service.PageIndexService;
+import com.vue.readingapp.search.service.SearchTextMatcher;
+import com.vue.readingapp.search.service.SearchTokenizer;
+import com.vue.readingapp.search.service.SearchHistoryWriter;
+import com.vue.readingapp.search.service.SnippetBuilder;
 
 @RestController
 @RequestMapping("/api/v1/search")
 public class SearchDocuments {
 
+    // 与其他搜索服务一致的文档可见条件
+    private static final String DOCUMENT_VISIBLE = "d.status = 'processed' AND d.deleted_at IS NULL";
+
+    // documents 表没有正文和字数列，正文按页存在 document_pages（有自己的 FULLTEXT 索引），字数为各页之和
+    private static final String PAGE_MATCH = "EXISTS (SELECT 1 FROM document_pages dp " +
+            "WHERE dp.document_id = d.document_id AND %s)";
+    private static final String WORD_COUNT = "(SELECT COALESCE(SUM(dp.word_count), 0) FROM document_pages dp " +
+            "WHERE dp.document_id = d.document_id)";
+
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private SearchHistoryWriter historyWriter;
+
+    @Autowired
+    private AutocompleteService autocompleteService;
+
+    @Autowired
+    private SearchTextMatcher textMatcher;
+
+    @Autowired
+    private PageIndexService pageIndex;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到文档搜索请求 ===");
@@ -132,20 +163,19 @@ public class SearchDocuments {
     public static class DocumentItem {
         private String id;
         private String title;
-        private String content;
         private String excerpt;
         private String author;
         private List<String> tags;
         private String language;
+        private int pageCount;
         private int wordCount;
-        private String difficulty;
         private double relevance;
         private Map<String, Object> highlight;
         private String createdAt;
         private String updatedAt;
-        private String thumbnail;
         private String url;
         private String status;
+        private Integer matchedPage;
 
         // Getters and Setters
         public String getId() { return id; }
@@ -154,9 +184,6 @@ public class SearchDocuments {
         public String getTitle() { return title; }
         public void setTitle(String title) { this.title = title; }
 
-        public String getContent() { return content; }
-        public void setContent(String content) { this.content = content; }
-
         public String getExcerpt() { return excerpt; }
         public void setExcerpt(String excerpt) { this.excerpt = excerpt; }
 
@@ -169,12 +196,12 @@ public class SearchDocuments {
         public String getLanguage() { return language; }
         public void setLanguage(String language) { this.language = language; }
 
+        public int getPageCount() { return pageCount; }
+        public void setPageCount(int pageCount) { this.pageCount = pageCount; }
+
         public int getWordCount() { return wordCount; }
         public void setWordCount(int wordCount) { this.wordCount = wordCount; }
 
-        public String getDifficulty() { return difficulty; }
-        public void setDifficulty(String difficulty) { this.difficulty = difficulty; }
-
         public double getRelevance() { return relevance; }
         public void setRelevance(double relevance) { this.relevance = relevance; }
 
@@ -187,14 +214,14 @@ public class SearchDocuments {
         public String getUpdatedAt() { return updatedAt; }
         public void setUpdatedAt(String updatedAt) { this.updatedAt = updatedAt; }
 
-        public String getThumbnail() { return thumbnail; }
-        public void setThumbnail(String thumbnail) { this.thumbnail = thumbnail; }
-
         public String getUrl() { return url; }
         public void setUrl(String url) { this.url = url; }
 
         public String getStatus() { return status; }
         public void setStatus(String status) { this.status = status; }
+
+        public Integer getMatchedPage() { return matchedPage; }
+        public void setMatchedPage(Integer matchedPage) { this.matchedPage = matchedPage; }
     }
 
     @GetMapping("/documents")
@@ -205,7 +232,6 @@ public class SearchDocuments {
             @RequestParam(required = false, defaultValue = "relevance") String sortBy,
             @RequestParam(required = false, defaultValue = "desc") String sortOrder,
             @RequestParam(required = false) String language,
-            @RequestParam(required = false) String difficulty,
             @RequestParam(required = false) String tag,
             @RequestParam(required = false) Integer minWordCount,
             @RequestParam(required = false) Integer maxWordCount,
@@ -225,7 +251,6 @@ public class SearchDocuments {
 
         Map<String, Object> filters = new HashMap<>();
         if (language != null) filters.put("language", language);
-        if (difficulty != null) filters.put("difficulty", difficulty);
         if (tag != null) filters.put("tag", tag);
         if (minWordCount != null) filters.put("minWordCount", minWordCount);
         if (maxWordCount != null) filters.put("maxWordCount", maxWordCount);
@@ -247,18 +272,18 @@ public class SearchDocuments {
             // 2. 获取当前用户ID
             Long userId = getUserIdFromToken(authHeader);
 
-            // 3. 构建SQL查询
+            // 3. 构建SQL查询（正文走段索引时先检索出候选文档和各自的最佳页）
+            Map<Long, PageIndexService.DocumentHit> pageHits = searchPages(query, userId);
+            SearchTextMatcher.Match match = matchQuery(query, pageHits);
             StringBuilder sqlBuilder = new StringBuilder();
-            sqlBuilder.append("SELECT d.document_id, d.title, d.content, d.author, d.language, ");
-            sqlBuilder.append("d.word_count, d.difficulty, d.created_at, d.updated_at, ");
-            sqlBuilder.append("d.thumbnail_url, d.status, d.user_id ");
+            sqlBuilder.append("SELECT d.document_id, d.title, d.description, d.author, d.language, ");
+            sqlBuilder.append("d.page_count, ").append(WORD_COUNT).append(" AS word_count, ");
+            sqlBuilder.append("d.created_at, d.updated_at, d.status, d.user_id ");
             sqlBuilder.append("FROM documents d ");
-            sqlBuilder.append("WHERE (d.title LIKE ? OR d.content LIKE ?) ");
-            sqlBuilder.append("AND d.status = 'processed' ");
+            sqlBuilder.append("WHERE ").append(match.getCondition()).append(" ");
+            sqlBuilder.append("AND ").append(DOCUMENT_VISIBLE).append(" ");
 
-            List<Object> params = new ArrayList<>();
-            params.add("%" + query + "%");
-            params.add("%" + query + "%");
+            List<Object> params = new ArrayList<>(match.getConditionParams());
 
             // 添加用户过滤（只能搜索自己的文档）
             if (userId != null) {
@@ -272,12 +297,6 @@ public class SearchDocuments {
                 params.add(language);
             }
 
-            // 添加难度过滤
-            if (difficulty != null && !difficulty.isEmpty()) {
-                sqlBuilder.append("AND d.difficulty = ? ");
-                params.add(difficulty);
-            }
-
             // 添加标签过滤
             if (tag != null && !tag.isEmpty()) {
                 sqlBuilder.append("AND EXISTS (SELECT 1 FROM document_tag_relations r ");
@@ -286,14 +305,14 @@ public class SearchDocuments {
                 params.add(tag);
             }
 
-            // 添加单词数过滤
+            // 添加单词数过滤（各页字数之和）
             if (minWordCount != null) {
-                sqlBuilder.append("AND d.word_count >= ? ");
+                sqlBuilder.append("AND ").append(WORD_COUNT).append(" >= ? ");
                 params.add(minWordCount);
             }
 
             if (maxWordCount != null) {
-                sqlBuilder.append("AND d.word_count <= ? ");
+                sqlBuilder.append("AND ").append(WORD_COUNT).append(" <= ? ");
                 params.add(maxWordCount);
             }
 
@@ -313,7 +332,12 @@ public class SearchDocuments {
             int total = jdbcTemplate.queryForObject(countSql, Integer.class, params.toArray());
 
             // 5. 添加排序和分页
-            if ("relevance".equals(sortBy)) {
+            if ("relevance".equals(sortBy) && match.getScore() != null) {
+                // 全文索引或段索引相关度排序
+                sqlBuilder.append("ORDER BY ").append(match.getScore()).append(" DESC, ");
+                sqlBuilder.append("d.created_at DESC ");
+                params.addAll(match.getScoreParams());
+            } else if ("relevance".equals(sortBy)) {
                 // 简单相关性排序：标题匹配优先
                 sqlBuilder.append("ORDER BY CASE WHEN d.title LIKE ? THEN 1 ELSE 0 END DESC, ");
                 sqlBuilder.append("d.created_at DESC ");
@@ -322,7 +346,7 @@ public class SearchDocuments {
                 sqlBuilder.append("ORDER BY d.created_at ");
                 sqlBuilder.append("desc".equalsIgnoreCase(sortOrder) ? "DESC " : "ASC ");
             } else if ("wordCount".equals(sortBy)) {
-                sqlBuilder.append("ORDER BY d.word_count ");
+                sqlBuilder.append("ORDER BY word_count ");
                 sqlBuilder.append("desc".equalsIgnoreCase(sortOrder) ? "DESC " : "ASC ");
             } else {
                 sqlBuilder.append("ORDER BY d.created_at DESC ");
@@ -335,6 +359,7 @@ public class SearchDocuments {
             // 6. 执行查询
             List<Map<String, Object>> documents = jdbcTemplate.queryForList(sqlBuilder.toString(), params.toArray());
             printQueryResult("找到 " + total + " 个文档，返回 " + documents.size() + " 个");
+            Map<Long, String> bestPages = loadExcerptPages(query, documents, pageHits);
 
             // 7. 处理结果
             List<DocumentItem> items = new ArrayList<>();
@@ -342,20 +367,19 @@ public class SearchDocuments {
                 DocumentItem item = new DocumentItem();
                 item.setId("doc_" + doc.get("document_id"));
                 item.setTitle((String) doc.get("title"));
-                item.setContent((String) doc.get("content"));
-
-                // 生成摘要
-                String content = (String) doc.get("content");
-                if (content != null && content.length() > 200) {
-                    item.setExcerpt(content.substring(0, 200) + "...");
-                } else {
-                    item.setExcerpt(content);
-                }
+
+                // 生成摘要：取最佳页（段索引）或第一个命中页的内容，正文没有命中时用简介
+                long documentId = ((Number) doc.get("document_id")).longValue();
+                String content = bestPages.getOrDefault(documentId, (String) doc.get("description"));
+                PageIndexService.DocumentHit pageHit = pageHits == null ? null : pageHits.get(documentId);
+                item.setMatchedPage(pageHit == null ? null : pageHit.getBestPage());
+                SnippetBuilder.Snippet snippet = SnippetBuilder.snippet(query, content, 200);
+                item.setExcerpt(snippet.getText());
 
                 item.setAuthor((String) doc.get("author"));
                 item.setLanguage((String) doc.get("language"));
+                item.setPageCount(doc.get("page_count") != null ? ((Number) doc.get("page_count")).intValue() : 0);
                 item.setWordCount(doc.get("word_count") != null ? ((Number) doc.get("word_count")).intValue() : 0);
-                item.setDifficulty((String) doc.get("difficulty"));
                 item.setStatus((String) doc.get("status"));
 
                 // 计算相关性
@@ -364,13 +388,12 @@ public class SearchDocuments {
 
                 // 构建高亮信息
                 Map<String, Object> highlight = new HashMap<>();
-                highlight.put("title", highlightText(query, (String) doc.get("title")));
-                highlight.put("content", highlightText(query, content));
+                highlight.put("title", SnippetBuilder.ranges(query, (String) doc.get("title")));
+                highlight.put("excerpt", snippet.getRanges());
                 item.setHighlight(highlight);
 
                 item.setCreatedAt(doc.get("created_at") != null ? doc.get("created_at").toString() : null);
                 item.setUpdatedAt(doc.get("updated_at") != null ? doc.get("updated_at").toString() : null);
-                item.setThumbnail((String) doc.get("thumbnail_url"));
                 item.setUrl("/documents/" + doc.get("document_id"));
 
                 // 获取标签
@@ -381,7 +404,7 @@ public class SearchDocuments {
             }
 
             // 8. 构建facet数据
-            Map<String, Object> facets = buildDocumentFacets(query, userId, filters);
+            Map<String, Object> facets = buildDocumentFacets(match, userId, filters);
 
             // 9. 记录搜索历史
             if (userId != null) {
@@ -420,8 +443,7 @@ public class SearchDocuments {
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
             try {
-                String sql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-                List<Map<String, Object>> sessions = jdbcTemplate.queryForList(sql, token);
+                List<Map<String, Object>> sessions = sessionResolver.findSession(token);
                 if (!sessions.isEmpty()) {
                     return ((Number) sessions.get(0).get("user_id")).longValue();
                 }
@@ -437,21 +459,13 @@ public class SearchDocuments {
         if (title == null) title = "";
         if (content == null) content = "";
 
-        String lowerQuery = query.toLowerCase();
-        String lowerTitle = title.toLowerCase();
-        String lowerContent = content.toLowerCase();
-
         double score = 0.0;
 
         // 标题匹配权重更高
-        if (lowerTitle.contains(lowerQuery)) {
-            score += 0.7;
-        }
+        score += 0.7 * SearchTokenizer.coverage(query, title);
 
         // 内容匹配
-        if (lowerContent.contains(lowerQuery)) {
-            score += 0.3;
-        }
+        score += 0.3 * SearchTokenizer.coverage(query, content);
 
         // 精确匹配加分
         if (title.contains(query) || content.contains(query)) {
@@ -461,15 +475,6 @@ public class SearchDocuments {
         return Math.min(score, 1.0);
     }
 
-    // 高亮文本
-    private String highlightText(String query, String text) {
-        if (text == null || query == null || query.isEmpty()) {
-            return text;
-        }
-
-        return text.replaceAll("(?i)(" + query + ")", "<mark>$1</mark>");
-    }
-
     // 获取文档标签
     private List<String> getDocumentTags(Long documentId) {
         List<String> tags = new ArrayList<>();
@@ -487,18 +492,83 @@ public class SearchDocuments {
         return tags;
     }
 
+    // 文档搜索的匹配条件：标题、简介（全文索引建在这两列上）或任一页正文；段索引模式下为标题或候选文档
+    private SearchTextMatcher.Match matchQuery(String query, Map<Long, PageIndexService.DocumentHit> pageHits) {
+        if (pageHits != null) {
+            Map<Long, Double> scores = new LinkedHashMap<>();
+            for (PageIndexService.DocumentHit hit : pageHits.values()) {
+                scores.put(hit.getDocumentId(), hit.getScore());
+            }
+            return textMatcher.rankedIds(query, "d.title", "d.document_id", scores);
+        }
+        return textMatcher.match(SearchTextMatcher.ENDPOINT_DOCUMENTS, query, "d.title", "d.description")
+                .or(textMatcher.match(SearchTextMatcher.ENDPOINT_DOCUMENTS, query, "dp.content").within(PAGE_MATCH));
+    }
+
+    // 段索引检索正文，返回 文档编号 -> 命中；未选用段索引或索引尚未就绪时返回 null
+    private Map<Long, PageIndexService.DocumentHit> searchPages(String query, Long userId) {
+        if (!SearchTextMatcher.BACKEND_SEGMENT.equals(textMatcher.backendOf(SearchTextMatcher.ENDPOINT_DOCUMENTS))
+                || !pageIndex.isReady()) {
+            return null;
+        }
+        Map<Long, PageIndexService.DocumentHit> hits = new LinkedHashMap<>();
+        for (PageIndexService.DocumentHit hit : pageIndex.searchDocuments(userId, query)) {
+            hits.put(hit.getDocumentId(), hit);
+        }
+        return hits;
+    }
+
+    // 取本页各文档用来生成摘要的页：段索引命中的文档取最佳页，其余取第一个包含查询的页；都没有时不放入结果
+    private Map<Long, String> loadExcerptPages(String query, List<Map<String, Object>> documents,
+                                               Map<Long, PageIndexService.DocumentHit> pageHits) {
+        Map<Long, String> contents = new HashMap<>();
+        List<Object> bestParams = new ArrayList<>();
+        List<Object> otherIds = new ArrayList<>();
+        for (Map<String, Object> doc : documents) {
+            long documentId = ((Number) doc.get("document_id")).longValue();
+            PageIndexService.DocumentHit hit = pageHits == null ? null : pageHits.get(documentId);
+            if (hit != null && hit.getBestPage() > 0) {
+                bestParams.add(documentId);
+                bestParams.add(hit.getBestPage());
+            } else {
+                otherIds.add(documentId);
+            }
+        }
+        try {
+            if (!bestParams.isEmpty()) {
+                String sql = "SELECT document_id, content FROM document_pages WHERE (document_id, page_number) IN (" +
+                        String.join(",", Collections.nCopies(bestParams.size() / 2, "(?, ?)")) + ")";
+                for (Map<String, Object> row : jdbcTemplate.queryForList(sql, bestParams.toArray())) {
+                    contents.put(((Number) row.get("document_id")).longValue(), (String) row.get("content"));
+                }
+            }
+            if (!otherIds.isEmpty()) {
+                String sql = "SELECT dp.document_id, dp.content FROM document_pages dp " +
+                        "WHERE dp.document_id IN (" + String.join(",", Collections.nCopies(otherIds.size(), "?")) + ") " +
+                        "AND dp.page_number = (SELECT MIN(p.page_number) FROM document_pages p " +
+                        "WHERE p.document_id = dp.document_id AND p.content LIKE ?)";
+                List<Object> params = new ArrayList<>(otherIds);
+                params.add("%" + query + "%");
+                for (Map<String, Object> row : jdbcTemplate.queryForList(sql, params.toArray())) {
+                    contents.put(((Number) row.get("document_id")).longValue(), (String) row.get("content"));
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("读取命中页内容失败: " + e.getMessage());
+        }
+        return contents;
+    }
+
     // 构建文档facet数据
-    private Map<String, Object> buildDocumentFacets(String query, Long userId, Map<String, Object> filters) {
+    private Map<String, Object> buildDocumentFacets(SearchTextMatcher.Match match, Long userId, Map<String, Object> filters) {
         Map<String, Object> facets = new HashMap<>();
 
         try {
             // 语言facet
             String languageSql = "SELECT d.language, COUNT(*) as count FROM documents d " +
-                    "WHERE (d.title LIKE ? OR d.content LIKE ?) AND d.status = 'processed' ";
+                    "WHERE " + match.getCondition() + " AND " + DOCUMENT_VISIBLE + " ";
 
-            List<Object> params = new ArrayList<>();
-            params.add("%" + query + "%");
-            params.add("%" + query + "%");
+            List<Object> params = new ArrayList<>(match.getConditionParams());
 
             if (userId != null) {
                 languageSql += "AND d.user_id = ? ";
@@ -510,33 +580,13 @@ public class SearchDocuments {
             List<Map<String, Object>> languageFacet = jdbcTemplate.queryForList(languageSql, params.toArray());
             facets.put("languages", languageFacet);
 
-            // 难度facet
-            String difficultySql = "SELECT d.difficulty, COUNT(*) as count FROM documents d " +
-                    "WHERE (d.title LIKE ? OR d.content LIKE ?) AND d.status = 'processed' ";
-
-            List<Object> difficultyParams = new ArrayList<>();
-            difficultyParams.add("%" + query + "%");
-            difficultyParams.add("%" + query + "%");
-
-            if (userId != null) {
-                difficultySql += "AND d.user_id = ? ";
-                difficultyParams.add(userId);
-            }
-
-            difficultySql += "GROUP BY d.difficulty ORDER BY count DESC";
-
-            List<Map<String, Object>> difficultyFacet = jdbcTemplate.queryForList(difficultySql, difficultyParams.toArray());
-            facets.put("difficulties", difficultyFacet);
-
             // 标签facet
             String tagSql = "SELECT t.tag_name, COUNT(*) as count FROM document_tags t " +
                     "INNER JOIN document_tag_relations r ON t.tag_id = r.tag_id " +
                     "INNER JOIN documents d ON r.document_id = d.document_id " +
-                    "WHERE (d.title LIKE ? OR d.content LIKE ?) AND d.status = 'processed' ";
+                    "WHERE " + match.getCondition() + " AND " + DOCUMENT_VISIBLE + " ";
 
-            List<Object> tagParams = new ArrayList<>();
-            tagParams.add("%" + query + "%");
-            tagParams.add("%" + query + "%");
+            List<Object> tagParams = new ArrayList<>(match.getConditionParams());
 
             if (userId != null) {
                 tagSql += "AND d.user_id = ? ";
@@ -557,13 +607,8 @@ public class SearchDocuments {
 
     // 保存搜索历史
     private void saveSearchHistory(Long userId, String keyword, String searchType, int resultCount) {
-        try {
-            String sql = "INSERT INTO search_history (user_id, keyword, search_type, result_count, timestamp) " +
-                    "VALUES (?, ?, ?, ?, NOW())";
-            jdbcTemplate.update(sql, userId, keyword, searchType, resultCount);
-            System.out.println("已保存文档搜索历史: 用户=" + userId + ", 关键词=" + keyword);
-        } catch (Exception e) {
-            System.err.println("保存搜索历史失败: " + e.getMessage());
-        }
+        // 由后台批量写入，搜索请求不等待数据库
+        historyWriter.record(userId, keyword, searchType, resultCount);
+        autocompleteService.recordSearch(userId, keyword, searchType);
     }
 }
@@ -6,6 +6,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.TrendingKeywordService;
 
 @RestController
 @RequestMapping("/api/v1/search")
@@ -14,6 +16,12 @@ public class SearchGetPopular {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private TrendingKeywordService trendingService;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到获取热门搜索请求 ===");
@@ -120,6 +128,7 @@ public class SearchGetPopular {
             @RequestParam(required = false, defaultValue = "10") Integer limit,
             @RequestParam(required = false, defaultValue = "week") String timeRange,
             @RequestParam(required = false) String type,
+            @RequestParam(required = false, defaultValue = "all") String scope,
             @RequestHeader(value = "Authorization", required = false) String authHeader) {
 
         // 打印接收到的请求
@@ -127,11 +136,36 @@ public class SearchGetPopular {
         requestParams.put("limit", limit);
         requestParams.put("timeRange", timeRange);
         requestParams.put("type", type);
+        requestParams.put("scope", scope);
         printRequest(requestParams);
 
         try {
-            // 1. 获取当前用户ID（可选，用于个性化推荐）
-            Long userId = getUserIdFromToken(authHeader);
+            // 1. 获取当前用户ID（可选，scope=mine 时只统计该用户的搜索）
+            Long userId = "mine".equals(scope) ? getUserIdFromToken(authHeader) : null;
+            String typeFilter = type != null && !type.isEmpty() && !"all".equals(type) ? type : null;
+
+            // 全站最近一小时、一天、一周的热门搜索直接读内存统计
+            if (userId == null && TrendingKeywordService.supportsWindow(timeRange)) {
+                List<PopularItem> items = new ArrayList<>();
+                int totalCount = 0;
+                for (TrendingKeywordService.Trend trend : trendingService.top(timeRange, typeFilter, limit)) {
+                    items.add(new PopularItem(
+                            (long) (items.size() + 1), // 使用排名作为ID
+                            trend.getKeyword(),
+                            trend.getType(),
+                            (int) trend.getCount(),
+                            trend.getTrend(),
+                            new java.sql.Timestamp(trend.getLastSeen()).toString()
+                    ));
+                    totalCount += (int) trend.getCount();
+                }
+                printQueryResult("内存统计中找到 " + items.size() + " 个热门搜索");
+
+                GetPopularData data = new GetPopularData(items, timeRange, totalCount);
+                GetPopularResponse response = new GetPopularResponse(true, "获取热门搜索成功", data);
+                printResponse(response);
+                return ResponseEntity.ok(response);
+            }
 
             // 2. 根据时间范围构建日期条件
             String dateCondition = getDateCondition(timeRange);
@@ -152,9 +186,9 @@ public class SearchGetPopular {
             }
 
             // 添加类型过滤
-            if (type != null && !type.isEmpty() && !"all".equals(type)) {
+            if (typeFilter != null) {
                 sqlBuilder.append("AND search_type = ? ");
-                params.add(type);
+                params.add(typeFilter);
             }
 
             // 添加用户过滤（如果提供用户ID，可以只统计该用户的搜索）
@@ -220,8 +254,7 @@ public class SearchGetPopular {
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
             try {
-                String sql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-                List<Map<String, Object>> sessions = jdbcTemplate.queryForList(sql, token);
+                List<Map<String, Object>> sessions = sessionResolver.findSession(token);
                 if (!sessions.isEmpty()) {
                     return ((Number) sessions.get(0).get("user_id")).longValue();
                 }
@@ -237,6 +270,9 @@ public class SearchGetPopular {
         Calendar calendar = Calendar.getInstance();
 
         switch (timeRange) {
+            case "hour":
+                calendar.add(Calendar.HOUR_OF_DAY, -1);
+                break;
             case "day":
                 calendar.add(Calendar.DAY_OF_MONTH, -1);
                 break;
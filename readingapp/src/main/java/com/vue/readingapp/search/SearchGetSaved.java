@@ -6,6 +6,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
 
 @RestController
 @RequestMapping("/api/v1/search")
@@ -14,6 +15,9 @@ public class SearchGetSaved {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到获取保存搜索请求 ===");
@@ -98,6 +102,8 @@ public class SearchGetSaved {
         private String updatedAt;
         private String note;
         private List<String> tags;
+        private int newMatchCount;
+        private boolean notify;
 
         public SavedItem(Long id, Long searchId, String keyword, String searchType,
                          Map<String, Object> savedData, String createdAt, String updatedAt,
@@ -139,6 +145,15 @@ public class SearchGetSaved {
 
         public List<String> getTags() { return tags; }
         public void setTags(List<String> tags) { this.tags = tags; }
+
+        /**
+         * 上次查看之后新匹配的内容数
+         */
+        public int getNewMatchCount() { return newMatchCount; }
+        public void setNewMatchCount(int newMatchCount) { this.newMatchCount = newMatchCount; }
+
+        public boolean isNotify() { return notify; }
+        public void setNotify(boolean notify) { this.notify = notify; }
     }
 
     @GetMapping("/saved")
@@ -175,6 +190,7 @@ public class SearchGetSaved {
             // 2. 构建SQL查询
             StringBuilder sqlBuilder = new StringBuilder();
             sqlBuilder.append("SELECT s.saved_id, s.search_id, s.saved_data, s.created_at, s.updated_at, s.note, ");
+            sqlBuilder.append("s.new_match_count, s.notify, ");
             sqlBuilder.append("h.keyword, h.search_type ");
             sqlBuilder.append("FROM saved_search_results s ");
             sqlBuilder.append("INNER JOIN search_history h ON s.search_id = h.search_id ");
@@ -257,6 +273,8 @@ public class SearchGetSaved {
                         (String) saved.get("note"),
                         tags
                 );
+                item.setNewMatchCount(saved.get("new_match_count") != null ? ((Number) saved.get("new_match_count")).intValue() : 0);
+                item.setNotify(Boolean.TRUE.equals(saved.get("notify")) || Integer.valueOf(1).equals(saved.get("notify")));
                 items.add(item);
             }
 
@@ -286,8 +304,7 @@ public class SearchGetSaved {
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
             try {
-                String sql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-                List<Map<String, Object>> sessions = jdbcTemplate.queryForList(sql, token);
+                List<Map<String, Object>> sessions = sessionResolver.findSession(token);
                 if (!sessions.isEmpty()) {
                     return ((Number) sessions.get(0).get("user_id")).longValue();
                 }
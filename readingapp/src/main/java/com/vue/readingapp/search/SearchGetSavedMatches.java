@@ -0,0 +1,281 @@
+package com.vue.readingapp.search;
+
+import org.springframework.web.bind.annotation.*;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import java.util.*;
+import java.util.stream.Collectors;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.SearchIndexService;
+import com.vue.readingapp.search.service.SnippetBuilder;
+
+@RestController
+@RequestMapping("/api/v1/search")
+public class SearchGetSavedMatches {
+
+    // 一次最多返回的新结果数，其余留到下次查看
+    private static final int MAX_MATCHES = 200;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    // 打印接收到的请求
+    private void printRequest(Object request) {
+        System.out.println("=== 收到获取保存搜索新结果请求 ===");
+        System.out.println("请求数据: " + request);
+        System.out.println("=========================");
+    }
+
+    // 打印查询结果
+    private void printQueryResult(Object result) {
+        System.out.println("=== 数据库查询结果 ===");
+        System.out.println("查询结果: " + result);
+        System.out.println("===================");
+    }
+
+    // 打印返回数据
+    private void printResponse(Object response) {
+        System.out.println("=== 准备返回的响应 ===");
+        System.out.println("响应数据: " + response);
+        System.out.println("===================");
+    }
+
+    // 响应DTO
+    public static class SavedMatchesResponse {
+        private boolean success;
+        private String message;
+        private SavedMatchesData data;
+
+        public SavedMatchesResponse(boolean success, String message, SavedMatchesData data) {
+            this.success = success;
+            this.message = message;
+            this.data = data;
+        }
+
+        public boolean isSuccess() { return success; }
+        public void setSuccess(boolean success) { this.success = success; }
+
+        public String getMessage() { return message; }
+        public void setMessage(String message) { this.message = message; }
+
+        public SavedMatchesData getData() { return data; }
+        public void setData(SavedMatchesData data) { this.data = data; }
+    }
+
+    public static class SavedMatchesData {
+        private Long savedId;
+        private String keyword;
+        private String lastCheckedAt;
+        private boolean hasMore;
+        private List<MatchItem> items;
+
+        public SavedMatchesData(Long savedId, String keyword, String lastCheckedAt, boolean hasMore, List<MatchItem> items) {
+            this.savedId = savedId;
+            this.keyword = keyword;
+            this.lastCheckedAt = lastCheckedAt;
+            this.hasMore = hasMore;
+            this.items = items;
+        }
+
+        public Long getSavedId() { return savedId; }
+        public void setSavedId(Long savedId) { this.savedId = savedId; }
+
+        public String getKeyword() { return keyword; }
+        public void setKeyword(String keyword) { this.keyword = keyword; }
+
+        public String getLastCheckedAt() { return lastCheckedAt; }
+        public void setLastCheckedAt(String lastCheckedAt) { this.lastCheckedAt = lastCheckedAt; }
+
+        public boolean isHasMore() { return hasMore; }
+        public void setHasMore(boolean hasMore) { this.hasMore = hasMore; }
+
+        public List<MatchItem> getItems() { return items; }
+        public void setItems(List<MatchItem> items) { this.items = items; }
+    }
+
+    public static class MatchItem {
+        private String type;
+        private Long id;
+        private String title;
+        private String excerpt;
+        private List<int[]> highlights;
+        private String matchedAt;
+        private String url;
+
+        public String getType() { return type; }
+        public void setType(String type) { this.type = type; }
+
+        public Long getId() { return id; }
+        public void setId(Long id) { this.id = id; }
+
+        public String getTitle() { return title; }
+        public void setTitle(String title) { this.title = title; }
+
+        public String getExcerpt() { return excerpt; }
+        public void setExcerpt(String excerpt) { this.excerpt = excerpt; }
+
+        public List<int[]> getHighlights() { return highlights; }
+        public void setHighlights(List<int[]> highlights) { this.highlights = highlights; }
+
+        public String getMatchedAt() { return matchedAt; }
+        public void setMatchedAt(String matchedAt) { this.matchedAt = matchedAt; }
+
+        public String getUrl() { return url; }
+        public void setUrl(String url) { this.url = url; }
+    }
+
+    /**
+     * 上次查看之后与保存的搜索匹配的新内容；markSeen 为 true 时同时把这些结果标记为已查看
+     */
+    @GetMapping("/saved/{savedId}/matches")
+    public ResponseEntity<SavedMatchesResponse> getSavedMatches(
+            @PathVariable("savedId") Long savedId,
+            @RequestParam(required = false, defaultValue = "true") Boolean markSeen,
+            @RequestHeader(value = "Authorization", required = false) String authHeader) {
+
+        // 打印接收到的请求
+        printRequest("保存搜索ID: " + savedId + ", markSeen=" + markSeen);
+
+        try {
+            // 1. 获取当前用户ID
+            Long userId = getUserIdFromToken(authHeader);
+            if (userId == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
+                        new SavedMatchesResponse(false, "请先登录", null)
+                );
+            }
+
+            // 2. 检查记录是否存在且属于当前用户
+            String checkSql = "SELECT s.saved_id, s.last_checked_at, s.last_seen_match_id, h.keyword FROM saved_search_results s " +
+                    "INNER JOIN search_history h ON s.search_id = h.search_id " +
+                    "WHERE s.saved_id = ? AND s.user_id = ?";
+            List<Map<String, Object>> records = jdbcTemplate.queryForList(checkSql, savedId, userId);
+            if (records.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+                        new SavedMatchesResponse(false, "保存的搜索记录不存在或无权访问", null)
+                );
+            }
+            Map<String, Object> record = records.get(0);
+            String keyword = (String) record.get("keyword");
+            Object lastCheckedAt = record.get("last_checked_at");
+            long lastSeenMatchId = ((Number) record.get("last_seen_match_id")).longValue();
+
+            // 3. 只读上次查看之后的命中（saved_id, match_id 上有索引），代价与新结果条数成正比
+            // 按自增的 match_id 推进而不是只精确到秒的 matched_at，同一秒内的命中不会被跳过
+            String matchSql = "SELECT match_id, item_type, item_id, matched_at FROM saved_search_matches " +
+                    "WHERE saved_id = ? AND match_id > ? ORDER BY match_id LIMIT ?";
+            List<Map<String, Object>> matches = jdbcTemplate.queryForList(matchSql, savedId, lastSeenMatchId, MAX_MATCHES + 1);
+            boolean hasMore = matches.size() > MAX_MATCHES;
+            if (hasMore) {
+                matches = matches.subList(0, MAX_MATCHES);
+            }
+            printQueryResult("找到 " + matches.size() + " 条新结果");
+
+            // 4. 按类型批量取标题和摘要，已删除的内容不再返回
+            List<MatchItem> items = loadItems(matches, keyword);
+
+            // 5. 标记为已查看：检查点推进到本次读到的最后一条，之后到达的新结果留在计数里
+            if (Boolean.TRUE.equals(markSeen) && !matches.isEmpty()) {
+                Map<String, Object> last = matches.get(matches.size() - 1);
+                Object checkpoint = last.get("matched_at");
+                jdbcTemplate.update("UPDATE saved_search_results SET last_checked_at = ?, last_seen_match_id = ?, " +
+                                "new_match_count = GREATEST(new_match_count - ?, 0) WHERE saved_id = ?",
+                        checkpoint, ((Number) last.get("match_id")).longValue(), matches.size(), savedId);
+                lastCheckedAt = checkpoint;
+            }
+
+            SavedMatchesData data = new SavedMatchesData(savedId, keyword,
+                    lastCheckedAt != null ? lastCheckedAt.toString() : null, hasMore, items);
+            SavedMatchesResponse response = new SavedMatchesResponse(true, "获取新结果成功", data);
+
+            // 打印返回数据
+            printResponse(response);
+
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            System.err.println("获取保存搜索新结果过程中发生错误: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+                    new SavedMatchesResponse(false, "服务器内部错误: " + e.getMessage(), null)
+            );
+        }
+    }
+
+    // 每种内容一次 IN 查询
+    private List<MatchItem> loadItems(List<Map<String, Object>> matches, String keyword) {
+        Map<String, List<Long>> idsByType = new LinkedHashMap<>();
+        for (Map<String, Object> match : matches) {
+            idsByType.computeIfAbsent((String) match.get("item_type"), k -> new ArrayList<>())
+                    .add(((Number) match.get("item_id")).longValue());
+        }
+
+        Map<String, Map<String, Object>> rows = new HashMap<>();
+        for (Map.Entry<String, List<Long>> entry : idsByType.entrySet()) {
+            String placeholders = entry.getValue().stream().map(id -> "?").collect(Collectors.joining(","));
+            String sql;
+            switch (entry.getKey()) {
+                case SearchIndexService.TYPE_DOCUMENT:
+                    sql = "SELECT document_id AS id, title, description AS text FROM documents " +
+                            "WHERE deleted_at IS NULL AND document_id IN (" + placeholders + ")";
+                    break;
+                case SearchIndexService.TYPE_NOTE:
+                    sql = "SELECT note_id AS id, NULL AS title, content AS text FROM document_notes " +
+                            "WHERE note_id IN (" + placeholders + ")";
+                    break;
+                case SearchIndexService.TYPE_HIGHLIGHT:
+                    sql = "SELECT highlight_id AS id, NULL AS title, text FROM document_highlights " +
+                            "WHERE highlight_id IN (" + placeholders + ")";
+                    break;
+                default:
+                    continue;
+            }
+            for (Map<String, Object> row : jdbcTemplate.queryForList(sql, entry.getValue().toArray())) {
+                rows.put(entry.getKey() + "_" + ((Number) row.get("id")).longValue(), row);
+            }
+        }
+
+        List<MatchItem> items = new ArrayList<>();
+        for (Map<String, Object> match : matches) {
+            String type = (String) match.get("item_type");
+            Long id = ((Number) match.get("item_id")).longValue();
+            Map<String, Object> row = rows.get(type + "_" + id);
+            if (row == null) {
+                continue;
+            }
+            SnippetBuilder.Snippet snippet = SnippetBuilder.snippet(keyword, (String) row.get("text"), 150);
+            MatchItem item = new MatchItem();
+            item.setType(type);
+            item.setId(id);
+            item.setTitle((String) row.get("title"));
+            item.setExcerpt(snippet.getText());
+            item.setHighlights(snippet.getRanges());
+            item.setMatchedAt(match.get("matched_at") != null ? match.get("matched_at").toString() : null);
+            item.setUrl(SearchIndexService.TYPE_DOCUMENT.equals(type) ? "/documents/" + id
+                    : SearchIndexService.TYPE_NOTE.equals(type) ? "/notes/" + id : "/highlights/" + id);
+            items.add(item);
+        }
+        return items;
+    }
+
+    // 从token获取用户ID
+    private Long getUserIdFromToken(String authHeader) {
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            String token = authHeader.substring(7);
+            try {
+                List<Map<String, Object>> sessions = sessionResolver.findSession(token);
+                if (!sessions.isEmpty()) {
+                    return ((Number) sessions.get(0).get("user_id")).longValue();
+                }
+            } catch (Exception e) {
+                System.out.println("Token解析失败: " + e.getMessage());
+            }
+        }
+        return null;
+    }
+}
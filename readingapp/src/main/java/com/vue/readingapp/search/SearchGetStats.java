@@ -6,6 +6,11 @@ import org.springframework.http.HttpStatus;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
 
 @RestController
 @RequestMapping("/api/v1/search")
@@ -14,6 +19,9 @@ public class SearchGetStats {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到获取搜索统计请求 ===");
@@ -164,20 +172,23 @@ public class SearchGetStats {
                 );
             }
 
-            // 2. 获取各种统计数据
-            int totalSearches = getTotalSearches(userId);
-            int todaySearches = getTodaySearches(userId);
-            int thisWeekSearches = getThisWeekSearches(userId);
-            int thisMonthSearches = getThisMonthSearches(userId);
+            // 2. 获取各种统计数据：次数、分布和结果数都读汇总表，只有热门关键词查原始历史
+            LocalDateTime rangeStart = getRangeStart(timeRange);
+            int[] periodCounts = getPeriodCounts(userId);
+            int totalSearches = periodCounts[0];
+            int todaySearches = periodCounts[1];
+            int thisWeekSearches = periodCounts[2];
+            int thisMonthSearches = periodCounts[3];
 
-            Map<String, Integer> searchesByType = getSearchesByType(userId, timeRange);
-            List<PopularKeyword> topKeywords = getTopKeywords(userId, timeRange, 10);
-            Map<String, Integer> searchesByHour = getSearchesByHour(userId, timeRange);
-            Map<String, Integer> searchesByDay = getSearchesByDay(userId, timeRange);
+            Map<String, Integer> searchesByType = new HashMap<>();
+            double[] resultSummary = getRangeSummary(userId, timeRange, rangeStart, searchesByType);
+            List<PopularKeyword> topKeywords = getTopKeywords(userId, rangeStart, 10);
+            Map<String, Integer> searchesByHour = getSearchesByHour(userId, rangeStart);
+            Map<String, Integer> searchesByDay = getSearchesByDay(userId, rangeStart);
 
-            double avgResultsPerSearch = getAvgResultsPerSearch(userId, timeRange);
-            int mostResultsSearch = getMostResultsSearch(userId, timeRange);
-            int leastResultsSearch = getLeastResultsSearch(userId, timeRange);
+            double avgResultsPerSearch = resultSummary[0];
+            int mostResultsSearch = (int) resultSummary[1];
+            int leastResultsSearch = (int) resultSummary[2];
 
             // 3. 准备响应数据
             SearchStatsData data = new SearchStatsData(
@@ -213,103 +224,85 @@ public class SearchGetStats {
         }
     }
 
-    // 获取总搜索次数
-    private int getTotalSearches(Long userId) {
-        try {
-            String sql = "SELECT COUNT(*) FROM search_history WHERE user_id = ?";
-            return jdbcTemplate.queryForObject(sql, Integer.class, userId);
-        } catch (Exception e) {
-            System.err.println("获取总搜索次数失败: " + e.getMessage());
-            return 0;
-        }
-    }
-
-    // 获取今日搜索次数
-    private int getTodaySearches(Long userId) {
+    // 总次数、今日、本周、本月：一次读出用户的天汇总
+    private int[] getPeriodCounts(Long userId) {
+        int[] counts = new int[4];
         try {
-            String sql = "SELECT COUNT(*) FROM search_history WHERE user_id = ? AND DATE(timestamp) = CURDATE()";
-            return jdbcTemplate.queryForObject(sql, Integer.class, userId);
+            LocalDate today = LocalDate.now();
+            LocalDate weekStart = today.with(DayOfWeek.MONDAY);
+            LocalDate monthStart = today.withDayOfMonth(1);
+            String sql = "SELECT COALESCE(SUM(search_count), 0) AS total, " +
+                    "COALESCE(SUM(CASE WHEN bucket_date = ? THEN search_count ELSE 0 END), 0) AS today, " +
+                    "COALESCE(SUM(CASE WHEN bucket_date >= ? THEN search_count ELSE 0 END), 0) AS this_week, " +
+                    "COALESCE(SUM(CASE WHEN bucket_date >= ? THEN search_count ELSE 0 END), 0) AS this_month " +
+                    "FROM search_stats_daily WHERE user_id = ?";
+            Map<String, Object> row = jdbcTemplate.queryForMap(sql, java.sql.Date.valueOf(today),
+                    java.sql.Date.valueOf(weekStart), java.sql.Date.valueOf(monthStart), userId);
+            counts[0] = ((Number) row.get("total")).intValue();
+            counts[1] = ((Number) row.get("today")).intValue();
+            counts[2] = ((Number) row.get("this_week")).intValue();
+            counts[3] = ((Number) row.get("this_month")).intValue();
         } catch (Exception e) {
-            System.err.println("获取今日搜索次数失败: " + e.getMessage());
-            return 0;
+            System.err.println("获取搜索次数失败: " + e.getMessage());
         }
+        return counts;
     }
 
-    // 获取本周搜索次数
-    private int getThisWeekSearches(Long userId) {
+    // 时间范围内按类型的次数，以及平均、最多、最少结果数
+    // 一天、一周读小时汇总，更长的范围读天汇总（从范围起点所在的那天算起）
+    private double[] getRangeSummary(Long userId, String timeRange, LocalDateTime rangeStart,
+                                     Map<String, Integer> searchesByType) {
+        double[] summary = new double[3];
         try {
-            String sql = "SELECT COUNT(*) FROM search_history WHERE user_id = ? AND YEARWEEK(timestamp, 1) = YEARWEEK(CURDATE(), 1)";
-            return jdbcTemplate.queryForObject(sql, Integer.class, userId);
-        } catch (Exception e) {
-            System.err.println("获取本周搜索次数失败: " + e.getMessage());
-            return 0;
-        }
-    }
-
-    // 获取本月搜索次数
-    private int getThisMonthSearches(Long userId) {
-        try {
-            String sql = "SELECT COUNT(*) FROM search_history WHERE user_id = ? AND YEAR(timestamp) = YEAR(CURDATE()) AND MONTH(timestamp) = MONTH(CURDATE())";
-            return jdbcTemplate.queryForObject(sql, Integer.class, userId);
-        } catch (Exception e) {
-            System.err.println("获取本月搜索次数失败: " + e.getMessage());
-            return 0;
-        }
-    }
-
-    // 按类型获取搜索次数
-    private Map<String, Integer> getSearchesByType(Long userId, String timeRange) {
-        Map<String, Integer> result = new HashMap<>();
-
-        try {
-            String dateCondition = getDateCondition(timeRange);
-            String sql = "SELECT search_type, COUNT(*) as count FROM search_history WHERE user_id = ? ";
-
-            List<Object> params = new ArrayList<>();
-            params.add(userId);
-
-            if (dateCondition != null) {
-                sql += "AND timestamp >= ? ";
-                params.add(dateCondition);
-            }
-
-            sql += "GROUP BY search_type ORDER BY count DESC";
-
-            List<Map<String, Object>> records = jdbcTemplate.queryForList(sql, params.toArray());
-
+            boolean hourly = "day".equals(timeRange) || "week".equals(timeRange);
+            String sql = hourly
+                    ? "SELECT search_type, SUM(search_count) AS count, SUM(result_sum) AS result_sum, " +
+                      "MAX(result_max) AS result_max, MIN(result_min) AS result_min " +
+                      "FROM search_stats_hourly WHERE user_id = ? AND bucket_hour >= ? GROUP BY search_type"
+                    : "SELECT search_type, SUM(search_count) AS count, SUM(result_sum) AS result_sum, " +
+                      "MAX(result_max) AS result_max, MIN(result_min) AS result_min " +
+                      "FROM search_stats_daily WHERE user_id = ? AND bucket_date >= ? GROUP BY search_type";
+            Object start = hourly
+                    ? java.sql.Timestamp.valueOf(rangeStart.truncatedTo(ChronoUnit.HOURS))
+                    : java.sql.Date.valueOf(rangeStart.toLocalDate());
+
+            List<Map<String, Object>> records = jdbcTemplate.queryForList(sql, userId, start);
+
+            long count = 0;
+            long resultSum = 0;
+            Integer max = null;
+            Integer min = null;
             for (Map<String, Object> record : records) {
-                String type = (String) record.get("search_type");
-                int count = ((Number) record.get("count")).intValue();
-                result.put(type, count);
+                int typeCount = ((Number) record.get("count")).intValue();
+                searchesByType.put((String) record.get("search_type"), typeCount);
+                count += typeCount;
+                resultSum += ((Number) record.get("result_sum")).longValue();
+                int typeMax = ((Number) record.get("result_max")).intValue();
+                int typeMin = ((Number) record.get("result_min")).intValue();
+                max = max == null ? typeMax : Math.max(max, typeMax);
+                min = min == null ? typeMin : Math.min(min, typeMin);
             }
 
+            summary[0] = count > 0 ? Math.round((double) resultSum / count * 100.0) / 100.0 : 0.0;
+            summary[1] = max != null ? max : 0;
+            summary[2] = min != null ? min : 0;
         } catch (Exception e) {
-            System.err.println("按类型获取搜索次数失败: " + e.getMessage());
+            System.err.println("获取时间范围内搜索统计失败: " + e.getMessage());
         }
-
-        return result;
+        return summary;
     }
 
-    // 获取热门关键词
-    private List<PopularKeyword> getTopKeywords(Long userId, String timeRange, int limit) {
+    // 获取热门关键词（汇总表不区分关键词，这里仍查原始历史，条件只用 user_id 和 timestamp 范围）
+    private List<PopularKeyword> getTopKeywords(Long userId, LocalDateTime rangeStart, int limit) {
         List<PopularKeyword> result = new ArrayList<>();
 
         try {
-            String dateCondition = getDateCondition(timeRange);
-            String sql = "SELECT keyword, search_type, COUNT(*) as count FROM search_history WHERE user_id = ? ";
+            String sql = "SELECT keyword, search_type, COUNT(*) as count FROM search_history " +
+                    "WHERE user_id = ? AND timestamp >= ? " +
+                    "GROUP BY keyword, search_type ORDER BY count DESC LIMIT ?";
 
-            List<Object> params = new ArrayList<>();
-            params.add(userId);
-
-            if (dateCondition != null) {
-                sql += "AND timestamp >= ? ";
-                params.add(dateCondition);
-            }
-
-            sql += "GROUP BY keyword, search_type ORDER BY count DESC LIMIT ?";
-            params.add(limit);
-
-            List<Map<String, Object>> records = jdbcTemplate.queryForList(sql, params.toArray());
+            List<Map<String, Object>> records = jdbcTemplate.queryForList(sql, userId,
+                    java.sql.Timestamp.valueOf(rangeStart), limit);
 
             for (Map<String, Object> record : records) {
                 String keyword = (String) record.get("keyword");
@@ -317,7 +310,7 @@ public class SearchGetStats {
                 int count = ((Number) record.get("count")).intValue();
 
                 // 计算趋势（简化处理）
-                double trend = calculateTrend(keyword, type, userId, timeRange);
+                double trend = calculateTrend(keyword, type, userId);
 
                 result.add(new PopularKeyword(keyword, type, count, trend));
             }
@@ -329,30 +322,21 @@ public class SearchGetStats {
         return result;
     }
 
-    // 按小时获取搜索次数
-    private Map<String, Integer> getSearchesByHour(Long userId, String timeRange) {
+    // 按小时获取搜索次数（一天中的各个小时）
+    private Map<String, Integer> getSearchesByHour(Long userId, LocalDateTime rangeStart) {
         Map<String, Integer> result = new LinkedHashMap<>();
 
-        try {
-            String dateCondition = getDateCondition(timeRange);
-            String sql = "SELECT HOUR(timestamp) as hour, COUNT(*) as count FROM search_history WHERE user_id = ? ";
-
-            List<Object> params = new ArrayList<>();
-            params.add(userId);
-
-            if (dateCondition != null) {
-                sql += "AND timestamp >= ? ";
-                params.add(dateCondition);
-            }
-
-            sql += "GROUP BY HOUR(timestamp) ORDER BY hour";
+        // 初始化24小时
+        for (int i = 0; i < 24; i++) {
+            result.put(String.format("%02d:00", i), 0);
+        }
 
-            List<Map<String, Object>> records = jdbcTemplate.queryForList(sql, params.toArray());
+        try {
+            String sql = "SELECT HOUR(bucket_hour) as hour, SUM(search_count) as count FROM search_stats_hourly " +
+                    "WHERE user_id = ? AND bucket_hour >= ? GROUP BY HOUR(bucket_hour)";
 
-            // 初始化24小时
-            for (int i = 0; i < 24; i++) {
-                result.put(String.format("%02d:00", i), 0);
-            }
+            List<Map<String, Object>> records = jdbcTemplate.queryForList(sql, userId,
+                    java.sql.Timestamp.valueOf(rangeStart.truncatedTo(ChronoUnit.HOURS)));
 
             // 填充数据
             for (Map<String, Object> record : records) {
@@ -369,24 +353,16 @@ public class SearchGetStats {
     }
 
     // 按天获取搜索次数
-    private Map<String, Integer> getSearchesByDay(Long userId, String timeRange) {
+    private Map<String, Integer> getSearchesByDay(Long userId, LocalDateTime rangeStart) {
         Map<String, Integer> result = new LinkedHashMap<>();
 
         try {
-            String dateCondition = getDateCondition(timeRange);
-            String sql = "SELECT DATE(timestamp) as day, COUNT(*) as count FROM search_history WHERE user_id = ? ";
-
-            List<Object> params = new ArrayList<>();
-            params.add(userId);
-
-            if (dateCondition != null) {
-                sql += "AND timestamp >= ? ";
-                params.add(dateCondition);
-            }
+            String sql = "SELECT bucket_date as day, SUM(search_count) as count FROM search_stats_daily " +
+                    "WHERE user_id = ? AND bucket_date >= ? " +
+                    "GROUP BY bucket_date ORDER BY day DESC LIMIT 30";
 
-            sql += "GROUP BY DATE(timestamp) ORDER BY day DESC LIMIT 30";
-
-            List<Map<String, Object>> records = jdbcTemplate.queryForList(sql, params.toArray());
+            List<Map<String, Object>> records = jdbcTemplate.queryForList(sql, userId,
+                    java.sql.Date.valueOf(rangeStart.toLocalDate()));
 
             // 按日期倒序排列
             for (Map<String, Object> record : records) {
@@ -402,77 +378,8 @@ public class SearchGetStats {
         return result;
     }
 
-    // 获取平均每次搜索结果数
-    private double getAvgResultsPerSearch(Long userId, String timeRange) {
-        try {
-            String dateCondition = getDateCondition(timeRange);
-            String sql = "SELECT AVG(result_count) as avg_results FROM search_history WHERE user_id = ? ";
-
-            List<Object> params = new ArrayList<>();
-            params.add(userId);
-
-            if (dateCondition != null) {
-                sql += "AND timestamp >= ? ";
-                params.add(dateCondition);
-            }
-
-            Double avg = jdbcTemplate.queryForObject(sql, Double.class, params.toArray());
-            return avg != null ? Math.round(avg * 100.0) / 100.0 : 0.0;
-
-        } catch (Exception e) {
-            System.err.println("获取平均搜索结果数失败: " + e.getMessage());
-            return 0.0;
-        }
-    }
-
-    // 获取最多搜索结果
-    private int getMostResultsSearch(Long userId, String timeRange) {
-        try {
-            String dateCondition = getDateCondition(timeRange);
-            String sql = "SELECT MAX(result_count) as max_results FROM search_history WHERE user_id = ? ";
-
-            List<Object> params = new ArrayList<>();
-            params.add(userId);
-
-            if (dateCondition != null) {
-                sql += "AND timestamp >= ? ";
-                params.add(dateCondition);
-            }
-
-            Integer max = jdbcTemplate.queryForObject(sql, Integer.class, params.toArray());
-            return max != null ? max : 0;
-
-        } catch (Exception e) {
-            System.err.println("获取最多搜索结果失败: " + e.getMessage());
-            return 0;
-        }
-    }
-
-    // 获取最少搜索结果
-    private int getLeastResultsSearch(Long userId, String timeRange) {
-        try {
-            String dateCondition = getDateCondition(timeRange);
-            String sql = "SELECT MIN(result_count) as min_results FROM search_history WHERE user_id = ? ";
-
-            List<Object> params = new ArrayList<>();
-            params.add(userId);
-
-            if (dateCondition != null) {
-                sql += "AND timestamp >= ? ";
-                params.add(dateCondition);
-            }
-
-            Integer min = jdbcTemplate.queryForObject(sql, Integer.class, params.toArray());
-            return min != null ? min : 0;
-
-        } catch (Exception e) {
-            System.err.println("获取最少搜索结果失败: " + e.getMessage());
-            return 0;
-        }
-    }
-
     // 计算趋势（简化处理）
-    private double calculateTrend(String keyword, String type, Long userId, String timeRange) {
+    private double calculateTrend(String keyword, String type, Long userId) {
         // 这里应该比较当前时间段和上一个时间段的搜索次数
         // 为了简化，我们随机生成一个趋势值
         Random random = new Random(keyword.hashCode() + type.hashCode() + userId.hashCode());
@@ -484,35 +391,25 @@ public class SearchGetStats {
         return Math.round(trend * 100.0) / 100.0;
     }
 
-    // 获取日期条件
-    private String getDateCondition(String timeRange) {
-        Calendar calendar = Calendar.getInstance();
+    // 时间范围的起点
+    private LocalDateTime getRangeStart(String timeRange) {
+        LocalDateTime now = LocalDateTime.now();
 
         switch (timeRange) {
             case "day":
-                calendar.add(Calendar.DAY_OF_MONTH, -1);
-                break;
+                return now.minusDays(1);
             case "week":
-                calendar.add(Calendar.DAY_OF_MONTH, -7);
-                break;
+                return now.minusDays(7);
             case "month":
-                calendar.add(Calendar.MONTH, -1);
-                break;
+                return now.minusMonths(1);
             case "quarter":
-                calendar.add(Calendar.MONTH, -3);
-                break;
+                return now.minusMonths(3);
             case "year":
-                calendar.add(Calendar.YEAR, -1);
-                break;
+                return now.minusYears(1);
             default:
                 // 默认最近一周
-                calendar.add(Calendar.DAY_OF_MONTH, -7);
-                break;
+                return now.minusDays(7);
         }
-
-        // 格式化为MySQL日期时间格式
-        java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        return sdf.format(calendar.getTime());
     }
 
     // 从token获取用户ID
@@ -520,8 +417,7 @@ public class SearchGetStats {
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
             try {
-                String sql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-                List<Map<String, Object>> sessions = jdbcTemplate.queryForList(sql, token);
+                List<Map<String, Object>> sessions = sessionResolver.findSession(token);
                 if (!sessions.isEmpty()) {
                     return ((Number) sessions.get(0).get("user_id")).longValue();
                 }
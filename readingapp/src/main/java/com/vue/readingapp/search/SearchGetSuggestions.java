@@ -6,6 +6,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.AutocompleteService;
+import com.vue.readingapp.search.service.CompletionTrie;
 
 @RestController
 @RequestMapping("/api/v1/search")
@@ -14,6 +17,12 @@ public class SearchGetSuggestions {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private AutocompleteService autocompleteService;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到获取搜索建议请求 ===");
@@ -170,35 +179,12 @@ public class SearchGetSuggestions {
         List<SuggestionItem> suggestions = new ArrayList<>();
 
         try {
-            StringBuilder sqlBuilder = new StringBuilder();
-            sqlBuilder.append("SELECT keyword, search_type, COUNT(*) as count, MAX(timestamp) as last_time ");
-            sqlBuilder.append("FROM search_history ");
-            sqlBuilder.append("WHERE keyword LIKE ? ");
-
-            List<Object> params = new ArrayList<>();
-            params.add(query + "%");
-
-            if (userId != null) {
-                sqlBuilder.append("AND user_id = ? ");
-                params.add(userId);
-            }
-
-            if (type != null && !"all".equals(type)) {
-                sqlBuilder.append("AND search_type = ? ");
-                params.add(type);
-            }
-
-            sqlBuilder.append("GROUP BY keyword, search_type ");
-            sqlBuilder.append("ORDER BY count DESC, last_time DESC ");
-            sqlBuilder.append("LIMIT ?");
-            params.add(limit);
-
-            List<Map<String, Object>> history = jdbcTemplate.queryForList(sqlBuilder.toString(), params.toArray());
-
-            for (Map<String, Object> record : history) {
-                String keyword = (String) record.get("keyword");
-                String searchType = (String) record.get("search_type");
-                int count = ((Number) record.get("count")).intValue();
+            Set<String> types = type != null && !"all".equals(type) ? Collections.singleton(type) : null;
+            for (CompletionTrie.Entry entry : autocompleteService.completeHistory(query, userId, types, limit)) {
+                String keyword = entry.getText();
+                String searchType = entry.getType();
+                // 权重的整数部分是搜索次数
+                int count = (int) Math.floor(entry.getWeight());
 
                 // 计算相关性
                 double relevance = calculateRelevance(query, keyword);
@@ -206,17 +192,15 @@ public class SearchGetSuggestions {
                 // 获取图标
                 String icon = getSuggestionIcon(searchType);
 
-                SuggestionItem item = new SuggestionItem(
+                suggestions.add(new SuggestionItem(
                         "history_" + keyword.hashCode(),
                         keyword,
                         searchType,
                         count,
                         relevance,
                         icon
-                );
-                suggestions.add(item);
+                ));
             }
-
         } catch (Exception e) {
             System.err.println("从搜索历史获取建议失败: " + e.getMessage());
         }
@@ -229,40 +213,21 @@ public class SearchGetSuggestions {
         List<SuggestionItem> suggestions = new ArrayList<>();
 
         try {
-            StringBuilder sqlBuilder = new StringBuilder();
-            sqlBuilder.append("SELECT title FROM documents ");
-            sqlBuilder.append("WHERE title LIKE ? AND status = 'processed' ");
-
-            List<Object> params = new ArrayList<>();
-            params.add(query + "%");
-
-            if (userId != null) {
-                sqlBuilder.append("AND user_id = ? ");
-                params.add(userId);
-            }
-
-            sqlBuilder.append("ORDER BY created_at DESC LIMIT ?");
-            params.add(limit);
-
-            List<Map<String, Object>> documents = jdbcTemplate.queryForList(sqlBuilder.toString(), params.toArray());
-
-            for (Map<String, Object> doc : documents) {
-                String title = (String) doc.get("title");
+            for (CompletionTrie.Entry entry : autocompleteService.completeDocuments(query, userId, limit)) {
+                String title = entry.getText();
 
                 // 计算相关性
                 double relevance = calculateRelevance(query, title);
 
-                SuggestionItem item = new SuggestionItem(
+                suggestions.add(new SuggestionItem(
                         "doc_" + title.hashCode(),
                         title,
                         "documents",
                         1,
                         relevance,
                         "document-text"
-                );
-                suggestions.add(item);
+                ));
             }
-
         } catch (Exception e) {
             System.err.println("从文档获取建议失败: " + e.getMessage());
         }
@@ -275,35 +240,21 @@ public class SearchGetSuggestions {
         List<SuggestionItem> suggestions = new ArrayList<>();
 
         try {
-            StringBuilder sqlBuilder = new StringBuilder();
-            sqlBuilder.append("SELECT word FROM words ");
-            sqlBuilder.append("WHERE word LIKE ? ");
-
-            List<Object> params = new ArrayList<>();
-            params.add(query + "%");
-
-            sqlBuilder.append("ORDER BY word ASC LIMIT ?");
-            params.add(limit);
-
-            List<Map<String, Object>> words = jdbcTemplate.queryForList(sqlBuilder.toString(), params.toArray());
-
-            for (Map<String, Object> word : words) {
-                String wordText = (String) word.get("word");
+            for (CompletionTrie.Entry entry : autocompleteService.completeWords(query, limit)) {
+                String wordText = entry.getText();
 
                 // 计算相关性
                 double relevance = calculateRelevance(query, wordText);
 
-                SuggestionItem item = new SuggestionItem(
+                suggestions.add(new SuggestionItem(
                         "word_" + wordText.hashCode(),
                         wordText,
                         "vocabulary",
                         1,
                         relevance,
                         "book-open"
-                );
-                suggestions.add(item);
+                ));
             }
-
         } catch (Exception e) {
             System.err.println("从词汇获取建议失败: " + e.getMessage());
         }
@@ -390,8 +341,7 @@ public class SearchGetSuggestions {
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
             try {
-                String sql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-                List<Map<String, Object>> sessions = jdbcTemplate.queryForList(sql, token);
+                List<Map<String, Object>> sessions = sessionResolver.findSession(token);
                 if (!sessions.isEmpty()) {
                     return ((Number) sessions.get(0).get("user_id")).longValue();
                 }
@@ -4,13 +4,31 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.AutocompleteService;
+import com.vue.readingapp.search.service.FacetCounts;
+import com.vue.readingapp.search.service.FuzzyVocabularyService;
+import com.vue.readingapp.search.service.FuzzyWordIndex;
+import com.vue.readingapp.search.service.InvertedIndex;
+import com.vue.readingapp.search.service.SearchCursor;
+import com.vue.readingapp.search.service.SearchEnrichmentService;
+import com.vue.readingapp.search.service.SearchFanOutExecutor;
+import com.vue.readingapp.search.service.SearchIndexService;
+import com.vue.readingapp.search.service.SearchResultCache;
+import com.vue.readingapp.search.service.SearchTokenizer;
+import com.vue.readingapp.search.service.SearchHistoryWriter;
+import com.vue.readingapp.search.service.SnippetBuilder;
+import com.vue.readingapp.search.service.SpellingSuggestionService;
 
 @RestController
 @RequestMapping("/api/v1/search")
@@ -19,6 +37,42 @@ public class SearchGlobal {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private SearchHistoryWriter historyWriter;
+
+    @Autowired
+    private AutocompleteService autocompleteService;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    @Autowired
+    private FuzzyVocabularyService fuzzyVocabularyService;
+
+    @Autowired
+    private SearchFanOutExecutor fanOutExecutor;
+
+    @Autowired
+    private SearchEnrichmentService enrichmentService;
+
+    @Autowired
+    private SearchResultCache resultCache;
+
+    @Autowired
+    private SpellingSuggestionService suggestionService;
+
+    // 匿名搜索的文档条件：正文在 document_pages 中，只看公开、已处理且未删除的文档
+    private static final String PUBLIC_DOCUMENT_MATCH = "(d.title LIKE ? OR d.description LIKE ? OR EXISTS (SELECT 1 FROM document_pages dp " +
+            "WHERE dp.document_id = d.document_id AND dp.content LIKE ?)) AND d.is_public = 1 " +
+            "AND d.status = 'processed' AND d.deleted_at IS NULL ";
+
+    // 一个单词有多条释义，释义用 EXISTS 匹配，每个单词只出现一次
+    private static final String WORD_MATCH = "(w.word LIKE ? OR EXISTS (SELECT 1 FROM word_definitions wd " +
+            "WHERE wd.word_id = w.word_id AND wd.definition LIKE ?)) ";
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到全局搜索请求 ===");
@@ -103,6 +157,16 @@ public class SearchGlobal {
         private Map<String, Object> facets;
         private long queryTime;
         private String type;
+        // 有数据源超时或失败、或前缀扩展被截断时为 true，此时结果不完整
+        private boolean partial;
+        // 各数据源的状态和耗时
+        private Map<String, Map<String, Object>> sources;
+        // 下一页游标，没有更多结果时为 null
+        private String nextCursor;
+        // 结果来自缓存
+        private boolean cached;
+        // 没有结果时的纠错建议（您是不是要找），没有时为 null
+        private SpellingSuggestionService.Suggestion suggestion;
 
         public SearchData(int total, int page, int pageSize, int totalPages,
                           List<SearchItem> items, Map<String, Object> facets,
@@ -140,6 +204,21 @@ public class SearchGlobal {
 
         public String getType() { return type; }
         public void setType(String type) { this.type = type; }
+
+        public boolean isPartial() { return partial; }
+        public void setPartial(boolean partial) { this.partial = partial; }
+
+        public Map<String, Map<String, Object>> getSources() { return sources; }
+        public void setSources(Map<String, Map<String, Object>> sources) { this.sources = sources; }
+
+        public String getNextCursor() { return nextCursor; }
+        public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
+
+        public boolean isCached() { return cached; }
+        public void setCached(boolean cached) { this.cached = cached; }
+
+        public SpellingSuggestionService.Suggestion getSuggestion() { return suggestion; }
+        public void setSuggestion(SpellingSuggestionService.Suggestion suggestion) { this.suggestion = suggestion; }
     }
 
     // 搜索项DTO - 合并所有字段
@@ -147,7 +226,6 @@ public class SearchGlobal {
         private String id;
         private String type;
         private String title;
-        private String content;
         private String excerpt;
         private String author;
         private List<String> tags = new ArrayList<>();
@@ -158,16 +236,13 @@ public class SearchGlobal {
         private Map<String, Object> highlight = new HashMap<>();
         private String createdAt;
         private String updatedAt;
-        private String thumbnail;
         private String url;
 
         // 词汇专用字段
         private String word;
         private String phonetic;
         private String definition;
-        private String translation;
         private List<String> examples = new ArrayList<>();
-        private String audioUrl;
 
         // 笔记和高亮专用字段
         private String documentTitle;
@@ -186,9 +261,6 @@ public class SearchGlobal {
         public String getTitle() { return title; }
         public void setTitle(String title) { this.title = title; }
 
-        public String getContent() { return content; }
-        public void setContent(String content) { this.content = content; }
-
         public String getExcerpt() { return excerpt; }
         public void setExcerpt(String excerpt) { this.excerpt = excerpt; }
 
@@ -219,8 +291,6 @@ public class SearchGlobal {
         public String getUpdatedAt() { return updatedAt; }
         public void setUpdatedAt(String updatedAt) { this.updatedAt = updatedAt; }
 
-        public String getThumbnail() { return thumbnail; }
-        public void setThumbnail(String thumbnail) { this.thumbnail = thumbnail; }
 
         public String getUrl() { return url; }
         public void setUrl(String url) { this.url = url; }
@@ -234,14 +304,10 @@ public class SearchGlobal {
         public String getDefinition() { return definition; }
         public void setDefinition(String definition) { this.definition = definition; }
 
-        public String getTranslation() { return translation; }
-        public void setTranslation(String translation) { this.translation = translation; }
 
         public List<String> getExamples() { return examples; }
         public void setExamples(List<String> examples) { this.examples = examples; }
 
-        public String getAudioUrl() { return audioUrl; }
-        public void setAudioUrl(String audioUrl) { this.audioUrl = audioUrl; }
 
         public String getDocumentTitle() { return documentTitle; }
         public void setDocumentTitle(String documentTitle) { this.documentTitle = documentTitle; }
@@ -304,6 +370,7 @@ public class SearchGlobal {
             @RequestParam(required = false, defaultValue = "20") Integer pageSize,
             @RequestParam(required = false, defaultValue = "relevance") String sortBy,
             @RequestParam(required = false, defaultValue = "desc") String sortOrder,
+            @RequestParam(value = "cursor", required = false) String cursorToken,
             @RequestHeader(value = "Authorization", required = false) String authHeader) {
 
         long startTime = System.currentTimeMillis();
@@ -348,8 +415,7 @@ public class SearchGlobal {
                 String token = authHeader.substring(7);
                 // 简单解析token获取用户ID（课设简化处理）
                 try {
-                    String sql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-                    List<Map<String, Object>> sessions = jdbcTemplate.queryForList(sql, token);
+                    List<Map<String, Object>> sessions = sessionResolver.findSession(token);
                     if (!sessions.isEmpty()) {
                         userId = ((Number) sessions.get(0).get("user_id")).longValue();
                     }
@@ -358,87 +424,197 @@ public class SearchGlobal {
                 }
             }
 
-            // 3. 根据类型执行搜索
-            List<SearchItem> allResults = new ArrayList<>();
-            int totalResults = 0;
-
-            if ("all".equals(type) || "documents".equals(type)) {
-                // 搜索文档
-                List<SearchItem> documentResults = searchDocuments(query, userId, page, pageSize);
-                allResults.addAll(documentResults);
-                totalResults += documentResults.size();
+            // 3. 解析续读游标：带游标时从各数据源上次的位置继续，不带游标时按 page 定位
+            String normalizedQuery = SearchResultCache.normalizeQuery(query);
+            String fingerprint = SearchCursor.fingerprint(userId, normalizedQuery, type, sortBy, sortOrder, pageSize);
+            SearchCursor cursor;
+            try {
+                cursor = cursorToken != null && !cursorToken.isEmpty()
+                        ? SearchCursor.decode(cursorToken, fingerprint)
+                        : null;
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(
+                        new SearchResponse(false, "无效的分页游标", null)
+                );
             }
-
-            if ("all".equals(type) || "vocabulary".equals(type)) {
-                // 搜索词汇
-                List<SearchItem> vocabularyResults = searchVocabulary(query, userId, page, pageSize);
-                allResults.addAll(vocabularyResults);
-                totalResults += vocabularyResults.size();
+            // 登录用户先查结果缓存：查询条件相同且数据版本没变时直接返回
+            String cacheKey = null;
+            long dataVersion = 0;
+            if (userId != null) {
+                cacheKey = SearchResultCache.key("global", normalizedQuery, type, page, pageSize, sortBy, sortOrder, cursorToken);
+                dataVersion = resultCache.version(userId);
+                SearchData cached = (SearchData) resultCache.get(userId, cacheKey);
+                if (cached != null) {
+                    saveSearchHistory(userId, query, type, cached.getTotal());
+                    SearchData searchData = copyOf(cached, System.currentTimeMillis() - startTime);
+                    SearchResponse response = new SearchResponse(true, "搜索成功", searchData);
+                    printQueryResult("命中结果缓存，返回 " + cached.getItems().size() + " 个");
+                    printResponse(response);
+                    return ResponseEntity.ok(response);
+                }
             }
 
-            if ("all".equals(type) || "notes".equals(type)) {
-                // 搜索笔记
-                List<SearchItem> noteResults = searchNotes(query, userId, page, pageSize);
-                allResults.addAll(noteResults);
-                totalResults += noteResults.size();
-            }
+            int skip = cursor != null ? 0 : Math.max(0, page - 1) * pageSize;
+            int limit = skip + pageSize;
+            SearchCursor nextCursor = new SearchCursor(fingerprint);
 
-            if ("all".equals(type) || "highlights".equals(type)) {
-                // 搜索高亮
-                List<SearchItem> highlightResults = searchHighlights(query, userId, page, pageSize);
-                allResults.addAll(highlightResults);
-                totalResults += highlightResults.size();
-            }
+            // 4. 各数据源并行取前 limit 条，再多路归并；共用一个截止时间，超时的数据源被丢弃，下一页重试
+            List<SearchItem> pagedResults;
+            int totalResults = 0;
+            // 分面统计全部命中：索引检索在选取前 limit 条的同一趟遍历中计数，数据库来源用分组聚合
+            FacetCounts facetCounts = new FacetCounts();
+            long deadline = fanOutExecutor.deadlineFromNow();
+            boolean partial;
+            // 前缀扩展被截断，命中可能不全；结果是确定的，仍然可以缓存
+            boolean truncated = false;
+            Map<String, Map<String, Object>> sources;
+            List<String> sourceNames = sourceNames(type, userId);
+
+            if (userId != null) {
+                // 登录用户走倒排索引，每个数据源用堆选出排在游标之后的前 limit 条，只回表查询当前页
+                Comparator<InvertedIndex.Hit> order = InvertedIndex.order("createdAt".equals(sortBy), "desc".equals(sortOrder));
+                SearchFanOutExecutor.Result<InvertedIndex.TopHits> searched =
+                        fanOutExecutor.invokeAll(buildIndexTasks(query, sourceNames, userId, order, cursor, limit), deadline);
+
+                Map<String, List<InvertedIndex.Hit>> heads = new LinkedHashMap<>();
+                for (Map.Entry<String, InvertedIndex.TopHits> entry : searched.getValues().entrySet()) {
+                    heads.put(entry.getKey(), entry.getValue().getHits());
+                    totalResults += entry.getValue().getTotal();
+                    facetCounts.add(FacetCounts.TYPE, entry.getKey(), entry.getValue().getTotal());
+                    facetCounts.addAll(entry.getValue().getFacets());
+                }
+                Map<String, Integer> consumed = new HashMap<>();
+                List<InvertedIndex.Hit> merged = mergeTopK(heads, order, limit, consumed);
+                List<InvertedIndex.Hit> pageHits = merged.subList(Math.min(skip, merged.size()), merged.size());
 
-            // 4. 排序结果（根据相关性）
-            if ("relevance".equals(sortBy)) {
-                allResults.sort((a, b) -> {
-                    if ("desc".equals(sortOrder)) {
-                        return Double.compare(b.getRelevance(), a.getRelevance());
+                SearchFanOutExecutor.Result<Map<String, SearchItem>> loaded =
+                        fanOutExecutor.invokeAll(buildLoadTasks(pageHits, query), deadline);
+                pagedResults = assembleItems(pageHits, loaded.getValues());
+
+                Map<String, Integer> onPage = new HashMap<>();
+                for (InvertedIndex.Hit hit : pageHits) {
+                    onPage.merge(sourceName(hit.getType()), 1, Integer::sum);
+                }
+                for (String source : sourceNames) {
+                    List<InvertedIndex.Hit> sourceHits = heads.get(source);
+                    int used = consumed.getOrDefault(source, 0);
+                    int pageCount = onPage.getOrDefault(source, 0);
+                    if (sourceHits == null) {
+                        // 本次没有按时返回，保留原位置
+                        carryPosition(cursor, nextCursor, source);
+                    } else if (pageCount > 0 && !loaded.getValues().containsKey(source)) {
+                        // 回表没有按时返回，这些命中没有出现在当前页，游标停在它们之前，下一页重新读取
+                        int firstOnPage = used - pageCount;
+                        if (firstOnPage > 0) {
+                            nextCursor.setHit(source, sourceHits.get(firstOnPage - 1));
+                        } else {
+                            carryPosition(cursor, nextCursor, source);
+                        }
+                    } else if (used == sourceHits.size() && sourceHits.size() < limit) {
+                        nextCursor.markDone(source);
+                    } else if (used > 0) {
+                        nextCursor.setHit(source, sourceHits.get(used - 1));
                     } else {
-                        return Double.compare(a.getRelevance(), b.getRelevance());
+                        carryPosition(cursor, nextCursor, source);
+                    }
+                }
+
+                sources = searched.getSources();
+                for (Map.Entry<String, InvertedIndex.TopHits> entry : searched.getValues().entrySet()) {
+                    if (entry.getValue().isTruncated()) {
+                        truncated = true;
+                        sources.computeIfAbsent(entry.getKey(), k -> new LinkedHashMap<>()).put("truncated", true);
                     }
-                });
-            } else if ("createdAt".equals(sortBy)) {
-                allResults.sort((a, b) -> {
-                    if ("desc".equals(sortOrder)) {
-                        return b.getCreatedAt().compareTo(a.getCreatedAt());
+                }
+                for (Map.Entry<String, Map<String, Object>> entry : loaded.getSources().entrySet()) {
+                    Map<String, Object> timing = sources.computeIfAbsent(entry.getKey(), k -> new LinkedHashMap<>());
+                    timing.put("loadStatus", entry.getValue().get("status"));
+                    timing.put("loadTimeMs", entry.getValue().get("timeMs"));
+                }
+                partial = searched.isPartial() || loaded.isPartial();
+            } else {
+                // 匿名请求走数据库，只有词汇和公开文档（sourceNames 已去掉笔记和高亮），各数据源从游标中的偏移量开始读取
+                // 同一个任务里先做分组聚合再取当前页，按时返回的数据源一定带着分面计数
+                Map<String, Callable<List<SearchItem>>> tasks = new LinkedHashMap<>();
+                Map<String, FacetCounts> sourceFacets = new ConcurrentHashMap<>();
+                for (String source : sourceNames) {
+                    if (cursor != null && cursor.isDone(source)) {
+                        continue;
+                    }
+                    int offset = cursor != null ? cursor.getOffset(source) : 0;
+                    switch (source) {
+                        case "documents":
+                            tasks.put(source, () -> {
+                                sourceFacets.put(source, countPublicDocumentFacets(query));
+                                return searchPublicDocuments(query, offset, limit);
+                            });
+                            break;
+                        default:
+                            tasks.put(source, () -> {
+                                sourceFacets.put(source, countVocabularyFacets(query));
+                                return searchVocabulary(query, offset, limit);
+                            });
+                            break;
+                    }
+                }
+
+                SearchFanOutExecutor.Result<List<SearchItem>> searched = fanOutExecutor.invokeAll(tasks, deadline);
+                Map<String, Integer> consumed = new HashMap<>();
+                List<SearchItem> merged = mergeTopK(searched.getValues(), itemOrder(sortBy, sortOrder), limit, consumed);
+                pagedResults = merged.subList(Math.min(skip, merged.size()), merged.size());
+
+                for (String source : sourceNames) {
+                    List<SearchItem> sourceResults = searched.getValues().get(source);
+                    int offset = cursor != null ? cursor.getOffset(source) : 0;
+                    int used = consumed.getOrDefault(source, 0);
+                    if (sourceResults == null) {
+                        carryPosition(cursor, nextCursor, source);
+                    } else if (used == sourceResults.size() && sourceResults.size() < limit) {
+                        nextCursor.markDone(source);
                     } else {
-                        return a.getCreatedAt().compareTo(b.getCreatedAt());
+                        nextCursor.setOffset(source, offset + used);
                     }
-                });
+                    // 总数取分组聚合的结果；改走了拼写相近的单词时，至少是已读到的条数
+                    if (sourceResults != null) {
+                        FacetCounts counts = sourceFacets.getOrDefault(source, new FacetCounts());
+                        long matched = counts.get(FacetCounts.TYPE, source);
+                        long seen = offset + sourceResults.size();
+                        if (seen > matched) {
+                            counts.add(FacetCounts.TYPE, source, seen - matched);
+                        }
+                        facetCounts.merge(counts);
+                        totalResults += Math.max(matched, seen);
+                    }
+                }
+                sources = searched.getSources();
+                partial = searched.isPartial();
             }
 
-            // 5. 分页处理
-            int startIndex = (page - 1) * pageSize;
-            int endIndex = Math.min(startIndex + pageSize, allResults.size());
-            List<SearchItem> pagedResults = allResults.subList(startIndex, endIndex);
+            // 5. 批量补全当前页的标签、例句
+            enrichPage(pagedResults, userId);
 
             // 6. 计算分页信息
-            int totalPages = (int) Math.ceil((double) allResults.size() / pageSize);
+            int totalPages = (int) Math.ceil((double) totalResults / pageSize);
 
             // 7. 构建facet数据
-            Map<String, Object> facets = new HashMap<>();
-            Map<String, Long> typeFacet = new HashMap<>();
-
-            typeFacet.put("documents", allResults.stream().filter(item -> "document".equals(item.getType())).count());
-            typeFacet.put("vocabulary", allResults.stream().filter(item -> "vocabulary".equals(item.getType())).count());
-            typeFacet.put("notes", allResults.stream().filter(item -> "note".equals(item.getType())).count());
-            typeFacet.put("highlights", allResults.stream().filter(item -> "highlight".equals(item.getType())).count());
-
-            facets.put("type", typeFacet);
+            facetCounts.declare(FacetCounts.TYPE, Arrays.asList("documents", "vocabulary", "notes", "highlights"));
+            Map<String, Object> facets = facetCounts.toMap();
 
             // 8. 记录搜索历史
             if (userId != null) {
                 saveSearchHistory(userId, query, type, totalResults);
             }
 
-            // 9. 计算查询时间
+            // 9. 没有结果时给出纠错建议（内存中的词典和成功查询，不再访问数据库）
+            SpellingSuggestionService.Suggestion suggestion =
+                    totalResults == 0 && cursor == null ? suggestionService.suggest(query) : null;
+
+            // 10. 计算查询时间
             long queryTime = System.currentTimeMillis() - startTime;
 
-            // 10. 准备响应数据
+            // 11. 准备响应数据
             SearchData searchData = new SearchData(
-                    allResults.size(),
+                    totalResults,
                     page,
                     pageSize,
                     totalPages,
@@ -447,11 +623,20 @@ public class SearchGlobal {
                     queryTime,
                     type
             );
+            searchData.setPartial(partial || truncated);
+            searchData.setSources(sources);
+            searchData.setNextCursor(nextCursor.hasMore(sourceNames) ? nextCursor.encode() : null);
+            searchData.setSuggestion(suggestion);
+
+            // 不完整的结果不缓存，下次请求重试超时的数据源
+            if (cacheKey != null && !partial) {
+                resultCache.put(userId, cacheKey, dataVersion, searchData);
+            }
 
             SearchResponse response = new SearchResponse(true, "搜索成功", searchData);
 
             // 打印查询结果
-            printQueryResult("找到 " + allResults.size() + " 个结果，返回 " + pagedResults.size() + " 个");
+            printQueryResult("找到 " + totalResults + " 个结果，返回 " + pagedResults.size() + " 个");
 
             // 打印返回数据
             printResponse(response);
@@ -467,380 +652,532 @@ public class SearchGlobal {
         }
     }
 
-    // 搜索文档
-    private List<SearchItem> searchDocuments(String query, Long userId, int page, int pageSize) {
-        List<SearchItem> results = new ArrayList<>();
-
-        try {
-            String sql = "SELECT d.document_id, d.title, d.content, d.author, d.language, " +
-                    "d.word_count, d.difficulty, d.created_at, d.updated_at, " +
-                    "d.thumbnail_url, d.status " +
-                    "FROM documents d " +
-                    "WHERE (d.title LIKE ? OR d.content LIKE ?) " +
-                    "AND d.status = 'processed' ";
+    // 笔记和高亮都是私有数据，匿名请求不检索
+    private List<String> sourceNames(String type, Long userId) {
+        List<String> names = "all".equals(type)
+                ? new ArrayList<>(Arrays.asList("documents", "vocabulary", "notes", "highlights"))
+                : new ArrayList<>(Collections.singletonList(type));
+        if (userId == null) {
+            names.removeAll(Arrays.asList("notes", "highlights"));
+        }
+        return names;
+    }
 
-            if (userId != null) {
-                sql += "AND d.user_id = ? ";
+    // 按数据源拆分的索引检索任务，各自从游标位置之后取前 limit 条
+    private Map<String, Callable<InvertedIndex.TopHits>> buildIndexTasks(String query, List<String> sourceNames, Long userId,
+                                                                         Comparator<InvertedIndex.Hit> order,
+                                                                         SearchCursor cursor, int limit) {
+        Map<String, Callable<InvertedIndex.TopHits>> tasks = new LinkedHashMap<>();
+        for (String source : sourceNames) {
+            if (cursor != null && cursor.isDone(source)) {
+                continue;
             }
-
-            sql += "ORDER BY d.created_at DESC LIMIT ? OFFSET ?";
-
-            List<Object> params = new ArrayList<>();
-            params.add("%" + query + "%");
-            params.add("%" + query + "%");
-            if (userId != null) {
-                params.add(userId);
+            InvertedIndex.Hit after = cursor != null ? cursor.getHit(source) : null;
+            if ("vocabulary".equals(source)) {
+                tasks.put(source, () -> searchIndexService.searchWords(query, order, after, limit));
+            } else {
+                Set<String> types = Collections.singleton(indexType(source));
+                tasks.put(source, () -> searchIndexService.searchUser(userId, query, types, order, after, limit));
             }
-            params.add(pageSize);
-            params.add((page - 1) * pageSize);
-
-            List<Map<String, Object>> documents = jdbcTemplate.queryForList(sql, params.toArray());
-
-            for (Map<String, Object> doc : documents) {
-                SearchItem item = new SearchItem();
-                item.setId("doc_" + doc.get("document_id"));
-                item.setType("document");
-                item.setTitle((String) doc.get("title"));
-                item.setContent((String) doc.get("content"));
-
-                // 生成摘要
-                String content = (String) doc.get("content");
-                if (content != null && content.length() > 200) {
-                    item.setExcerpt(content.substring(0, 200) + "...");
-                } else {
-                    item.setExcerpt(content);
-                }
-
-                item.setAuthor((String) doc.get("author"));
-                item.setLanguage((String) doc.get("language"));
-                item.setWordCount(doc.get("word_count") != null ? ((Number) doc.get("word_count")).intValue() : 0);
-                item.setDifficulty((String) doc.get("difficulty"));
-
-                // 计算相关性（简单实现）
-                double relevance = calculateRelevance(query, (String) doc.get("title"), (String) doc.get("content"));
-                item.setRelevance(relevance);
-
-                // 构建高亮信息
-                Map<String, Object> highlight = new HashMap<>();
-                highlight.put("title", highlightText(query, (String) doc.get("title")));
-                highlight.put("content", highlightText(query, content));
-                item.setHighlight(highlight);
-
-                item.setCreatedAt(doc.get("created_at") != null ? doc.get("created_at").toString() : null);
-                item.setUpdatedAt(doc.get("updated_at") != null ? doc.get("updated_at").toString() : null);
-                item.setThumbnail((String) doc.get("thumbnail_url"));
-                item.setUrl("/documents/" + doc.get("document_id"));
+        }
+        return tasks;
+    }
 
-                // 获取标签
-                List<String> tags = getDocumentTags(((Number) doc.get("document_id")).longValue());
-                item.setTags(tags);
+    private String indexType(String source) {
+        switch (source) {
+            case "documents":
+                return SearchIndexService.TYPE_DOCUMENT;
+            case "notes":
+                return SearchIndexService.TYPE_NOTE;
+            case "highlights":
+                return SearchIndexService.TYPE_HIGHLIGHT;
+            default:
+                return SearchIndexService.TYPE_VOCABULARY;
+        }
+    }
 
-                results.add(item);
+    /**
+     * 多路归并：各数据源已按 order 排好序，用堆每次取出最靠前的一条，最多取 limit 条；
+     * consumed 记录每个数据源被取走的条数，用于生成下一页游标
+     */
+    private <T> List<T> mergeTopK(Map<String, List<T>> heads, Comparator<T> order, int limit, Map<String, Integer> consumed) {
+        PriorityQueue<Map.Entry<String, Integer>> heap = new PriorityQueue<>(Math.max(1, heads.size()),
+                (a, b) -> order.compare(heads.get(a.getKey()).get(a.getValue()), heads.get(b.getKey()).get(b.getValue())));
+        for (Map.Entry<String, List<T>> entry : heads.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                heap.add(new AbstractMap.SimpleEntry<>(entry.getKey(), 0));
             }
-
-        } catch (Exception e) {
-            System.err.println("搜索文档时发生错误: " + e.getMessage());
         }
 
-        return results;
+        List<T> merged = new ArrayList<>();
+        while (merged.size() < limit && !heap.isEmpty()) {
+            Map.Entry<String, Integer> head = heap.poll();
+            List<T> list = heads.get(head.getKey());
+            merged.add(list.get(head.getValue()));
+            consumed.put(head.getKey(), head.getValue() + 1);
+            if (head.getValue() + 1 < list.size()) {
+                heap.add(new AbstractMap.SimpleEntry<>(head.getKey(), head.getValue() + 1));
+            }
+        }
+        return merged;
     }
 
-    // 搜索词汇
-    private List<SearchItem> searchVocabulary(String query, Long userId, int page, int pageSize) {
-        List<SearchItem> results = new ArrayList<>();
-
-        try {
-            String sql = "SELECT w.word_id, w.word, w.phonetic, wd.definition, wd.translation, " +
-                    "w.created_at, w.updated_at, w.audio_url " +
-                    "FROM words w " +
-                    "LEFT JOIN word_definitions wd ON w.word_id = wd.word_id " +
-                    "WHERE w.word LIKE ? OR wd.definition LIKE ? OR wd.translation LIKE ? " +
-                    "ORDER BY w.word ASC LIMIT ? OFFSET ?";
-
-            List<Object> params = new ArrayList<>();
-            params.add("%" + query + "%");
-            params.add("%" + query + "%");
-            params.add("%" + query + "%");
-            params.add(pageSize);
-            params.add((page - 1) * pageSize);
-
-            List<Map<String, Object>> words = jdbcTemplate.queryForList(sql, params.toArray());
-
-            for (Map<String, Object> word : words) {
-                SearchItem item = new SearchItem();
-                Long wordId = ((Number) word.get("word_id")).longValue();
-
-                item.setId("word_" + wordId);
-                item.setType("vocabulary");
-                item.setTitle((String) word.get("word"));
-                item.setWord((String) word.get("word"));
-                item.setPhonetic((String) word.get("phonetic"));
-                item.setDefinition((String) word.get("definition"));
-                item.setTranslation((String) word.get("translation"));
-
-                // 生成摘要
-                String definition = (String) word.get("definition");
-                if (definition != null && definition.length() > 100) {
-                    item.setExcerpt(definition.substring(0, 100) + "...");
-                } else {
-                    item.setExcerpt(definition);
-                }
-
-                // 计算相关性
-                double relevance = calculateRelevance(query, (String) word.get("word"), definition);
-                item.setRelevance(relevance);
-
-                // 构建高亮信息
-                Map<String, Object> highlight = new HashMap<>();
-                highlight.put("word", highlightText(query, (String) word.get("word")));
-                highlight.put("definition", highlightText(query, definition));
-                item.setHighlight(highlight);
-
-                item.setCreatedAt(word.get("created_at") != null ? word.get("created_at").toString() : null);
-                item.setUpdatedAt(word.get("updated_at") != null ? word.get("updated_at").toString() : null);
-                item.setAudioUrl((String) word.get("audio_url"));
-                item.setUrl("/vocabulary/" + wordId);
+    private void carryPosition(SearchCursor cursor, SearchCursor nextCursor, String source) {
+        if (cursor == null) {
+            return;
+        }
+        if (cursor.isDone(source)) {
+            nextCursor.markDone(source);
+        } else if (cursor.getHit(source) != null) {
+            nextCursor.setHit(source, cursor.getHit(source));
+        } else if (cursor.getOffset(source) > 0) {
+            nextCursor.setOffset(source, cursor.getOffset(source));
+        }
+    }
 
-                // 获取例句
-                List<String> examples = getWordExamples(wordId);
-                item.setExamples(examples);
+    // 数据库来源的结果排序；各来源按自身 SQL 顺序返回，归并只比较各来源的队首，保证取走的是各自的前缀，偏移量才能续读
+    private Comparator<SearchItem> itemOrder(String sortBy, String sortOrder) {
+        Comparator<SearchItem> comparator;
+        if ("createdAt".equals(sortBy)) {
+            comparator = Comparator.comparing(SearchItem::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder()));
+        } else {
+            comparator = Comparator.comparingDouble(SearchItem::getRelevance);
+        }
+        if ("desc".equals(sortOrder)) {
+            comparator = comparator.reversed();
+        }
+        return comparator;
+    }
 
-                // 获取标签
-                List<String> tags = getWordTags(wordId);
-                item.setTags(tags);
+    // 当前页按类型批量回表，每种类型一个任务
+    private Map<String, Callable<Map<String, SearchItem>>> buildLoadTasks(List<InvertedIndex.Hit> hits, String query) {
+        Map<String, List<Long>> idsByType = new LinkedHashMap<>();
+        for (InvertedIndex.Hit hit : hits) {
+            idsByType.computeIfAbsent(hit.getType(), k -> new ArrayList<>()).add(hit.getId());
+        }
 
-                results.add(item);
+        Map<String, Callable<Map<String, SearchItem>>> tasks = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Long>> entry : idsByType.entrySet()) {
+            List<Long> ids = entry.getValue();
+            switch (entry.getKey()) {
+                case SearchIndexService.TYPE_DOCUMENT:
+                    tasks.put(sourceName(entry.getKey()), () -> loadDocumentItems(ids, query));
+                    break;
+                case SearchIndexService.TYPE_VOCABULARY:
+                    tasks.put(sourceName(entry.getKey()), () -> loadWordItems(ids, query));
+                    break;
+                case SearchIndexService.TYPE_NOTE:
+                    tasks.put(sourceName(entry.getKey()), () -> loadNoteItems(ids, query));
+                    break;
+                case SearchIndexService.TYPE_HIGHLIGHT:
+                    tasks.put(sourceName(entry.getKey()), () -> loadHighlightItems(ids, query));
+                    break;
+                default:
+                    break;
             }
-
-        } catch (Exception e) {
-            System.err.println("搜索词汇时发生错误: " + e.getMessage());
         }
-
-        return results;
+        return tasks;
     }
 
-    // 搜索笔记
-    private List<SearchItem> searchNotes(String query, Long userId, int page, int pageSize) {
-        List<SearchItem> results = new ArrayList<>();
+    // 索引命中的类型对应的数据源名
+    private static String sourceName(String type) {
+        switch (type) {
+            case SearchIndexService.TYPE_DOCUMENT:
+                return "documents";
+            case SearchIndexService.TYPE_VOCABULARY:
+                return "vocabulary";
+            case SearchIndexService.TYPE_NOTE:
+                return "notes";
+            case SearchIndexService.TYPE_HIGHLIGHT:
+                return "highlights";
+            default:
+                return type;
+        }
+    }
 
-        try {
-            String sql = "SELECT n.note_id, n.document_id, n.content, n.created_at, n.updated_at, " +
-                    "d.title as document_title " +
-                    "FROM document_notes n " +
-                    "LEFT JOIN documents d ON n.document_id = d.document_id " +
-                    "WHERE n.content LIKE ? ";
+    // 按命中顺序组装结果，回表超时或已被删除的条目跳过
+    private List<SearchItem> assembleItems(List<InvertedIndex.Hit> hits, Map<String, Map<String, SearchItem>> loaded) {
+        Map<String, SearchItem> itemsByKey = new HashMap<>();
+        for (Map<String, SearchItem> items : loaded.values()) {
+            itemsByKey.putAll(items);
+        }
 
-            if (userId != null) {
-                sql += "AND n.user_id = ? ";
+        List<SearchItem> items = new ArrayList<>();
+        for (InvertedIndex.Hit hit : hits) {
+            SearchItem item = itemsByKey.get(hit.getKey());
+            if (item != null) {
+                item.setRelevance(Math.round(hit.getScore() * 10000) / 10000.0);
+                items.add(item);
             }
+        }
+        return items;
+    }
 
-            sql += "ORDER BY n.created_at DESC LIMIT ? OFFSET ?";
-
-            List<Object> params = new ArrayList<>();
-            params.add("%" + query + "%");
-            if (userId != null) {
-                params.add(userId);
+    // 当前页结果的关联数据每种只查一次
+    private void enrichPage(List<SearchItem> items, Long userId) {
+        List<Long> documentIds = new ArrayList<>();
+        List<Long> wordIds = new ArrayList<>();
+        for (SearchItem item : items) {
+            Long documentId = SearchEnrichmentService.parseId(item.getId(), "doc_");
+            Long wordId = SearchEnrichmentService.parseId(item.getId(), "word_");
+            if (documentId != null) {
+                documentIds.add(documentId);
+            } else if (wordId != null) {
+                wordIds.add(wordId);
             }
-            params.add(pageSize);
-            params.add((page - 1) * pageSize);
-
-            List<Map<String, Object>> notes = jdbcTemplate.queryForList(sql, params.toArray());
-
-            for (Map<String, Object> note : notes) {
-                SearchItem item = new SearchItem();
-                Long noteId = ((Number) note.get("note_id")).longValue();
-                Long docId = ((Number) note.get("document_id")).longValue();
-
-                item.setId("note_" + noteId);
-                item.setType("note");
-                item.setTitle("笔记 - " + note.get("document_title"));
-                item.setContent((String) note.get("content"));
-                item.setDocumentTitle((String) note.get("document_title"));
-                item.setDocumentId(docId);
-
-                // 生成摘要
-                String content = (String) note.get("content");
-                if (content != null && content.length() > 150) {
-                    item.setExcerpt(content.substring(0, 150) + "...");
-                } else {
-                    item.setExcerpt(content);
-                }
-
-                // 计算相关性
-                double relevance = calculateRelevance(query, content, content);
-                item.setRelevance(relevance);
-
-                // 构建高亮信息
-                Map<String, Object> highlight = new HashMap<>();
-                highlight.put("content", highlightText(query, content));
-                item.setHighlight(highlight);
-
-                item.setCreatedAt(note.get("created_at") != null ? note.get("created_at").toString() : null);
-                item.setUpdatedAt(note.get("updated_at") != null ? note.get("updated_at").toString() : null);
-                item.setUrl("/reader/note/" + noteId);
+        }
+        if (documentIds.isEmpty() && wordIds.isEmpty()) {
+            return;
+        }
 
-                results.add(item);
+        SearchEnrichmentService.Enrichment enrichment = enrichmentService.load(documentIds, wordIds, userId);
+        for (SearchItem item : items) {
+            Long documentId = SearchEnrichmentService.parseId(item.getId(), "doc_");
+            Long wordId = SearchEnrichmentService.parseId(item.getId(), "word_");
+            if (documentId != null) {
+                item.setTags(enrichment.getDocumentTags(documentId));
+            } else if (wordId != null) {
+                item.setExamples(enrichment.getWordExamples(wordId));
+                item.setTags(enrichment.getWordTags(wordId));
             }
-
-        } catch (Exception e) {
-            System.err.println("搜索笔记时发生错误: " + e.getMessage());
         }
-
-        return results;
     }
 
-    // 搜索高亮
-    private List<SearchItem> searchHighlights(String query, Long userId, int page, int pageSize) {
-        List<SearchItem> results = new ArrayList<>();
-
-        try {
-            String sql = "SELECT h.highlight_id, h.document_id, h.selected_text, h.note, h.created_at, " +
-                    "d.title as document_title " +
-                    "FROM document_highlights h " +
-                    "LEFT JOIN documents d ON h.document_id = d.document_id " +
-                    "WHERE h.selected_text LIKE ? OR h.note LIKE ? ";
+    private String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
 
-            if (userId != null) {
-                sql += "AND h.user_id = ? ";
-            }
+    private Map<String, SearchItem> loadDocumentItems(List<Long> documentIds, String query) {
+        Map<String, SearchItem> items = new HashMap<>();
+        String sql = "SELECT d.document_id, d.title, d.description, d.author, d.language, d.page_count, " +
+                "d.created_at, d.updated_at FROM documents d WHERE d.document_id IN (" + placeholders(documentIds.size()) + ")";
+        for (Map<String, Object> doc : jdbcTemplate.queryForList(sql, documentIds.toArray())) {
+            SearchItem item = new SearchItem();
+            item.setId("doc_" + doc.get("document_id"));
+            item.setType("document");
+            item.setTitle((String) doc.get("title"));
+
+            String description = (String) doc.get("description");
+            SnippetBuilder.Snippet snippet = SnippetBuilder.snippet(query, description, 200);
+            item.setExcerpt(snippet.getText());
+
+            item.setAuthor((String) doc.get("author"));
+            item.setLanguage((String) doc.get("language"));
+
+            Map<String, Object> highlight = new HashMap<>();
+            highlight.put("title", SnippetBuilder.ranges(query, (String) doc.get("title")));
+            highlight.put("excerpt", snippet.getRanges());
+            item.setHighlight(highlight);
+
+            item.setCreatedAt(doc.get("created_at") != null ? doc.get("created_at").toString() : null);
+            item.setUpdatedAt(doc.get("updated_at") != null ? doc.get("updated_at").toString() : null);
+            item.setUrl("/documents/" + doc.get("document_id"));
+
+            items.put(item.getId(), item);
+        }
+        return items;
+    }
 
-            sql += "ORDER BY h.created_at DESC LIMIT ? OFFSET ?";
+    private Map<String, SearchItem> loadWordItems(List<Long> wordIds, String query) {
+        Map<String, SearchItem> items = new HashMap<>();
+        String sql = "SELECT w.word_id, w.word, w.phonetic, w.difficulty, " +
+                "(SELECT wd.definition FROM word_definitions wd WHERE wd.word_id = w.word_id ORDER BY wd.order_index LIMIT 1) AS definition " +
+                "FROM words w WHERE w.word_id IN (" + placeholders(wordIds.size()) + ")";
+        for (Map<String, Object> word : jdbcTemplate.queryForList(sql, wordIds.toArray())) {
+            SearchItem item = new SearchItem();
+            Long wordId = ((Number) word.get("word_id")).longValue();
+
+            item.setId("word_" + wordId);
+            item.setType("vocabulary");
+            item.setTitle((String) word.get("word"));
+            item.setWord((String) word.get("word"));
+            item.setPhonetic((String) word.get("phonetic"));
+            item.setDifficulty((String) word.get("difficulty"));
+
+            String definition = (String) word.get("definition");
+            item.setDefinition(definition);
+            SnippetBuilder.Snippet snippet = SnippetBuilder.snippet(query, definition, 100);
+            item.setExcerpt(snippet.getText());
+
+            Map<String, Object> highlight = new HashMap<>();
+            highlight.put("word", SnippetBuilder.ranges(query, (String) word.get("word")));
+            highlight.put("definition", SnippetBuilder.ranges(query, definition));
+            highlight.put("excerpt", snippet.getRanges());
+            item.setHighlight(highlight);
+
+            item.setUrl("/vocabulary/" + wordId);
+
+            items.put(item.getId(), item);
+        }
+        return items;
+    }
 
-            List<Object> params = new ArrayList<>();
-            params.add("%" + query + "%");
-            params.add("%" + query + "%");
-            if (userId != null) {
-                params.add(userId);
-            }
-            params.add(pageSize);
-            params.add((page - 1) * pageSize);
-
-            List<Map<String, Object>> highlights = jdbcTemplate.queryForList(sql, params.toArray());
-
-            for (Map<String, Object> highlight : highlights) {
-                SearchItem item = new SearchItem();
-                Long highlightId = ((Number) highlight.get("highlight_id")).longValue();
-                Long docId = ((Number) highlight.get("document_id")).longValue();
-
-                item.setId("highlight_" + highlightId);
-                item.setType("highlight");
-                item.setTitle("高亮 - " + highlight.get("document_title"));
-                item.setSelectedText((String) highlight.get("selected_text"));
-                item.setNote((String) highlight.get("note"));
-                item.setDocumentTitle((String) highlight.get("document_title"));
-                item.setDocumentId(docId);
-
-                // 生成摘要
-                String text = (String) highlight.get("selected_text");
-                if (text != null && text.length() > 100) {
-                    item.setExcerpt(text.substring(0, 100) + "...");
-                } else {
-                    item.setExcerpt(text);
-                }
+    private Map<String, SearchItem> loadNoteItems(List<Long> noteIds, String query) {
+        Map<String, SearchItem> items = new HashMap<>();
+        String sql = "SELECT n.note_id, n.document_id, n.page, n.content, n.created_at, n.updated_at, " +
+                "d.title as document_title FROM document_notes n " +
+                "LEFT JOIN documents d ON n.document_id = d.document_id " +
+                "WHERE n.note_id IN (" + placeholders(noteIds.size()) + ")";
+        for (Map<String, Object> note : jdbcTemplate.queryForList(sql, noteIds.toArray())) {
+            SearchItem item = new SearchItem();
+            Long noteId = ((Number) note.get("note_id")).longValue();
+
+            item.setId("note_" + noteId);
+            item.setType("note");
+            item.setTitle("笔记 - " + note.get("document_title"));
+            item.setDocumentTitle((String) note.get("document_title"));
+            item.setDocumentId(((Number) note.get("document_id")).longValue());
+            item.setPageNumber(note.get("page") != null ? ((Number) note.get("page")).intValue() : 0);
+
+            String content = (String) note.get("content");
+            SnippetBuilder.Snippet snippet = SnippetBuilder.snippet(query, content, 150);
+            item.setExcerpt(snippet.getText());
+
+            Map<String, Object> highlight = new HashMap<>();
+            highlight.put("excerpt", snippet.getRanges());
+            item.setHighlight(highlight);
+
+            item.setCreatedAt(note.get("created_at") != null ? note.get("created_at").toString() : null);
+            item.setUpdatedAt(note.get("updated_at") != null ? note.get("updated_at").toString() : null);
+            item.setUrl("/reader/note/" + noteId);
+
+            items.put(item.getId(), item);
+        }
+        return items;
+    }
 
-                // 计算相关性
-                double relevance = calculateRelevance(query, text, text);
-                item.setRelevance(relevance);
+    private Map<String, SearchItem> loadHighlightItems(List<Long> highlightIds, String query) {
+        Map<String, SearchItem> items = new HashMap<>();
+        String sql = "SELECT h.highlight_id, h.document_id, h.page, h.text, h.note, h.created_at, h.updated_at, " +
+                "d.title as document_title FROM document_highlights h " +
+                "LEFT JOIN documents d ON h.document_id = d.document_id " +
+                "WHERE h.highlight_id IN (" + placeholders(highlightIds.size()) + ")";
+        for (Map<String, Object> highlight : jdbcTemplate.queryForList(sql, highlightIds.toArray())) {
+            SearchItem item = new SearchItem();
+            Long highlightId = ((Number) highlight.get("highlight_id")).longValue();
+
+            item.setId("highlight_" + highlightId);
+            item.setType("highlight");
+            item.setTitle("高亮 - " + highlight.get("document_title"));
+            item.setSelectedText((String) highlight.get("text"));
+            item.setNote((String) highlight.get("note"));
+            item.setDocumentTitle((String) highlight.get("document_title"));
+            item.setDocumentId(((Number) highlight.get("document_id")).longValue());
+            item.setPageNumber(highlight.get("page") != null ? ((Number) highlight.get("page")).intValue() : 0);
+
+            String text = (String) highlight.get("text");
+            SnippetBuilder.Snippet snippet = SnippetBuilder.snippet(query, text, 100);
+            item.setExcerpt(snippet.getText());
+
+            Map<String, Object> hl = new HashMap<>();
+            hl.put("text", SnippetBuilder.ranges(query, text));
+            hl.put("excerpt", snippet.getRanges());
+            item.setHighlight(hl);
+
+            item.setCreatedAt(highlight.get("created_at") != null ? highlight.get("created_at").toString() : null);
+            item.setUpdatedAt(highlight.get("updated_at") != null ? highlight.get("updated_at").toString() : null);
+            item.setUrl("/reader/highlight/" + highlightId);
+
+            items.put(item.getId(), item);
+        }
+        return items;
+    }
 
-                // 构建高亮信息
-                Map<String, Object> hl = new HashMap<>();
-                hl.put("text", highlightText(query, text));
-                item.setHighlight(hl);
+    // 搜索公开文档；查询失败直接抛出，由 fanOutExecutor 把该数据源标记为出错并返回 partial
+    private List<SearchItem> searchPublicDocuments(String query, int offset, int limit) {
+        List<SearchItem> results = new ArrayList<>();
+        String like = "%" + query + "%";
+
+        String sql = "SELECT d.document_id, d.title, d.description, d.author, d.language, d.created_at, d.updated_at, " +
+                "(SELECT dp.content FROM document_pages dp WHERE dp.document_id = d.document_id " +
+                "AND dp.content LIKE ? ORDER BY dp.page_number LIMIT 1) AS page_content, " +
+                "(SELECT COALESCE(SUM(dp.word_count), 0) FROM document_pages dp " +
+                "WHERE dp.document_id = d.document_id) AS word_count " +
+                "FROM documents d WHERE " + PUBLIC_DOCUMENT_MATCH +
+                "ORDER BY d.created_at DESC LIMIT ? OFFSET ?";
+
+        List<Map<String, Object>> documents = jdbcTemplate.queryForList(sql, like, like, like, like, limit, offset);
+
+        for (Map<String, Object> doc : documents) {
+            SearchItem item = new SearchItem();
+            item.setId("doc_" + doc.get("document_id"));
+            item.setType("document");
+            item.setTitle((String) doc.get("title"));
+
+            // 摘要取第一个命中的页面，只有标题或简介命中时用简介
+            String content = doc.get("page_content") != null ? (String) doc.get("page_content") : (String) doc.get("description");
+            SnippetBuilder.Snippet snippet = SnippetBuilder.snippet(query, content, 200);
+            item.setExcerpt(snippet.getText());
+
+            item.setAuthor((String) doc.get("author"));
+            item.setLanguage((String) doc.get("language"));
+            item.setWordCount(doc.get("word_count") != null ? ((Number) doc.get("word_count")).intValue() : 0);
+
+            // 计算相关性（简单实现）
+            double relevance = calculateRelevance(query, (String) doc.get("title"), content);
+            item.setRelevance(relevance);
+
+            // 构建高亮信息
+            Map<String, Object> highlight = new HashMap<>();
+            highlight.put("title", SnippetBuilder.ranges(query, (String) doc.get("title")));
+            highlight.put("excerpt", snippet.getRanges());
+            item.setHighlight(highlight);
+
+            item.setCreatedAt(doc.get("created_at") != null ? doc.get("created_at").toString() : null);
+            item.setUpdatedAt(doc.get("updated_at") != null ? doc.get("updated_at").toString() : null);
+            item.setUrl("/documents/" + doc.get("document_id"));
+
+            results.add(item);
+        }
 
-                item.setCreatedAt(highlight.get("created_at") != null ? highlight.get("created_at").toString() : null);
-                item.setUrl("/reader/highlight/" + highlightId);
+        return results;
+    }
 
-                results.add(item);
-            }
+    // 搜索词汇，释义取排在最前的一条
+    private List<SearchItem> searchVocabulary(String query, int offset, int limit) {
+        List<SearchItem> results = new ArrayList<>();
+        String like = "%" + query + "%";
+
+        String sql = "SELECT w.word_id, w.word, w.phonetic, w.difficulty, " +
+                "(SELECT wd.definition FROM word_definitions wd WHERE wd.word_id = w.word_id " +
+                "ORDER BY wd.order_index, wd.definition_id LIMIT 1) AS definition " +
+                "FROM words w WHERE " + WORD_MATCH +
+                "ORDER BY w.word ASC LIMIT ? OFFSET ?";
+
+        List<Map<String, Object>> words = jdbcTemplate.queryForList(sql, like, like, limit, offset);
+
+        for (Map<String, Object> word : words) {
+            SearchItem item = new SearchItem();
+            Long wordId = ((Number) word.get("word_id")).longValue();
+
+            item.setId("word_" + wordId);
+            item.setType("vocabulary");
+            item.setTitle((String) word.get("word"));
+            item.setWord((String) word.get("word"));
+            item.setPhonetic((String) word.get("phonetic"));
+            item.setDifficulty((String) word.get("difficulty"));
+            item.setDefinition((String) word.get("definition"));
+
+            // 生成摘要
+            String definition = (String) word.get("definition");
+            SnippetBuilder.Snippet snippet = SnippetBuilder.snippet(query, definition, 100);
+            item.setExcerpt(snippet.getText());
+
+            // 计算相关性
+            double relevance = calculateRelevance(query, (String) word.get("word"), definition);
+            item.setRelevance(relevance);
+
+            // 构建高亮信息
+            Map<String, Object> highlight = new HashMap<>();
+            highlight.put("word", SnippetBuilder.ranges(query, (String) word.get("word")));
+            highlight.put("definition", SnippetBuilder.ranges(query, definition));
+            highlight.put("excerpt", snippet.getRanges());
+            item.setHighlight(highlight);
+
+            item.setUrl("/vocabulary/" + wordId);
+
+            results.add(item);
+        }
 
-        } catch (Exception e) {
-            System.err.println("搜索高亮时发生错误: " + e.getMessage());
+        // 第一页没有子串匹配时改找拼写相近的单词
+        if (results.isEmpty() && offset == 0) {
+            results = searchSimilarWords(query, limit);
         }
 
         return results;
     }
 
-    // 保存搜索历史
-    private void saveSearchHistory(Long userId, String keyword, String searchType, int resultCount) {
-        try {
-            String sql = "INSERT INTO search_history (user_id, keyword, search_type, result_count, timestamp) " +
-                    "VALUES (?, ?, ?, ?, NOW())";
-            jdbcTemplate.update(sql, userId, keyword, searchType, resultCount);
-            System.out.println("已保存搜索历史: 用户=" + userId + ", 关键词=" + keyword);
-        } catch (Exception e) {
-            System.err.println("保存搜索历史失败: " + e.getMessage());
-        }
+    // 公开文档的分面计数：与 searchPublicDocuments 相同的匹配条件，一次分组聚合得到语言和月份，标签另做一次聚合
+    // 分面与当前页在同一个任务里，聚合失败时整个数据源标记为出错，不会带着 0 条的计数返回
+    private FacetCounts countPublicDocumentFacets(String query) {
+        FacetCounts counts = new FacetCounts();
+        String like = "%" + query + "%";
+        jdbcTemplate.query("SELECT d.language, DATE_FORMAT(d.created_at, '%Y-%m') AS month, COUNT(*) AS count " +
+                        "FROM documents d WHERE " + PUBLIC_DOCUMENT_MATCH + "GROUP BY d.language, month",
+                (RowCallbackHandler) rs -> {
+                    long count = rs.getLong("count");
+                    counts.add(FacetCounts.TYPE, "documents", count);
+                    counts.add(FacetCounts.LANGUAGE, rs.getString("language"), count);
+                    counts.add(FacetCounts.MONTH, rs.getString("month"), count);
+                },
+                like, like, like);
+        jdbcTemplate.query("SELECT t.tag_name, COUNT(*) AS count FROM documents d " +
+                        "INNER JOIN document_tag_relations r ON r.document_id = d.document_id " +
+                        "INNER JOIN document_tags t ON r.tag_id = t.tag_id WHERE " + PUBLIC_DOCUMENT_MATCH + "GROUP BY t.tag_name",
+                (RowCallbackHandler) rs -> counts.add(FacetCounts.TAG, rs.getString("tag_name"), rs.getLong("count")),
+                like, like, like);
+        return counts;
     }
 
-    // 获取文档标签
-    private List<String> getDocumentTags(Long documentId) {
-        List<String> tags = new ArrayList<>();
-        try {
-            String sql = "SELECT t.tag_name FROM document_tags t " +
-                    "INNER JOIN document_tag_relations r ON t.tag_id = r.tag_id " +
-                    "WHERE r.document_id = ?";
-            List<Map<String, Object>> tagList = jdbcTemplate.queryForList(sql, documentId);
-            for (Map<String, Object> tag : tagList) {
-                tags.add((String) tag.get("tag_name"));
-            }
-        } catch (Exception e) {
-            System.err.println("获取文档标签失败: " + e.getMessage());
-        }
-        return tags;
+    // 词汇的分面计数，与 searchVocabulary 相同的条件，每个单词计一次
+    private FacetCounts countVocabularyFacets(String query) {
+        FacetCounts counts = new FacetCounts();
+        String like = "%" + query + "%";
+        jdbcTemplate.query("SELECT w.language, w.difficulty, COUNT(*) AS count FROM words w " +
+                        "WHERE " + WORD_MATCH + "GROUP BY w.language, w.difficulty",
+                (RowCallbackHandler) rs -> {
+                    long count = rs.getLong("count");
+                    counts.add(FacetCounts.TYPE, "vocabulary", count);
+                    counts.add(FacetCounts.LANGUAGE, rs.getString("language"), count);
+                    counts.add(FacetCounts.DIFFICULTY, rs.getString("difficulty"), count);
+                },
+                like, like);
+        return counts;
     }
 
-    // 获取单词例句
-    private List<String> getWordExamples(Long wordId) {
-        List<String> examples = new ArrayList<>();
-        try {
-            String sql = "SELECT example_text FROM word_examples WHERE word_id = ? LIMIT 3";
-            List<Map<String, Object>> exampleList = jdbcTemplate.queryForList(sql, wordId);
-            for (Map<String, Object> example : exampleList) {
-                examples.add((String) example.get("example_text"));
+    // 拼写相近的单词，按编辑距离、热度排序
+    private List<SearchItem> searchSimilarWords(String query, int limit) {
+        List<SearchItem> results = new ArrayList<>();
+        List<FuzzyWordIndex.Match> matches = fuzzyVocabularyService.lookup(query, null, limit);
+        if (matches.isEmpty()) {
+            return results;
+        }
+        List<Long> wordIds = new ArrayList<>();
+        for (FuzzyWordIndex.Match match : matches) {
+            wordIds.add(match.getEntry().getId());
+        }
+        Map<String, SearchItem> items = loadWordItems(wordIds, query);
+        for (FuzzyWordIndex.Match match : matches) {
+            SearchItem item = items.get("word_" + match.getEntry().getId());
+            if (item != null) {
+                item.setRelevance(Math.round(1.0 / (1 + match.getDistance()) * 10000) / 10000.0);
+                results.add(item);
             }
-        } catch (Exception e) {
-            System.err.println("获取单词例句失败: " + e.getMessage());
         }
-        return examples;
+        return results;
     }
 
-    // 获取单词标签
-    private List<String> getWordTags(Long wordId) {
-        List<String> tags = new ArrayList<>();
-        try {
-            String sql = "SELECT t.tag_name FROM vocabulary_tags t " +
-                    "INNER JOIN user_vocabulary_tags r ON t.tag_id = r.tag_id " +
-                    "WHERE r.word_id = ?";
-            List<Map<String, Object>> tagList = jdbcTemplate.queryForList(sql, wordId);
-            for (Map<String, Object> tag : tagList) {
-                tags.add((String) tag.get("tag_name"));
-            }
-        } catch (Exception e) {
-            System.err.println("获取单词标签失败: " + e.getMessage());
-        }
-        return tags;
+    // 复制缓存中的结果，缓存的对象本身不被修改
+    private SearchData copyOf(SearchData cached, long queryTime) {
+        SearchData copy = new SearchData(cached.getTotal(), cached.getPage(), cached.getPageSize(),
+                cached.getTotalPages(), cached.getItems(), cached.getFacets(), queryTime, cached.getType());
+        copy.setPartial(cached.isPartial());
+        copy.setSources(cached.getSources());
+        copy.setNextCursor(cached.getNextCursor());
+        copy.setSuggestion(cached.getSuggestion());
+        copy.setCached(true);
+        return copy;
+    }
+
+    // 保存搜索历史
+    private void saveSearchHistory(Long userId, String keyword, String searchType, int resultCount) {
+        // 由后台批量写入，搜索请求不等待数据库
+        historyWriter.record(userId, keyword, searchType, resultCount);
+        autocompleteService.recordSearch(userId, keyword, searchType);
     }
 
-    // 计算相关性（简单实现）
+    // 计算相关性：按分析后的查询词在标题、内容中出现的比例加权
     private double calculateRelevance(String query, String title, String content) {
         if (title == null) title = "";
         if (content == null) content = "";
 
-        String lowerQuery = query.toLowerCase();
-        String lowerTitle = title.toLowerCase();
-        String lowerContent = content.toLowerCase();
-
         double score = 0.0;
 
         // 标题匹配权重更高
-        if (lowerTitle.contains(lowerQuery)) {
-            score += 0.7;
-        }
+        score += 0.7 * SearchTokenizer.coverage(query, title);
 
         // 内容匹配
-        if (lowerContent.contains(lowerQuery)) {
-            score += 0.3;
-        }
+        score += 0.3 * SearchTokenizer.coverage(query, content);
 
         // 精确匹配加分
         if (title.contains(query) || content.contains(query)) {
@@ -850,13 +1187,4 @@ public class SearchGlobal {
         return Math.min(score, 1.0);
     }
 
-    // 高亮文本
-    private String highlightText(String query, String text) {
-        if (text == null || query == null || query.isEmpty()) {
-            return text;
-        }
-
-        // 简单高亮实现
-        return text.replaceAll("(?i)(" + query + ")", "<mark>$1</mark>");
-    }
 }
\ No newline at end of file
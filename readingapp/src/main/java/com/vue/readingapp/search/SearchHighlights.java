@@ -6,6 +6,12 @@ import org.springframework.http.HttpStatus;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.AutocompleteService;
+import com.vue.readingapp.search.service.SearchTextMatcher;
+import com.vue.readingapp.search.service.SearchTokenizer;
+import com.vue.readingapp.search.service.SearchHistoryWriter;
+import com.vue.readingapp.search.service.SnippetBuilder;
 
 @RestController
 @RequestMapping("/api/v1/search")
@@ -14,6 +20,18 @@ public class SearchHighlights {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private SearchHistoryWriter historyWriter;
+
+    @Autowired
+    private AutocompleteService autocompleteService;
+
+    @Autowired
+    private SearchTextMatcher textMatcher;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到高亮搜索请求 ===");
@@ -228,16 +246,15 @@ public class SearchHighlights {
             }
 
             // 3. 构建SQL查询
+            SearchTextMatcher.Match match = matchQuery(query);
             StringBuilder sqlBuilder = new StringBuilder();
             sqlBuilder.append("SELECT h.highlight_id, h.selected_text, h.note, h.created_at, ");
             sqlBuilder.append("h.page_number, d.document_id, d.title as document_title ");
             sqlBuilder.append("FROM document_highlights h ");
             sqlBuilder.append("INNER JOIN documents d ON h.document_id = d.document_id ");
-            sqlBuilder.append("WHERE (h.selected_text LIKE ? OR h.note LIKE ?) AND h.user_id = ? ");
+            sqlBuilder.append("WHERE ").append(match.getCondition()).append(" AND h.user_id = ? ");
 
-            List<Object> params = new ArrayList<>();
-            params.add("%" + query + "%");
-            params.add("%" + query + "%");
+            List<Object> params = new ArrayList<>(match.getConditionParams());
             params.add(userId);
 
             // 添加文档过滤
@@ -262,7 +279,12 @@ public class SearchHighlights {
             int total = jdbcTemplate.queryForObject(countSql, Integer.class, params.toArray());
 
             // 5. 添加排序和分页
-            if ("relevance".equals(sortBy)) {
+            if ("relevance".equals(sortBy) && match.isFulltext()) {
+                // 全文索引相关度排序
+                sqlBuilder.append("ORDER BY ").append(match.getScore()).append(" DESC, ");
+                sqlBuilder.append("h.created_at DESC ");
+                params.addAll(match.getScoreParams());
+            } else if ("relevance".equals(sortBy)) {
                 // 相关性排序：选中的文本匹配优先
                 sqlBuilder.append("ORDER BY CASE WHEN h.selected_text LIKE ? THEN 1 ");
                 sqlBuilder.append("WHEN h.note LIKE ? THEN 2 ");
@@ -321,11 +343,8 @@ public class SearchHighlights {
                         excerptSource = noteText;
                     }
 
-                    if (excerptSource != null && excerptSource.length() > 120) {
-                        item.setExcerpt(excerptSource.substring(0, 120) + "...");
-                    } else {
-                        item.setExcerpt(excerptSource);
-                    }
+                    SnippetBuilder.Snippet snippet = SnippetBuilder.snippet(query, excerptSource, 120);
+                    item.setExcerpt(snippet.getText());
                 }
 
                 // 计算相关性
@@ -334,8 +353,9 @@ public class SearchHighlights {
 
                 // 构建高亮信息
                 Map<String, Object> hl = new HashMap<>();
-                hl.put("selectedText", highlightText(query, selectedText));
-                hl.put("note", highlightText(query, noteText));
+                hl.put("selectedText", SnippetBuilder.ranges(query, selectedText));
+                hl.put("note", SnippetBuilder.ranges(query, noteText));
+                hl.put("excerpt", SnippetBuilder.ranges(query, item.getExcerpt()));
                 item.setHighlight(hl);
 
                 item.setCreatedAt(highlight.get("created_at") != null ?
@@ -346,7 +366,7 @@ public class SearchHighlights {
             }
 
             // 8. 构建facet数据
-            Map<String, Object> facets = buildHighlightFacets(query, userId, filters);
+            Map<String, Object> facets = buildHighlightFacets(match, userId, filters);
 
             // 9. 记录搜索历史
             saveSearchHistory(userId, query, "highlights", total);
@@ -383,8 +403,7 @@ public class SearchHighlights {
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
             try {
-                String sql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-                List<Map<String, Object>> sessions = jdbcTemplate.queryForList(sql, token);
+                List<Map<String, Object>> sessions = sessionResolver.findSession(token);
                 if (!sessions.isEmpty()) {
                     return ((Number) sessions.get(0).get("user_id")).longValue();
                 }
@@ -400,21 +419,13 @@ public class SearchHighlights {
         if (selectedText == null) selectedText = "";
         if (note == null) note = "";
 
-        String lowerQuery = query.toLowerCase();
-        String lowerSelectedText = selectedText.toLowerCase();
-        String lowerNote = note.toLowerCase();
-
         double score = 0.0;
 
         // 选中的文本匹配权重更高
-        if (lowerSelectedText.contains(lowerQuery)) {
-            score += 0.7;
-        }
+        score += 0.7 * SearchTokenizer.coverage(query, selectedText);
 
         // 笔记匹配
-        if (lowerNote.contains(lowerQuery)) {
-            score += 0.3;
-        }
+        score += 0.3 * SearchTokenizer.coverage(query, note);
 
         // 精确匹配加分
         if (selectedText.contains(query) || note.contains(query)) {
@@ -424,17 +435,14 @@ public class SearchHighlights {
         return Math.min(score, 1.0);
     }
 
-    // 高亮文本
-    private String highlightText(String query, String text) {
-        if (text == null || query == null || query.isEmpty()) {
-            return text;
-        }
-
-        return text.replaceAll("(?i)(" + query + ")", "<mark>$1</mark>");
+    // 高亮搜索的匹配条件：全文索引建在高亮文本和批注上
+    private SearchTextMatcher.Match matchQuery(String query) {
+        return textMatcher.match(SearchTextMatcher.ENDPOINT_HIGHLIGHTS, query,
+                new String[]{"h.selected_text", "h.note"}, new String[]{"h.text", "h.note"});
     }
 
     // 构建高亮facet数据
-    private Map<String, Object> buildHighlightFacets(String query, Long userId, Map<String, Object> filters) {
+    private Map<String, Object> buildHighlightFacets(SearchTextMatcher.Match match, Long userId, Map<String, Object> filters) {
         Map<String, Object> facets = new HashMap<>();
 
         try {
@@ -442,22 +450,22 @@ public class SearchHighlights {
             String documentSql = "SELECT d.document_id, d.title, COUNT(*) as count " +
                     "FROM document_highlights h " +
                     "INNER JOIN documents d ON h.document_id = d.document_id " +
-                    "WHERE (h.selected_text LIKE ? OR h.note LIKE ?) AND h.user_id = ? " +
+                    "WHERE " + match.getCondition() + " AND h.user_id = ? " +
                     "GROUP BY d.document_id, d.title ORDER BY count DESC LIMIT 10";
 
-            List<Map<String, Object>> documentFacet = jdbcTemplate.queryForList(documentSql,
-                    "%" + query + "%", "%" + query + "%", userId);
+            List<Object> params = new ArrayList<>(match.getConditionParams());
+            params.add(userId);
+            List<Map<String, Object>> documentFacet = jdbcTemplate.queryForList(documentSql, params.toArray());
             facets.put("documents", documentFacet);
 
             // 日期facet（按月统计）
-            String dateSql = "SELECT DATE_FORMAT(created_at, '%Y-%m') as month, COUNT(*) as count " +
-                    "FROM document_highlights " +
-                    "WHERE (selected_text LIKE ? OR note LIKE ?) AND user_id = ? " +
-                    "GROUP BY DATE_FORMAT(created_at, '%Y-%m') " +
+            String dateSql = "SELECT DATE_FORMAT(h.created_at, '%Y-%m') as month, COUNT(*) as count " +
+                    "FROM document_highlights h " +
+                    "WHERE " + match.getCondition() + " AND h.user_id = ? " +
+                    "GROUP BY DATE_FORMAT(h.created_at, '%Y-%m') " +
                     "ORDER BY month DESC LIMIT 12";
 
-            List<Map<String, Object>> dateFacet = jdbcTemplate.queryForList(dateSql,
-                    "%" + query + "%", "%" + query + "%", userId);
+            List<Map<String, Object>> dateFacet = jdbcTemplate.queryForList(dateSql, params.toArray());
             facets.put("months", dateFacet);
 
         } catch (Exception e) {
@@ -469,13 +477,8 @@ public class SearchHighlights {
 
     // 保存搜索历史
     private void saveSearchHistory(Long userId, String keyword, String searchType, int resultCount) {
-        try {
-            String sql = "INSERT INTO search_history (user_id, keyword, search_type, result_count, timestamp) " +
-                    "VALUES (?, ?, ?, ?, NOW())";
-            jdbcTemplate.update(sql, userId, keyword, searchType, resultCount);
-            System.out.println("已保存高亮搜索历史: 用户=" + userId + ", 关键词=" + keyword);
-        } catch (Exception e) {
-            System.err.println("保存搜索历史失败: " + e.getMessage());
-        }
+        // 由后台批量写入，搜索请求不等待数据库
+        historyWriter.record(userId, keyword, searchType, resultCount);
+        autocompleteService.recordSearch(userId, keyword, searchType);
     }
 }
@@ -7,6 +7,12 @@ import org.springframework.http.HttpStatus;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.AutocompleteService;
+import com.vue.readingapp.search.service.SearchTextMatcher;
+import com.vue.readingapp.search.service.SearchTokenizer;
+import com.vue.readingapp.search.service.SearchHistoryWriter;
+import com.vue.readingapp.search.service.SnippetBuilder;
 
 @RestController
 @RequestMapping("/api/v1/search")
@@ -15,6 +21,18 @@ public class SearchNotes {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private SearchHistoryWriter historyWriter;
+
+    @Autowired
+    private AutocompleteService autocompleteService;
+
+    @Autowired
+    private SearchTextMatcher textMatcher;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到笔记搜索请求 ===");
@@ -132,7 +150,6 @@ public class SearchNotes {
     public static class NoteItem {
         private String id;
         private String title;
-        private String content;
         private String excerpt;
         private String documentTitle;
         private Long documentId;
@@ -149,9 +166,6 @@ public class SearchNotes {
         public String getTitle() { return title; }
         public void setTitle(String title) { this.title = title; }
 
-        public String getContent() { return content; }
-        public void setContent(String content) { this.content = content; }
-
         public String getExcerpt() { return excerpt; }
         public void setExcerpt(String excerpt) { this.excerpt = excerpt; }
 
@@ -225,15 +239,15 @@ public class SearchNotes {
             }
 
             // 3. 构建SQL查询
+            SearchTextMatcher.Match match = textMatcher.match(SearchTextMatcher.ENDPOINT_NOTES, query, "n.content");
             StringBuilder sqlBuilder = new StringBuilder();
             sqlBuilder.append("SELECT n.note_id, n.content, n.created_at, n.updated_at, ");
             sqlBuilder.append("d.document_id, d.title as document_title ");
             sqlBuilder.append("FROM document_notes n ");
             sqlBuilder.append("INNER JOIN documents d ON n.document_id = d.document_id ");
-            sqlBuilder.append("WHERE n.content LIKE ? AND n.user_id = ? ");
+            sqlBuilder.append("WHERE ").append(match.getCondition()).append(" AND n.user_id = ? ");
 
-            List<Object> params = new ArrayList<>();
-            params.add("%" + query + "%");
+            List<Object> params = new ArrayList<>(match.getConditionParams());
             params.add(userId);
 
             // 添加文档过滤
@@ -258,7 +272,12 @@ public class SearchNotes {
             int total = jdbcTemplate.queryForObject(countSql, Integer.class, params.toArray());
 
             // 5. 添加排序和分页
-            if ("relevance".equals(sortBy)) {
+            if ("relevance".equals(sortBy) && match.isFulltext()) {
+                // 全文索引相关度排序
+                sqlBuilder.append("ORDER BY ").append(match.getScore()).append(" DESC, ");
+                sqlBuilder.append("n.created_at DESC ");
+                params.addAll(match.getScoreParams());
+            } else if ("relevance".equals(sortBy)) {
                 // 相关性排序：内容匹配程度
                 sqlBuilder.append("ORDER BY CASE WHEN n.content LIKE ? THEN 1 ELSE 0 END DESC, ");
                 sqlBuilder.append("n.created_at DESC ");
@@ -289,7 +308,6 @@ public class SearchNotes {
                 Long docId = ((Number) note.get("document_id")).longValue();
 
                 item.setId("note_" + noteId);
-                item.setContent((String) note.get("content"));
                 item.setDocumentTitle((String) note.get("document_title"));
                 item.setDocumentId(docId);
 
@@ -302,22 +320,19 @@ public class SearchNotes {
                     } else {
                         item.setTitle(content);
                     }
-
-                    // 取前150个字符作为摘要
-                    if (content.length() > 150) {
-                        item.setExcerpt(content.substring(0, 150) + "...");
-                    } else {
-                        item.setExcerpt(content);
-                    }
                 }
 
+                // 摘要取命中最集中的一段
+                SnippetBuilder.Snippet snippet = SnippetBuilder.snippet(query, content, 150);
+                item.setExcerpt(snippet.getText());
+
                 // 计算相关性
                 double relevance = calculateRelevance(query, content);
                 item.setRelevance(relevance);
 
                 // 构建高亮信息
                 Map<String, Object> highlight = new HashMap<>();
-                highlight.put("content", highlightText(query, content));
+                highlight.put("excerpt", snippet.getRanges());
                 item.setHighlight(highlight);
 
                 item.setCreatedAt(note.get("created_at") != null ? note.get("created_at").toString() : null);
@@ -328,7 +343,7 @@ public class SearchNotes {
             }
 
             // 8. 构建facet数据
-            Map<String, Object> facets = buildNoteFacets(query, userId, filters);
+            Map<String, Object> facets = buildNoteFacets(match, userId, filters);
 
             // 9. 记录搜索历史
             saveSearchHistory(userId, query, "notes", total);
@@ -365,8 +380,7 @@ public class SearchNotes {
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
             try {
-                String sql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-                List<Map<String, Object>> sessions = jdbcTemplate.queryForList(sql, token);
+                List<Map<String, Object>> sessions = sessionResolver.findSession(token);
                 if (!sessions.isEmpty()) {
                     return ((Number) sessions.get(0).get("user_id")).longValue();
                 }
@@ -381,15 +395,10 @@ public class SearchNotes {
     private double calculateRelevance(String query, String content) {
         if (content == null) content = "";
 
-        String lowerQuery = query.toLowerCase();
-        String lowerContent = content.toLowerCase();
-
         double score = 0.0;
 
         // 内容匹配
-        if (lowerContent.contains(lowerQuery)) {
-            score += 1.0;
-        }
+        score += SearchTokenizer.coverage(query, content);
 
         // 精确匹配加分
         if (content.contains(query)) {
@@ -399,17 +408,8 @@ public class SearchNotes {
         return Math.min(score, 1.0);
     }
 
-    // 高亮文本
-    private String highlightText(String query, String text) {
-        if (text == null || query == null || query.isEmpty()) {
-            return text;
-        }
-
-        return text.replaceAll("(?i)(" + query + ")", "<mark>$1</mark>");
-    }
-
     // 构建笔记facet数据
-    private Map<String, Object> buildNoteFacets(String query, Long userId, Map<String, Object> filters) {
+    private Map<String, Object> buildNoteFacets(SearchTextMatcher.Match match, Long userId, Map<String, Object> filters) {
         Map<String, Object> facets = new HashMap<>();
 
         try {
@@ -417,22 +417,22 @@ public class SearchNotes {
             String documentSql = "SELECT d.document_id, d.title, COUNT(*) as count " +
                     "FROM document_notes n " +
                     "INNER JOIN documents d ON n.document_id = d.document_id " +
-                    "WHERE n.content LIKE ? AND n.user_id = ? " +
+                    "WHERE " + match.getCondition() + " AND n.user_id = ? " +
                     "GROUP BY d.document_id, d.title ORDER BY count DESC LIMIT 10";
 
-            List<Map<String, Object>> documentFacet = jdbcTemplate.queryForList(documentSql,
-                    "%" + query + "%", userId);
+            List<Object> params = new ArrayList<>(match.getConditionParams());
+            params.add(userId);
+            List<Map<String, Object>> documentFacet = jdbcTemplate.queryForList(documentSql, params.toArray());
             facets.put("documents", documentFacet);
 
             // 日期facet（按月统计）
-            String dateSql = "SELECT DATE_FORMAT(created_at, '%Y-%m') as month, COUNT(*) as count " +
-                    "FROM document_notes " +
-                    "WHERE content LIKE ? AND user_id = ? " +
-                    "GROUP BY DATE_FORMAT(created_at, '%Y-%m') " +
+            String dateSql = "SELECT DATE_FORMAT(n.created_at, '%Y-%m') as month, COUNT(*) as count " +
+                    "FROM document_notes n " +
+                    "WHERE " + match.getCondition() + " AND n.user_id = ? " +
+                    "GROUP BY DATE_FORMAT(n.created_at, '%Y-%m') " +
                     "ORDER BY month DESC LIMIT 12";
 
-            List<Map<String, Object>> dateFacet = jdbcTemplate.queryForList(dateSql,
-                    "%" + query + "%", userId);
+            List<Map<String, Object>> dateFacet = jdbcTemplate.queryForList(dateSql, params.toArray());
             facets.put("months", dateFacet);
 
         } catch (Exception e) {
@@ -444,13 +444,8 @@ public class SearchNotes {
 
     // 保存搜索历史
     private void saveSearchHistory(Long userId, String keyword, String searchType, int resultCount) {
-        try {
-            String sql = "INSERT INTO search_history (user_id, keyword, search_type, result_count, timestamp) " +
-                    "VALUES (?, ?, ?, ?, NOW())";
-            jdbcTemplate.update(sql, userId, keyword, searchType, resultCount);
-            System.out.println("已保存笔记搜索历史: 用户=" + userId + ", 关键词=" + keyword);
-        } catch (Exception e) {
-            System.err.println("保存搜索历史失败: " + e.getMessage());
-        }
+        // 由后台批量写入，搜索请求不等待数据库
+        historyWriter.record(userId, keyword, searchType, resultCount);
+        autocompleteService.recordSearch(userId, keyword, searchType);
     }
 }
\ No newline at end of file
@@ -0,0 +1,295 @@
+package com.vue.readingapp.search;
+
+import org.springframework.web.bind.annotation.*;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import java.util.*;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.PageIndexService;
+import com.vue.readingapp.search.service.SearchHistoryWriter;
+import com.vue.readingapp.search.service.SnippetBuilder;
+
+@RestController
+@RequestMapping("/api/v1/search")
+public class SearchPages {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private SearchHistoryWriter historyWriter;
+
+    @Autowired
+    private PageIndexService pageIndex;
+
+    // 打印接收到的请求
+    private void printRequest(Object request) {
+        System.out.println("=== 收到页面搜索请求 ===");
+        System.out.println("请求数据: " + request);
+        System.out.println("=====================");
+    }
+
+    // 打印查询结果
+    private void printQueryResult(Object result) {
+        System.out.println("=== 数据库查询结果 ===");
+        System.out.println("查询结果: " + result);
+        System.out.println("===================");
+    }
+
+    // 打印返回数据
+    private void printResponse(Object response) {
+        System.out.println("=== 准备返回的响应 ===");
+        System.out.println("响应数据: " + response);
+        System.out.println("===================");
+    }
+
+    // 响应DTO
+    public static class PageSearchResponse {
+        private boolean success;
+        private String message;
+        private PageSearchData data;
+
+        public PageSearchResponse(boolean success, String message, PageSearchData data) {
+            this.success = success;
+            this.message = message;
+            this.data = data;
+        }
+
+        public boolean isSuccess() { return success; }
+        public void setSuccess(boolean success) { this.success = success; }
+
+        public String getMessage() { return message; }
+        public void setMessage(String message) { this.message = message; }
+
+        public PageSearchData getData() { return data; }
+        public void setData(PageSearchData data) { this.data = data; }
+    }
+
+    public static class PageSearchData {
+        private int total;
+        private int page;
+        private int pageSize;
+        private int totalPages;
+        private List<PageItem> items;
+        private String engine;
+        private long queryTime;
+
+        public PageSearchData(int total, int page, int pageSize, int totalPages, List<PageItem> items,
+                              String engine, long queryTime) {
+            this.total = total;
+            this.page = page;
+            this.pageSize = pageSize;
+            this.totalPages = totalPages;
+            this.items = items;
+            this.engine = engine;
+            this.queryTime = queryTime;
+        }
+
+        public int getTotal() { return total; }
+        public void setTotal(int total) { this.total = total; }
+
+        public int getPage() { return page; }
+        public void setPage(int page) { this.page = page; }
+
+        public int getPageSize() { return pageSize; }
+        public void setPageSize(int pageSize) { this.pageSize = pageSize; }
+
+        public int getTotalPages() { return totalPages; }
+        public void setTotalPages(int totalPages) { this.totalPages = totalPages; }
+
+        public List<PageItem> getItems() { return items; }
+        public void setItems(List<PageItem> items) { this.items = items; }
+
+        public String getEngine() { return engine; }
+        public void setEngine(String engine) { this.engine = engine; }
+
+        public long getQueryTime() { return queryTime; }
+        public void setQueryTime(long queryTime) { this.queryTime = queryTime; }
+    }
+
+    public static class PageItem {
+        private Long documentId;
+        private String documentTitle;
+        private int pageNumber;
+        private double relevance;
+        private String excerpt;
+        private List<int[]> highlights;
+        private String url;
+
+        public Long getDocumentId() { return documentId; }
+        public void setDocumentId(Long documentId) { this.documentId = documentId; }
+
+        public String getDocumentTitle() { return documentTitle; }
+        public void setDocumentTitle(String documentTitle) { this.documentTitle = documentTitle; }
+
+        public int getPageNumber() { return pageNumber; }
+        public void setPageNumber(int pageNumber) { this.pageNumber = pageNumber; }
+
+        public double getRelevance() { return relevance; }
+        public void setRelevance(double relevance) { this.relevance = relevance; }
+
+        public String getExcerpt() { return excerpt; }
+        public void setExcerpt(String excerpt) { this.excerpt = excerpt; }
+
+        public List<int[]> getHighlights() { return highlights; }
+        public void setHighlights(List<int[]> highlights) { this.highlights = highlights; }
+
+        public String getUrl() { return url; }
+        public void setUrl(String url) { this.url = url; }
+    }
+
+    /**
+     * 在当前用户的所有文档中按页搜索正文；页面全文索引就绪时走磁盘段索引，否则退回数据库 LIKE
+     */
+    @GetMapping("/pages")
+    public ResponseEntity<PageSearchResponse> searchPages(
+            @RequestParam(required = false) String query,
+            @RequestParam(required = false, defaultValue = "1") Integer page,
+            @RequestParam(required = false, defaultValue = "20") Integer pageSize,
+            @RequestHeader(value = "Authorization", required = false) String authHeader) {
+
+        long startTime = System.currentTimeMillis();
+
+        // 打印接收到的请求
+        printRequest("query=" + query + ", page=" + page + ", pageSize=" + pageSize);
+
+        try {
+            // 1. 验证请求数据
+            if (query == null || query.trim().isEmpty()) {
+                return ResponseEntity.badRequest().body(
+                        new PageSearchResponse(false, "搜索关键词不能为空", null)
+                );
+            }
+            page = Math.max(1, page);
+            pageSize = Math.min(Math.max(1, pageSize), 100);
+
+            // 2. 获取当前用户ID
+            Long userId = getUserIdFromToken(authHeader);
+            if (userId == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
+                        new PageSearchResponse(false, "请先登录", null)
+                );
+            }
+
+            // 3. 检索命中页
+            int offset = (page - 1) * pageSize;
+            boolean segment = pageIndex.isReady();
+            List<Map<String, Object>> pages;
+            int total;
+            if (segment) {
+                PageIndexService.PageHits hits = pageIndex.searchPages(userId, query, offset, pageSize);
+                total = hits.getTotal();
+                pages = loadPages(hits.getHits());
+            } else {
+                String condition = "FROM document_pages p INNER JOIN documents d ON p.document_id = d.document_id " +
+                        "WHERE d.user_id = ? AND d.status = 'processed' AND d.deleted_at IS NULL AND p.content LIKE ? ";
+                total = jdbcTemplate.queryForObject("SELECT COUNT(*) " + condition, Integer.class, userId, "%" + query + "%");
+                pages = jdbcTemplate.queryForList("SELECT p.document_id, p.page_number, p.content, d.title " + condition +
+                        "ORDER BY p.document_id, p.page_number LIMIT ? OFFSET ?", userId, "%" + query + "%", pageSize, offset);
+            }
+            printQueryResult("找到 " + total + " 页，返回 " + pages.size() + " 页");
+
+            // 4. 生成摘要和高亮
+            List<PageItem> items = new ArrayList<>();
+            for (Map<String, Object> row : pages) {
+                SnippetBuilder.Snippet snippet = SnippetBuilder.snippet(query, (String) row.get("content"), 200);
+                PageItem item = new PageItem();
+                item.setDocumentId(((Number) row.get("document_id")).longValue());
+                item.setDocumentTitle((String) row.get("title"));
+                item.setPageNumber(((Number) row.get("page_number")).intValue());
+                item.setRelevance(row.get("score") != null ? ((Number) row.get("score")).doubleValue() : 0.0);
+                item.setExcerpt(snippet.getText());
+                item.setHighlights(snippet.getRanges());
+                item.setUrl("/documents/" + item.getDocumentId() + "?page=" + item.getPageNumber());
+                items.add(item);
+            }
+
+            // 5. 记录搜索历史
+            historyWriter.record(userId, query, "pages", total);
+
+            int totalPages = (int) Math.ceil((double) total / pageSize);
+            PageSearchData data = new PageSearchData(total, page, pageSize, totalPages, items,
+                    segment ? "segment" : "database", System.currentTimeMillis() - startTime);
+            PageSearchResponse response = new PageSearchResponse(true, "页面搜索成功", data);
+
+            // 打印返回数据
+            printResponse(response);
+
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            System.err.println("页面搜索过程中发生错误: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+                    new PageSearchResponse(false, "服务器内部错误: " + e.getMessage(), null)
+            );
+        }
+    }
+
+    // 按命中顺序取出页面内容和文档标题，第 0 页（没有分页的文档）取 documents.content；已删除的文档不返回
+    private List<Map<String, Object>> loadPages(List<PageIndexService.PageHit> hits) {
+        List<Map<String, Object>> pages = new ArrayList<>();
+        if (hits.isEmpty()) {
+            return pages;
+        }
+        Set<Long> documentIds = new LinkedHashSet<>();
+        List<Object> pageParams = new ArrayList<>();
+        for (PageIndexService.PageHit hit : hits) {
+            documentIds.add(hit.getDocumentId());
+            if (hit.getPageNumber() > 0) {
+                pageParams.add(hit.getDocumentId());
+                pageParams.add(hit.getPageNumber());
+            }
+        }
+        Map<Long, Map<String, Object>> documents = new HashMap<>();
+        for (Map<String, Object> row : jdbcTemplate.queryForList("SELECT d.document_id, d.title, d.content FROM documents d " +
+                "WHERE d.status = 'processed' AND d.deleted_at IS NULL AND d.document_id IN (" +
+                String.join(",", Collections.nCopies(documentIds.size(), "?")) + ")", documentIds.toArray())) {
+            documents.put(((Number) row.get("document_id")).longValue(), row);
+        }
+        Map<String, String> contents = new HashMap<>();
+        if (!pageParams.isEmpty()) {
+            for (Map<String, Object> row : jdbcTemplate.queryForList("SELECT document_id, page_number, content FROM document_pages " +
+                    "WHERE (document_id, page_number) IN (" +
+                    String.join(",", Collections.nCopies(pageParams.size() / 2, "(?, ?)")) + ")", pageParams.toArray())) {
+                contents.put(row.get("document_id") + "_" + row.get("page_number"), (String) row.get("content"));
+            }
+        }
+        for (PageIndexService.PageHit hit : hits) {
+            Map<String, Object> document = documents.get(hit.getDocumentId());
+            if (document == null) {
+                continue;
+            }
+            Map<String, Object> row = new HashMap<>();
+            row.put("document_id", hit.getDocumentId());
+            row.put("page_number", hit.getPageNumber());
+            row.put("title", document.get("title"));
+            row.put("content", hit.getPageNumber() > 0
+                    ? contents.get(hit.getDocumentId() + "_" + hit.getPageNumber()) : document.get("content"));
+            row.put("score", hit.getScore());
+            pages.add(row);
+        }
+        return pages;
+    }
+
+    // 从token获取用户ID
+    private Long getUserIdFromToken(String authHeader) {
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            String token = authHeader.substring(7);
+            try {
+                List<Map<String, Object>> sessions = sessionResolver.findSession(token);
+                if (!sessions.isEmpty()) {
+                    return ((Number) sessions.get(0).get("user_id")).longValue();
+                }
+            } catch (Exception e) {
+                System.out.println("Token解析失败: " + e.getMessage());
+            }
+        }
+        return null;
+    }
+}
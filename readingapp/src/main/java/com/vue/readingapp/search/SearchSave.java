@@ -6,6 +6,11 @@ import org.springframework.http.HttpStatus;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.AutocompleteService;
+import com.vue.readingapp.search.service.SearchStatsRollupService;
 
 @RestController
 @RequestMapping("/api/v1/search")
@@ -14,6 +19,15 @@ public class SearchSave {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private AutocompleteService autocompleteService;
+
+    @Autowired
+    private SearchStatsRollupService rollupService;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到保存搜索记录请求 ===");
@@ -127,11 +141,14 @@ public class SearchSave {
             List<Map<String, Object>> existingRecords = jdbcTemplate.queryForList(
                     checkSql, userId, request.getQuery(), request.getSearch_type());
 
+            // 历史时间戳与统计汇总的桶使用同一个应用时钟，不用数据库的 NOW()
+            LocalDateTime now = LocalDateTime.now();
+
             if (!existingRecords.isEmpty()) {
                 // 更新现有记录的时间戳
                 Long existingId = ((Number) existingRecords.get(0).get("search_id")).longValue();
-                String updateSql = "UPDATE search_history SET timestamp = NOW() WHERE search_id = ?";
-                jdbcTemplate.update(updateSql, existingId);
+                String updateSql = "UPDATE search_history SET timestamp = ? WHERE search_id = ?";
+                jdbcTemplate.update(updateSql, Timestamp.valueOf(now), existingId);
 
                 // 获取更新后的记录
                 String getSql = "SELECT search_id, keyword, search_type, timestamp FROM search_history WHERE search_id = ?";
@@ -154,9 +171,13 @@ public class SearchSave {
 
             // 4. 插入新的搜索记录
             String insertSql = "INSERT INTO search_history (user_id, keyword, search_type, result_count, timestamp) " +
-                    "VALUES (?, ?, ?, 0, NOW())";
+                    "VALUES (?, ?, ?, 0, ?)";
 
-            jdbcTemplate.update(insertSql, userId, request.getQuery(), request.getSearch_type());
+            jdbcTemplate.update(insertSql, userId, request.getQuery(), request.getSearch_type(),
+                    Timestamp.valueOf(now));
+            autocompleteService.recordSearch(userId, request.getQuery(), request.getSearch_type());
+            rollupService.apply(Collections.singletonList(new SearchStatsRollupService.Sample(
+                    userId, request.getSearch_type(), 0, now)));
 
             // 5. 获取刚插入的记录ID
             String lastIdSql = "SELECT LAST_INSERT_ID() as id";
@@ -199,8 +220,7 @@ public class SearchSave {
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
             try {
-                String sql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-                List<Map<String, Object>> sessions = jdbcTemplate.queryForList(sql, token);
+                List<Map<String, Object>> sessions = sessionResolver.findSession(token);
                 if (!sessions.isEmpty()) {
                     return ((Number) sessions.get(0).get("user_id")).longValue();
                 }
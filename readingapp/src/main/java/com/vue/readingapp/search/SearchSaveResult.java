@@ -6,6 +6,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.SavedSearchPercolator;
 
 @RestController
 @RequestMapping("/api/v1/search")
@@ -14,6 +16,12 @@ public class SearchSaveResult {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private SavedSearchPercolator percolator;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到保存搜索结果请求 ===");
@@ -39,10 +47,15 @@ public class SearchSaveResult {
     public static class SaveResultRequest {
         private Long searchId;
         private Map<String, Object> data;
+        // 有新的匹配内容时是否发通知；更新时不传表示保持原设置
+        private Boolean notify;
 
         public Long getSearchId() { return searchId; }
         public void setSearchId(Long searchId) { this.searchId = searchId; }
 
+        public Boolean getNotify() { return notify; }
+        public void setNotify(Boolean notify) { this.notify = notify; }
+
         public Map<String, Object> getData() { return data; }
         public void setData(Map<String, Object> data) { this.data = data; }
     }
@@ -181,6 +194,11 @@ public class SearchSaveResult {
 
                 String updateSql = "UPDATE saved_search_results SET saved_data = ?, updated_at = NOW() WHERE saved_id = ?";
                 jdbcTemplate.update(updateSql, dataJson, savedId);
+                if (request.getNotify() != null) {
+                    jdbcTemplate.update("UPDATE saved_search_results SET notify = ? WHERE saved_id = ?",
+                            request.getNotify(), savedId);
+                }
+                percolator.register(savedId);
 
                 // 获取更新后的记录
                 String getSql = "SELECT saved_id, search_id, saved_data, created_at, updated_at, note " +
@@ -220,15 +238,17 @@ public class SearchSaveResult {
             // 5. 插入新的保存记录
             String dataJson = new com.fasterxml.jackson.databind.ObjectMapper().writeValueAsString(request.getData());
 
-            String insertSql = "INSERT INTO saved_search_results (user_id, search_id, saved_data, created_at, updated_at) " +
-                    "VALUES (?, ?, ?, NOW(), NOW())";
+            String insertSql = "INSERT INTO saved_search_results (user_id, search_id, saved_data, notify, created_at, updated_at) " +
+                    "VALUES (?, ?, ?, ?, NOW(), NOW())";
 
-            jdbcTemplate.update(insertSql, userId, searchId, dataJson);
+            jdbcTemplate.update(insertSql, userId, searchId, dataJson, Boolean.TRUE.equals(request.getNotify()));
 
             // 6. 获取刚插入的记录ID
             String lastIdSql = "SELECT LAST_INSERT_ID() as id";
             Map<String, Object> lastIdResult = jdbcTemplate.queryForMap(lastIdSql);
             Long savedId = ((Number) lastIdResult.get("id")).longValue();
+            // 登记为常驻查询，之后写入的文档、笔记、高亮会与它匹配
+            percolator.register(savedId);
 
             // 7. 获取完整的保存记录信息
             String getSql = "SELECT saved_id, search_id, saved_data, created_at, updated_at, note " +
@@ -276,8 +296,7 @@ public class SearchSaveResult {
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
             try {
-                String sql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-                List<Map<String, Object>> sessions = jdbcTemplate.queryForList(sql, token);
+                List<Map<String, Object>> sessions = sessionResolver.findSession(token);
                 if (!sessions.isEmpty()) {
                     return ((Number) sessions.get(0).get("user_id")).longValue();
                 }
@@ -6,6 +6,13 @@ import org.springframework.http.HttpStatus;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.AutocompleteService;
+import com.vue.readingapp.search.service.FuzzyVocabularyService;
+import com.vue.readingapp.search.service.FuzzyWordIndex;
+import com.vue.readingapp.search.service.SearchHistoryWriter;
+import com.vue.readingapp.search.service.SearchTokenizer;
+import com.vue.readingapp.search.service.SnippetBuilder;
 
 @RestController
 @RequestMapping("/api/v1/search")
@@ -14,6 +21,18 @@ public class SearchVocabulary {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private SearchHistoryWriter historyWriter;
+
+    @Autowired
+    private AutocompleteService autocompleteService;
+
+    @Autowired
+    private FuzzyVocabularyService fuzzyVocabularyService;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到词汇搜索请求 ===");
@@ -93,6 +112,8 @@ public class SearchVocabulary {
         private List<VocabularyItem> items;
         private Map<String, Object> facets;
         private long queryTime;
+        // 没有子串匹配、结果来自拼写容错时为 true
+        private boolean fuzzy;
 
         public VocabularySearchData(int total, int page, int pageSize, int totalPages,
                                     List<VocabularyItem> items, Map<String, Object> facets,
@@ -126,6 +147,9 @@ public class SearchVocabulary {
 
         public long getQueryTime() { return queryTime; }
         public void setQueryTime(long queryTime) { this.queryTime = queryTime; }
+
+        public boolean isFuzzy() { return fuzzy; }
+        public void setFuzzy(boolean fuzzy) { this.fuzzy = fuzzy; }
     }
 
     public static class VocabularyItem {
@@ -144,6 +168,8 @@ public class SearchVocabulary {
         private String audioUrl;
         private String url;
         private boolean inVocabulary;
+        // 拼写容错结果与查询词的编辑距离，子串匹配的结果为 null
+        private Integer editDistance;
 
         // Getters and Setters
         public String getId() { return id; }
@@ -190,6 +216,9 @@ public class SearchVocabulary {
 
         public boolean isInVocabulary() { return inVocabulary; }
         public void setInVocabulary(boolean inVocabulary) { this.inVocabulary = inVocabulary; }
+
+        public Integer getEditDistance() { return editDistance; }
+        public void setEditDistance(Integer editDistance) { this.editDistance = editDistance; }
     }
 
     @GetMapping("/vocabulary")
@@ -298,6 +327,16 @@ public class SearchVocabulary {
             List<Map<String, Object>> words = jdbcTemplate.queryForList(sqlBuilder.toString(), params.toArray());
             printQueryResult("找到 " + total + " 个词汇，返回 " + words.size() + " 个");
 
+            // 6.1 没有子串匹配时改找拼写相近的单词（标签过滤依赖生词本关联，不做容错）
+            Map<Long, Integer> distances = new HashMap<>();
+            if (total == 0 && page == 1 && (tag == null || tag.isEmpty())) {
+                words = findSimilarWords(query, difficulty, language, pageSize, distances);
+                total = words.size();
+                if (total > 0) {
+                    printQueryResult("拼写容错找到 " + total + " 个相近词汇");
+                }
+            }
+
             // 7. 处理结果
             List<VocabularyItem> items = new ArrayList<>();
             for (Map<String, Object> word : words) {
@@ -312,15 +351,18 @@ public class SearchVocabulary {
                 item.setDifficulty((String) word.get("difficulty"));
 
                 // 计算相关性
-                double relevance = calculateRelevance(query, (String) word.get("word"),
-                        (String) word.get("definition"));
+                Integer distance = distances.get(wordId);
+                double relevance = distance != null
+                        ? Math.round(1.0 / (1 + distance) * 100.0) / 100.0
+                        : calculateRelevance(query, (String) word.get("word"), (String) word.get("definition"));
                 item.setRelevance(relevance);
+                item.setEditDistance(distance);
 
                 // 构建高亮信息
                 Map<String, Object> highlight = new HashMap<>();
-                highlight.put("word", highlightText(query, (String) word.get("word")));
-                highlight.put("definition", highlightText(query, (String) word.get("definition")));
-                highlight.put("translation", highlightText(query, (String) word.get("translation")));
+                highlight.put("word", SnippetBuilder.ranges(query, (String) word.get("word")));
+                highlight.put("definition", SnippetBuilder.ranges(query, (String) word.get("definition")));
+                highlight.put("translation", SnippetBuilder.ranges(query, (String) word.get("translation")));
                 item.setHighlight(highlight);
 
                 item.setCreatedAt(word.get("created_at") != null ? word.get("created_at").toString() : null);
@@ -361,6 +403,7 @@ public class SearchVocabulary {
             VocabularySearchData searchData = new VocabularySearchData(
                     total, page, pageSize, totalPages, items, facets, queryTime
             );
+            searchData.setFuzzy(!distances.isEmpty());
 
             VocabularySearchResponse response = new VocabularySearchResponse(true, "词汇搜索成功", searchData);
 
@@ -383,8 +426,7 @@ public class SearchVocabulary {
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
             try {
-                String sql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-                List<Map<String, Object>> sessions = jdbcTemplate.queryForList(sql, token);
+                List<Map<String, Object>> sessions = sessionResolver.findSession(token);
                 if (!sessions.isEmpty()) {
                     return ((Number) sessions.get(0).get("user_id")).longValue();
                 }
@@ -395,6 +437,49 @@ public class SearchVocabulary {
         return null;
     }
 
+    // 拼写相近的单词，按编辑距离、热度排序；distances 中写入每个单词的编辑距离
+    private List<Map<String, Object>> findSimilarWords(String query, String difficulty, String language, int limit,
+                                                       Map<Long, Integer> distances) {
+        List<Map<String, Object>> words = new ArrayList<>();
+        // 难度在索引外过滤，多取一些候选
+        List<FuzzyWordIndex.Match> matches = fuzzyVocabularyService.lookup(query,
+                language == null || language.isEmpty() ? null : language, limit * 4);
+        List<Long> wordIds = new ArrayList<>();
+        for (FuzzyWordIndex.Match match : matches) {
+            if (difficulty != null && !difficulty.isEmpty() && !difficulty.equals(match.getEntry().getDifficulty())) {
+                continue;
+            }
+            wordIds.add(match.getEntry().getId());
+            distances.put(match.getEntry().getId(), match.getDistance());
+            if (wordIds.size() >= limit) {
+                break;
+            }
+        }
+        if (wordIds.isEmpty()) {
+            return words;
+        }
+
+        String sql = "SELECT w.word_id, w.word, w.phonetic, wd.definition, wd.translation, " +
+                "w.created_at, w.updated_at, w.audio_url, w.difficulty, w.language " +
+                "FROM words w " +
+                "LEFT JOIN word_definitions wd ON w.word_id = wd.word_id " +
+                "WHERE w.word_id IN (" + String.join(", ", Collections.nCopies(wordIds.size(), "?")) + ")";
+        // 每个单词只保留第一条释义，按容错排序输出
+        Map<Long, Map<String, Object>> byId = new HashMap<>();
+        for (Map<String, Object> row : jdbcTemplate.queryForList(sql, wordIds.toArray())) {
+            byId.putIfAbsent(((Number) row.get("word_id")).longValue(), row);
+        }
+        for (Long wordId : wordIds) {
+            Map<String, Object> row = byId.get(wordId);
+            if (row != null) {
+                words.add(row);
+            } else {
+                distances.remove(wordId);
+            }
+        }
+        return words;
+    }
+
     // 计算相关性
     private double calculateRelevance(String query, String word, String definition) {
         if (word == null) word = "";
@@ -402,7 +487,6 @@ public class SearchVocabulary {
 
         String lowerQuery = query.toLowerCase();
         String lowerWord = word.toLowerCase();
-        String lowerDefinition = definition.toLowerCase();
 
         double score = 0.0;
 
@@ -413,25 +497,16 @@ public class SearchVocabulary {
             score += 0.6;
         } else if (lowerWord.contains(lowerQuery)) {
             score += 0.4;
+        } else {
+            score += 0.4 * SearchTokenizer.coverage(query, word);
         }
 
         // 定义匹配
-        if (lowerDefinition.contains(lowerQuery)) {
-            score += 0.2;
-        }
+        score += 0.2 * SearchTokenizer.coverage(query, definition);
 
         return Math.min(score, 1.0);
     }
 
-    // 高亮文本
-    private String highlightText(String query, String text) {
-        if (text == null || query == null || query.isEmpty()) {
-            return text;
-        }
-
-        return text.replaceAll("(?i)(" + query + ")", "<mark>$1</mark>");
-    }
-
     // 获取单词例句
     private List<String> getWordExamples(Long wordId) {
         List<String> examples = new ArrayList<>();
@@ -526,13 +601,8 @@ public class SearchVocabulary {
 
     // 保存搜索历史
     private void saveSearchHistory(Long userId, String keyword, String searchType, int resultCount) {
-        try {
-            String sql = "INSERT INTO search_history (user_id, keyword, search_type, result_count, timestamp) " +
-                    "VALUES (?, ?, ?, ?, NOW())";
-            jdbcTemplate.update(sql, userId, keyword, searchType, resultCount);
-            System.out.println("已保存词汇搜索历史: 用户=" + userId + ", 关键词=" + keyword);
-        } catch (Exception e) {
-            System.err.println("保存搜索历史失败: " + e.getMessage());
-        }
+        // 由后台批量写入，搜索请求不等待数据库
+        historyWriter.record(userId, keyword, searchType, resultCount);
+        autocompleteService.recordSearch(userId, keyword, searchType);
     }
 }
@@ -7,6 +7,8 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.multipart.MultipartFile;
 import java.util.*;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.SearchHistoryWriter;
 
 @RestController
 @RequestMapping("/api/v1/search")
@@ -15,6 +17,12 @@ public class SearchVoice {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private SearchHistoryWriter historyWriter;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到语音搜索请求 ===");
@@ -245,14 +253,8 @@ public class SearchVoice {
 
     // 保存语音搜索历史
     private void saveVoiceSearchHistory(Long userId, String text, String language, int resultCount) {
-        try {
-            String sql = "INSERT INTO voice_search_history (user_id, recognized_text, language, result_count, timestamp) " +
-                    "VALUES (?, ?, ?, ?, NOW())";
-            jdbcTemplate.update(sql, userId, text, language, resultCount);
-            System.out.println("已保存语音搜索历史: 用户=" + userId + ", 文本=" + text);
-        } catch (Exception e) {
-            System.err.println("保存语音搜索历史失败: " + e.getMessage());
-        }
+        // 由后台批量写入，搜索请求不等待数据库
+        historyWriter.recordVoice(userId, text, language, resultCount);
     }
 
     // 从token获取用户ID
@@ -260,8 +262,7 @@ public class SearchVoice {
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
             try {
-                String sql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-                List<Map<String, Object>> sessions = jdbcTemplate.queryForList(sql, token);
+                List<Map<String, Object>> sessions = sessionResolver.findSession(token);
                 if (!sessions.isEmpty()) {
                     return ((Number) sessions.get(0).get("user_id")).longValue();
                 }
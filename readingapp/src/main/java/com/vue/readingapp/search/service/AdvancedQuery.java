@@ -0,0 +1,496 @@
+package com.vue.readingapp.search.service;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 高级搜索查询语言
+ * 语法：空格分隔的条件默认为 AND，支持 AND / OR / NOT（或前缀 -）和括号；"..." 为短语；
+ * 字段限定写作 字段:值，字段有 title、tag、lang、difficulty、date、doc、type；
+ * 日期支持 date:2024、date:2024-05、date:[2024-01-01 TO 2024-03-31]、date:>=2024-01-01、date:2024-01-01..2024-02-01，
+ * 范围两端可以用 * 表示不限。type:notes 之类的条件只用于限定搜索来源。
+ */
+public final class AdvancedQuery {
+
+    public static final String FIELD_TITLE = "title";
+    public static final String FIELD_TAG = "tag";
+    public static final String FIELD_LANG = "lang";
+    public static final String FIELD_DIFFICULTY = "difficulty";
+    public static final String FIELD_DATE = "date";
+    public static final String FIELD_DOC = "doc";
+    public static final String FIELD_TYPE = "type";
+
+    // 防止超长查询生成过大的 SQL
+    private static final int MAX_CLAUSES = 32;
+    private static final int MAX_DEPTH = 8;
+
+    private static final Map<String, String> FIELD_ALIASES = new HashMap<>();
+    private static final Map<String, String> TYPE_ALIASES = new HashMap<>();
+
+    static {
+        for (String field : Arrays.asList(FIELD_TITLE, FIELD_TAG, FIELD_LANG, FIELD_DIFFICULTY, FIELD_DATE,
+                FIELD_DOC, FIELD_TYPE)) {
+            FIELD_ALIASES.put(field, field);
+        }
+        FIELD_ALIASES.put("language", FIELD_LANG);
+        FIELD_ALIASES.put("level", FIELD_DIFFICULTY);
+        FIELD_ALIASES.put("created", FIELD_DATE);
+        FIELD_ALIASES.put("document", FIELD_DOC);
+        FIELD_ALIASES.put("source", FIELD_TYPE);
+
+        TYPE_ALIASES.put("doc", "documents");
+        TYPE_ALIASES.put("document", "documents");
+        TYPE_ALIASES.put("documents", "documents");
+        TYPE_ALIASES.put("word", "vocabulary");
+        TYPE_ALIASES.put("words", "vocabulary");
+        TYPE_ALIASES.put("vocabulary", "vocabulary");
+        TYPE_ALIASES.put("note", "notes");
+        TYPE_ALIASES.put("notes", "notes");
+        TYPE_ALIASES.put("highlight", "highlights");
+        TYPE_ALIASES.put("highlights", "highlights");
+    }
+
+    private AdvancedQuery() {
+    }
+
+    /**
+     * 语法树节点
+     */
+    public abstract static class Node {
+    }
+
+    /**
+     * 单个条件；field 为 null 表示全文匹配。
+     * lenient 的条件来自旧版 filters，来源不支持该字段时忽略而不是判为不匹配。
+     */
+    public static final class Term extends Node {
+        private final String field;
+        private final String value;
+        private final boolean phrase;
+        private final boolean lenient;
+
+        public Term(String field, String value, boolean phrase, boolean lenient) {
+            this.field = field;
+            this.value = value;
+            this.phrase = phrase;
+            this.lenient = lenient;
+        }
+
+        public String getField() { return field; }
+        public String getValue() { return value; }
+        public boolean isPhrase() { return phrase; }
+        public boolean isLenient() { return lenient; }
+
+        @Override
+        public String toString() {
+            String text = phrase ? "\"" + value + "\"" : value;
+            return field == null ? text : field + ":" + text;
+        }
+    }
+
+    /**
+     * 日期范围，两端都包含；null 表示不限
+     */
+    public static final class Range extends Node {
+        private final String field;
+        private final LocalDate from;
+        private final LocalDate to;
+        private final boolean lenient;
+
+        public Range(String field, LocalDate from, LocalDate to, boolean lenient) {
+            this.field = field;
+            this.from = from;
+            this.to = to;
+            this.lenient = lenient;
+        }
+
+        public String getField() { return field; }
+        public LocalDate getFrom() { return from; }
+        public LocalDate getTo() { return to; }
+        public boolean isLenient() { return lenient; }
+
+        @Override
+        public String toString() {
+            return field + ":[" + (from == null ? "*" : from) + " TO " + (to == null ? "*" : to) + "]";
+        }
+    }
+
+    public static final class And extends Node {
+        private final List<Node> children;
+
+        public And(List<Node> children) {
+            this.children = Collections.unmodifiableList(new ArrayList<>(children));
+        }
+
+        public List<Node> getChildren() { return children; }
+
+        @Override
+        public String toString() {
+            return join(children, " AND ");
+        }
+    }
+
+    public static final class Or extends Node {
+        private final List<Node> children;
+
+        public Or(List<Node> children) {
+            this.children = Collections.unmodifiableList(new ArrayList<>(children));
+        }
+
+        public List<Node> getChildren() { return children; }
+
+        @Override
+        public String toString() {
+            return join(children, " OR ");
+        }
+    }
+
+    public static final class Not extends Node {
+        private final Node child;
+
+        public Not(Node child) {
+            this.child = child;
+        }
+
+        public Node getChild() { return child; }
+
+        @Override
+        public String toString() {
+            return "NOT " + wrap(child);
+        }
+    }
+
+    /**
+     * 解析查询；语法错误时抛出 IllegalArgumentException，消息可直接返回给用户
+     */
+    public static Node parse(String input) {
+        if (input == null || input.trim().isEmpty()) {
+            throw new IllegalArgumentException("查询不能为空");
+        }
+        Parser parser = new Parser(input);
+        Node node = parser.parseOr(0);
+        parser.skipSpaces();
+        if (parser.pos < input.length()) {
+            throw new IllegalArgumentException("查询第 " + (parser.pos + 1) + " 个字符处有多余的内容: "
+                    + input.substring(parser.pos));
+        }
+        return node;
+    }
+
+    /**
+     * 多个条件的 AND，只有一个时直接返回该条件
+     */
+    public static Node and(List<Node> nodes) {
+        return nodes.size() == 1 ? nodes.get(0) : new And(nodes);
+    }
+
+    /**
+     * 不在 NOT 之下的全文和标题条件的值，用于摘要、高亮和相关度计算
+     */
+    public static List<String> positiveTexts(Node node) {
+        List<String> texts = new ArrayList<>();
+        collectTexts(node, texts);
+        return texts;
+    }
+
+    /**
+     * 日期取值：yyyy、yyyy-MM 或 yyyy-MM-dd，返回对应的 [开始, 结束] 日期
+     */
+    static LocalDate[] parseDate(String value) {
+        try {
+            if (value.matches("\\d{4}")) {
+                int year = Integer.parseInt(value);
+                return new LocalDate[]{LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31)};
+            }
+            if (value.matches("\\d{4}-\\d{1,2}")) {
+                String[] parts = value.split("-");
+                YearMonth month = YearMonth.of(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+                return new LocalDate[]{month.atDay(1), month.atEndOfMonth()};
+            }
+            LocalDate date = LocalDate.parse(value);
+            return new LocalDate[]{date, date};
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException("无效的日期: " + value);
+        }
+    }
+
+    private static void collectTexts(Node node, List<String> texts) {
+        if (node instanceof Term) {
+            Term term = (Term) node;
+            if (term.field == null || FIELD_TITLE.equals(term.field)) {
+                texts.add(term.value);
+            }
+        } else if (node instanceof And) {
+            for (Node child : ((And) node).children) {
+                collectTexts(child, texts);
+            }
+        } else if (node instanceof Or) {
+            for (Node child : ((Or) node).children) {
+                collectTexts(child, texts);
+            }
+        }
+    }
+
+    private static String join(List<Node> children, String separator) {
+        StringBuilder builder = new StringBuilder();
+        for (Node child : children) {
+            if (builder.length() > 0) {
+                builder.append(separator);
+            }
+            builder.append(wrap(child));
+        }
+        return builder.toString();
+    }
+
+    private static String wrap(Node node) {
+        return node instanceof And || node instanceof Or ? "(" + node + ")" : node.toString();
+    }
+
+    // 递归下降解析：or := and (OR and)*；and := unary ([AND] unary)*；unary := (NOT | -) unary | primary
+    private static final class Parser {
+        private final String input;
+        private int pos;
+        private int clauses;
+
+        Parser(String input) {
+            this.input = input;
+        }
+
+        Node parseOr(int depth) {
+            List<Node> children = new ArrayList<>();
+            children.add(parseAnd(depth));
+            while (acceptKeyword("OR")) {
+                children.add(parseAnd(depth));
+            }
+            return children.size() == 1 ? children.get(0) : new Or(children);
+        }
+
+        Node parseAnd(int depth) {
+            List<Node> children = new ArrayList<>();
+            children.add(parseUnary(depth));
+            while (true) {
+                skipSpaces();
+                if (pos >= input.length() || input.charAt(pos) == ')' || peekKeyword("OR")) {
+                    break;
+                }
+                acceptKeyword("AND");
+                children.add(parseUnary(depth));
+            }
+            return children.size() == 1 ? children.get(0) : new And(children);
+        }
+
+        // 连续的 NOT / - 在循环里数出来再按奇偶合并，不递归，任意长的否定链都不会耗尽栈
+        Node parseUnary(int depth) {
+            boolean negated = false;
+            while (true) {
+                skipSpaces();
+                if (acceptKeyword("NOT")) {
+                    negated = !negated;
+                } else if (pos < input.length() - 1 && input.charAt(pos) == '-'
+                        && !Character.isWhitespace(input.charAt(pos + 1))) {
+                    pos++;
+                    negated = !negated;
+                } else {
+                    break;
+                }
+            }
+            Node primary = parsePrimary(depth);
+            return negated ? new Not(primary) : primary;
+        }
+
+        Node parsePrimary(int depth) {
+            skipSpaces();
+            if (pos >= input.length()) {
+                throw new IllegalArgumentException("查询在末尾缺少条件");
+            }
+            char c = input.charAt(pos);
+            if (c == '(') {
+                if (depth >= MAX_DEPTH) {
+                    throw new IllegalArgumentException("括号嵌套不能超过 " + MAX_DEPTH + " 层");
+                }
+                pos++;
+                Node node = parseOr(depth + 1);
+                skipSpaces();
+                if (pos >= input.length() || input.charAt(pos) != ')') {
+                    throw new IllegalArgumentException("缺少右括号");
+                }
+                pos++;
+                return node;
+            }
+            if (c == ')') {
+                throw new IllegalArgumentException("第 " + (pos + 1) + " 个字符处有多余的右括号");
+            }
+            countClause();
+            String field = readField();
+            if (field == null) {
+                if (c == '"') {
+                    return new Term(null, readPhrase(), true, false);
+                }
+                return new Term(null, readWord(), false, false);
+            }
+            return parseFieldValue(field);
+        }
+
+        private Node parseFieldValue(String field) {
+            if (pos >= input.length() || Character.isWhitespace(input.charAt(pos))) {
+                throw new IllegalArgumentException("字段 " + field + " 缺少取值");
+            }
+            char c = input.charAt(pos);
+            if (FIELD_DATE.equals(field) && (c == '[' || c == '>' || c == '<' || peekWordContains(".."))) {
+                return parseRange(field);
+            }
+            boolean phrase = c == '"';
+            String value = phrase ? readPhrase() : readWord();
+            switch (field) {
+                case FIELD_DATE:
+                    LocalDate[] range = parseDate(value);
+                    return new Range(field, range[0], range[1], false);
+                case FIELD_DOC:
+                    if (!value.matches("\\d{1,18}")) {
+                        throw new IllegalArgumentException("doc 的取值必须是文档 ID: " + value);
+                    }
+                    return new Term(field, value, false, false);
+                case FIELD_TYPE:
+                    String type = TYPE_ALIASES.get(value.toLowerCase(Locale.ROOT));
+                    if (type == null) {
+                        throw new IllegalArgumentException("无效的搜索类型: " + value
+                                + "，必须是 documents, vocabulary, notes, highlights");
+                    }
+                    return new Term(field, type, false, false);
+                default:
+                    return new Term(field, value, phrase, false);
+            }
+        }
+
+        private Node parseRange(String field) {
+            char c = input.charAt(pos);
+            LocalDate from = null;
+            LocalDate to = null;
+            if (c == '[') {
+                int close = input.indexOf(']', pos);
+                if (close < 0) {
+                    throw new IllegalArgumentException("日期范围缺少 ]");
+                }
+                String[] bounds = input.substring(pos + 1, close).trim().split("(?i)\\s+TO\\s+");
+                if (bounds.length != 2) {
+                    throw new IllegalArgumentException("日期范围应写作 [开始 TO 结束]");
+                }
+                pos = close + 1;
+                from = "*".equals(bounds[0].trim()) ? null : parseDate(bounds[0].trim())[0];
+                to = "*".equals(bounds[1].trim()) ? null : parseDate(bounds[1].trim())[1];
+            } else if (c == '>' || c == '<') {
+                pos++;
+                boolean inclusive = pos < input.length() && input.charAt(pos) == '=';
+                if (inclusive) {
+                    pos++;
+                }
+                LocalDate[] bound = parseDate(readWord());
+                if (c == '>') {
+                    from = inclusive ? bound[0] : bound[1].plusDays(1);
+                } else {
+                    to = inclusive ? bound[1] : bound[0].minusDays(1);
+                }
+            } else {
+                String word = readWord();
+                int dots = word.indexOf("..");
+                String left = word.substring(0, dots);
+                String right = word.substring(dots + 2);
+                from = left.isEmpty() || "*".equals(left) ? null : parseDate(left)[0];
+                to = right.isEmpty() || "*".equals(right) ? null : parseDate(right)[1];
+            }
+            if (from != null && to != null && from.isAfter(to)) {
+                throw new IllegalArgumentException("日期范围的开始晚于结束: " + from + " > " + to);
+            }
+            return new Range(field, from, to, false);
+        }
+
+        // 形如 name: 且 name 是已知字段时返回规范化的字段名并越过冒号，否则不移动位置
+        private String readField() {
+            int end = pos;
+            while (end < input.length() && Character.isLetter(input.charAt(end))) {
+                end++;
+            }
+            if (end == pos || end >= input.length() || input.charAt(end) != ':') {
+                return null;
+            }
+            String field = FIELD_ALIASES.get(input.substring(pos, end).toLowerCase(Locale.ROOT));
+            if (field != null) {
+                pos = end + 1;
+            }
+            return field;
+        }
+
+        private String readPhrase() {
+            int close = input.indexOf('"', pos + 1);
+            if (close < 0) {
+                throw new IllegalArgumentException("短语缺少结束引号");
+            }
+            String phrase = input.substring(pos + 1, close).trim();
+            pos = close + 1;
+            if (phrase.isEmpty()) {
+                throw new IllegalArgumentException("短语不能为空");
+            }
+            return phrase;
+        }
+
+        private String readWord() {
+            int start = pos;
+            while (pos < input.length()) {
+                char c = input.charAt(pos);
+                if (Character.isWhitespace(c) || c == '(' || c == ')' || c == '"') {
+                    break;
+                }
+                pos++;
+            }
+            if (pos == start) {
+                throw new IllegalArgumentException("第 " + (start + 1) + " 个字符处缺少查询词");
+            }
+            return input.substring(start, pos);
+        }
+
+        private boolean peekWordContains(String text) {
+            int end = pos;
+            while (end < input.length() && !Character.isWhitespace(input.charAt(end))
+                    && input.charAt(end) != ')') {
+                end++;
+            }
+            return input.substring(pos, end).contains(text);
+        }
+
+        // 运算符必须大写且独立成词，小写的 and / or / not 按普通查询词处理
+        private boolean peekKeyword(String keyword) {
+            skipSpaces();
+            int end = pos + keyword.length();
+            return input.startsWith(keyword, pos)
+                    && (end == input.length() || Character.isWhitespace(input.charAt(end)) || input.charAt(end) == '(');
+        }
+
+        private boolean acceptKeyword(String keyword) {
+            if (peekKeyword(keyword)) {
+                pos += keyword.length();
+                return true;
+            }
+            return false;
+        }
+
+        private void countClause() {
+            if (++clauses > MAX_CLAUSES) {
+                throw new IllegalArgumentException("查询条件不能超过 " + MAX_CLAUSES + " 个");
+            }
+        }
+
+        void skipSpaces() {
+            while (pos < input.length() && Character.isWhitespace(input.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+}
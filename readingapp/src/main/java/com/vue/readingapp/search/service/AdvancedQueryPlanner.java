@@ -0,0 +1,679 @@
+package com.vue.readingapp.search.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 高级搜索的查询计划
+ * 把 AdvancedQuery 的语法树按来源（文档、词汇、笔记、高亮）编译成 WHERE 条件：
+ * 来源不支持的字段条件视为不成立，化简后整棵树不成立的来源直接跳过，不再查询数据库；
+ * 顶层 AND 的各个条件按 代价 / (1 - 选择率) 升序排列，标签、日期、语言这类便宜且过滤性强的条件排在文本匹配之前，
+ * MySQL 对不走索引的条件按书写顺序短路求值。选择率取自定时加载的统计信息（行数、语言/难度/标签分布、日期范围），
+ * 统计不可用时使用默认值。
+ * 每个来源的 FROM 子句也由计划给出（Plan.getFrom），条件中的表别名与之对应；文档正文在 document_pages 中，
+ * 词汇的释义在 word_definitions 中，都用 EXISTS 子查询匹配，保证每个文档、单词只出一行。
+ */
+@Service
+public class AdvancedQueryPlanner {
+
+    public static final String SOURCE_DOCUMENTS = "documents";
+    public static final String SOURCE_VOCABULARY = "vocabulary";
+    public static final String SOURCE_NOTES = "notes";
+    public static final String SOURCE_HIGHLIGHTS = "highlights";
+    public static final List<String> SOURCES = Collections.unmodifiableList(
+            Arrays.asList(SOURCE_DOCUMENTS, SOURCE_VOCABULARY, SOURCE_NOTES, SOURCE_HIGHLIGHTS));
+
+    // 每行求值的相对代价
+    private static final double COST_COLUMN = 1;
+    private static final double COST_TAG = 2;
+    private static final double COST_FULLTEXT = 3;
+    private static final double COST_TITLE = 5;
+    private static final double COST_TEXT = 20;
+
+    // 没有统计信息时的默认选择率
+    private static final double DEFAULT_TEXT_SELECTIVITY = 0.1;
+    private static final double DEFAULT_TITLE_SELECTIVITY = 0.05;
+    private static final double DEFAULT_TAG_SELECTIVITY = 0.05;
+    private static final double DEFAULT_VALUE_SELECTIVITY = 0.3;
+    private static final double DEFAULT_DATE_SELECTIVITY = 0.3;
+    private static final double MIN_SELECTIVITY = 0.001;
+
+    private static final String DOCUMENT_TAG_SUBQUERY = " IN (SELECT r.document_id FROM document_tag_relations r " +
+            "INNER JOIN document_tags t ON r.tag_id = t.tag_id WHERE t.tag_name = ?)";
+
+    // 单词标签挂在用户生词本条目上，只看调用者自己的生词本
+    private static final String VOCABULARY_TAG_EXISTS = "EXISTS (SELECT 1 FROM user_vocabulary uv " +
+            "INNER JOIN user_vocabulary_tags ut ON ut.user_vocab_id = uv.user_vocab_id " +
+            "INNER JOIN vocabulary_tags vt ON ut.tag_id = vt.tag_id " +
+            "WHERE uv.word_id = w.word_id AND uv.user_id = ? AND vt.tag_name = ?)";
+
+    // %s 为 dp.content 上的匹配条件，与标题简介使用同一后端
+    private static final String PAGE_CONTENT_EXISTS = "EXISTS (SELECT 1 FROM document_pages dp " +
+            "WHERE dp.document_id = d.document_id AND %s)";
+
+    private static final String DEFINITION_EXISTS = "EXISTS (SELECT 1 FROM word_definitions wd " +
+            "WHERE wd.word_id = w.word_id AND wd.definition LIKE ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SearchTextMatcher textMatcher;
+
+    private volatile Map<String, TableStats> stats = Collections.emptyMap();
+    private volatile String statsLoadedAt;
+
+    /**
+     * 计划中的一个 AND 条件
+     */
+    public static final class Step {
+        private final String predicate;
+        private final String condition;
+        private final double selectivity;
+        private final double cost;
+
+        Step(String predicate, String condition, double selectivity, double cost) {
+            this.predicate = predicate;
+            this.condition = condition;
+            this.selectivity = selectivity;
+            this.cost = cost;
+        }
+
+        public String getPredicate() { return predicate; }
+        public String getCondition() { return condition; }
+        public double getSelectivity() { return selectivity; }
+        public double getCost() { return cost; }
+    }
+
+    /**
+     * 一个来源的执行计划；skipped 为 true 时不需要查询
+     */
+    public static final class Plan {
+        private final String source;
+        private final boolean skipped;
+        private final String reason;
+        private final String from;
+        private final String where;
+        private final List<Object> params;
+        private final List<Step> steps;
+        private final double estimatedRows;
+        private final double estimatedCost;
+        private final long planMicros;
+        private int rows = -1;
+        private long executeMs;
+
+        Plan(String source, boolean skipped, String reason, String where, List<Object> params, List<Step> steps,
+             double estimatedRows, double estimatedCost, long planMicros) {
+            this.source = source;
+            this.skipped = skipped;
+            this.reason = reason;
+            this.from = fromClause(source);
+            this.where = where;
+            this.params = params;
+            this.steps = steps;
+            this.estimatedRows = estimatedRows;
+            this.estimatedCost = estimatedCost;
+            this.planMicros = planMicros;
+        }
+
+        public String getSource() { return source; }
+        public boolean isSkipped() { return skipped; }
+        public String getReason() { return reason; }
+
+        /**
+         * FROM 子句（不含 FROM 关键字），与 where 中的表别名对应
+         */
+        public String getFrom() { return from; }
+
+        /**
+         * 完整的 WHERE 条件（不含 WHERE 关键字），包括来源自身的固定条件
+         */
+        public String getWhere() { return where; }
+        public List<Object> getParams() { return params; }
+        public List<Step> getSteps() { return steps; }
+
+        /**
+         * 记录实际执行的结果行数和耗时，用于 explain
+         */
+        public void recordExecution(int rows, long executeMs) {
+            this.rows = rows;
+            this.executeMs = executeMs;
+        }
+
+        public Map<String, Object> explain() {
+            Map<String, Object> explain = new LinkedHashMap<>();
+            explain.put("source", source);
+            explain.put("skipped", skipped);
+            if (skipped) {
+                explain.put("reason", reason);
+                return explain;
+            }
+            List<Map<String, Object>> stepList = new ArrayList<>();
+            for (Step step : steps) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("predicate", step.predicate);
+                item.put("condition", step.condition);
+                item.put("selectivity", round(step.selectivity));
+                item.put("cost", round(step.cost));
+                stepList.add(item);
+            }
+            explain.put("steps", stepList);
+            explain.put("where", where);
+            explain.put("params", params);
+            explain.put("estimatedRows", round(estimatedRows));
+            explain.put("estimatedCost", round(estimatedCost));
+            explain.put("planMicros", planMicros);
+            explain.put("rows", rows);
+            explain.put("executeMs", executeMs);
+            return explain;
+        }
+    }
+
+    // 编译后的条件；sql 为 null 表示常量（selectivity 为 1 或 0）
+    private static final class Expr {
+        static final Expr TRUE = new Expr("TRUE", null, Collections.emptyList(), 1, 0, null);
+        static final Expr FALSE = new Expr("FALSE", null, Collections.emptyList(), 0, 0, null);
+
+        final String label;
+        final String sql;
+        final List<Object> params;
+        final double selectivity;
+        final double cost;
+        // AND 节点排好序的子条件，用于在 explain 中逐项列出
+        final List<Expr> conjuncts;
+
+        Expr(String label, String sql, List<Object> params, double selectivity, double cost, List<Expr> conjuncts) {
+            this.label = label;
+            this.sql = sql;
+            this.params = params;
+            this.selectivity = selectivity;
+            this.cost = cost;
+            this.conjuncts = conjuncts;
+        }
+
+        boolean isConstant() {
+            return sql == null;
+        }
+
+        // AND 中越靠前越好：便宜且能过滤掉更多行
+        double andRank() {
+            return selectivity >= 1 ? Double.MAX_VALUE : cost / (1 - selectivity);
+        }
+
+        // OR 中越靠前越好：便宜且更可能成立
+        double orRank() {
+            return selectivity <= 0 ? Double.MAX_VALUE : cost / selectivity;
+        }
+    }
+
+    // 一张表的统计信息
+    private static final class TableStats {
+        long rows = -1;
+        long users;
+        LocalDate minDate;
+        LocalDate maxDate;
+        Map<String, Long> languages = Collections.emptyMap();
+        Map<String, Long> difficulties = Collections.emptyMap();
+        Map<String, Long> tags = Collections.emptyMap();
+    }
+
+    /**
+     * 为一个来源生成计划；userId 为 null 时只能搜索公共的词汇和文档
+     */
+    public Plan plan(String source, AdvancedQuery.Node query, Long userId) {
+        long begin = System.nanoTime();
+        boolean personal = SOURCE_NOTES.equals(source) || SOURCE_HIGHLIGHTS.equals(source);
+        if (personal && userId == null) {
+            return skipped(source, "笔记和高亮只在登录后搜索", begin);
+        }
+        Expr root = compile(source, query, userId);
+        if (root == Expr.FALSE) {
+            return skipped(source, "查询条件在该来源上不可能成立: " + query, begin);
+        }
+
+        List<Step> steps = new ArrayList<>();
+        List<String> conditions = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        // 来源自身的固定条件（状态、所属用户）放在最前面，通常由索引直接定位
+        if (SOURCE_DOCUMENTS.equals(source)) {
+            addFixed("d.status = 'processed' AND d.deleted_at IS NULL", null, steps, conditions, params);
+            if (userId != null) {
+                addFixed("d.user_id = ?", userId, steps, conditions, params);
+            } else {
+                addFixed("d.is_public = 1", null, steps, conditions, params);
+            }
+        } else if (SOURCE_NOTES.equals(source)) {
+            addFixed("n.user_id = ?", userId, steps, conditions, params);
+        } else if (SOURCE_HIGHLIGHTS.equals(source)) {
+            addFixed("h.user_id = ?", userId, steps, conditions, params);
+        }
+        List<Expr> conjuncts = root.isConstant() ? Collections.emptyList()
+                : root.conjuncts != null ? root.conjuncts : Collections.singletonList(root);
+        for (Expr conjunct : conjuncts) {
+            steps.add(new Step(conjunct.label, conjunct.sql, conjunct.selectivity, conjunct.cost));
+            conditions.add(conjunct.sql);
+            params.addAll(conjunct.params);
+        }
+        String where = conditions.isEmpty() ? "1=1" : String.join(" AND ", conditions);
+
+        double baseRows = baseRows(source, userId);
+        return new Plan(source, false, null, where, params, steps, baseRows * root.selectivity,
+                baseRows * root.cost, (System.nanoTime() - begin) / 1000);
+    }
+
+    /**
+     * 定时刷新选择率统计；表不存在或查询失败的部分保持为空，使用默认选择率
+     */
+    @Scheduled(initialDelayString = "${app.search.planner.stats-startup-delay-ms:15000}",
+            fixedDelayString = "${app.search.planner.stats-refresh-interval-ms:600000}")
+    public void refreshStats() {
+        Map<String, TableStats> fresh = new HashMap<>();
+        fresh.put(SOURCE_DOCUMENTS, loadTable("SELECT COUNT(*) AS total, COUNT(DISTINCT user_id) AS users, " +
+                "MIN(created_at) AS min_date, MAX(created_at) AS max_date FROM documents WHERE status = 'processed'"));
+        fresh.get(SOURCE_DOCUMENTS).languages = loadCounts(
+                "SELECT language AS name, COUNT(*) AS count FROM documents WHERE status = 'processed' GROUP BY language");
+        fresh.get(SOURCE_DOCUMENTS).tags = loadCounts("SELECT t.tag_name AS name, COUNT(*) AS count " +
+                "FROM document_tag_relations r INNER JOIN document_tags t ON r.tag_id = t.tag_id GROUP BY t.tag_name");
+
+        fresh.put(SOURCE_VOCABULARY, loadTable("SELECT COUNT(*) AS total, 0 AS users, " +
+                "NULL AS min_date, NULL AS max_date FROM words"));
+        fresh.get(SOURCE_VOCABULARY).languages = loadCounts(
+                "SELECT language AS name, COUNT(*) AS count FROM words GROUP BY language");
+        fresh.get(SOURCE_VOCABULARY).difficulties = loadCounts(
+                "SELECT difficulty AS name, COUNT(*) AS count FROM words GROUP BY difficulty");
+        fresh.get(SOURCE_VOCABULARY).tags = loadCounts("SELECT vt.tag_name AS name, COUNT(DISTINCT uv.word_id) AS count " +
+                "FROM user_vocabulary_tags ut INNER JOIN user_vocabulary uv ON ut.user_vocab_id = uv.user_vocab_id " +
+                "INNER JOIN vocabulary_tags vt ON ut.tag_id = vt.tag_id GROUP BY vt.tag_name");
+
+        fresh.put(SOURCE_NOTES, loadTable("SELECT COUNT(*) AS total, COUNT(DISTINCT user_id) AS users, " +
+                "MIN(created_at) AS min_date, MAX(created_at) AS max_date FROM document_notes"));
+        fresh.put(SOURCE_HIGHLIGHTS, loadTable("SELECT COUNT(*) AS total, COUNT(DISTINCT user_id) AS users, " +
+                "MIN(created_at) AS min_date, MAX(created_at) AS max_date FROM document_highlights"));
+
+        stats = fresh;
+        statsLoadedAt = LocalDateTime.now().toString();
+    }
+
+    public String getStatsLoadedAt() {
+        return statsLoadedAt;
+    }
+
+    private Plan skipped(String source, String reason, long begin) {
+        return new Plan(source, true, reason, null, Collections.emptyList(), Collections.emptyList(), 0, 0,
+                (System.nanoTime() - begin) / 1000);
+    }
+
+    private void addFixed(String condition, Object param, List<Step> steps, List<String> conditions,
+                          List<Object> params) {
+        steps.add(new Step("固定条件", condition, 1, COST_COLUMN));
+        conditions.add(condition);
+        if (param != null) {
+            params.add(param);
+        }
+    }
+
+    private Expr compile(String source, AdvancedQuery.Node node, Long userId) {
+        if (node instanceof AdvancedQuery.And) {
+            return compileAnd(source, ((AdvancedQuery.And) node).getChildren(), userId);
+        }
+        if (node instanceof AdvancedQuery.Or) {
+            return compileOr(source, ((AdvancedQuery.Or) node).getChildren(), userId);
+        }
+        if (node instanceof AdvancedQuery.Not) {
+            Expr child = compile(source, ((AdvancedQuery.Not) node).getChild(), userId);
+            if (child.isConstant()) {
+                return child == Expr.TRUE ? Expr.FALSE : Expr.TRUE;
+            }
+            // IS NOT TRUE 让列为 NULL 的行也满足 NOT，与“不包含该条件”的直观含义一致
+            return new Expr("NOT " + child.label, "(" + child.sql + ") IS NOT TRUE", child.params,
+                    1 - child.selectivity, child.cost, null);
+        }
+        if (node instanceof AdvancedQuery.Range) {
+            return compileRange(source, (AdvancedQuery.Range) node);
+        }
+        return compileTerm(source, (AdvancedQuery.Term) node, userId);
+    }
+
+    private Expr compileAnd(String source, List<AdvancedQuery.Node> nodes, Long userId) {
+        List<Expr> children = new ArrayList<>();
+        for (AdvancedQuery.Node node : nodes) {
+            Expr child = compile(source, node, userId);
+            if (child == Expr.FALSE) {
+                return Expr.FALSE;
+            }
+            if (child == Expr.TRUE) {
+                continue;
+            }
+            // 嵌套的 AND 展开后一起排序
+            children.addAll(child.conjuncts != null ? child.conjuncts : Collections.singletonList(child));
+        }
+        if (children.isEmpty()) {
+            return Expr.TRUE;
+        }
+        if (children.size() == 1) {
+            return children.get(0);
+        }
+        children.sort(Comparator.comparingDouble(Expr::andRank));
+        List<String> sql = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        double selectivity = 1;
+        double cost = 0;
+        for (Expr child : children) {
+            sql.add(child.sql);
+            labels.add(child.label);
+            params.addAll(child.params);
+            // 短路求值：只有通过前面条件的行才会计算后面的条件
+            cost += selectivity * child.cost;
+            selectivity *= child.selectivity;
+        }
+        return new Expr("(" + String.join(" AND ", labels) + ")", "(" + String.join(" AND ", sql) + ")",
+                params, selectivity, cost, children);
+    }
+
+    private Expr compileOr(String source, List<AdvancedQuery.Node> nodes, Long userId) {
+        List<Expr> children = new ArrayList<>();
+        for (AdvancedQuery.Node node : nodes) {
+            Expr child = compile(source, node, userId);
+            if (child == Expr.TRUE) {
+                return Expr.TRUE;
+            }
+            if (child != Expr.FALSE) {
+                children.add(child);
+            }
+        }
+        if (children.isEmpty()) {
+            return Expr.FALSE;
+        }
+        if (children.size() == 1) {
+            return children.get(0);
+        }
+        children.sort(Comparator.comparingDouble(Expr::orRank));
+        List<String> sql = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        double miss = 1;
+        double cost = 0;
+        for (Expr child : children) {
+            sql.add(child.sql);
+            labels.add(child.label);
+            params.addAll(child.params);
+            // 只有前面条件都不成立的行才会计算后面的条件
+            cost += miss * child.cost;
+            miss *= 1 - child.selectivity;
+        }
+        return new Expr("(" + String.join(" OR ", labels) + ")", "(" + String.join(" OR ", sql) + ")",
+                params, 1 - miss, cost, null);
+    }
+
+    private Expr compileRange(String source, AdvancedQuery.Range range) {
+        String column = dateColumn(source);
+        if (column == null) {
+            return range.isLenient() ? Expr.TRUE : Expr.FALSE;
+        }
+        List<String> conditions = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        // 不对列套 DATE()，保证 created_at 上的索引可用
+        if (range.getFrom() != null) {
+            conditions.add(column + " >= ?");
+            params.add(range.getFrom().toString());
+        }
+        if (range.getTo() != null) {
+            conditions.add(column + " < ?");
+            params.add(range.getTo().plusDays(1).toString());
+        }
+        if (conditions.isEmpty()) {
+            return Expr.TRUE;
+        }
+        return new Expr(range.toString(), "(" + String.join(" AND ", conditions) + ")", params,
+                dateSelectivity(table(source), range.getFrom(), range.getTo()), COST_COLUMN, null);
+    }
+
+    private Expr compileTerm(String source, AdvancedQuery.Term term, Long userId) {
+        String field = term.getField();
+        String value = term.getValue();
+        if (AdvancedQuery.FIELD_TYPE.equals(field)) {
+            return source.equals(value) ? Expr.TRUE : Expr.FALSE;
+        }
+        String column;
+        Expr expr = null;
+        if (field == null) {
+            expr = textPredicate(source, term);
+        } else if (AdvancedQuery.FIELD_TITLE.equals(field)) {
+            column = SOURCE_VOCABULARY.equals(source) ? "w.word" : "d.title";
+            expr = leaf(term, "(" + column + " LIKE ?)", "%" + value + "%", DEFAULT_TITLE_SELECTIVITY, COST_TITLE);
+        } else if (AdvancedQuery.FIELD_TAG.equals(field)) {
+            expr = tagPredicate(source, term, userId);
+        } else if (AdvancedQuery.FIELD_LANG.equals(field)) {
+            column = SOURCE_VOCABULARY.equals(source) ? "w.language" : "d.language";
+            TableStats table = SOURCE_VOCABULARY.equals(source) ? table(source) : table(SOURCE_DOCUMENTS);
+            expr = leaf(term, "(" + column + " = ?)", value,
+                    fraction(table.languages, value, table.rows, DEFAULT_VALUE_SELECTIVITY), COST_COLUMN);
+        } else if (AdvancedQuery.FIELD_DIFFICULTY.equals(field)) {
+            // 只有单词有难度，documents 表没有该列
+            if (SOURCE_VOCABULARY.equals(source)) {
+                TableStats table = table(source);
+                expr = leaf(term, "(w.difficulty = ?)", value,
+                        fraction(table.difficulties, value, table.rows, DEFAULT_VALUE_SELECTIVITY), COST_COLUMN);
+            }
+        } else if (AdvancedQuery.FIELD_DOC.equals(field)) {
+            column = documentColumn(source);
+            if (column != null) {
+                long documents = table(SOURCE_DOCUMENTS).rows;
+                expr = leaf(term, "(" + column + " = ?)", Long.parseLong(value),
+                        documents > 0 ? Math.max(MIN_SELECTIVITY, 1.0 / documents) : MIN_SELECTIVITY, COST_COLUMN);
+            }
+        }
+        if (expr == null) {
+            return term.isLenient() ? Expr.TRUE : Expr.FALSE;
+        }
+        return expr;
+    }
+
+    // 不带字段的查询词：与各搜索接口使用相同的匹配列，短语中有空格时按连续文本匹配（FULLTEXT 模式下先用索引缩小范围）
+    private Expr textPredicate(String source, AdvancedQuery.Term term) {
+        String value = term.getValue();
+        if (SOURCE_VOCABULARY.equals(source)) {
+            return like(term, new String[]{"w.word"}, DEFINITION_EXISTS);
+        }
+        String endpoint;
+        String[] columns;
+        boolean pages = false;
+        if (SOURCE_DOCUMENTS.equals(source)) {
+            // 全文索引建在标题和简介上，正文按页匹配
+            endpoint = SearchTextMatcher.ENDPOINT_DOCUMENTS;
+            columns = new String[]{"d.title", "d.description"};
+            pages = true;
+        } else if (SOURCE_NOTES.equals(source)) {
+            endpoint = SearchTextMatcher.ENDPOINT_NOTES;
+            columns = new String[]{"n.content"};
+        } else {
+            endpoint = SearchTextMatcher.ENDPOINT_HIGHLIGHTS;
+            columns = new String[]{"h.text", "h.note"};
+        }
+        SearchTextMatcher.Match match = textMatch(endpoint, term, columns);
+        if (pages) {
+            match = match.or(textMatch(endpoint, term, "dp.content").within(PAGE_CONTENT_EXISTS));
+        }
+        return new Expr(term.toString(), match.getCondition(), match.getConditionParams(), DEFAULT_TEXT_SELECTIVITY,
+                match.isFulltext() ? COST_FULLTEXT : COST_TEXT, null);
+    }
+
+    private SearchTextMatcher.Match textMatch(String endpoint, AdvancedQuery.Term term, String... columns) {
+        if (term.isPhrase() && term.getValue().matches(".*\\s.*")) {
+            return textMatcher.phrase(endpoint, term.getValue(), columns);
+        }
+        return textMatcher.match(endpoint, term.getValue(), columns);
+    }
+
+    private Expr tagPredicate(String source, AdvancedQuery.Term term, Long userId) {
+        String value = term.getValue();
+        if (SOURCE_VOCABULARY.equals(source)) {
+            // 单词标签是私有的，匿名请求没有可匹配的标签
+            if (userId == null) {
+                return null;
+            }
+            TableStats table = table(source);
+            return new Expr(term.toString(), VOCABULARY_TAG_EXISTS, Arrays.asList(userId, value),
+                    fraction(table.tags, value, table.rows, DEFAULT_TAG_SELECTIVITY), COST_TAG, null);
+        }
+        // 笔记和高亮按所属文档的标签过滤；IN 子查询可以先物化标签下的文档再驱动外层查询
+        TableStats documents = table(SOURCE_DOCUMENTS);
+        return leaf(term, "(" + documentColumn(source) + DOCUMENT_TAG_SUBQUERY + ")", value,
+                fraction(documents.tags, value, documents.rows, DEFAULT_TAG_SELECTIVITY), COST_TAG);
+    }
+
+    // related 为关联表上的 EXISTS 条件（带一个 LIKE 参数），可以为 null
+    private Expr like(AdvancedQuery.Term term, String[] columns, String related) {
+        List<String> conditions = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        for (String column : columns) {
+            conditions.add(column + " LIKE ?");
+            params.add("%" + term.getValue() + "%");
+        }
+        if (related != null) {
+            conditions.add(related);
+            params.add("%" + term.getValue() + "%");
+        }
+        return new Expr(term.toString(), "(" + String.join(" OR ", conditions) + ")", params,
+                DEFAULT_TEXT_SELECTIVITY, COST_TEXT, null);
+    }
+
+    private Expr leaf(AdvancedQuery.Term term, String sql, Object param, double selectivity, double cost) {
+        return new Expr(term.toString(), sql, Collections.singletonList(param), selectivity, cost, null);
+    }
+
+    private static String fromClause(String source) {
+        switch (source) {
+            case SOURCE_DOCUMENTS:
+                return "documents d";
+            case SOURCE_VOCABULARY:
+                return "words w";
+            case SOURCE_NOTES:
+                return "document_notes n INNER JOIN documents d ON n.document_id = d.document_id";
+            case SOURCE_HIGHLIGHTS:
+                return "document_highlights h INNER JOIN documents d ON h.document_id = d.document_id";
+            default:
+                return null;
+        }
+    }
+
+    private String dateColumn(String source) {
+        switch (source) {
+            case SOURCE_DOCUMENTS:
+                return "d.created_at";
+            case SOURCE_NOTES:
+                return "n.created_at";
+            case SOURCE_HIGHLIGHTS:
+                return "h.created_at";
+            default:
+                return null;
+        }
+    }
+
+    private String documentColumn(String source) {
+        switch (source) {
+            case SOURCE_DOCUMENTS:
+                return "d.document_id";
+            case SOURCE_NOTES:
+                return "n.document_id";
+            case SOURCE_HIGHLIGHTS:
+                return "h.document_id";
+            default:
+                return null;
+        }
+    }
+
+    private TableStats table(String source) {
+        TableStats table = stats.get(source);
+        return table == null ? new TableStats() : table;
+    }
+
+    // 来源的基础行数：个人数据按人均行数估算
+    private double baseRows(String source, Long userId) {
+        TableStats table = table(source);
+        if (table.rows < 0) {
+            return 1;
+        }
+        boolean perUser = userId != null && !SOURCE_VOCABULARY.equals(source);
+        return perUser && table.users > 0 ? (double) table.rows / table.users : table.rows;
+    }
+
+    private static double fraction(Map<String, Long> counts, String value, long rows, double fallback) {
+        if (rows <= 0 || counts.isEmpty()) {
+            return fallback;
+        }
+        Long count = counts.get(value);
+        // 统计中不存在的取值按半行估算，避免选择率为 0
+        return clamp((count == null ? 0.5 : count) / rows);
+    }
+
+    // 按日期范围与数据日期跨度的重叠比例估算（假设均匀分布）
+    private static double dateSelectivity(TableStats table, LocalDate from, LocalDate to) {
+        if (table.minDate == null || table.maxDate == null) {
+            return DEFAULT_DATE_SELECTIVITY;
+        }
+        LocalDate start = from == null || from.isBefore(table.minDate) ? table.minDate : from;
+        LocalDate end = to == null || to.isAfter(table.maxDate) ? table.maxDate : to;
+        if (end.isBefore(start)) {
+            return MIN_SELECTIVITY;
+        }
+        double span = ChronoUnit.DAYS.between(table.minDate, table.maxDate) + 1;
+        return clamp((ChronoUnit.DAYS.between(start, end) + 1) / span);
+    }
+
+    private static double clamp(double selectivity) {
+        return Math.max(MIN_SELECTIVITY, Math.min(1, selectivity));
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10000) / 10000.0;
+    }
+
+    private TableStats loadTable(String sql) {
+        TableStats table = new TableStats();
+        try {
+            jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+                table.rows = rs.getLong("total");
+                table.users = rs.getLong("users");
+                Timestamp min = rs.getTimestamp("min_date");
+                Timestamp max = rs.getTimestamp("max_date");
+                table.minDate = min == null ? null : min.toLocalDateTime().toLocalDate();
+                table.maxDate = max == null ? null : max.toLocalDateTime().toLocalDate();
+            });
+        } catch (Exception e) {
+            System.err.println("加载查询计划统计信息失败: " + e.getMessage());
+        }
+        return table;
+    }
+
+    private Map<String, Long> loadCounts(String sql) {
+        Map<String, Long> counts = new HashMap<>();
+        try {
+            jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+                String name = rs.getString("name");
+                if (name != null) {
+                    counts.put(name, rs.getLong("count"));
+                }
+            });
+        } catch (Exception e) {
+            System.err.println("加载查询计划统计信息失败: " + e.getMessage());
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,298 @@
+package com.vue.readingapp.search.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import javax.annotation.PostConstruct;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 搜索联想服务
+ * 文档标题、词典单词、搜索历史分别放在带权重的前缀树里：词典和全站搜索历史全局共享并定时重建，
+ * 每个用户的文档标题和个人搜索历史按需加载；写入时增量更新，每次按键不再查询数据库。
+ */
+@Service
+public class AutocompleteService {
+
+    public static final String TYPE_DOCUMENT = "document";
+    public static final String TYPE_VOCABULARY = "vocabulary";
+
+    // 高级搜索记录的是过滤条件而不是关键词，不参与联想
+    private static final String EXCLUDED_HISTORY_TYPE = "advanced";
+    private static final String DOCUMENT_VISIBLE = "status = 'processed' AND deleted_at IS NULL";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.search.autocomplete.max-users:2000}")
+    private long maxUsers;
+
+    @Value("${app.search.autocomplete.idle-minutes:30}")
+    private long idleMinutes;
+
+    @Value("${app.search.autocomplete.max-age-minutes:60}")
+    private long maxAgeMinutes;
+
+    @Value("${app.search.autocomplete.max-global-keywords:50000}")
+    private int maxGlobalKeywords;
+
+    @Value("${app.search.autocomplete.max-user-keywords:2000}")
+    private int maxUserKeywords;
+
+    private Cache<Long, UserCompletions> userCompletions;
+    private volatile CompletionTrie wordTrie;
+    private volatile CompletionTrie globalHistoryTrie;
+    private volatile CompletionTrie publicDocumentTrie;
+    private volatile String globalBuiltAt;
+
+    private final AtomicLong userBuilds = new AtomicLong();
+
+    private static final class UserCompletions {
+        private final CompletionTrie documents = new CompletionTrie(true);
+        private final CompletionTrie history = new CompletionTrie(false);
+    }
+
+    @PostConstruct
+    public void init() {
+        userCompletions = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterAccess(idleMinutes, TimeUnit.MINUTES)
+                .expireAfterWrite(maxAgeMinutes, TimeUnit.MINUTES)
+                .build();
+    }
+
+    /**
+     * 文档标题联想；登录用户只联想自己的文档，匿名请求只联想公开文档
+     */
+    public List<CompletionTrie.Entry> completeDocuments(String prefix, Long userId, int limit) {
+        CompletionTrie trie = userId != null ? user(userId).documents : globalTries().publicDocuments;
+        return trie.complete(prefix, limit, null);
+    }
+
+    /**
+     * 词典联想
+     */
+    public List<CompletionTrie.Entry> completeWords(String prefix, int limit) {
+        return globalTries().words.complete(prefix, limit, null);
+    }
+
+    /**
+     * 搜索历史联想；登录用户用个人历史，匿名请求用全站历史。types 为空表示不限搜索类型
+     */
+    public List<CompletionTrie.Entry> completeHistory(String prefix, Long userId, Set<String> types, int limit) {
+        CompletionTrie trie = userId != null ? user(userId).history : globalTries().history;
+        return trie.complete(prefix, limit, types);
+    }
+
+    /**
+     * 写入搜索历史后调用，增加该关键词的权重
+     */
+    public void recordSearch(Object userId, String keyword, String searchType) {
+        if (keyword == null || keyword.trim().isEmpty() || EXCLUDED_HISTORY_TYPE.equals(searchType)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        CompletionTrie global = globalHistoryTrie;
+        if (global != null) {
+            bump(global, keyword, searchType, now);
+        }
+        if (userId != null) {
+            UserCompletions completions = userCompletions.getIfPresent(((Number) userId).longValue());
+            if (completions != null) {
+                bump(completions.history, keyword, searchType, now);
+            }
+        }
+    }
+
+    /**
+     * 文档新增、修改、删除后调用
+     */
+    public void refreshDocument(Object userId, Object documentId) {
+        if (userId == null || documentId == null) {
+            return;
+        }
+        UserCompletions completions = userCompletions.getIfPresent(((Number) userId).longValue());
+        CompletionTrie publicDocuments = publicDocumentTrie;
+        if (completions == null && publicDocuments == null) {
+            return;
+        }
+        String id = "doc_" + documentId;
+        try {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                    "SELECT document_id, title, is_public, created_at FROM documents WHERE document_id = ? AND " + DOCUMENT_VISIBLE,
+                    ((Number) documentId).longValue());
+            Map<String, Object> row = rows.isEmpty() ? null : rows.get(0);
+            if (completions != null) {
+                if (row == null) {
+                    completions.documents.remove(id);
+                } else {
+                    completions.documents.put(documentEntry(row));
+                }
+            }
+            if (publicDocuments != null) {
+                if (row == null || !isTrue(row.get("is_public"))) {
+                    publicDocuments.remove(id);
+                } else {
+                    publicDocuments.put(documentEntry(row));
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("更新联想文档失败: " + e.getMessage());
+            invalidateUser(userId);
+        }
+    }
+
+    /**
+     * 搜索历史被删除或文档批量变化后调用，下次联想时重新加载该用户的数据
+     */
+    public void invalidateUser(Object userId) {
+        if (userId != null) {
+            userCompletions.invalidate(((Number) userId).longValue());
+        }
+    }
+
+    /**
+     * 定时重建全局前缀树，新树建好后整体替换
+     */
+    @Scheduled(fixedDelayString = "${app.search.autocomplete.global-rebuild-interval-ms:600000}",
+            initialDelayString = "${app.search.autocomplete.global-rebuild-interval-ms:600000}")
+    public void scheduledGlobalRebuild() {
+        try {
+            rebuildGlobal();
+        } catch (Exception e) {
+            System.err.println("重建全局联想数据失败: " + e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("loadedUsers", userCompletions.estimatedSize());
+        stats.put("userBuilds", userBuilds.get());
+        stats.put("words", wordTrie != null ? wordTrie.size() : 0);
+        stats.put("globalKeywords", globalHistoryTrie != null ? globalHistoryTrie.size() : 0);
+        stats.put("publicDocuments", publicDocumentTrie != null ? publicDocumentTrie.size() : 0);
+        stats.put("globalBuiltAt", globalBuiltAt);
+        return stats;
+    }
+
+    private static final class GlobalTries {
+        private final CompletionTrie words;
+        private final CompletionTrie history;
+        private final CompletionTrie publicDocuments;
+
+        GlobalTries(CompletionTrie words, CompletionTrie history, CompletionTrie publicDocuments) {
+            this.words = words;
+            this.history = history;
+            this.publicDocuments = publicDocuments;
+        }
+    }
+
+    private GlobalTries globalTries() {
+        if (wordTrie == null) {
+            synchronized (this) {
+                if (wordTrie == null) {
+                    rebuildGlobal();
+                }
+            }
+        }
+        return new GlobalTries(wordTrie, globalHistoryTrie, publicDocumentTrie);
+    }
+
+    private synchronized void rebuildGlobal() {
+        // 单词权重：被多少用户加入生词本
+        CompletionTrie words = new CompletionTrie(false);
+        jdbcTemplate.query("SELECT w.word_id, w.word, COUNT(uv.user_vocab_id) AS popularity FROM words w " +
+                        "LEFT JOIN user_vocabulary uv ON uv.word_id = w.word_id GROUP BY w.word_id, w.word",
+                (RowCallbackHandler) rs -> words.put(new CompletionTrie.Entry("word_" + rs.getLong("word_id"),
+                        rs.getString("word"), TYPE_VOCABULARY, 1 + rs.getLong("popularity"))));
+
+        CompletionTrie history = new CompletionTrie(false);
+        jdbcTemplate.query("SELECT keyword, search_type, COUNT(*) AS count, MAX(timestamp) AS last_time FROM search_history " +
+                        "WHERE search_type <> ? GROUP BY keyword, search_type ORDER BY count DESC LIMIT ?",
+                (RowCallbackHandler) rs -> history.put(historyEntry(rs.getString("keyword"), rs.getString("search_type"),
+                        rs.getLong("count"), rs.getTimestamp("last_time"))),
+                EXCLUDED_HISTORY_TYPE, maxGlobalKeywords);
+
+        CompletionTrie publicDocuments = new CompletionTrie(true);
+        jdbcTemplate.query("SELECT document_id, title, is_public, created_at FROM documents WHERE is_public = 1 AND " + DOCUMENT_VISIBLE,
+                (RowCallbackHandler) rs -> publicDocuments.put(new CompletionTrie.Entry("doc_" + rs.getLong("document_id"),
+                        rs.getString("title"), TYPE_DOCUMENT, recencyWeight(rs.getTimestamp("created_at")))));
+
+        globalHistoryTrie = history;
+        publicDocumentTrie = publicDocuments;
+        wordTrie = words;
+        globalBuiltAt = LocalDateTime.now().toString();
+        System.out.println("全局联想数据已重建: 单词 " + words.size() + " 个, 搜索词 " + history.size()
+                + " 个, 公开文档 " + publicDocuments.size() + " 篇");
+    }
+
+    private UserCompletions user(long userId) {
+        return userCompletions.get(userId, this::buildUser);
+    }
+
+    private UserCompletions buildUser(Long userId) {
+        UserCompletions completions = new UserCompletions();
+        jdbcTemplate.query("SELECT document_id, title, created_at FROM documents WHERE user_id = ? AND " + DOCUMENT_VISIBLE,
+                (RowCallbackHandler) rs -> completions.documents.put(new CompletionTrie.Entry("doc_" + rs.getLong("document_id"),
+                        rs.getString("title"), TYPE_DOCUMENT, recencyWeight(rs.getTimestamp("created_at")))),
+                userId);
+        jdbcTemplate.query("SELECT keyword, search_type, COUNT(*) AS count, MAX(timestamp) AS last_time FROM search_history " +
+                        "WHERE user_id = ? AND search_type <> ? GROUP BY keyword, search_type ORDER BY last_time DESC LIMIT ?",
+                (RowCallbackHandler) rs -> completions.history.put(historyEntry(rs.getString("keyword"), rs.getString("search_type"),
+                        rs.getLong("count"), rs.getTimestamp("last_time"))),
+                userId, EXCLUDED_HISTORY_TYPE, maxUserKeywords);
+        userBuilds.incrementAndGet();
+        return completions;
+    }
+
+    private void bump(CompletionTrie trie, String keyword, String searchType, long now) {
+        String id = historyId(keyword, searchType);
+        CompletionTrie.Entry old = trie.get(id);
+        long count = old != null ? (long) Math.floor(old.getWeight()) : 0;
+        trie.put(new CompletionTrie.Entry(id, keyword, searchType, count + 1 + recencyFraction(now)));
+    }
+
+    private CompletionTrie.Entry historyEntry(String keyword, String searchType, long count, Timestamp lastTime) {
+        long time = lastTime != null ? lastTime.getTime() : 0;
+        return new CompletionTrie.Entry(historyId(keyword, searchType), keyword, searchType, count + recencyFraction(time));
+    }
+
+    private CompletionTrie.Entry documentEntry(Map<String, Object> row) {
+        Object createdAt = row.get("created_at");
+        return new CompletionTrie.Entry("doc_" + row.get("document_id"), (String) row.get("title"), TYPE_DOCUMENT,
+                recencyWeight(createdAt instanceof Timestamp ? (Timestamp) createdAt : null));
+    }
+
+    private String historyId(String keyword, String searchType) {
+        return searchType + "\u0000" + keyword;
+    }
+
+    // 搜索次数相同时最近搜索过的排在前面；小数部分不影响整数次数
+    private double recencyFraction(long millis) {
+        return millis <= 0 ? 0 : Math.min(0.999, millis / 1e13);
+    }
+
+    // 文档按创建时间排序，与原来 ORDER BY created_at DESC 一致
+    private double recencyWeight(Timestamp createdAt) {
+        return createdAt != null ? createdAt.getTime() / 1000.0 : 0;
+    }
+
+    private boolean isTrue(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        return value instanceof Number && ((Number) value).intValue() != 0;
+    }
+}
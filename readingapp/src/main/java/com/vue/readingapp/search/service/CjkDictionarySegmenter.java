@@ -0,0 +1,178 @@
+package com.vue.readingapp.search.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * 基于词典的中日韩分词
+ * 查询端用正向最大匹配切出词典中的词，词典覆盖不到的片段退回二元组；
+ * 索引端输出所有单字、二元组以及每个位置开始的全部词典词（三字及以上），
+ * 这样无论查询端切成哪个词、还是退回二元组，都能在索引中找到对应的词项。
+ * 词典存成按码点排序的字典树，匹配时不产生临时字符串。
+ * signature() 是词典内容的摘要，与加载顺序无关，磁盘上的索引用它判断段里的词项是否按同一份词典切分。
+ */
+public class CjkDictionarySegmenter implements TextAnalyzer.CjkSegmenter {
+
+    private final Node root;
+    private final int maxLength;
+    private final int size;
+    private final String signature;
+
+    // 字典树节点：keys 有序，children 与 keys 一一对应
+    private static final class Node {
+        int[] keys = new int[0];
+        Node[] children = new Node[0];
+        boolean word;
+
+        Node child(int codePoint) {
+            int index = Arrays.binarySearch(keys, codePoint);
+            return index >= 0 ? children[index] : null;
+        }
+    }
+
+    /**
+     * words 中不全是中日韩文字或少于两个字的词被忽略
+     */
+    public CjkDictionarySegmenter(Collection<String> words) {
+        Map<Node, Map<Integer, Node>> building = new HashMap<>();
+        Node top = new Node();
+        int longest = 0;
+        int count = 0;
+        TreeSet<String> accepted = new TreeSet<>();
+        for (String word : words) {
+            if (word == null) {
+                continue;
+            }
+            int[] codePoints = word.trim().codePoints().map(TextAnalyzer::fold).toArray();
+            if (codePoints.length < 2 || !allCjk(codePoints)) {
+                continue;
+            }
+            Node node = top;
+            for (int codePoint : codePoints) {
+                node = building.computeIfAbsent(node, k -> new HashMap<>()).computeIfAbsent(codePoint, k -> new Node());
+            }
+            if (!node.word) {
+                node.word = true;
+                count++;
+                accepted.add(new String(codePoints, 0, codePoints.length));
+            }
+            longest = Math.max(longest, codePoints.length);
+        }
+        for (Map.Entry<Node, Map<Integer, Node>> entry : building.entrySet()) {
+            Node node = entry.getKey();
+            int[] keys = entry.getValue().keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            node.keys = keys;
+            node.children = new Node[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                node.children[i] = entry.getValue().get(keys[i]);
+            }
+        }
+        this.root = top;
+        this.maxLength = longest;
+        this.size = count;
+        this.signature = digest(accepted);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String signature() {
+        return signature;
+    }
+
+    private static String digest(Collection<String> sortedWords) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            for (String word : sortedWords) {
+                md.update(word.getBytes(StandardCharsets.UTF_8));
+                md.update((byte) '\n');
+            }
+            StringBuilder hex = new StringBuilder();
+            byte[] hash = md.digest();
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format("%02x", hash[i]));
+            }
+            return sortedWords.size() + "-" + hex;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void segment(int[] codePoints, int length, boolean indexSide, TextAnalyzer.Emitter emitter) {
+        if (indexSide) {
+            for (int i = 0; i < length; i++) {
+                emitter.emit(i, i + 1);
+                if (i + 1 < length) {
+                    emitter.emit(i, i + 2);
+                }
+                Node node = root.child(codePoints[i]);
+                for (int j = i + 1; node != null && j < length && j - i < maxLength; j++) {
+                    node = node.child(codePoints[j]);
+                    if (node != null && node.word && j - i + 1 > 2) {
+                        emitter.emit(i, j + 1);
+                    }
+                }
+            }
+            return;
+        }
+
+        // 正向最大匹配；uncovered 记录尚未被词典词覆盖的片段起点
+        int uncovered = 0;
+        int i = 0;
+        while (i < length) {
+            int matched = longestWord(codePoints, i, length);
+            if (matched >= 2) {
+                emitBigrams(uncovered, i, emitter);
+                emitter.emit(i, i + matched);
+                i += matched;
+                uncovered = i;
+            } else {
+                i++;
+            }
+        }
+        emitBigrams(uncovered, length, emitter);
+    }
+
+    private int longestWord(int[] codePoints, int from, int length) {
+        int best = 0;
+        Node node = root;
+        for (int j = from; j < length && j - from < maxLength; j++) {
+            node = node.child(codePoints[j]);
+            if (node == null) {
+                break;
+            }
+            if (node.word) {
+                best = j - from + 1;
+            }
+        }
+        return best;
+    }
+
+    // 词典未覆盖的片段按二元组输出，单字片段输出单字
+    private static void emitBigrams(int from, int to, TextAnalyzer.Emitter emitter) {
+        if (to - from == 1) {
+            emitter.emit(from, to);
+            return;
+        }
+        for (int i = from; i + 1 < to; i++) {
+            emitter.emit(i, i + 2);
+        }
+    }
+
+    private static boolean allCjk(int[] codePoints) {
+        for (int codePoint : codePoints) {
+            if (!TextAnalyzer.isCjk(codePoint)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,315 @@
+package com.vue.readingapp.search.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 带权重的前缀树，用于搜索联想
+ * 按码点逐级存储，中日韩文字与拉丁字母一样按单字前缀匹配；每个节点记录子树中的最大权重，
+ * 取前 k 条时按最大权重优先展开，不需要遍历整棵子树。
+ * 条目除了整串之外，还会从每个词的开头（中日韩文字从每个字）起插入后缀，使标题中间的词也能被前缀匹配。
+ */
+public class CompletionTrie {
+
+    // 键最多保留的码点数，更长的查询先按截断的前缀定位，再用完整文本过滤
+    private static final int MAX_KEY_LENGTH = 24;
+    // 单个条目最多插入的后缀数
+    private static final int MAX_SUFFIXES = 16;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final boolean indexSuffixes;
+
+    /**
+     * 联想条目
+     */
+    public static final class Entry {
+        private final String id;
+        private final String text;
+        private final String type;
+        private final double weight;
+        private final String normalized;
+
+        public Entry(String id, String text, String type, double weight) {
+            this.id = id;
+            this.text = text;
+            this.type = type;
+            this.weight = weight;
+            this.normalized = normalize(text);
+        }
+
+        public String getId() { return id; }
+        public String getText() { return text; }
+        public String getType() { return type; }
+        public double getWeight() { return weight; }
+    }
+
+    private static final class Posting {
+        private final Entry entry;
+        private final int offset;
+
+        Posting(Entry entry, int offset) {
+            this.entry = entry;
+            this.offset = offset;
+        }
+    }
+
+    // 子节点用有序码点数组加二分查找，比 HashMap 紧凑
+    private static final class Node {
+        private int[] keys = new int[0];
+        private Node[] children = new Node[0];
+        private List<Posting> postings;
+        private double maxWeight = Double.NEGATIVE_INFINITY;
+
+        Node child(int codePoint) {
+            int i = Arrays.binarySearch(keys, codePoint);
+            return i >= 0 ? children[i] : null;
+        }
+
+        Node childOrCreate(int codePoint) {
+            int i = Arrays.binarySearch(keys, codePoint);
+            if (i >= 0) {
+                return children[i];
+            }
+            int at = -i - 1;
+            int[] newKeys = new int[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, at);
+            System.arraycopy(children, 0, newChildren, 0, at);
+            newKeys[at] = codePoint;
+            newChildren[at] = new Node();
+            System.arraycopy(keys, at, newKeys, at + 1, keys.length - at);
+            System.arraycopy(children, at, newChildren, at + 1, children.length - at);
+            keys = newKeys;
+            children = newChildren;
+            return newChildren[at];
+        }
+
+        void removeChild(int codePoint) {
+            int i = Arrays.binarySearch(keys, codePoint);
+            if (i < 0) {
+                return;
+            }
+            int[] newKeys = new int[keys.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, i);
+            System.arraycopy(children, 0, newChildren, 0, i);
+            System.arraycopy(keys, i + 1, newKeys, i, keys.length - i - 1);
+            System.arraycopy(children, i + 1, newChildren, i, children.length - i - 1);
+            keys = newKeys;
+            children = newChildren;
+        }
+
+        boolean isEmpty() {
+            return keys.length == 0 && (postings == null || postings.isEmpty());
+        }
+
+        void recomputeMax() {
+            double max = Double.NEGATIVE_INFINITY;
+            if (postings != null) {
+                for (Posting posting : postings) {
+                    max = Math.max(max, posting.entry.weight);
+                }
+            }
+            for (Node child : children) {
+                max = Math.max(max, child.maxWeight);
+            }
+            maxWeight = max;
+        }
+    }
+
+    /**
+     * @param indexSuffixes 为 true 时标题中间的词也可被前缀匹配；单词和搜索词只需要整串前缀
+     */
+    public CompletionTrie(boolean indexSuffixes) {
+        this.indexSuffixes = indexSuffixes;
+    }
+
+    /**
+     * 写入或替换条目（按 id）
+     */
+    public void put(Entry entry) {
+        if (entry.normalized.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Entry old = entries.put(entry.id, entry);
+            if (old != null) {
+                removeLocked(old);
+            }
+            for (int offset : suffixOffsets(entry.normalized)) {
+                insert(root, entry.normalized, offset, 0, new Posting(entry, offset));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Entry old = entries.remove(id);
+            if (old != null) {
+                removeLocked(old);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Entry get(String id) {
+        lock.readLock().lock();
+        try {
+            return entries.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 取以 prefix 开头的权重最高的 k 条；types 为空表示不限类型
+     */
+    public List<Entry> complete(String prefix, int k, Set<String> types) {
+        String normalizedPrefix = normalize(prefix);
+        if (normalizedPrefix.isEmpty() || k <= 0) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            int depth = 0;
+            int i = 0;
+            while (i < normalizedPrefix.length() && depth < MAX_KEY_LENGTH) {
+                int codePoint = normalizedPrefix.codePointAt(i);
+                node = node.child(codePoint);
+                if (node == null) {
+                    return Collections.emptyList();
+                }
+                i += Character.charCount(codePoint);
+                depth++;
+            }
+            boolean truncated = i < normalizedPrefix.length();
+
+            // 节点和条目放在同一个队列里，按（最大）权重优先出队，出队的条目一定是剩余中最高的
+            PriorityQueue<Object[]> queue = new PriorityQueue<>((a, b) -> Double.compare((double) b[0], (double) a[0]));
+            queue.add(new Object[]{node.maxWeight, node});
+            List<Entry> result = new ArrayList<>();
+            Set<String> seen = new HashSet<>();
+            while (!queue.isEmpty() && result.size() < k) {
+                Object item = queue.poll()[1];
+                if (item instanceof Posting) {
+                    Posting posting = (Posting) item;
+                    Entry entry = posting.entry;
+                    if (truncated && !entry.normalized.startsWith(normalizedPrefix, posting.offset)) {
+                        continue;
+                    }
+                    if ((types == null || types.contains(entry.type)) && seen.add(entry.id)) {
+                        result.add(entry);
+                    }
+                    continue;
+                }
+                Node current = (Node) item;
+                if (current.postings != null) {
+                    for (Posting posting : current.postings) {
+                        queue.add(new Object[]{posting.entry.weight, posting});
+                    }
+                }
+                for (Node child : current.children) {
+                    queue.add(new Object[]{child.maxWeight, child});
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 小写并合并空白，联想时不区分大小写
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private List<Integer> suffixOffsets(String normalized) {
+        List<Integer> offsets = new ArrayList<>();
+        offsets.add(0);
+        if (!indexSuffixes) {
+            return offsets;
+        }
+        int previous = -1;
+        for (int i = 0; i < normalized.length() && offsets.size() < MAX_SUFFIXES; ) {
+            int codePoint = normalized.codePointAt(i);
+            boolean cjk = SearchTokenizer.isCjk(codePoint);
+            boolean wordStart = Character.isLetterOrDigit(codePoint)
+                    && (previous == -1 || !Character.isLetterOrDigit(previous) || SearchTokenizer.isCjk(previous));
+            if (i > 0 && (cjk || wordStart)) {
+                offsets.add(i);
+            }
+            previous = codePoint;
+            i += Character.charCount(codePoint);
+        }
+        return offsets;
+    }
+
+    private void insert(Node node, String text, int i, int depth, Posting posting) {
+        node.maxWeight = Math.max(node.maxWeight, posting.entry.weight);
+        if (i >= text.length() || depth >= MAX_KEY_LENGTH) {
+            if (node.postings == null) {
+                node.postings = new ArrayList<>(1);
+            }
+            node.postings.add(posting);
+            return;
+        }
+        int codePoint = text.codePointAt(i);
+        insert(node.childOrCreate(codePoint), text, i + Character.charCount(codePoint), depth + 1, posting);
+    }
+
+    private void removeLocked(Entry entry) {
+        for (int offset : suffixOffsets(entry.normalized)) {
+            delete(root, entry, offset, 0);
+        }
+    }
+
+    private void delete(Node node, Entry entry, int i, int depth) {
+        if (i >= entry.normalized.length() || depth >= MAX_KEY_LENGTH) {
+            if (node.postings != null) {
+                node.postings.removeIf(posting -> posting.entry == entry);
+            }
+        } else {
+            int codePoint = entry.normalized.codePointAt(i);
+            Node child = node.child(codePoint);
+            if (child == null) {
+                return;
+            }
+            delete(child, entry, i + Character.charCount(codePoint), depth + 1);
+            if (child.isEmpty()) {
+                node.removeChild(codePoint);
+            }
+        }
+        node.recomputeMax();
+    }
+}
@@ -0,0 +1,97 @@
+package com.vue.readingapp.search.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 搜索结果的分面计数：分面名 -> (取值 -> 命中数)
+ * 各数据源的计数（倒排索引检索时顺带统计，或数据库分组聚合）累加到一起，输出时每个分面只保留命中最多的若干个取值；
+ * 月份分面按时间倒序输出。
+ */
+public final class FacetCounts {
+
+    public static final String TYPE = "type";
+    public static final String TAG = "tag";
+    public static final String LANGUAGE = "language";
+    public static final String DIFFICULTY = "difficulty";
+    public static final String MONTH = "month";
+
+    // 每个分面最多返回的取值个数
+    private static final int MAX_VALUES = 20;
+
+    private final Map<String, Map<String, Long>> counts = new LinkedHashMap<>();
+
+    public FacetCounts() {
+        for (String facet : new String[]{TYPE, TAG, LANGUAGE, DIFFICULTY, MONTH}) {
+            counts.put(facet, new HashMap<>());
+        }
+    }
+
+    /**
+     * 取值为空时忽略
+     */
+    public void add(String facet, String value, long count) {
+        if (value == null || value.isEmpty() || count <= 0) {
+            return;
+        }
+        counts.computeIfAbsent(facet, k -> new HashMap<>()).merge(value, count, Long::sum);
+    }
+
+    /**
+     * 没有命中的取值也要出现在结果中（计数为 0），如类型分面的各个数据源
+     */
+    public void declare(String facet, List<String> values) {
+        Map<String, Long> existing = counts.computeIfAbsent(facet, k -> new HashMap<>());
+        for (String value : values) {
+            existing.putIfAbsent(value, 0L);
+        }
+    }
+
+    public void addAll(Map<String, Map<String, Integer>> facets) {
+        for (Map.Entry<String, Map<String, Integer>> facet : facets.entrySet()) {
+            for (Map.Entry<String, Integer> value : facet.getValue().entrySet()) {
+                add(facet.getKey(), value.getKey(), value.getValue());
+            }
+        }
+    }
+
+    public void merge(FacetCounts other) {
+        for (Map.Entry<String, Map<String, Long>> facet : other.counts.entrySet()) {
+            for (Map.Entry<String, Long> value : facet.getValue().entrySet()) {
+                add(facet.getKey(), value.getKey(), value.getValue());
+            }
+        }
+    }
+
+    public long get(String facet, String value) {
+        Map<String, Long> values = counts.get(facet);
+        return values == null ? 0L : values.getOrDefault(value, 0L);
+    }
+
+    /**
+     * 响应中的分面数据：按命中数降序（月份按时间倒序），同数时按取值排序
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, Long>> facet : counts.entrySet()) {
+            List<Map.Entry<String, Long>> values = new ArrayList<>(facet.getValue().entrySet());
+            Comparator<Map.Entry<String, Long>> order = MONTH.equals(facet.getKey())
+                    ? Map.Entry.<String, Long>comparingByKey().reversed()
+                    : Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey());
+            values.sort(order);
+            Map<String, Long> top = new LinkedHashMap<>();
+            for (Map.Entry<String, Long> value : values) {
+                if (top.size() >= MAX_VALUES && !TYPE.equals(facet.getKey())) {
+                    break;
+                }
+                top.put(value.getKey(), value.getValue());
+            }
+            result.put(facet.getKey(), top);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,144 @@
+package com.vue.readingapp.search.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 词典拼写容错检索
+ * 启动后全量加载 words 到 FuzzyWordIndex，之后定时增量加载新增的单词，每天全量重建一次以回收修改和删除。
+ * 单词热度取加入生词本的用户数（words 表没有词频列）。
+ */
+@Service
+public class FuzzyVocabularyService {
+
+    private static final String WORD_SQL = "SELECT w.word_id, w.word, w.language, w.difficulty, " +
+            "COUNT(uv.user_vocab_id) AS popularity FROM words w " +
+            "LEFT JOIN user_vocabulary uv ON uv.word_id = w.word_id ";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // 查询不超过这个长度时只允许 1 次编辑，更长的允许 max-distance 次
+    @Value("${app.search.fuzzy.short-query-length:5}")
+    private int shortQueryLength;
+
+    @Value("${app.search.fuzzy.max-distance:2}")
+    private int maxDistance;
+
+    @Value("${app.search.fuzzy.full-rebuild-interval-ms:86400000}")
+    private long fullRebuildIntervalMs;
+
+    private volatile FuzzyWordIndex index;
+    private volatile long maxWordId;
+    private volatile long lastFullBuild;
+    private volatile String builtAt;
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong incrementalWords = new AtomicLong();
+
+    /**
+     * 与 query 拼写相近的单词，按编辑距离、热度排序
+     */
+    public List<FuzzyWordIndex.Match> lookup(String query, String language, int limit) {
+        String normalized = FuzzyWordIndex.normalize(query);
+        if (normalized.isEmpty()) {
+            return new ArrayList<>();
+        }
+        lookups.incrementAndGet();
+        int length = normalized.codePointCount(0, normalized.length());
+        int distance = length <= shortQueryLength ? Math.min(1, maxDistance) : maxDistance;
+        return index().search(normalized, distance, language, limit);
+    }
+
+    /**
+     * 启动后首次全量构建；之后按间隔只加载新增的单词，到了全量重建周期再整体替换
+     */
+    @Scheduled(initialDelayString = "${app.search.fuzzy.startup-delay-ms:10000}",
+            fixedDelayString = "${app.search.fuzzy.refresh-interval-ms:300000}")
+    public void refresh() {
+        try {
+            if (index == null || System.currentTimeMillis() - lastFullBuild >= fullRebuildIntervalMs) {
+                rebuild();
+            } else {
+                loadNewWords();
+            }
+        } catch (Exception e) {
+            System.err.println("刷新拼写容错索引失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 索引是否已构建；调用方不想在请求里触发首次全量构建时先检查
+     */
+    public boolean isLoaded() {
+        return index != null;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        FuzzyWordIndex current = index;
+        stats.put("words", current == null ? 0 : current.size());
+        stats.put("deletedSlots", current == null ? 0 : current.deletedSlots());
+        stats.put("builtAt", builtAt);
+        stats.put("incrementalWords", incrementalWords.get());
+        stats.put("lookups", lookups.get());
+        return stats;
+    }
+
+    private FuzzyWordIndex index() {
+        FuzzyWordIndex current = index;
+        if (current == null) {
+            synchronized (this) {
+                if (index == null) {
+                    rebuild();
+                }
+                current = index;
+            }
+        }
+        return current;
+    }
+
+    private synchronized void rebuild() {
+        long begin = System.currentTimeMillis();
+        FuzzyWordIndex fresh = new FuzzyWordIndex();
+        long[] maxId = new long[1];
+        jdbcTemplate.query(WORD_SQL + "GROUP BY w.word_id, w.word, w.language, w.difficulty",
+                (RowCallbackHandler) rs -> {
+                    fresh.put(entryOf(rs));
+                    maxId[0] = Math.max(maxId[0], rs.getLong("word_id"));
+                });
+        index = fresh;
+        maxWordId = maxId[0];
+        lastFullBuild = System.currentTimeMillis();
+        builtAt = LocalDateTime.now().toString();
+        System.out.println("拼写容错索引已重建: 单词 " + fresh.size() + " 个, 耗时 "
+                + (System.currentTimeMillis() - begin) + "ms");
+    }
+
+    private synchronized void loadNewWords() {
+        FuzzyWordIndex current = index;
+        long[] maxId = {maxWordId};
+        jdbcTemplate.query(WORD_SQL + "WHERE w.word_id > ? GROUP BY w.word_id, w.word, w.language, w.difficulty",
+                (RowCallbackHandler) rs -> {
+                    current.put(entryOf(rs));
+                    maxId[0] = Math.max(maxId[0], rs.getLong("word_id"));
+                    incrementalWords.incrementAndGet();
+                },
+                maxWordId);
+        maxWordId = maxId[0];
+    }
+
+    private FuzzyWordIndex.Entry entryOf(java.sql.ResultSet rs) throws java.sql.SQLException {
+        return new FuzzyWordIndex.Entry(rs.getLong("word_id"), rs.getString("word"), rs.getString("language"),
+                rs.getString("difficulty"), rs.getLong("popularity"));
+    }
+}
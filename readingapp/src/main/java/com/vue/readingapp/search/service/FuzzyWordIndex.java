@@ -0,0 +1,277 @@
+package com.vue.readingapp.search.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 单词模糊匹配索引（n 元组 + Damerau-Levenshtein 校验）
+ * 单词首尾各加一个边界符后按码点切成三元组和二元组，分别建立倒排表。一次编辑最多破坏 q 个 q 元组，
+ * 相邻交换最多 q + 1 个，所以编辑距离不超过 k 的单词至少与查询共享 元组数 - (q + 1)k 个 q 元组。
+ * 三元组的下界大于 0 时用三元组（倒排表短），否则用二元组（下界更高），先按共享数和长度差筛出候选，
+ * 再用限定距离的 OSA（相邻交换算一次编辑）逐个校验；两者下界都不大于 0 时扫描长度相近的分桶。
+ * 修改和删除只打删除标记，定期全量重建时回收。
+ */
+public class FuzzyWordIndex {
+
+    private static final int BEGIN = 0x02;
+    private static final int END = 0x03;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<Long, Integer> slotById = new HashMap<>();
+    private final Map<String, IntList> trigrams = new HashMap<>();
+    private final Map<String, IntList> bigrams = new HashMap<>();
+    private final Map<Integer, IntList> byLength = new HashMap<>();
+    private int deleted;
+
+    /**
+     * 一个单词；popularity 用于同距离时排序
+     */
+    public static final class Entry {
+        private final long id;
+        private final String word;
+        private final String language;
+        private final String difficulty;
+        private final long popularity;
+        private final int[] codePoints;
+        private boolean removed;
+
+        public Entry(long id, String word, String language, String difficulty, long popularity) {
+            this.id = id;
+            this.word = word;
+            this.language = language;
+            this.difficulty = difficulty;
+            this.popularity = popularity;
+            this.codePoints = normalize(word).codePoints().toArray();
+        }
+
+        public long getId() { return id; }
+        public String getWord() { return word; }
+        public String getLanguage() { return language; }
+        public String getDifficulty() { return difficulty; }
+        public long getPopularity() { return popularity; }
+    }
+
+    /**
+     * 一个匹配结果
+     */
+    public static final class Match {
+        private final Entry entry;
+        private final int distance;
+
+        Match(Entry entry, int distance) {
+            this.entry = entry;
+            this.distance = distance;
+        }
+
+        public Entry getEntry() { return entry; }
+        public int getDistance() { return distance; }
+    }
+
+    // 只追加的 int 数组，比 List<Integer> 省内存
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    /**
+     * 写入或替换单词（按 id）
+     */
+    public void put(Entry entry) {
+        if (entry.codePoints.length == 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeLocked(entry.id);
+            int slot = entries.size();
+            entries.add(entry);
+            slotById.put(entry.id, slot);
+            for (String gram : gramsOf(entry.codePoints, 3)) {
+                trigrams.computeIfAbsent(gram, k -> new IntList()).add(slot);
+            }
+            for (String gram : gramsOf(entry.codePoints, 2)) {
+                bigrams.computeIfAbsent(gram, k -> new IntList()).add(slot);
+            }
+            byLength.computeIfAbsent(entry.codePoints.length, k -> new IntList()).add(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int deletedSlots() {
+        lock.readLock().lock();
+        try {
+            return deleted;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 编辑距离不超过 maxDistance 的单词，按距离升序、热度降序排列；language 为空表示不限语言
+     */
+    public List<Match> search(String query, int maxDistance, String language, int limit) {
+        int[] target = normalize(query).codePoints().toArray();
+        if (target.length == 0 || limit <= 0) {
+            return new ArrayList<>();
+        }
+        lock.readLock().lock();
+        try {
+            List<Match> matches = new ArrayList<>();
+            for (int slot : candidates(target, maxDistance)) {
+                Entry entry = entries.get(slot);
+                if (entry.removed || (language != null && !language.equals(entry.language))) {
+                    continue;
+                }
+                int distance = distance(target, entry.codePoints, maxDistance);
+                if (distance <= maxDistance) {
+                    matches.add(new Match(entry, distance));
+                }
+            }
+            matches.sort((a, b) -> {
+                if (a.distance != b.distance) {
+                    return Integer.compare(a.distance, b.distance);
+                }
+                if (a.entry.popularity != b.entry.popularity) {
+                    return Long.compare(b.entry.popularity, a.entry.popularity);
+                }
+                return a.entry.word.compareTo(b.entry.word);
+            });
+            return new ArrayList<>(matches.subList(0, Math.min(limit, matches.size())));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private int[] candidates(int[] target, int maxDistance) {
+        Set<String> queryGrams = gramsOf(target, 3);
+        Map<String, IntList> postings = trigrams;
+        int threshold = queryGrams.size() - 4 * maxDistance;
+        if (threshold <= 0) {
+            queryGrams = gramsOf(target, 2);
+            postings = bigrams;
+            threshold = queryGrams.size() - 3 * maxDistance;
+        }
+        IntList result = new IntList();
+        if (threshold <= 0) {
+            // 查询太短，n 元组无法排除任何单词，只看长度相近的分桶
+            for (int length = Math.max(1, target.length - maxDistance); length <= target.length + maxDistance; length++) {
+                IntList bucket = byLength.get(length);
+                if (bucket != null) {
+                    for (int i = 0; i < bucket.size; i++) {
+                        result.add(bucket.values[i]);
+                    }
+                }
+            }
+            return Arrays.copyOf(result.values, result.size);
+        }
+        int[] shared = new int[entries.size()];
+        for (String gram : queryGrams) {
+            IntList posting = postings.get(gram);
+            if (posting == null) {
+                continue;
+            }
+            for (int i = 0; i < posting.size; i++) {
+                int slot = posting.values[i];
+                if (++shared[slot] == threshold
+                        && Math.abs(entries.get(slot).codePoints.length - target.length) <= maxDistance) {
+                    result.add(slot);
+                }
+            }
+        }
+        return Arrays.copyOf(result.values, result.size);
+    }
+
+    private static Set<String> gramsOf(int[] codePoints, int q) {
+        int[] padded = new int[codePoints.length + 2];
+        padded[0] = BEGIN;
+        System.arraycopy(codePoints, 0, padded, 1, codePoints.length);
+        padded[padded.length - 1] = END;
+        Set<String> result = new LinkedHashSet<>();
+        for (int i = 0; i + q <= padded.length; i++) {
+            result.add(new String(padded, i, q));
+        }
+        return result;
+    }
+
+    /**
+     * 限定距离的 OSA 编辑距离；超过 maxDistance 时提前返回 maxDistance + 1
+     */
+    static int distance(int[] a, int[] b, int maxDistance) {
+        if (Math.abs(a.length - b.length) > maxDistance) {
+            return maxDistance + 1;
+        }
+        int[] previous2 = new int[b.length + 1];
+        int[] previous = new int[b.length + 1];
+        int[] current = new int[b.length + 1];
+        for (int j = 0; j <= b.length; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length; i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length; j++) {
+                int cost = a[i - 1] == b[j - 1] ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a[i - 1] == b[j - 2] && a[i - 2] == b[j - 1]) {
+                    value = Math.min(value, previous2[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > maxDistance) {
+                return maxDistance + 1;
+            }
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+        return Math.min(previous[b.length], maxDistance + 1);
+    }
+
+    private void removeLocked(long id) {
+        Integer slot = slotById.remove(id);
+        if (slot != null) {
+            entries.get(slot).removed = true;
+            deleted++;
+        }
+    }
+}
@@ -0,0 +1,496 @@
+package com.vue.readingapp.search.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 内存倒排索引，BM25 打分
+ * 词项 -> (文档序号 -> 加权词频)；词典有序，查询的最后一个词支持前缀扩展，近似原来 LIKE '%q%' 的输入中匹配。
+ * 前缀扩展出的词项过多时只取文档频率最高的 MAX_PREFIX_EXPANSIONS 个，结果带 truncated 标记。
+ * 每个文档可以带分面取值（语言、难度、标签、月份），检索时在遍历命中的同一趟里计数，得到全部命中的分面分布。
+ * 读写锁保护，检索并发执行，增量更新互斥。
+ */
+public class InvertedIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final double PREFIX_MATCH_FACTOR = 0.8;
+    private static final Comparator<Hit> BY_SCORE_DESC = order(false, true);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // 创建时的分析链版本，之后切换了分词方式的索引需要重建
+    private final long analyzerVersion = SearchTokenizer.analyzerVersion();
+    private final TreeMap<String, Map<Integer, Float>> postings = new TreeMap<>();
+    private final Map<Integer, IndexedDoc> docs = new HashMap<>();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private int nextOrdinal;
+    private double totalLength;
+    // 分面取值的编号：facet + '\0' + value -> 编号，编号 -> {facet, value}；只增不减，取值种类有限
+    private final Map<String, Integer> facetIds = new HashMap<>();
+    private final List<String[]> facetValues = new ArrayList<>();
+
+    // 全量构建期间被增量更新过的键，构建时跳过，以增量读取到的数据为准
+    private Set<String> touchedDuringBuild;
+
+    /**
+     * 待索引的字段
+     */
+    public static final class Field {
+        private final String text;
+        private final float weight;
+
+        public Field(String text, float weight) {
+            this.text = text;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * 检索命中
+     */
+    public static final class Hit {
+        private final String key;
+        private final String type;
+        private final long id;
+        private final double score;
+        private final long sortTime;
+
+        Hit(String key, String type, long id, double score, long sortTime) {
+            this.key = key;
+            this.type = type;
+            this.id = id;
+            this.score = score;
+            this.sortTime = sortTime;
+        }
+
+        public String getKey() { return key; }
+        public String getType() { return type; }
+        public long getId() { return id; }
+        public double getScore() { return score; }
+        public long getSortTime() { return sortTime; }
+    }
+
+    /**
+     * 一页命中及全部命中数
+     */
+    public static final class TopHits {
+        private final List<Hit> hits;
+        private final int total;
+        private final Map<String, Map<String, Integer>> facets;
+        private final boolean truncated;
+
+        TopHits(List<Hit> hits, int total) {
+            this(hits, total, Collections.emptyMap());
+        }
+
+        TopHits(List<Hit> hits, int total, Map<String, Map<String, Integer>> facets) {
+            this(hits, total, facets, false);
+        }
+
+        TopHits(List<Hit> hits, int total, Map<String, Map<String, Integer>> facets, boolean truncated) {
+            this.hits = hits;
+            this.total = total;
+            this.facets = facets;
+            this.truncated = truncated;
+        }
+
+        public List<Hit> getHits() { return hits; }
+        public int getTotal() { return total; }
+
+        /**
+         * 最后一个词的前缀扩展超过上限，只用了文档频率最高的一部分词项，命中可能不全
+         */
+        public boolean isTruncated() { return truncated; }
+
+        /**
+         * 全部命中（不受 after、limit 影响）的分面计数
+         */
+        public Map<String, Map<String, Integer>> getFacets() { return facets; }
+    }
+
+    // 一次检索的得分，以及前缀扩展是否被截断
+    private static final class Scores {
+        private final Map<Integer, Double> scores;
+        private final boolean truncated;
+
+        Scores(Map<Integer, Double> scores, boolean truncated) {
+            this.scores = scores;
+            this.truncated = truncated;
+        }
+    }
+
+    private static final class IndexedDoc {
+        private final String key;
+        private final String type;
+        private final long id;
+        private final long sortTime;
+        private final float length;
+        private final Map<String, Float> termFreqs;
+        private final int[] facets;
+
+        IndexedDoc(String key, String type, long id, long sortTime, float length, Map<String, Float> termFreqs,
+                   int[] facets) {
+            this.key = key;
+            this.type = type;
+            this.id = id;
+            this.sortTime = sortTime;
+            this.length = length;
+            this.termFreqs = termFreqs;
+            this.facets = facets;
+        }
+    }
+
+    /**
+     * 开始全量构建
+     */
+    public void beginBuild() {
+        lock.writeLock().lock();
+        try {
+            touchedDuringBuild = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void endBuild() {
+        lock.writeLock().lock();
+        try {
+            touchedDuringBuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 全量构建时写入；构建期间已被增量更新的键保持不变
+     */
+    public void load(String key, String type, long id, long sortTime, List<Field> fields,
+                     Map<String, List<String>> facets) {
+        Map<String, Float> termFreqs = analyze(fields);
+        lock.writeLock().lock();
+        try {
+            if (touchedDuringBuild != null && touchedDuringBuild.contains(key)) {
+                return;
+            }
+            putLocked(key, type, id, sortTime, termFreqs, facets);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 增量写入或替换
+     */
+    public void upsert(String key, String type, long id, long sortTime, List<Field> fields,
+                       Map<String, List<String>> facets) {
+        Map<String, Float> termFreqs = analyze(fields);
+        lock.writeLock().lock();
+        try {
+            markTouched(key);
+            putLocked(key, type, id, sortTime, termFreqs, facets);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 增量删除
+     */
+    public void remove(String key) {
+        lock.writeLock().lock();
+        try {
+            markTouched(key);
+            removeLocked(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 检索：所有查询词都必须命中（最后一个词可前缀匹配），按 BM25 分数降序返回
+     */
+    public List<Hit> search(List<String> queryTerms, Set<String> types, boolean prefixLastTerm) {
+        lock.readLock().lock();
+        try {
+            Map<Integer, Double> scores = scoreAll(queryTerms, prefixLastTerm).scores;
+            List<Hit> hits = new ArrayList<>(scores.size());
+            for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+                IndexedDoc doc = docs.get(entry.getKey());
+                if (types == null || types.contains(doc.type)) {
+                    hits.add(new Hit(doc.key, doc.type, doc.id, entry.getValue(), doc.sortTime));
+                }
+            }
+            hits.sort(BY_SCORE_DESC);
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 取按 order 排在 after 之后的前 limit 条命中，用大小为 limit 的堆选取，不对全部命中排序；
+     * total 为全部命中数（不受 after 影响），分面计数也在同一趟遍历中统计全部命中
+     */
+    public TopHits top(List<String> queryTerms, Set<String> types, boolean prefixLastTerm,
+                       Comparator<Hit> order, Hit after, int limit) {
+        lock.readLock().lock();
+        try {
+            Scores scored = scoreAll(queryTerms, prefixLastTerm);
+            Map<Integer, Double> scores = scored.scores;
+            // 堆顶是当前候选中排得最靠后的一条
+            PriorityQueue<Hit> heap = new PriorityQueue<>(Math.max(1, limit), order.reversed());
+            int total = 0;
+            int[] facetCounts = new int[facetValues.size()];
+            for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+                IndexedDoc doc = docs.get(entry.getKey());
+                if (types != null && !types.contains(doc.type)) {
+                    continue;
+                }
+                total++;
+                for (int facet : doc.facets) {
+                    facetCounts[facet]++;
+                }
+                Hit hit = new Hit(doc.key, doc.type, doc.id, entry.getValue(), doc.sortTime);
+                if (limit <= 0 || (after != null && order.compare(hit, after) <= 0)) {
+                    continue;
+                }
+                if (heap.size() < limit) {
+                    heap.add(hit);
+                } else if (order.compare(hit, heap.peek()) < 0) {
+                    heap.poll();
+                    heap.add(hit);
+                }
+            }
+            List<Hit> hits = new ArrayList<>(heap);
+            hits.sort(order);
+            return new TopHits(hits, total, facetMap(facetCounts), scored.truncated);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 命中的排序方式；同分时按键排序，保证顺序稳定，游标可以据此续读
+     */
+    public static Comparator<Hit> order(boolean byTime, boolean descending) {
+        Comparator<Hit> primary = byTime
+                ? Comparator.comparingLong(Hit::getSortTime)
+                : Comparator.comparingDouble(Hit::getScore);
+        if (descending) {
+            primary = primary.reversed();
+        }
+        return primary.thenComparing(Hit::getKey);
+    }
+
+    /**
+     * 游标中保存的续读位置
+     */
+    public static Hit position(String key, double score, long sortTime) {
+        return new Hit(key, null, 0, score, sortTime);
+    }
+
+    /**
+     * 索引创建以来分析链没有切换过
+     */
+    public boolean isCurrent() {
+        return analyzerVersion == SearchTokenizer.analyzerVersion();
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 计算所有查询词都命中的文档及其总分，调用方持有读锁
+     */
+    private Scores scoreAll(List<String> queryTerms, boolean prefixLastTerm) {
+        if (queryTerms.isEmpty() || docs.isEmpty()) {
+            return new Scores(Collections.emptyMap(), false);
+        }
+        int docCount = docs.size();
+        double avgLength = totalLength / docCount;
+
+        Map<Integer, Double> scores = null;
+        boolean truncated = false;
+        for (int i = 0; i < queryTerms.size(); i++) {
+            Map<Integer, Double> termScores = new HashMap<>();
+            String term = queryTerms.get(i);
+            addTermScores(term, postings.get(term), 1.0, docCount, avgLength, scores, termScores);
+            if (prefixLastTerm && i == queryTerms.size() - 1) {
+                SortedMap<String, Map<Integer, Float>> expansions = postings.subMap(term, false, term + Character.MAX_VALUE, false);
+                truncated = expansions.size() > MAX_PREFIX_EXPANSIONS;
+                for (Map.Entry<String, Map<Integer, Float>> entry : mostFrequent(expansions)) {
+                    addTermScores(entry.getKey(), entry.getValue(), PREFIX_MATCH_FACTOR, docCount, avgLength, scores, termScores);
+                }
+            }
+            if (termScores.isEmpty()) {
+                return new Scores(Collections.emptyMap(), truncated);
+            }
+            scores = termScores;
+        }
+        return new Scores(scores, truncated);
+    }
+
+    // 前缀扩展的词项超过上限时按文档频率取前 MAX_PREFIX_EXPANSIONS 个，而不是按字典序取最前面的
+    private static Iterable<Map.Entry<String, Map<Integer, Float>>> mostFrequent(
+            SortedMap<String, Map<Integer, Float>> expansions) {
+        if (expansions.size() <= MAX_PREFIX_EXPANSIONS) {
+            return expansions.entrySet();
+        }
+        Comparator<Map.Entry<String, Map<Integer, Float>>> byFrequency =
+                Comparator.comparingInt((Map.Entry<String, Map<Integer, Float>> entry) -> entry.getValue().size())
+                        .thenComparing(Map.Entry::getKey, Comparator.reverseOrder());
+        // 堆顶是已选词项中文档频率最低的
+        PriorityQueue<Map.Entry<String, Map<Integer, Float>>> heap = new PriorityQueue<>(MAX_PREFIX_EXPANSIONS, byFrequency);
+        for (Map.Entry<String, Map<Integer, Float>> entry : expansions.entrySet()) {
+            if (heap.size() < MAX_PREFIX_EXPANSIONS) {
+                heap.add(entry);
+            } else if (byFrequency.compare(entry, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+        return heap;
+    }
+
+    /**
+     * 累加一个词项的得分；previous 不为空时只保留上一轮的候选并累加分数
+     */
+    private void addTermScores(String term, Map<Integer, Float> posting, double factor, int docCount, double avgLength,
+                               Map<Integer, Double> previous, Map<Integer, Double> result) {
+        if (posting == null || posting.isEmpty()) {
+            return;
+        }
+        int df = posting.size();
+        double idf = Math.log(1 + (docCount - df + 0.5) / (df + 0.5));
+        for (Map.Entry<Integer, Float> entry : posting.entrySet()) {
+            Integer ordinal = entry.getKey();
+            if (previous != null && !previous.containsKey(ordinal)) {
+                continue;
+            }
+            double tf = entry.getValue();
+            double norm = K1 * (1 - B + B * docs.get(ordinal).length / avgLength);
+            double score = factor * idf * tf * (K1 + 1) / (tf + norm);
+            // 同一查询词的多个前缀扩展取最高分
+            double base = previous != null ? previous.get(ordinal) : 0.0;
+            Double current = result.get(ordinal);
+            if (current == null || current < base + score) {
+                result.put(ordinal, base + score);
+            }
+        }
+    }
+
+    private Map<String, Float> analyze(List<Field> fields) {
+        Map<String, Float> termFreqs = new HashMap<>();
+        for (Field field : fields) {
+            if (field.text == null || field.text.isEmpty()) {
+                continue;
+            }
+            float weight = field.weight;
+            SearchTokenizer.analyze(field.text, (term, start, end) -> termFreqs.merge(term.toString(), weight, Float::sum));
+        }
+        return termFreqs;
+    }
+
+    private Map<String, Map<String, Integer>> facetMap(int[] facetCounts) {
+        Map<String, Map<String, Integer>> result = new HashMap<>();
+        for (int i = 0; i < facetCounts.length; i++) {
+            if (facetCounts[i] > 0) {
+                String[] value = facetValues.get(i);
+                result.computeIfAbsent(value[0], k -> new HashMap<>()).put(value[1], facetCounts[i]);
+            }
+        }
+        return result;
+    }
+
+    // 分面取值换成编号，调用方持有写锁
+    private int[] facetIdsLocked(Map<String, List<String>> facets) {
+        if (facets == null || facets.isEmpty()) {
+            return new int[0];
+        }
+        List<Integer> ids = new ArrayList<>();
+        for (Map.Entry<String, List<String>> facet : facets.entrySet()) {
+            for (String value : facet.getValue()) {
+                if (value == null || value.isEmpty()) {
+                    continue;
+                }
+                Integer id = facetIds.computeIfAbsent(facet.getKey() + '\0' + value, k -> {
+                    facetValues.add(new String[]{facet.getKey(), value});
+                    return facetValues.size() - 1;
+                });
+                if (!ids.contains(id)) {
+                    ids.add(id);
+                }
+            }
+        }
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private void putLocked(String key, String type, long id, long sortTime, Map<String, Float> termFreqs,
+                           Map<String, List<String>> facets) {
+        removeLocked(key);
+        if (termFreqs.isEmpty()) {
+            return;
+        }
+        float length = 0;
+        for (Float tf : termFreqs.values()) {
+            length += tf;
+        }
+        int ordinal = nextOrdinal++;
+        docs.put(ordinal, new IndexedDoc(key, type, id, sortTime, length, termFreqs, facetIdsLocked(facets)));
+        ordinals.put(key, ordinal);
+        totalLength += length;
+        for (Map.Entry<String, Float> entry : termFreqs.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), t -> new HashMap<>()).put(ordinal, entry.getValue());
+        }
+    }
+
+    private void removeLocked(String key) {
+        Integer ordinal = ordinals.remove(key);
+        if (ordinal == null) {
+            return;
+        }
+        IndexedDoc doc = docs.remove(ordinal);
+        totalLength -= doc.length;
+        for (String term : doc.termFreqs.keySet()) {
+            Map<Integer, Float> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(ordinal);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    private void markTouched(String key) {
+        if (touchedDuringBuild != null) {
+            touchedDuringBuild.add(key);
+        }
+    }
+}
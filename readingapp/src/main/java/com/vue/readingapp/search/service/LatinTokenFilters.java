@@ -0,0 +1,116 @@
+package com.vue.readingapp.search.service;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 拉丁字母词项的过滤器：英文停用词和轻量词干化
+ * 词干化只去掉常见的屈折后缀（复数、-ing、-ed）并统一去掉词尾的 e，不追求得到真实的词根，
+ * 只要求同一个词的不同词形得到相同的结果；非纯小写字母的词项（中日韩文字、数字）原样保留。
+ */
+public final class LatinTokenFilters {
+
+    private static final Set<String> ENGLISH_STOP_WORDS = new HashSet<>(Arrays.asList(
+            "a", "an", "and", "are", "as", "at", "be", "but", "by", "for", "if", "in", "into", "is", "it",
+            "no", "not", "of", "on", "or", "such", "that", "the", "their", "then", "there", "these",
+            "they", "this", "to", "was", "were", "will", "with"));
+
+    // 去后缀后至少保留的长度，避免把短词削得面目全非
+    private static final int MIN_STEM_LENGTH = 3;
+
+    private LatinTokenFilters() {
+    }
+
+    /**
+     * 去掉英文停用词
+     */
+    public static final TextAnalyzer.TokenFilter ENGLISH_STOP = term ->
+            term.length() > 5 || !ENGLISH_STOP_WORDS.contains(term.toString());
+
+    /**
+     * 英文轻量词干化
+     */
+    public static final TextAnalyzer.TokenFilter ENGLISH_STEM = term -> {
+        stem(term);
+        return true;
+    };
+
+    static void stem(StringBuilder term) {
+        int length = term.length();
+        if (length <= MIN_STEM_LENGTH || !isLowerAlpha(term)) {
+            return;
+        }
+        if (endsWith(term, "ies") && length > 4) {
+            term.setLength(length - 3);
+            term.append('y');
+        } else if (endsWith(term, "es") && (endsWith(term, "sses") || endsWith(term, "xes") || endsWith(term, "zes")
+                || endsWith(term, "ches") || endsWith(term, "shes"))) {
+            term.setLength(length - 2);
+        } else if (term.charAt(length - 1) == 's' && !endsWith(term, "ss") && !endsWith(term, "us")
+                && !endsWith(term, "is")) {
+            term.setLength(length - 1);
+        } else if (endsWith(term, "ied") && length > 4) {
+            term.setLength(length - 3);
+            term.append('y');
+        } else if (endsWith(term, "ing") && hasVowel(term, length - 3) && length - 3 >= MIN_STEM_LENGTH) {
+            term.setLength(length - 3);
+            undouble(term);
+        } else if (endsWith(term, "ed") && !endsWith(term, "eed") && hasVowel(term, length - 2)
+                && length - 2 >= MIN_STEM_LENGTH) {
+            term.setLength(length - 2);
+            undouble(term);
+        }
+        // 统一去掉词尾 e，使 make 与 making、hope 与 hoping 得到相同的词干
+        if (term.length() > MIN_STEM_LENGTH && term.charAt(term.length() - 1) == 'e') {
+            term.setLength(term.length() - 1);
+        }
+    }
+
+    // running → runn → run；l、s、z 结尾的双写（fall、pass、buzz）保留
+    private static void undouble(StringBuilder term) {
+        int length = term.length();
+        if (length >= MIN_STEM_LENGTH + 1) {
+            char last = term.charAt(length - 1);
+            if (last == term.charAt(length - 2) && !isVowel(last) && last != 'l' && last != 's' && last != 'z') {
+                term.setLength(length - 1);
+            }
+        }
+    }
+
+    private static boolean endsWith(StringBuilder term, String suffix) {
+        int offset = term.length() - suffix.length();
+        if (offset < 0) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length(); i++) {
+            if (term.charAt(offset + i) != suffix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasVowel(StringBuilder term, int end) {
+        for (int i = 0; i < end; i++) {
+            if (isVowel(term.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isVowel(char c) {
+        return c == 'a' || c == 'e' || c == 'i' || c == 'o' || c == 'u' || c == 'y';
+    }
+
+    private static boolean isLowerAlpha(StringBuilder term) {
+        for (int i = 0; i < term.length(); i++) {
+            char c = term.charAt(i);
+            if (c < 'a' || c > 'z') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,1157 @@
+package com.vue.readingapp.search.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 文档页面全文的磁盘段索引
+ * 按页索引 document_pages（文档正文只存在于 document_pages，没有页的文档不进索引），写成不可变的段文件，检索时内存映射读取；
+ * 堆上只有删除位图、尚未落盘的缓冲页和段的元信息，语料增长时堆占用基本不变。重启后按清单重新映射段文件即可使用，不需要重建。
+ * 所有写入由后台维护线程完成：首次启动按 document_id 分批回填；之后文档写接口经 SearchIndexService 把文档排进队列
+ * （同时追加到 pending.log，未落盘的更新在重启后重放），旧页记入删除位图，新页进入内存缓冲，攒够页数或到时间后写成新段。
+ * 段数超过合并因子时由合并线程把最小的几个段合并成一个并丢弃已删除的页，删除比例过高的段单独重写。
+ * 检索按页要求全部查询词都出现，BM25 打分；回填完成之前 isReady() 为 false，调用方继续走数据库查询。
+ */
+@Service
+public class PageIndexService {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final String MANIFEST = "segments.json";
+    private static final String PENDING_LOG = "pending.log";
+    private static final String DOCUMENT_VISIBLE = "d.status = 'processed' AND d.deleted_at IS NULL";
+    // 队列中的用户级请求（批量操作、注销账号后整个用户重新索引）
+    private static final long WHOLE_USER = -1L;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${app.search.pages.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.search.pages.dir:data/page-index}")
+    private String directoryName;
+
+    @Value("${app.search.pages.startup-delay-ms:25000}")
+    private long startupDelayMs;
+
+    @Value("${app.search.pages.maintenance-interval-ms:1000}")
+    private long maintenanceIntervalMs;
+
+    @Value("${app.search.pages.flush-pages:2000}")
+    private int flushPages;
+
+    @Value("${app.search.pages.flush-interval-ms:10000}")
+    private long flushIntervalMs;
+
+    @Value("${app.search.pages.backfill-batch-documents:200}")
+    private int backfillBatch;
+
+    @Value("${app.search.pages.merge-factor:8}")
+    private int mergeFactor;
+
+    @Value("${app.search.pages.max-segment-mb:1024}")
+    private long maxSegmentMb;
+
+    @Value("${app.search.pages.expunge-deletes-ratio:0.3}")
+    private double expungeDeletesRatio;
+
+    @Value("${app.search.pages.max-document-hits:1000}")
+    private int maxDocumentHits;
+
+    @Value("${app.search.analysis.cjk-segmenter:bigram}")
+    private String segmenterName;
+
+    private Path directory;
+    // 检索看到的一致视图：段列表和内存缓冲一起替换
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyList(), Collections.emptyMap());
+    // 替换视图、修改删除位图、写清单时持有
+    private final Object lock = new Object();
+    private final LinkedBlockingQueue<long[]> requests = new LinkedBlockingQueue<>();
+    private final Object pendingLock = new Object();
+
+    // 以下由维护线程读写；durable* 是最近一次落盘时的回填进度，写进清单
+    private long nextSegment = 1;
+    private long backfillCursor;
+    private volatile boolean backfillDone;
+    private long durableCursor;
+    private boolean durableDone;
+    private volatile String indexAnalyzer;
+    private boolean deletesDirty;
+    private long lastFlushAt;
+
+    // 重建时递增，之前开始的合并作废
+    private volatile int generation;
+    private volatile boolean merging;
+    private volatile boolean running;
+    private Thread maintainer;
+    private ThreadPoolExecutor merger;
+
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong merges = new AtomicLong();
+    private final AtomicLong refreshedDocuments = new AtomicLong();
+    private volatile String openedAt;
+    private volatile String lastMergeAt;
+
+    private static final class Snapshot {
+        private final List<PageSegment> segments;
+        // documentId -> 该文档的缓冲页
+        private final Map<Long, List<BufferedPage>> buffer;
+
+        Snapshot(List<PageSegment> segments, Map<Long, List<BufferedPage>> buffer) {
+            this.segments = segments;
+            this.buffer = buffer;
+        }
+    }
+
+    // 已分词、尚未写入段文件的一页
+    private static final class BufferedPage {
+        private final long userId;
+        private final long documentId;
+        private final int pageNumber;
+        private final int length;
+        private final Map<String, Integer> terms;
+
+        BufferedPage(long userId, long documentId, int pageNumber, int length, Map<String, Integer> terms) {
+            this.userId = userId;
+            this.documentId = documentId;
+            this.pageNumber = pageNumber;
+            this.length = length;
+            this.terms = terms;
+        }
+    }
+
+    // 写段时一个词项的倒排
+    private static final class Postings {
+        private int[] ordinals = new int[4];
+        private int[] freqs = new int[4];
+        private int size;
+
+        void add(int ordinal, int freq) {
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            ordinals[size] = ordinal;
+            freqs[size] = freq;
+            size++;
+        }
+    }
+
+    private interface PageVisitor {
+        void visit(long userId, long documentId, int pageNumber, double score);
+    }
+
+    /**
+     * 命中的一页
+     */
+    public static final class PageHit {
+        private final long userId;
+        private final long documentId;
+        private final int pageNumber;
+        private final double score;
+
+        PageHit(long userId, long documentId, int pageNumber, double score) {
+            this.userId = userId;
+            this.documentId = documentId;
+            this.pageNumber = pageNumber;
+            this.score = score;
+        }
+
+        public long getUserId() { return userId; }
+        public long getDocumentId() { return documentId; }
+        public int getPageNumber() { return pageNumber; }
+        public double getScore() { return score; }
+    }
+
+    /**
+     * 一页命中及全部命中页数
+     */
+    public static final class PageHits {
+        private final List<PageHit> hits;
+        private final int total;
+
+        PageHits(List<PageHit> hits, int total) {
+            this.hits = hits;
+            this.total = total;
+        }
+
+        public List<PageHit> getHits() { return hits; }
+        public int getTotal() { return total; }
+    }
+
+    /**
+     * 按文档汇总的命中：文档得分取最佳页的得分，命中页多的略微加分
+     */
+    public static final class DocumentHit {
+        private final long documentId;
+        private double score;
+        private int bestPage;
+        private int matchedPages;
+
+        DocumentHit(long documentId) {
+            this.documentId = documentId;
+        }
+
+        public long getDocumentId() { return documentId; }
+        public double getScore() { return score; }
+        public int getBestPage() { return bestPage; }
+        public int getMatchedPages() { return matchedPages; }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        directory = Paths.get(directoryName);
+        open();
+        running = true;
+        merger = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "page-index-merger");
+                    t.setDaemon(true);
+                    return t;
+                });
+        maintainer = new Thread(this::runMaintainer, "page-index-maintainer");
+        maintainer.setDaemon(true);
+        maintainer.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        maintainer.interrupt();
+        merger.shutdownNow();
+        try {
+            maintainer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (maintainer.isAlive()) {
+            return;
+        }
+        // 停机前把缓冲写成段，没写完的部分重启后由 pending.log 和回填进度补上
+        try {
+            if (!snapshot.buffer.isEmpty() || deletesDirty) {
+                flush();
+            }
+        } catch (Exception e) {
+            System.err.println("停机时写入页面全文索引失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 回填完成且分析方式与建索引时一致时才能用于检索
+     */
+    public boolean isReady() {
+        return enabled && backfillDone && currentAnalyzer().equals(indexAnalyzer);
+    }
+
+    /**
+     * 文档新增、修改、删除后调用（经 SearchIndexService.refresh）；只排队，由后台线程重新读取该文档的页
+     */
+    public void refresh(Object userId, Object documentId) {
+        if (enabled && userId != null && documentId != null) {
+            enqueue(((Number) userId).longValue(), ((Number) documentId).longValue());
+        }
+    }
+
+    /**
+     * 批量修改文档或注销账号后调用，整个用户重新索引
+     */
+    public void refreshUser(Object userId) {
+        if (enabled && userId != null) {
+            enqueue(((Number) userId).longValue(), WHOLE_USER);
+        }
+    }
+
+    /**
+     * 跨文档检索页面，userId 为空时不限用户；返回按得分排在 offset 之后的 limit 页
+     */
+    public PageHits searchPages(Long userId, String query, int offset, int limit) {
+        int wanted = Math.max(0, offset) + Math.max(0, limit);
+        Comparator<PageHit> order = Comparator.comparingDouble(PageHit::getScore)
+                .thenComparing(PageHit::getDocumentId, Comparator.reverseOrder())
+                .thenComparing(PageHit::getPageNumber, Comparator.reverseOrder());
+        PriorityQueue<PageHit> top = new PriorityQueue<>(order);
+        int[] total = {0};
+        collect(userId, query, (owner, documentId, pageNumber, score) -> {
+            total[0]++;
+            top.offer(new PageHit(owner, documentId, pageNumber, score));
+            if (top.size() > wanted) {
+                top.poll();
+            }
+        });
+        List<PageHit> hits = new ArrayList<>(top);
+        hits.sort(order.reversed());
+        List<PageHit> page = offset < hits.size() ? hits.subList(Math.max(0, offset), hits.size()) : Collections.emptyList();
+        return new PageHits(new ArrayList<>(page), total[0]);
+    }
+
+    /**
+     * 按文档汇总检索结果，返回得分最高的 max-document-hits 个文档
+     */
+    public List<DocumentHit> searchDocuments(Long userId, String query) {
+        Map<Long, DocumentHit> documents = new HashMap<>();
+        collect(userId, query, (owner, documentId, pageNumber, score) -> {
+            DocumentHit hit = documents.computeIfAbsent(documentId, DocumentHit::new);
+            hit.matchedPages++;
+            if (score > hit.score || hit.matchedPages == 1) {
+                hit.score = score;
+                hit.bestPage = pageNumber;
+            }
+        });
+        PriorityQueue<DocumentHit> top = new PriorityQueue<>(Comparator.comparingDouble(DocumentHit::getScore));
+        for (DocumentHit hit : documents.values()) {
+            hit.score = hit.score * (1 + 0.1 * Math.log(hit.matchedPages));
+            top.offer(hit);
+            if (top.size() > maxDocumentHits) {
+                top.poll();
+            }
+        }
+        List<DocumentHit> hits = new ArrayList<>(top);
+        hits.sort(Comparator.comparingDouble(DocumentHit::getScore).reversed());
+        return hits;
+    }
+
+    public Map<String, Object> getStats() {
+        Snapshot current = snapshot;
+        long pages = 0;
+        long deleted = 0;
+        long bytes = 0;
+        for (PageSegment segment : current.segments) {
+            pages += segment.pageCount();
+            deleted += segment.deletedCount();
+            bytes += segment.sizeBytes();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("ready", isReady());
+        stats.put("analyzer", indexAnalyzer);
+        stats.put("segments", current.segments.size());
+        stats.put("pages", pages);
+        stats.put("deletedPages", deleted);
+        stats.put("diskBytes", bytes);
+        stats.put("bufferedPages", current.buffer.values().stream().mapToInt(List::size).sum());
+        stats.put("pendingRequests", requests.size());
+        stats.put("backfillCursor", backfillCursor);
+        stats.put("backfillDone", backfillDone);
+        stats.put("refreshedDocuments", refreshedDocuments.get());
+        stats.put("flushes", flushes.get());
+        stats.put("merges", merges.get());
+        stats.put("openedAt", openedAt);
+        stats.put("lastMergeAt", lastMergeAt);
+        return stats;
+    }
+
+    // ---------------------------------------------------------------- 检索
+
+    private void collect(Long userId, String query, PageVisitor visitor) {
+        if (query == null) {
+            return;
+        }
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(SearchTokenizer.tokenizeQuery(query)));
+        if (terms.isEmpty()) {
+            return;
+        }
+        Snapshot current = snapshot;
+        byte[][] keys = new byte[terms.size()][];
+        for (int t = 0; t < keys.length; t++) {
+            keys[t] = terms.get(t).getBytes(StandardCharsets.UTF_8);
+        }
+
+        // 全局统计：总页数、平均长度和每个词的文档频率（已删除的页也计入，不做修正）
+        long pageCount = 0;
+        double totalLength = 0;
+        long[] docFreqs = new long[keys.length];
+        int[][] termIndexes = new int[current.segments.size()][keys.length];
+        for (int s = 0; s < current.segments.size(); s++) {
+            PageSegment segment = current.segments.get(s);
+            pageCount += segment.pageCount();
+            totalLength += segment.totalLength();
+            for (int t = 0; t < keys.length; t++) {
+                int termIndex = segment.findTerm(keys[t]);
+                termIndexes[s][t] = termIndex;
+                if (termIndex >= 0) {
+                    docFreqs[t] += segment.docFreq(termIndex);
+                }
+            }
+        }
+        List<BufferedPage> buffered = new ArrayList<>();
+        for (List<BufferedPage> pages : current.buffer.values()) {
+            buffered.addAll(pages);
+        }
+        for (BufferedPage page : buffered) {
+            pageCount++;
+            totalLength += page.length;
+            for (int t = 0; t < keys.length; t++) {
+                if (page.terms.containsKey(terms.get(t))) {
+                    docFreqs[t]++;
+                }
+            }
+        }
+        if (pageCount == 0) {
+            return;
+        }
+        double avgLength = Math.max(1.0, totalLength / pageCount);
+        double[] idf = new double[keys.length];
+        for (int t = 0; t < keys.length; t++) {
+            idf[t] = Math.log(1 + (pageCount - docFreqs[t] + 0.5) / (docFreqs[t] + 0.5));
+        }
+
+        for (int s = 0; s < current.segments.size(); s++) {
+            searchSegment(current.segments.get(s), termIndexes[s], idf, avgLength, userId, visitor);
+        }
+        int[] freqs = new int[keys.length];
+        for (BufferedPage page : buffered) {
+            if (userId != null && page.userId != userId) {
+                continue;
+            }
+            boolean all = true;
+            for (int t = 0; t < keys.length && all; t++) {
+                Integer freq = page.terms.get(terms.get(t));
+                all = freq != null;
+                freqs[t] = all ? freq : 0;
+            }
+            if (all) {
+                visitor.visit(page.userId, page.documentId, page.pageNumber, score(freqs, idf, page.length, avgLength));
+            }
+        }
+    }
+
+    // 最稀有的词驱动遍历，其余的词在倒排上跳跃前进；按用户检索时只看该用户的页序号区间
+    private void searchSegment(PageSegment segment, int[] termIndexes, double[] idf, double avgLength,
+                               Long userId, PageVisitor visitor) {
+        int count = termIndexes.length;
+        for (int termIndex : termIndexes) {
+            if (termIndex < 0) {
+                return;
+            }
+        }
+        int from = 0;
+        int to = segment.pageCount();
+        if (userId != null) {
+            from = segment.lowerBound(userId, Long.MIN_VALUE);
+            to = segment.lowerBound(userId + 1, Long.MIN_VALUE);
+        }
+        if (from >= to) {
+            return;
+        }
+        Integer[] order = new Integer[count];
+        int[] postingsAt = new int[count];
+        int[] docFreqs = new int[count];
+        int[] cursors = new int[count];
+        for (int t = 0; t < count; t++) {
+            order[t] = t;
+            postingsAt[t] = segment.postingsAt(termIndexes[t]);
+            docFreqs[t] = segment.docFreq(termIndexes[t]);
+            cursors[t] = segment.advance(postingsAt[t], docFreqs[t], 0, from);
+        }
+        Arrays.sort(order, Comparator.comparingInt(t -> docFreqs[t]));
+        int lead = order[0];
+        int[] freqs = new int[count];
+        candidates:
+        for (int i = cursors[lead]; i < docFreqs[lead]; i++) {
+            int ordinal = segment.postingOrdinal(postingsAt[lead], i);
+            if (ordinal >= to) {
+                break;
+            }
+            freqs[lead] = segment.postingFreq(postingsAt[lead], i);
+            for (int k = 1; k < count; k++) {
+                int t = order[k];
+                cursors[t] = segment.advance(postingsAt[t], docFreqs[t], cursors[t], ordinal);
+                if (cursors[t] >= docFreqs[t]) {
+                    break candidates;
+                }
+                if (segment.postingOrdinal(postingsAt[t], cursors[t]) != ordinal) {
+                    continue candidates;
+                }
+                freqs[t] = segment.postingFreq(postingsAt[t], cursors[t]);
+            }
+            if (segment.isDeleted(ordinal)) {
+                continue;
+            }
+            visitor.visit(segment.userId(ordinal), segment.documentId(ordinal), segment.pageNumber(ordinal),
+                    score(freqs, idf, segment.length(ordinal), avgLength));
+        }
+    }
+
+    private static double score(int[] freqs, double[] idf, int length, double avgLength) {
+        double norm = K1 * (1 - B + B * length / avgLength);
+        double score = 0;
+        for (int t = 0; t < freqs.length; t++) {
+            score += idf[t] * freqs[t] * (K1 + 1) / (freqs[t] + norm);
+        }
+        return score;
+    }
+
+    // ---------------------------------------------------------------- 维护线程
+
+    private void runMaintainer() {
+        if (!sleep(startupDelayMs)) {
+            return;
+        }
+        while (running) {
+            try {
+                maintain();
+            } catch (Exception e) {
+                System.err.println("维护页面全文索引失败: " + e.getMessage());
+            }
+            if (!sleep(maintenanceIntervalMs)) {
+                return;
+            }
+        }
+    }
+
+    private boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return running;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void maintain() throws IOException {
+        String analyzer = currentAnalyzer();
+        // 词典分词还没加载完时不写入，否则段里的词项和之后的查询分词对不上
+        if (!analyzerKind(analyzer).equals(targetAnalyzer())) {
+            return;
+        }
+        // 词典内容变化后段里的词项按旧词典切分，同样丢弃重建
+        if (!analyzer.equals(indexAnalyzer)) {
+            reset(analyzer);
+        }
+        processRequests();
+        while (running && !backfillDone && bufferedPages() < flushPages) {
+            backfillBatch();
+        }
+        long now = System.currentTimeMillis();
+        int buffered = bufferedPages();
+        if (buffered >= flushPages || ((buffered > 0 || deletesDirty) && now - lastFlushAt >= flushIntervalMs)) {
+            flush();
+        }
+        maybeMerge();
+    }
+
+    private void processRequests() {
+        List<long[]> batch = new ArrayList<>();
+        requests.drainTo(batch);
+        if (batch.isEmpty()) {
+            return;
+        }
+        Set<Long> users = new LinkedHashSet<>();
+        Map<Long, Long> documents = new LinkedHashMap<>();
+        for (long[] request : batch) {
+            if (request[1] == WHOLE_USER) {
+                users.add(request[0]);
+            } else {
+                documents.put(request[1], request[0]);
+            }
+        }
+        for (Long userId : users) {
+            reindexUser(userId);
+        }
+        // 回填还没到的文档不用处理，回填时会读到最新内容
+        List<long[]> targets = new ArrayList<>();
+        for (Map.Entry<Long, Long> entry : documents.entrySet()) {
+            if (!users.contains(entry.getValue()) && (backfillDone || entry.getKey() <= backfillCursor)) {
+                targets.add(new long[]{entry.getValue(), entry.getKey()});
+            }
+        }
+        for (int from = 0; from < targets.size(); from += backfillBatch) {
+            List<long[]> chunk = targets.subList(from, Math.min(targets.size(), from + backfillBatch));
+            List<Long> ids = chunk.stream().map(target -> target[1]).collect(Collectors.toList());
+            List<long[]> visible = jdbcTemplate.query("SELECT d.document_id, d.user_id FROM documents d " +
+                            "WHERE d.document_id IN (" + placeholders(ids.size()) + ") AND " + DOCUMENT_VISIBLE,
+                    (rs, rowNum) -> new long[]{rs.getLong("document_id"), rs.getLong("user_id")}, ids.toArray());
+            publish(chunk, null, loadPages(visible));
+            refreshedDocuments.addAndGet(chunk.size());
+        }
+    }
+
+    private void reindexUser(long userId) {
+        List<long[]> visible = jdbcTemplate.query("SELECT d.document_id, d.user_id FROM documents d " +
+                        "WHERE d.user_id = ? AND " + DOCUMENT_VISIBLE + " ORDER BY d.document_id",
+                (rs, rowNum) -> new long[]{rs.getLong("document_id"), rs.getLong("user_id")}, userId);
+        if (!backfillDone) {
+            visible.removeIf(document -> document[0] > backfillCursor);
+        }
+        // 第一批与删除一起发布，之后的批次只追加
+        Long deleteUser = userId;
+        for (int from = 0; from < visible.size() || deleteUser != null; from += backfillBatch) {
+            List<long[]> chunk = visible.subList(Math.min(from, visible.size()), Math.min(visible.size(), from + backfillBatch));
+            publish(Collections.emptyList(), deleteUser, loadPages(chunk));
+            deleteUser = null;
+        }
+    }
+
+    private void backfillBatch() throws IOException {
+        List<long[]> documents = jdbcTemplate.query("SELECT d.document_id, d.user_id FROM documents d " +
+                        "WHERE d.document_id > ? AND " + DOCUMENT_VISIBLE + " ORDER BY d.document_id LIMIT ?",
+                (rs, rowNum) -> new long[]{rs.getLong("document_id"), rs.getLong("user_id")},
+                backfillCursor, backfillBatch);
+        if (documents.isEmpty()) {
+            backfillDone = true;
+            flush();
+            System.out.println("页面全文索引回填完成: 段 " + snapshot.segments.size() + " 个");
+            return;
+        }
+        publish(Collections.emptyList(), null, loadPages(documents));
+        backfillCursor = documents.get(documents.size() - 1)[0];
+    }
+
+    /**
+     * 读取并分词一批文档的页，documents 中每项为 {documentId, userId}
+     */
+    private Map<Long, List<BufferedPage>> loadPages(List<long[]> documents) {
+        Map<Long, List<BufferedPage>> pages = new LinkedHashMap<>();
+        if (documents.isEmpty()) {
+            return pages;
+        }
+        Map<Long, Long> owners = new LinkedHashMap<>();
+        for (long[] document : documents) {
+            owners.put(document[0], document[1]);
+        }
+        jdbcTemplate.query("SELECT document_id, page_number, content FROM document_pages WHERE document_id IN (" +
+                        placeholders(owners.size()) + ") ORDER BY document_id, page_number",
+                (RowCallbackHandler) rs -> {
+                    long documentId = rs.getLong("document_id");
+                    addPage(pages, owners.get(documentId), documentId, rs.getInt("page_number"), rs.getString("content"));
+                },
+                owners.keySet().toArray());
+        return pages;
+    }
+
+    private void addPage(Map<Long, List<BufferedPage>> pages, long userId, long documentId, int pageNumber, String content) {
+        if (content == null || content.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> terms = new HashMap<>();
+        int[] length = {0};
+        SearchTokenizer.analyze(content, (term, start, end) -> {
+            terms.merge(term.toString(), 1, Integer::sum);
+            length[0]++;
+        });
+        if (!terms.isEmpty()) {
+            pages.computeIfAbsent(documentId, k -> new ArrayList<>())
+                    .add(new BufferedPage(userId, documentId, pageNumber, length[0], terms));
+        }
+    }
+
+    // 删除旧页并放入新页，检索线程随后看到新的视图；deletes 中每项为 {userId, documentId}
+    private void publish(List<long[]> deletes, Long deleteUser, Map<Long, List<BufferedPage>> additions) {
+        synchronized (lock) {
+            Snapshot current = snapshot;
+            Map<Long, List<BufferedPage>> buffer = new LinkedHashMap<>(current.buffer);
+            for (long[] document : deletes) {
+                buffer.remove(document[1]);
+                for (PageSegment segment : current.segments) {
+                    deletesDirty |= segment.deleteDocument(document[0], document[1]) > 0;
+                }
+            }
+            if (deleteUser != null) {
+                buffer.values().removeIf(pages -> pages.get(0).userId == deleteUser);
+                for (PageSegment segment : current.segments) {
+                    deletesDirty |= segment.deleteUser(deleteUser) > 0;
+                }
+            }
+            buffer.putAll(additions);
+            snapshot = new Snapshot(current.segments, buffer);
+        }
+    }
+
+    private int bufferedPages() {
+        int pages = 0;
+        for (List<BufferedPage> document : snapshot.buffer.values()) {
+            pages += document.size();
+        }
+        return pages;
+    }
+
+    // 缓冲写成新段，连同删除位图和清单一起落盘，然后清掉已经落盘的待处理记录
+    private void flush() throws IOException {
+        Files.createDirectories(directory);
+        Snapshot current = snapshot;
+        PageSegment created = current.buffer.isEmpty() ? null : writeBuffer(current.buffer);
+        synchronized (lock) {
+            Snapshot latest = snapshot;
+            List<PageSegment> segments = new ArrayList<>(latest.segments);
+            if (created != null) {
+                segments.add(created);
+            }
+            snapshot = new Snapshot(Collections.unmodifiableList(segments), Collections.emptyMap());
+            for (PageSegment segment : segments) {
+                segment.writeDeletes();
+            }
+            deletesDirty = false;
+            durableCursor = backfillCursor;
+            durableDone = backfillDone;
+            writeManifest(segments);
+        }
+        rewritePendingLog();
+        lastFlushAt = System.currentTimeMillis();
+        flushes.incrementAndGet();
+    }
+
+    private PageSegment writeBuffer(Map<Long, List<BufferedPage>> buffer) throws IOException {
+        List<BufferedPage> pages = new ArrayList<>();
+        for (List<BufferedPage> document : buffer.values()) {
+            pages.addAll(document);
+        }
+        pages.sort(Comparator.comparingLong((BufferedPage page) -> page.userId)
+                .thenComparingLong(page -> page.documentId)
+                .thenComparingInt(page -> page.pageNumber));
+        String name = nextSegmentName();
+        try (PageSegmentWriter writer = new PageSegmentWriter(directory, name)) {
+            Map<String, Postings> postings = new HashMap<>();
+            for (BufferedPage page : pages) {
+                int ordinal = writer.addPage(page.userId, page.documentId, page.pageNumber, page.length);
+                for (Map.Entry<String, Integer> term : page.terms.entrySet()) {
+                    postings.computeIfAbsent(term.getKey(), k -> new Postings()).add(ordinal, term.getValue());
+                }
+            }
+            List<byte[]> terms = new ArrayList<>(postings.size());
+            Map<byte[], Postings> byBytes = new HashMap<>();
+            for (Map.Entry<String, Postings> entry : postings.entrySet()) {
+                byte[] bytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                terms.add(bytes);
+                byBytes.put(bytes, entry.getValue());
+            }
+            terms.sort(PageSegment::compareBytes);
+            for (byte[] term : terms) {
+                Postings list = byBytes.get(term);
+                writer.addTerm(term, list.ordinals, list.freqs, list.size);
+            }
+            writer.finish();
+        }
+        return PageSegment.open(directory, name);
+    }
+
+    // ---------------------------------------------------------------- 合并
+
+    private void maybeMerge() {
+        if (merging) {
+            return;
+        }
+        List<PageSegment> sources = selectMerge(snapshot.segments);
+        if (sources == null) {
+            return;
+        }
+        merging = true;
+        int startedGeneration = generation;
+        try {
+            merger.execute(() -> {
+                try {
+                    merge(sources, startedGeneration);
+                } catch (Exception e) {
+                    System.err.println("合并页面全文索引段失败: " + e.getMessage());
+                } finally {
+                    merging = false;
+                }
+            });
+        } catch (RuntimeException e) {
+            merging = false;
+        }
+    }
+
+    // 删除比例过高的段单独重写；段数超过合并因子时合并最小的几个段，合并结果不超过段大小上限
+    private List<PageSegment> selectMerge(List<PageSegment> segments) {
+        for (PageSegment segment : segments) {
+            if (segment.deletedCount() > 0 && segment.deletedCount() >= segment.pageCount() * expungeDeletesRatio) {
+                return Collections.singletonList(segment);
+            }
+        }
+        if (segments.size() <= mergeFactor) {
+            return null;
+        }
+        long maxBytes = maxSegmentMb * 1024 * 1024;
+        List<PageSegment> bySize = new ArrayList<>(segments);
+        bySize.sort(Comparator.comparingLong(PageSegment::sizeBytes));
+        List<PageSegment> sources = new ArrayList<>();
+        long bytes = 0;
+        for (PageSegment segment : bySize) {
+            if (sources.size() >= mergeFactor || bytes + segment.sizeBytes() > maxBytes) {
+                break;
+            }
+            sources.add(segment);
+            bytes += segment.sizeBytes();
+        }
+        return sources.size() >= 2 ? sources : null;
+    }
+
+    private void merge(List<PageSegment> sources, int startedGeneration) throws IOException {
+        int count = sources.size();
+        long[][] deletedAtStart = new long[count][];
+        int[][] mapping = new int[count][];
+        for (int s = 0; s < count; s++) {
+            deletedAtStart[s] = sources.get(s).deletesSnapshot();
+            mapping[s] = new int[sources.get(s).pageCount()];
+            Arrays.fill(mapping[s], -1);
+        }
+        String name = nextSegmentName();
+        PageSegment merged = null;
+        try (PageSegmentWriter writer = new PageSegmentWriter(directory, name)) {
+            mergePages(sources, deletedAtStart, mapping, writer);
+            if (writer.pageCount() > 0) {
+                mergeTerms(sources, mapping, writer);
+                writer.finish();
+                merged = PageSegment.open(directory, name);
+            }
+        }
+
+        synchronized (lock) {
+            if (startedGeneration != generation) {
+                // 合并期间索引被重建，结果作废
+                if (merged != null) {
+                    merged.deleteFiles();
+                }
+                return;
+            }
+            if (merged != null) {
+                // 合并期间新删除的页同步到新段
+                for (int s = 0; s < count; s++) {
+                    long[] now = sources.get(s).deletesSnapshot();
+                    for (int w = 0; w < now.length; w++) {
+                        long added = now[w] & ~deletedAtStart[s][w];
+                        while (added != 0) {
+                            int ordinal = w * 64 + Long.numberOfTrailingZeros(added);
+                            added &= added - 1;
+                            if (mapping[s][ordinal] >= 0) {
+                                merged.markDeleted(mapping[s][ordinal]);
+                            }
+                        }
+                    }
+                }
+                merged.writeDeletes();
+            }
+            List<PageSegment> segments = new ArrayList<>(snapshot.segments);
+            segments.removeAll(sources);
+            if (merged != null) {
+                segments.add(merged);
+            }
+            snapshot = new Snapshot(Collections.unmodifiableList(segments), snapshot.buffer);
+            writeManifest(segments);
+        }
+        // 删不掉的旧段文件（如仍被占用）已不在清单里，下次启动时清理
+        for (PageSegment source : sources) {
+            source.deleteFiles();
+        }
+        merges.incrementAndGet();
+        lastMergeAt = LocalDateTime.now().toString();
+        System.out.println("页面全文索引段已合并: " + sources.stream().map(PageSegment::name).collect(Collectors.joining(","))
+                + " -> " + (merged == null ? "(空)" : merged.name() + ", 页 " + merged.pageCount()));
+    }
+
+    // 各段存活的页按 (userId, documentId, pageNumber) 多路归并，记录旧序号到新序号的映射
+    private void mergePages(List<PageSegment> sources, long[][] deleted, int[][] mapping, PageSegmentWriter writer)
+            throws IOException {
+        int count = sources.size();
+        int[] cursors = new int[count];
+        PriorityQueue<Integer> queue = new PriorityQueue<>((a, b) -> {
+            PageSegment left = sources.get(a);
+            PageSegment right = sources.get(b);
+            int cmp = Long.compare(left.userId(cursors[a]), right.userId(cursors[b]));
+            if (cmp == 0) {
+                cmp = Long.compare(left.documentId(cursors[a]), right.documentId(cursors[b]));
+            }
+            if (cmp == 0) {
+                cmp = Integer.compare(left.pageNumber(cursors[a]), right.pageNumber(cursors[b]));
+            }
+            return cmp != 0 ? cmp : Integer.compare(a, b);
+        });
+        for (int s = 0; s < count; s++) {
+            cursors[s] = nextLive(deleted[s], sources.get(s).pageCount(), 0);
+            if (cursors[s] < sources.get(s).pageCount()) {
+                queue.offer(s);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            PageSegment segment = sources.get(s);
+            int ordinal = cursors[s];
+            mapping[s][ordinal] = writer.addPage(segment.userId(ordinal), segment.documentId(ordinal),
+                    segment.pageNumber(ordinal), segment.length(ordinal));
+            cursors[s] = nextLive(deleted[s], segment.pageCount(), ordinal + 1);
+            if (cursors[s] < segment.pageCount()) {
+                queue.offer(s);
+            }
+        }
+    }
+
+    private static int nextLive(long[] deleted, int pageCount, int from) {
+        int ordinal = from;
+        while (ordinal < pageCount && (deleted[ordinal >>> 6] & (1L << ordinal)) != 0) {
+            ordinal++;
+        }
+        return ordinal;
+    }
+
+    // 各段词典按字节序多路归并，同一词项的倒排换成新序号后合并
+    private void mergeTerms(List<PageSegment> sources, int[][] mapping, PageSegmentWriter writer) throws IOException {
+        int count = sources.size();
+        int[] cursors = new int[count];
+        byte[][] current = new byte[count][];
+        PriorityQueue<Integer> queue = new PriorityQueue<>((a, b) -> {
+            int cmp = PageSegment.compareBytes(current[a], current[b]);
+            return cmp != 0 ? cmp : Integer.compare(a, b);
+        });
+        for (int s = 0; s < count; s++) {
+            if (sources.get(s).termCount() > 0) {
+                current[s] = sources.get(s).term(0);
+                queue.offer(s);
+            }
+        }
+        long[] packed = new long[16];
+        int[] ordinals = new int[16];
+        int[] freqs = new int[16];
+        List<Integer> same = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            same.clear();
+            int first = queue.poll();
+            same.add(first);
+            byte[] term = current[first];
+            while (!queue.isEmpty() && PageSegment.compareBytes(current[queue.peek()], term) == 0) {
+                same.add(queue.poll());
+            }
+            int size = 0;
+            for (int s : same) {
+                PageSegment segment = sources.get(s);
+                int at = segment.postingsAt(cursors[s]);
+                int docFreq = segment.docFreq(cursors[s]);
+                for (int i = 0; i < docFreq; i++) {
+                    int ordinal = mapping[s][segment.postingOrdinal(at, i)];
+                    if (ordinal < 0) {
+                        continue;
+                    }
+                    if (size == packed.length) {
+                        packed = Arrays.copyOf(packed, size * 2);
+                    }
+                    packed[size++] = ((long) ordinal << 32) | (segment.postingFreq(at, i) & 0xffffffffL);
+                }
+                cursors[s]++;
+                if (cursors[s] < segment.termCount()) {
+                    current[s] = segment.term(cursors[s]);
+                    queue.offer(s);
+                }
+            }
+            if (size == 0) {
+                continue;
+            }
+            Arrays.sort(packed, 0, size);
+            if (ordinals.length < size) {
+                ordinals = new int[packed.length];
+                freqs = new int[packed.length];
+            }
+            for (int i = 0; i < size; i++) {
+                ordinals[i] = (int) (packed[i] >>> 32);
+                freqs[i] = (int) packed[i];
+            }
+            writer.addTerm(term, ordinals, freqs, size);
+        }
+    }
+
+    // ---------------------------------------------------------------- 清单、重建、待处理记录
+
+    private void open() {
+        Path manifestFile = directory.resolve(MANIFEST);
+        if (!Files.exists(manifestFile)) {
+            // 首次启动，等维护线程回填
+            return;
+        }
+        long begin = System.currentTimeMillis();
+        try {
+            Map<String, Object> manifest = objectMapper.readValue(manifestFile.toFile(),
+                    new TypeReference<Map<String, Object>>() {});
+            @SuppressWarnings("unchecked")
+            List<String> names = (List<String>) manifest.get("segments");
+            List<PageSegment> segments = new ArrayList<>();
+            for (String name : names) {
+                segments.add(PageSegment.open(directory, name));
+            }
+            nextSegment = ((Number) manifest.get("nextSegment")).longValue();
+            backfillCursor = durableCursor = ((Number) manifest.get("backfillCursor")).longValue();
+            backfillDone = durableDone = Boolean.TRUE.equals(manifest.get("backfillDone"));
+            indexAnalyzer = (String) manifest.get("analyzer");
+            snapshot = new Snapshot(Collections.unmodifiableList(segments), Collections.emptyMap());
+            removeUnlisted(new HashSet<>(names));
+            replayPendingLog();
+            openedAt = LocalDateTime.now().toString();
+            System.out.println("页面全文索引已打开: 段 " + segments.size() + " 个, 待重放 " + requests.size()
+                    + " 条, 耗时 " + (System.currentTimeMillis() - begin) + "ms");
+        } catch (Exception e) {
+            // 清单或段文件损坏时从头回填
+            System.err.println("打开页面全文索引失败，将重新回填: " + e.getMessage());
+            snapshot = new Snapshot(Collections.emptyList(), Collections.emptyMap());
+            indexAnalyzer = null;
+        }
+    }
+
+    // 分析方式变化（或首次启动）时丢弃全部段，从头回填
+    private void reset(String analyzer) throws IOException {
+        synchronized (lock) {
+            generation++;
+            for (PageSegment segment : snapshot.segments) {
+                segment.deleteFiles();
+            }
+            snapshot = new Snapshot(Collections.emptyList(), Collections.emptyMap());
+            backfillCursor = durableCursor = 0;
+            backfillDone = durableDone = false;
+            deletesDirty = false;
+            indexAnalyzer = analyzer;
+            Files.createDirectories(directory);
+            removeUnlisted(Collections.emptySet());
+            writeManifest(Collections.emptyList());
+        }
+        // 回填会读到所有文档的最新内容，排队的请求不再需要
+        synchronized (pendingLock) {
+            requests.clear();
+        }
+        rewritePendingLog();
+        System.out.println("页面全文索引开始重建: 分析方式 " + analyzer);
+    }
+
+    private void writeManifest(List<PageSegment> segments) throws IOException {
+        Map<String, Object> manifest = new LinkedHashMap<>();
+        manifest.put("version", PageSegment.VERSION);
+        manifest.put("analyzer", indexAnalyzer);
+        manifest.put("nextSegment", nextSegment);
+        manifest.put("backfillCursor", durableCursor);
+        manifest.put("backfillDone", durableDone);
+        manifest.put("segments", segments.stream().map(PageSegment::name).collect(Collectors.toList()));
+        Path target = directory.resolve(MANIFEST);
+        Path temp = target.resolveSibling(MANIFEST + ".tmp");
+        objectMapper.writeValue(temp.toFile(), manifest);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private String nextSegmentName() {
+        synchronized (lock) {
+            return String.format(Locale.ROOT, "seg_%08d", nextSegment++);
+        }
+    }
+
+    // 删除清单之外的段文件和残留的临时文件（上次写到一半停机、或合并后没删掉的旧段）
+    private void removeUnlisted(Set<String> names) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "seg_*")) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                String name = fileName.substring(0, fileName.indexOf('.') < 0 ? fileName.length() : fileName.indexOf('.'));
+                if (!names.contains(name) || fileName.endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private void enqueue(long userId, long documentId) {
+        synchronized (pendingLock) {
+            requests.add(new long[]{userId, documentId});
+            try {
+                Files.createDirectories(directory);
+                Files.write(directory.resolve(PENDING_LOG),
+                        (userId + " " + documentId + "\n").getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                System.err.println("写入页面索引待处理记录失败: " + e.getMessage());
+            }
+        }
+    }
+
+    // 落盘后只保留还在队列里的请求
+    private void rewritePendingLog() throws IOException {
+        synchronized (pendingLock) {
+            StringBuilder lines = new StringBuilder();
+            for (long[] request : requests) {
+                lines.append(request[0]).append(' ').append(request[1]).append('\n');
+            }
+            Path target = directory.resolve(PENDING_LOG);
+            Path temp = target.resolveSibling(PENDING_LOG + ".tmp");
+            Files.write(temp, lines.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private void replayPendingLog() throws IOException {
+        Path file = directory.resolve(PENDING_LOG);
+        if (!Files.exists(file)) {
+            return;
+        }
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String[] parts = line.trim().split(" ");
+            if (parts.length == 2) {
+                try {
+                    requests.add(new long[]{Long.parseLong(parts[0]), Long.parseLong(parts[1])});
+                } catch (NumberFormatException e) {
+                    // 停机时写到一半的行
+                }
+            }
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    // 词典分词带上词典内容的摘要写进 segments.json，重载成不同的词典或重启后词典变了都能发现
+    private static String currentAnalyzer() {
+        TextAnalyzer.CjkSegmenter segmenter = SearchTokenizer.currentSegmenter();
+        return segmenter instanceof CjkDictionarySegmenter
+                ? TextAnalysisService.SEGMENTER_DICTIONARY + ":" + ((CjkDictionarySegmenter) segmenter).signature()
+                : TextAnalysisService.SEGMENTER_BIGRAM;
+    }
+
+    private static String analyzerKind(String analyzer) {
+        int colon = analyzer.indexOf(':');
+        return colon < 0 ? analyzer : analyzer.substring(0, colon);
+    }
+
+    private String targetAnalyzer() {
+        return TextAnalysisService.SEGMENTER_DICTIONARY.equalsIgnoreCase(segmenterName)
+                ? TextAnalysisService.SEGMENTER_DICTIONARY : TextAnalysisService.SEGMENTER_BIGRAM;
+    }
+}
@@ -0,0 +1,381 @@
+package com.vue.readingapp.search.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 页面全文的一个不可变段，整个文件只读映射（FileChannel.map），页表、词典和倒排都直接在映射区上查找，不占堆内存。
+ * 文件布局（大端）：
+ *   头部 64 字节：魔数、版本、页数、词项数、总词数、页表/词项表/词项字节/倒排的偏移
+ *   页表：每页 24 字节 (userId, documentId, pageNumber, 词数)，按 (userId, documentId, pageNumber) 升序，
+ *        同一用户的页序号连续，按用户检索时在倒排上二分跳到该用户的区间
+ *   词项表：每个词项 20 字节 (词项字节偏移, 字节长度, 文档频率, 倒排偏移)，按词项 UTF-8 字节序排列
+ *   倒排：每条 8 字节 (页序号, 词频)，页序号升序
+ * 段文件写完不再修改；被删除或被新版本替换的页记在删除位图里（name.del），合并时丢弃。
+ */
+final class PageSegment {
+
+    static final int MAGIC = 0x50475358;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+    static final int PAGE_BYTES = 24;
+    static final int TERM_BYTES = 20;
+    static final int POSTING_BYTES = 8;
+    static final String SEGMENT_SUFFIX = ".seg";
+    static final String DELETES_SUFFIX = ".del";
+
+    private final String name;
+    private final Path directory;
+    private final MappedByteBuffer buffer;
+    private final long sizeBytes;
+    private final int pageCount;
+    private final int termCount;
+    private final long totalLength;
+    private final int pageTable;
+    private final int termTable;
+    private final int termBytes;
+    private final int postings;
+    private final DeleteBitmap deletes;
+
+    private PageSegment(String name, Path directory, MappedByteBuffer buffer, long sizeBytes, DeleteBitmap deletes) {
+        this.name = name;
+        this.directory = directory;
+        this.buffer = buffer;
+        this.sizeBytes = sizeBytes;
+        this.pageCount = buffer.getInt(8);
+        this.termCount = buffer.getInt(12);
+        this.totalLength = buffer.getLong(16);
+        this.pageTable = (int) buffer.getLong(24);
+        this.termTable = (int) buffer.getLong(32);
+        this.termBytes = (int) buffer.getLong(40);
+        this.postings = (int) buffer.getLong(48);
+        this.deletes = deletes;
+    }
+
+    /**
+     * 映射段文件并读取它的删除位图；映射建立后文件句柄即可关闭
+     */
+    static PageSegment open(Path directory, String name) throws IOException {
+        Path file = directory.resolve(name + SEGMENT_SUFFIX);
+        MappedByteBuffer buffer;
+        long size;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("段文件大小异常: " + file + " (" + size + ")");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("不是可识别的段文件: " + file);
+        }
+        int pages = buffer.getInt(8);
+        return new PageSegment(name, directory, buffer, size,
+                DeleteBitmap.read(directory.resolve(name + DELETES_SUFFIX), pages));
+    }
+
+    String name() { return name; }
+    long sizeBytes() { return sizeBytes; }
+    int pageCount() { return pageCount; }
+    int termCount() { return termCount; }
+    long totalLength() { return totalLength; }
+    int liveCount() { return pageCount - deletes.cardinality(); }
+    int deletedCount() { return deletes.cardinality(); }
+
+    long userId(int ordinal) {
+        return buffer.getLong(pageTable + ordinal * PAGE_BYTES);
+    }
+
+    long documentId(int ordinal) {
+        return buffer.getLong(pageTable + ordinal * PAGE_BYTES + 8);
+    }
+
+    int pageNumber(int ordinal) {
+        return buffer.getInt(pageTable + ordinal * PAGE_BYTES + 16);
+    }
+
+    int length(int ordinal) {
+        return buffer.getInt(pageTable + ordinal * PAGE_BYTES + 20);
+    }
+
+    boolean isDeleted(int ordinal) {
+        return deletes.get(ordinal);
+    }
+
+    /**
+     * 第一个 (userId, documentId) 不小于给定值的页序号
+     */
+    int lowerBound(long userId, long documentId) {
+        int low = 0;
+        int high = pageCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            long midUser = userId(mid);
+            if (midUser < userId || (midUser == userId && documentId(mid) < documentId)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 把一个文档的所有页标为删除，返回新删除的页数
+     */
+    int deleteDocument(long userId, long documentId) {
+        int deleted = 0;
+        for (int ordinal = lowerBound(userId, documentId);
+             ordinal < pageCount && userId(ordinal) == userId && documentId(ordinal) == documentId; ordinal++) {
+            if (deletes.set(ordinal)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * 把一个用户的所有页标为删除，返回新删除的页数
+     */
+    int deleteUser(long userId) {
+        int deleted = 0;
+        for (int ordinal = lowerBound(userId, Long.MIN_VALUE); ordinal < pageCount && userId(ordinal) == userId; ordinal++) {
+            if (deletes.set(ordinal)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    void markDeleted(int ordinal) {
+        deletes.set(ordinal);
+    }
+
+    /**
+     * 删除位图的快照，合并时用来区分合并开始后才删除的页
+     */
+    long[] deletesSnapshot() {
+        return deletes.snapshot();
+    }
+
+    /**
+     * 删除位图有变化时写回磁盘（先写临时文件再改名）
+     */
+    void writeDeletes() throws IOException {
+        deletes.write(directory.resolve(name + DELETES_SUFFIX));
+    }
+
+    /**
+     * 二分查找词项，返回词项序号，不存在时返回 -1
+     */
+    int findTerm(byte[] term) {
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareTerm(mid, term);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    byte[] term(int termIndex) {
+        int entry = termTable + termIndex * TERM_BYTES;
+        int offset = termBytes + buffer.getInt(entry);
+        byte[] term = new byte[buffer.getInt(entry + 4)];
+        for (int i = 0; i < term.length; i++) {
+            term[i] = buffer.get(offset + i);
+        }
+        return term;
+    }
+
+    int docFreq(int termIndex) {
+        return buffer.getInt(termTable + termIndex * TERM_BYTES + 8);
+    }
+
+    /**
+     * 词项倒排在映射区中的起始位置
+     */
+    int postingsAt(int termIndex) {
+        return postings + (int) buffer.getLong(termTable + termIndex * TERM_BYTES + 12);
+    }
+
+    int postingOrdinal(int postingsAt, int i) {
+        return buffer.getInt(postingsAt + i * POSTING_BYTES);
+    }
+
+    int postingFreq(int postingsAt, int i) {
+        return buffer.getInt(postingsAt + i * POSTING_BYTES + 4);
+    }
+
+    /**
+     * 在 [from, docFreq) 中找第一个页序号不小于 ordinal 的位置（先倍增再二分，游标单调前进时代价很小）
+     */
+    int advance(int postingsAt, int docFreq, int from, int ordinal) {
+        if (from >= docFreq || postingOrdinal(postingsAt, from) >= ordinal) {
+            return from;
+        }
+        int step = 1;
+        int low = from;
+        int high = from + step;
+        while (high < docFreq && postingOrdinal(postingsAt, high) < ordinal) {
+            low = high;
+            step <<= 1;
+            high = from + step;
+        }
+        high = Math.min(high, docFreq);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (postingOrdinal(postingsAt, mid) < ordinal) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 删除段文件和删除位图；Linux 下正在检索的线程持有的映射在文件删除后仍然有效
+     */
+    boolean deleteFiles() {
+        try {
+            Files.deleteIfExists(directory.resolve(name + DELETES_SUFFIX));
+            Files.deleteIfExists(directory.resolve(name + SEGMENT_SUFFIX));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // 按无符号字节比较，与写入时的排序一致
+    private int compareTerm(int termIndex, byte[] term) {
+        int entry = termTable + termIndex * TERM_BYTES;
+        int offset = termBytes + buffer.getInt(entry);
+        int length = buffer.getInt(entry + 4);
+        int common = Math.min(length, term.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = (buffer.get(offset + i) & 0xff) - (term[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - term.length;
+    }
+
+    static int compareBytes(byte[] a, byte[] b) {
+        int common = Math.min(a.length, b.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = (a[i] & 0xff) - (b[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    /**
+     * 删除位图：检索线程无锁读取，写入线程按位原子设置；文件中是位图的 long 数组
+     */
+    static final class DeleteBitmap {
+        private final AtomicLongArray words;
+        private final AtomicInteger cardinality = new AtomicInteger();
+        private volatile boolean dirty;
+
+        DeleteBitmap(int size) {
+            words = new AtomicLongArray((size + 63) >>> 6);
+        }
+
+        static DeleteBitmap read(Path file, int size) throws IOException {
+            DeleteBitmap bitmap = new DeleteBitmap(size);
+            if (!Files.exists(file)) {
+                return bitmap;
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                int count = Math.min(in.readInt(), bitmap.words.length());
+                int bits = 0;
+                for (int i = 0; i < count; i++) {
+                    long word = in.readLong();
+                    bitmap.words.set(i, word);
+                    bits += Long.bitCount(word);
+                }
+                bitmap.cardinality.set(bits);
+            }
+            return bitmap;
+        }
+
+        boolean get(int index) {
+            return (words.get(index >>> 6) & (1L << index)) != 0;
+        }
+
+        /**
+         * 返回这一位此前是否未设置
+         */
+        boolean set(int index) {
+            int word = index >>> 6;
+            long mask = 1L << index;
+            while (true) {
+                long current = words.get(word);
+                if ((current & mask) != 0) {
+                    return false;
+                }
+                if (words.compareAndSet(word, current, current | mask)) {
+                    cardinality.incrementAndGet();
+                    dirty = true;
+                    return true;
+                }
+            }
+        }
+
+        int cardinality() {
+            return cardinality.get();
+        }
+
+        long[] snapshot() {
+            long[] copy = new long[words.length()];
+            for (int i = 0; i < copy.length; i++) {
+                copy[i] = words.get(i);
+            }
+            return copy;
+        }
+
+        void write(Path file) throws IOException {
+            if (!dirty) {
+                return;
+            }
+            // 先清标记再取快照，写入期间新删除的页留到下一次
+            dirty = false;
+            long[] copy = snapshot();
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    out.writeInt(copy.length);
+                    for (long word : copy) {
+                        out.writeLong(word);
+                    }
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                dirty = true;
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.vue.readingapp.search.service;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 页面全文段文件的写入
+ * 先按 (用户, 文档, 页码) 升序逐页 addPage，再按词项 UTF-8 字节序逐个 addTerm，finish 时把各部分拼接成一个段文件。
+ * 各部分先写到同目录的临时文件，内存里只保留当前词项的倒排；段文件写完后原子改名，之后不再修改。
+ */
+final class PageSegmentWriter implements Closeable {
+
+    private final Path directory;
+    private final String name;
+    private final Path pagesFile;
+    private final Path termsFile;
+    private final Path bytesFile;
+    private final Path postingsFile;
+    private final DataOutputStream pages;
+    private final DataOutputStream terms;
+    private final DataOutputStream bytes;
+    private final DataOutputStream postings;
+
+    private int pageCount;
+    private int termCount;
+    private long totalLength;
+    private long bytesWritten;
+    private long postingsWritten;
+    private boolean finished;
+
+    PageSegmentWriter(Path directory, String name) throws IOException {
+        this.directory = directory;
+        this.name = name;
+        this.pagesFile = directory.resolve(name + ".pages.tmp");
+        this.termsFile = directory.resolve(name + ".terms.tmp");
+        this.bytesFile = directory.resolve(name + ".bytes.tmp");
+        this.postingsFile = directory.resolve(name + ".postings.tmp");
+        this.pages = open(pagesFile);
+        this.terms = open(termsFile);
+        this.bytes = open(bytesFile);
+        this.postings = open(postingsFile);
+    }
+
+    /**
+     * 追加一页，返回它在段内的序号
+     */
+    int addPage(long userId, long documentId, int pageNumber, int length) throws IOException {
+        pages.writeLong(userId);
+        pages.writeLong(documentId);
+        pages.writeInt(pageNumber);
+        pages.writeInt(length);
+        totalLength += length;
+        return pageCount++;
+    }
+
+    /**
+     * 追加一个词项及其倒排（页序号升序）；没有倒排的词项忽略
+     */
+    void addTerm(byte[] term, int[] ordinals, int[] freqs, int count) throws IOException {
+        if (count == 0) {
+            return;
+        }
+        terms.writeInt((int) bytesWritten);
+        terms.writeInt(term.length);
+        terms.writeInt(count);
+        terms.writeLong(postingsWritten);
+        bytes.write(term);
+        bytesWritten += term.length;
+        for (int i = 0; i < count; i++) {
+            postings.writeInt(ordinals[i]);
+            postings.writeInt(freqs[i]);
+        }
+        postingsWritten += (long) count * PageSegment.POSTING_BYTES;
+        termCount++;
+    }
+
+    int pageCount() {
+        return pageCount;
+    }
+
+    /**
+     * 拼接成 name.seg 并刷到磁盘，返回段文件路径
+     */
+    Path finish() throws IOException {
+        closeParts();
+        long pageTable = PageSegment.HEADER_BYTES;
+        long termTable = pageTable + (long) pageCount * PageSegment.PAGE_BYTES;
+        long termBytes = termTable + (long) termCount * PageSegment.TERM_BYTES;
+        long postingsStart = termBytes + bytesWritten;
+        long size = postingsStart + postingsWritten;
+        // 单个段整体映射，不能超过一个 MappedByteBuffer 的上限
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("段文件超过 2GB 上限: " + size);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(PageSegment.HEADER_BYTES);
+        header.putInt(PageSegment.MAGIC);
+        header.putInt(PageSegment.VERSION);
+        header.putInt(pageCount);
+        header.putInt(termCount);
+        header.putLong(totalLength);
+        header.putLong(pageTable);
+        header.putLong(termTable);
+        header.putLong(termBytes);
+        header.putLong(postingsStart);
+        header.flip();
+
+        Path temp = directory.resolve(name + ".seg.tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+            out.position(PageSegment.HEADER_BYTES);
+            for (Path part : new Path[]{pagesFile, termsFile, bytesFile, postingsFile}) {
+                try (FileChannel in = FileChannel.open(part, StandardOpenOption.READ)) {
+                    long position = 0;
+                    long length = in.size();
+                    while (position < length) {
+                        position += in.transferTo(position, length - position, out);
+                    }
+                }
+            }
+            out.force(true);
+        }
+        Path target = directory.resolve(name + PageSegment.SEGMENT_SUFFIX);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        finished = true;
+        deleteParts();
+        return target;
+    }
+
+    /**
+     * 未完成时丢弃已写的临时文件
+     */
+    @Override
+    public void close() throws IOException {
+        closeParts();
+        deleteParts();
+        if (!finished) {
+            Files.deleteIfExists(directory.resolve(name + ".seg.tmp"));
+        }
+    }
+
+    private void closeParts() throws IOException {
+        pages.close();
+        terms.close();
+        bytes.close();
+        postings.close();
+    }
+
+    private void deleteParts() throws IOException {
+        for (Path part : new Path[]{pagesFile, termsFile, bytesFile, postingsFile}) {
+            Files.deleteIfExists(part);
+        }
+    }
+
+    private static DataOutputStream open(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+    }
+}
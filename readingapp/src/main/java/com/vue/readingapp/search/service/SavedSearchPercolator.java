@@ -0,0 +1,359 @@
+package com.vue.readingapp.search.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 保存的搜索作为常驻查询
+ * 反过来匹配：保存的搜索按用户登记在内存中，每条按最长的一个查询词挂在"锚点"上；文档、笔记、高亮写入时
+ * （SearchIndexService.refresh）只分析这一条新内容，用它的词项查锚点表得到候选查询，再确认所有查询词都出现。
+ * 命中写入 saved_search_matches（同一条内容只记一次）并累加 new_match_count，开启了提醒的在计数从 0 变 1 时发一条通知；
+ * 查看更新时只读 last_seen_match_id 之后的命中，代价与新内容条数成正比，不再重跑 LIKE 全表扫描。
+ */
+@Service
+public class SavedSearchPercolator {
+
+    public static final String NOTIFICATION_TYPE = "saved_search";
+
+    private static final String SAVED_SQL = "SELECT s.saved_id, s.user_id, s.notify, h.keyword, h.search_type " +
+            "FROM saved_search_results s INNER JOIN search_history h ON s.search_id = h.search_id ";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.search.percolator.max-document-chars:200000}")
+    private int maxDocumentChars;
+
+    /**
+     * 一条常驻查询
+     */
+    public static final class StandingQuery {
+        private final long savedId;
+        private final long userId;
+        private final String keyword;
+        private final Set<String> types;
+        private final List<String> terms;
+        private final boolean notify;
+
+        StandingQuery(long savedId, long userId, String keyword, Set<String> types, List<String> terms, boolean notify) {
+            this.savedId = savedId;
+            this.userId = userId;
+            this.keyword = keyword;
+            this.types = types;
+            this.terms = terms;
+            this.notify = notify;
+        }
+
+        public long getSavedId() { return savedId; }
+        public long getUserId() { return userId; }
+        public String getKeyword() { return keyword; }
+        public Set<String> getTypes() { return types; }
+        public List<String> getTerms() { return terms; }
+        public boolean isNotify() { return notify; }
+
+        // 最长的查询词通常最少见，作为锚点时候选最少
+        String anchor() {
+            String anchor = terms.get(0);
+            for (String term : terms) {
+                if (term.length() > anchor.length()) {
+                    anchor = term;
+                }
+            }
+            return anchor;
+        }
+    }
+
+    // 用户 -> 锚点词 -> 常驻查询；每个用户的锚点表整体替换，读取不加锁
+    private final Map<Long, Map<String, List<StandingQuery>>> byUser = new ConcurrentHashMap<>();
+    private final Map<Long, StandingQuery> bySavedId = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+    private volatile String loadedAt;
+
+    private final AtomicLong percolated = new AtomicLong();
+    private final AtomicLong candidates = new AtomicLong();
+    private final AtomicLong matches = new AtomicLong();
+    private final AtomicLong notifications = new AtomicLong();
+
+    /**
+     * 启动后全量加载，之后定时重新加载，兜底其他节点上的新增和删除
+     */
+    @Scheduled(initialDelayString = "${app.search.percolator.startup-delay-ms:20000}",
+            fixedDelayString = "${app.search.percolator.reload-interval-ms:3600000}")
+    public void reload() {
+        try {
+            loadAll();
+        } catch (Exception e) {
+            System.err.println("加载常驻查询失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 保存或更新一条保存的搜索后调用
+     */
+    public void register(Object savedId) {
+        if (savedId == null) {
+            return;
+        }
+        try {
+            List<StandingQuery> queries = new ArrayList<>();
+            jdbcTemplate.query(SAVED_SQL + "WHERE s.saved_id = ?",
+                    (RowCallbackHandler) rs -> {
+                        StandingQuery query = queryOf(rs);
+                        if (query != null) {
+                            queries.add(query);
+                        }
+                    },
+                    savedId);
+            synchronized (this) {
+                removeLocked(((Number) savedId).longValue());
+                for (StandingQuery query : queries) {
+                    addLocked(query);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("登记常驻查询失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 删除保存的搜索后调用
+     */
+    public synchronized void unregister(Object savedId) {
+        if (savedId != null) {
+            removeLocked(((Number) savedId).longValue());
+        }
+    }
+
+    /**
+     * 新内容写入后调用：只分析这一条内容，与该用户的常驻查询匹配；该用户没有保存的搜索时不访问数据库
+     */
+    public void percolate(Object userId, String type, Object id) {
+        if (userId == null || id == null) {
+            return;
+        }
+        try {
+            if (!loaded) {
+                synchronized (this) {
+                    if (!loaded) {
+                        loadAll();
+                    }
+                }
+            }
+            Map<String, List<StandingQuery>> anchors = byUser.get(((Number) userId).longValue());
+            if (anchors == null || anchors.isEmpty()) {
+                return;
+            }
+            String text = loadText(type, ((Number) id).longValue());
+            if (text == null || text.isEmpty()) {
+                return;
+            }
+            percolated.incrementAndGet();
+            Set<String> terms = new HashSet<>();
+            SearchTokenizer.analyze(text, (term, start, end) -> terms.add(term.toString()));
+            for (String term : terms) {
+                List<StandingQuery> anchored = anchors.get(term);
+                if (anchored == null) {
+                    continue;
+                }
+                for (StandingQuery query : anchored) {
+                    candidates.incrementAndGet();
+                    if ((query.types == null || query.types.contains(type)) && terms.containsAll(query.terms)) {
+                        try {
+                            record(query, type, ((Number) id).longValue());
+                        } catch (DataIntegrityViolationException e) {
+                            // 保存的搜索已随搜索历史一起删除，本节点还没重新加载
+                            unregister(query.savedId);
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // 匹配失败不影响写接口本身
+            System.err.println("匹配常驻查询失败: " + e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("standingQueries", bySavedId.size());
+        stats.put("users", byUser.size());
+        stats.put("loadedAt", loadedAt);
+        stats.put("percolatedItems", percolated.get());
+        stats.put("candidates", candidates.get());
+        stats.put("matches", matches.get());
+        stats.put("notifications", notifications.get());
+        return stats;
+    }
+
+    private void loadAll() {
+        List<StandingQuery> queries = new ArrayList<>();
+        jdbcTemplate.query(SAVED_SQL, (RowCallbackHandler) rs -> {
+            StandingQuery query = queryOf(rs);
+            if (query != null) {
+                queries.add(query);
+            }
+        });
+        synchronized (this) {
+            byUser.clear();
+            bySavedId.clear();
+            for (StandingQuery query : queries) {
+                addLocked(query);
+            }
+            loaded = true;
+            loadedAt = LocalDateTime.now().toString();
+        }
+        System.out.println("常驻查询已加载: " + queries.size() + " 条");
+    }
+
+    // 查询分析后没有词项（只有停用词、符号）或只搜词典的保存搜索不登记
+    private StandingQuery queryOf(java.sql.ResultSet rs) throws java.sql.SQLException {
+        String keyword = rs.getString("keyword");
+        Set<String> types = typesOf(rs.getString("search_type"));
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(SearchTokenizer.tokenizeQuery(keyword)));
+        if (terms.isEmpty() || (types != null && types.isEmpty())) {
+            return null;
+        }
+        return new StandingQuery(rs.getLong("saved_id"), rs.getLong("user_id"), keyword, types, terms,
+                rs.getBoolean("notify"));
+    }
+
+    // 保存时的搜索类型对应的内容类型；null 表示全部
+    private static Set<String> typesOf(String searchType) {
+        if (searchType == null) {
+            return null;
+        }
+        switch (searchType) {
+            case "documents":
+                return Collections.singleton(SearchIndexService.TYPE_DOCUMENT);
+            case "notes":
+                return Collections.singleton(SearchIndexService.TYPE_NOTE);
+            case "highlights":
+                return Collections.singleton(SearchIndexService.TYPE_HIGHLIGHT);
+            case "vocabulary":
+                return Collections.emptySet();
+            default:
+                return null;
+        }
+    }
+
+    private void addLocked(StandingQuery query) {
+        bySavedId.put(query.savedId, query);
+        Map<String, List<StandingQuery>> anchors = new HashMap<>(byUser.getOrDefault(query.userId, Collections.emptyMap()));
+        List<StandingQuery> anchored = new ArrayList<>(anchors.getOrDefault(query.anchor(), Collections.emptyList()));
+        anchored.add(query);
+        anchors.put(query.anchor(), anchored);
+        byUser.put(query.userId, anchors);
+    }
+
+    private void removeLocked(long savedId) {
+        StandingQuery query = bySavedId.remove(savedId);
+        if (query == null) {
+            return;
+        }
+        Map<String, List<StandingQuery>> anchors = new HashMap<>(byUser.getOrDefault(query.userId, Collections.emptyMap()));
+        List<StandingQuery> anchored = new ArrayList<>(anchors.getOrDefault(query.anchor(), Collections.emptyList()));
+        anchored.removeIf(q -> q.savedId == savedId);
+        if (anchored.isEmpty()) {
+            anchors.remove(query.anchor());
+        } else {
+            anchors.put(query.anchor(), anchored);
+        }
+        if (anchors.isEmpty()) {
+            byUser.remove(query.userId);
+        } else {
+            byUser.put(query.userId, anchors);
+        }
+    }
+
+    // 与搜索索引相同的字段；已删除或不可见的内容返回 null
+    private String loadText(String type, long id) {
+        List<String> parts = new ArrayList<>();
+        switch (type) {
+            case SearchIndexService.TYPE_DOCUMENT:
+                List<Map<String, Object>> documents = jdbcTemplate.queryForList(
+                        "SELECT title, author, description FROM documents " +
+                                "WHERE document_id = ? AND status = 'processed' AND deleted_at IS NULL", id);
+                if (documents.isEmpty()) {
+                    return null;
+                }
+                for (Object value : documents.get(0).values()) {
+                    parts.add((String) value);
+                }
+                StringBuilder pages = new StringBuilder();
+                jdbcTemplate.query("SELECT content FROM document_pages WHERE document_id = ? ORDER BY page_number",
+                        (RowCallbackHandler) rs -> {
+                            String content = rs.getString("content");
+                            int remaining = maxDocumentChars - pages.length();
+                            if (content != null && remaining > 0) {
+                                pages.append(content, 0, Math.min(content.length(), remaining)).append('\n');
+                            }
+                        },
+                        id);
+                parts.add(pages.toString());
+                break;
+            case SearchIndexService.TYPE_NOTE:
+                parts.addAll(jdbcTemplate.queryForList(
+                        "SELECT content FROM document_notes WHERE note_id = ?", String.class, id));
+                break;
+            case SearchIndexService.TYPE_HIGHLIGHT:
+                for (Map<String, Object> row : jdbcTemplate.queryForList(
+                        "SELECT text, note FROM document_highlights WHERE highlight_id = ?", id)) {
+                    parts.addAll(Arrays.asList((String) row.get("text"), (String) row.get("note")));
+                }
+                break;
+            default:
+                return null;
+        }
+        StringBuilder text = new StringBuilder();
+        for (String part : parts) {
+            if (part != null) {
+                text.append(part).append('\n');
+            }
+        }
+        return text.toString();
+    }
+
+    // 同一条内容对同一个保存的搜索只记一次，更新内容不会重复计数
+    private void record(StandingQuery query, String type, long id) {
+        int inserted = jdbcTemplate.update("INSERT IGNORE INTO saved_search_matches (saved_id, item_type, item_id, matched_at) " +
+                "VALUES (?, ?, ?, NOW())", query.savedId, type, id);
+        if (inserted == 0) {
+            return;
+        }
+        matches.incrementAndGet();
+        jdbcTemplate.update("UPDATE saved_search_results SET new_match_count = new_match_count + 1 WHERE saved_id = ?",
+                query.savedId);
+        if (!query.notify) {
+            return;
+        }
+        // 只在出现第一条未查看的新结果时提醒，之后的新结果累加在计数里
+        Integer unseen = jdbcTemplate.queryForObject(
+                "SELECT new_match_count FROM saved_search_results WHERE saved_id = ?", Integer.class, query.savedId);
+        if (unseen != null && unseen == 1) {
+            jdbcTemplate.update("INSERT INTO notifications (user_id, type, title, message, action_url, target_type, target_id, " +
+                            "is_read, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, 0, NOW())",
+                    query.userId, NOTIFICATION_TYPE, "保存的搜索有新结果",
+                    "“" + query.keyword + "”有新的匹配内容", "/search/saved/" + query.savedId,
+                    NOTIFICATION_TYPE, String.valueOf(query.savedId));
+            notifications.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.vue.readingapp.search.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 搜索续读游标
+ * 记录每个数据源已经读到的位置（索引命中记排序值和键，数据库来源记偏移量），对客户端不透明；
+ * 指纹绑定查询条件，条件变化后旧游标失效。
+ */
+public final class SearchCursor {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<Map<String, Object>>() {};
+
+    private final String fingerprint;
+    private final Map<String, Map<String, Object>> positions;
+
+    public SearchCursor(String fingerprint) {
+        this.fingerprint = fingerprint;
+        this.positions = new LinkedHashMap<>();
+    }
+
+    private SearchCursor(String fingerprint, Map<String, Map<String, Object>> positions) {
+        this.fingerprint = fingerprint;
+        this.positions = positions;
+    }
+
+    /**
+     * 查询条件的指纹
+     */
+    public static String fingerprint(Object... parts) {
+        StringBuilder content = new StringBuilder();
+        for (Object part : parts) {
+            content.append(part).append('\u0000');
+        }
+        return Integer.toHexString(content.toString().hashCode());
+    }
+
+    /**
+     * 解析游标；格式错误或与当前查询条件不符时抛出 IllegalArgumentException
+     */
+    @SuppressWarnings("unchecked")
+    public static SearchCursor decode(String token, String expectedFingerprint) {
+        try {
+            byte[] json = Base64.getUrlDecoder().decode(token);
+            Map<String, Object> data = MAPPER.readValue(new String(json, StandardCharsets.UTF_8), MAP_TYPE);
+            if (!expectedFingerprint.equals(data.get("f"))) {
+                throw new IllegalArgumentException("游标与当前查询条件不匹配");
+            }
+            Map<String, Map<String, Object>> positions = new LinkedHashMap<>();
+            Object stored = data.get("p");
+            if (stored instanceof Map) {
+                for (Map.Entry<String, Object> entry : ((Map<String, Object>) stored).entrySet()) {
+                    if (entry.getValue() instanceof Map) {
+                        positions.put(entry.getKey(), checkPosition((Map<String, Object>) entry.getValue()));
+                    }
+                }
+            }
+            return new SearchCursor(expectedFingerprint, positions);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalArgumentException("无效的游标", e);
+        }
+    }
+
+    // 游标来自客户端，字段类型不对时按格式错误拒绝，不能在使用时才抛出 ClassCastException
+    private static Map<String, Object> checkPosition(Map<String, Object> position) {
+        Object key = position.get("key");
+        if (key != null && (!(key instanceof String)
+                || !(position.get("score") instanceof Number) || !(position.get("time") instanceof Number))) {
+            throw new IllegalArgumentException("无效的游标");
+        }
+        Object offset = position.get("offset");
+        if (offset != null && (!(offset instanceof Number) || ((Number) offset).intValue() < 0)) {
+            throw new IllegalArgumentException("无效的游标");
+        }
+        return position;
+    }
+
+    public String encode() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("f", fingerprint);
+        data.put("p", positions);
+        try {
+            byte[] json = MAPPER.writeValueAsString(data).getBytes(StandardCharsets.UTF_8);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(json);
+        } catch (Exception e) {
+            throw new IllegalStateException("游标编码失败", e);
+        }
+    }
+
+    /**
+     * 该数据源已经读完
+     */
+    public boolean isDone(String source) {
+        Map<String, Object> position = positions.get(source);
+        return position != null && Boolean.TRUE.equals(position.get("done"));
+    }
+
+    public void markDone(String source) {
+        Map<String, Object> position = new LinkedHashMap<>();
+        position.put("done", true);
+        positions.put(source, position);
+    }
+
+    /**
+     * 索引来源的续读位置，尚未读过时返回 null
+     */
+    public InvertedIndex.Hit getHit(String source) {
+        Map<String, Object> position = positions.get(source);
+        if (position == null || !(position.get("key") instanceof String)) {
+            return null;
+        }
+        return InvertedIndex.position((String) position.get("key"),
+                ((Number) position.get("score")).doubleValue(),
+                ((Number) position.get("time")).longValue());
+    }
+
+    public void setHit(String source, InvertedIndex.Hit hit) {
+        Map<String, Object> position = new LinkedHashMap<>();
+        position.put("key", hit.getKey());
+        position.put("score", hit.getScore());
+        position.put("time", hit.getSortTime());
+        positions.put(source, position);
+    }
+
+    /**
+     * 数据库来源的偏移量
+     */
+    public int getOffset(String source) {
+        Map<String, Object> position = positions.get(source);
+        if (position == null || !(position.get("offset") instanceof Number)) {
+            return 0;
+        }
+        return ((Number) position.get("offset")).intValue();
+    }
+
+    public void setOffset(String source, int offset) {
+        Map<String, Object> position = new LinkedHashMap<>();
+        position.put("offset", offset);
+        positions.put(source, position);
+    }
+
+    /**
+     * 还有数据源没有读完
+     */
+    public boolean hasMore(Iterable<String> sources) {
+        for (String source : sources) {
+            if (!isDone(source)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
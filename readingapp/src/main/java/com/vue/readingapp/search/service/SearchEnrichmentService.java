@@ -0,0 +1,176 @@
+package com.vue.readingapp.search.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 搜索结果补全
+ * 收集一页结果中的文档ID和单词ID，每种关联数据只查一次 IN (...)，再在内存中按ID拼回结果，
+ * 取代逐条查询标签、例句和生词本状态。
+ */
+@Service
+public class SearchEnrichmentService {
+
+    private static final int EXAMPLES_PER_WORD = 3;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * 一页结果的关联数据
+     */
+    public static final class Enrichment {
+        private final Map<Long, List<String>> documentTags;
+        private final Map<Long, List<String>> wordExamples;
+        private final Map<Long, List<String>> wordTags;
+        private final Set<Long> inVocabulary;
+
+        Enrichment(Map<Long, List<String>> documentTags, Map<Long, List<String>> wordExamples,
+                   Map<Long, List<String>> wordTags, Set<Long> inVocabulary) {
+            this.documentTags = documentTags;
+            this.wordExamples = wordExamples;
+            this.wordTags = wordTags;
+            this.inVocabulary = inVocabulary;
+        }
+
+        public List<String> getDocumentTags(long documentId) {
+            return documentTags.getOrDefault(documentId, new ArrayList<>());
+        }
+
+        public List<String> getWordExamples(long wordId) {
+            return wordExamples.getOrDefault(wordId, new ArrayList<>());
+        }
+
+        public List<String> getWordTags(long wordId) {
+            return wordTags.getOrDefault(wordId, new ArrayList<>());
+        }
+
+        public boolean isInVocabulary(long wordId) {
+            return inVocabulary.contains(wordId);
+        }
+    }
+
+    /**
+     * 批量加载；userId 为空时不查生词本状态，单词标签不按用户过滤
+     */
+    public Enrichment load(Collection<Long> documentIds, Collection<Long> wordIds, Long userId) {
+        Set<Long> documents = new LinkedHashSet<>(documentIds);
+        Set<Long> words = new LinkedHashSet<>(wordIds);
+        return new Enrichment(
+                loadDocumentTags(documents),
+                loadWordExamples(words),
+                loadWordTags(words, userId),
+                loadVocabularyMembership(words, userId)
+        );
+    }
+
+    /**
+     * 从结果ID（doc_1、word_2 这类）中取出指定前缀的数字ID
+     */
+    public static Long parseId(String itemId, String prefix) {
+        if (itemId == null || !itemId.startsWith(prefix)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(itemId.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private Map<Long, List<String>> loadDocumentTags(Set<Long> documentIds) {
+        Map<Long, List<String>> tags = new HashMap<>();
+        if (documentIds.isEmpty()) {
+            return tags;
+        }
+        try {
+            String sql = "SELECT r.document_id, t.tag_name FROM document_tag_relations r " +
+                    "INNER JOIN document_tags t ON t.tag_id = r.tag_id " +
+                    "WHERE r.document_id IN (" + placeholders(documentIds.size()) + ") ORDER BY r.relation_id";
+            jdbcTemplate.query(sql, (RowCallbackHandler) rs ->
+                    tags.computeIfAbsent(rs.getLong("document_id"), k -> new ArrayList<>()).add(rs.getString("tag_name")),
+                    documentIds.toArray());
+        } catch (Exception e) {
+            System.err.println("批量获取文档标签失败: " + e.getMessage());
+        }
+        return tags;
+    }
+
+    private Map<Long, List<String>> loadWordExamples(Set<Long> wordIds) {
+        Map<Long, List<String>> examples = new HashMap<>();
+        if (wordIds.isEmpty()) {
+            return examples;
+        }
+        try {
+            String sql = "SELECT word_id, example_sentence FROM word_examples " +
+                    "WHERE word_id IN (" + placeholders(wordIds.size()) + ") ORDER BY word_id, order_index, example_id";
+            jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+                List<String> list = examples.computeIfAbsent(rs.getLong("word_id"), k -> new ArrayList<>());
+                if (list.size() < EXAMPLES_PER_WORD) {
+                    list.add(rs.getString("example_sentence"));
+                }
+            }, wordIds.toArray());
+        } catch (Exception e) {
+            System.err.println("批量获取单词例句失败: " + e.getMessage());
+        }
+        return examples;
+    }
+
+    private Map<Long, List<String>> loadWordTags(Set<Long> wordIds, Long userId) {
+        Map<Long, List<String>> tags = new HashMap<>();
+        if (wordIds.isEmpty()) {
+            return tags;
+        }
+        try {
+            // 单词标签挂在生词本条目上，同一单词在不同条目上的相同标签只保留一个
+            String sql = "SELECT DISTINCT uv.word_id, t.tag_name FROM user_vocabulary uv " +
+                    "INNER JOIN user_vocabulary_tags ut ON ut.user_vocab_id = uv.user_vocab_id " +
+                    "INNER JOIN vocabulary_tags t ON t.tag_id = ut.tag_id " +
+                    "WHERE uv.word_id IN (" + placeholders(wordIds.size()) + ")";
+            List<Object> params = new ArrayList<>(wordIds);
+            if (userId != null) {
+                sql += " AND uv.user_id = ?";
+                params.add(userId);
+            }
+            jdbcTemplate.query(sql, (RowCallbackHandler) rs ->
+                    tags.computeIfAbsent(rs.getLong("word_id"), k -> new ArrayList<>()).add(rs.getString("tag_name")),
+                    params.toArray());
+        } catch (Exception e) {
+            System.err.println("批量获取单词标签失败: " + e.getMessage());
+        }
+        return tags;
+    }
+
+    private Set<Long> loadVocabularyMembership(Set<Long> wordIds, Long userId) {
+        if (wordIds.isEmpty() || userId == null) {
+            return Collections.emptySet();
+        }
+        Set<Long> members = new HashSet<>();
+        try {
+            String sql = "SELECT DISTINCT word_id FROM user_vocabulary " +
+                    "WHERE user_id = ? AND word_id IN (" + placeholders(wordIds.size()) + ")";
+            List<Object> params = new ArrayList<>();
+            params.add(userId);
+            params.addAll(wordIds);
+            jdbcTemplate.query(sql, (RowCallbackHandler) rs -> members.add(rs.getLong("word_id")), params.toArray());
+        } catch (Exception e) {
+            System.err.println("批量检查生词本失败: " + e.getMessage());
+        }
+        return members;
+    }
+
+    private String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
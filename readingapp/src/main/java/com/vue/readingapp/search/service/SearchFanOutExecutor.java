@@ -0,0 +1,161 @@
+package com.vue.readingapp.search.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 搜索并发执行器
+ * 把一次搜索的多个数据源放到有界线程池里并行执行，整体受同一个截止时间约束；
+ * 超时、出错或被拒绝的数据源直接丢弃，并在结果中标记，调用方据此返回 partial。
+ */
+@Service
+public class SearchFanOutExecutor {
+
+    public static final String STATUS_OK = "ok";
+    public static final String STATUS_TIMEOUT = "timeout";
+    public static final String STATUS_ERROR = "error";
+    public static final String STATUS_REJECTED = "rejected";
+
+    @Value("${app.search.fanout.threads:8}")
+    private int threads;
+
+    @Value("${app.search.fanout.queue-capacity:256}")
+    private int queueCapacity;
+
+    @Value("${app.search.fanout.deadline-ms:1500}")
+    private long defaultDeadlineMs;
+
+    private ThreadPoolExecutor executor;
+
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "search-fanout-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 请求的截止时间（毫秒时间戳）
+     */
+    public long deadlineFromNow() {
+        return System.currentTimeMillis() + defaultDeadlineMs;
+    }
+
+    /**
+     * 并行执行各数据源，最晚等到 deadline；返回的结果只包含按时完成的数据源
+     */
+    public <T> Result<T> invokeAll(Map<String, Callable<T>> tasks, long deadline) {
+        Result<T> result = new Result<>();
+        Map<String, Future<T>> futures = new LinkedHashMap<>();
+        Map<String, AtomicLong> elapsed = new LinkedHashMap<>();
+        long submittedAt = System.currentTimeMillis();
+
+        for (Map.Entry<String, Callable<T>> entry : tasks.entrySet()) {
+            String source = entry.getKey();
+            Callable<T> task = entry.getValue();
+            AtomicLong took = new AtomicLong(-1);
+            elapsed.put(source, took);
+            try {
+                futures.put(source, executor.submit(() -> {
+                    long begin = System.currentTimeMillis();
+                    try {
+                        return task.call();
+                    } finally {
+                        took.set(System.currentTimeMillis() - begin);
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                rejectedCount.incrementAndGet();
+                result.record(source, STATUS_REJECTED, 0);
+            }
+        }
+
+        for (Map.Entry<String, Future<T>> entry : futures.entrySet()) {
+            String source = entry.getKey();
+            Future<T> future = entry.getValue();
+            long remaining = deadline - System.currentTimeMillis();
+            try {
+                T value = future.get(Math.max(0, remaining), TimeUnit.MILLISECONDS);
+                result.values.put(source, value);
+                result.record(source, STATUS_OK, elapsed.get(source).get());
+            } catch (TimeoutException e) {
+                // 不中断已在执行的任务：索引首次加载完成后仍会进入缓存，供后续请求使用
+                future.cancel(false);
+                timeoutCount.incrementAndGet();
+                result.record(source, STATUS_TIMEOUT, System.currentTimeMillis() - submittedAt);
+            } catch (ExecutionException e) {
+                errorCount.incrementAndGet();
+                System.err.println("搜索数据源 " + source + " 执行失败: " + e.getCause());
+                result.record(source, STATUS_ERROR, elapsed.get(source).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(false);
+                result.record(source, STATUS_TIMEOUT, System.currentTimeMillis() - submittedAt);
+            }
+        }
+        return result;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threads", threads);
+        stats.put("active", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("timeouts", timeoutCount.get());
+        stats.put("errors", errorCount.get());
+        stats.put("rejected", rejectedCount.get());
+        return stats;
+    }
+
+    /**
+     * 并发执行结果：按时完成的数据源的返回值，以及每个数据源的状态和耗时
+     */
+    public static final class Result<T> {
+        private final Map<String, T> values = new LinkedHashMap<>();
+        private final Map<String, Map<String, Object>> sources = new LinkedHashMap<>();
+        private boolean partial;
+
+        private void record(String source, String status, long timeMs) {
+            Map<String, Object> timing = new LinkedHashMap<>();
+            timing.put("status", status);
+            timing.put("timeMs", timeMs);
+            sources.put(source, timing);
+            if (!STATUS_OK.equals(status)) {
+                partial = true;
+            }
+        }
+
+        public Map<String, T> getValues() { return values; }
+        public Map<String, Map<String, Object>> getSources() { return sources; }
+        public boolean isPartial() { return partial; }
+    }
+}
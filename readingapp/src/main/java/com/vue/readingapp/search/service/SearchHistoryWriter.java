@@ -0,0 +1,245 @@
+package com.vue.readingapp.search.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 搜索历史异步写入
+ * 搜索接口只把记录放进有界队列，由后台线程攒够一批或到达刷新间隔后用多行 INSERT 写入；
+ * 队列满时直接丢弃并计数，不阻塞搜索请求。文本搜索写入成功后同时累加到搜索统计汇总表；
+ * 无论写入是否成功，文本搜索都计入内存中的热门搜索统计。
+ */
+@Service
+public class SearchHistoryWriter {
+
+    // search_history.keyword 和 voice_search_history.recognized_text 都是 VARCHAR(255)
+    private static final int MAX_TEXT_LENGTH = 255;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SearchStatsRollupService rollupService;
+
+    @Autowired
+    private TrendingKeywordService trendingService;
+
+    @Value("${app.search.history.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${app.search.history.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.search.history.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    private BlockingQueue<HistoryEvent> queue;
+    private Thread flusher;
+    private volatile boolean running;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    private static final class HistoryEvent {
+        private final boolean voice;
+        private final long userId;
+        private final String text;
+        // 文本搜索为搜索类型，语音搜索为识别语言
+        private final String category;
+        private final int resultCount;
+        private final Timestamp timestamp;
+
+        HistoryEvent(boolean voice, long userId, String text, String category, int resultCount) {
+            this.voice = voice;
+            this.userId = userId;
+            this.text = text;
+            this.category = category;
+            this.resultCount = resultCount;
+            this.timestamp = new Timestamp(System.currentTimeMillis());
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        flusher = new Thread(this::runFlusher, "search-history-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        flusher.interrupt();
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 停机前把队列里剩下的记录写完
+        List<HistoryEvent> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        flush(rest);
+    }
+
+    /**
+     * 记录一次文本搜索（search_history）
+     */
+    public void record(Long userId, String keyword, String searchType, int resultCount) {
+        if (userId == null || keyword == null) {
+            return;
+        }
+        enqueue(new HistoryEvent(false, userId, truncate(keyword), searchType, resultCount));
+    }
+
+    /**
+     * 记录一次语音搜索（voice_search_history）
+     */
+    public void recordVoice(Long userId, String recognizedText, String language, int resultCount) {
+        if (userId == null || recognizedText == null) {
+            return;
+        }
+        enqueue(new HistoryEvent(true, userId, truncate(recognizedText), language, resultCount));
+    }
+
+    public int getBacklog() {
+        return queue.size();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("backlog", queue.size());
+        stats.put("capacity", queueCapacity);
+        stats.put("enqueued", enqueued.get());
+        stats.put("dropped", dropped.get());
+        stats.put("written", written.get());
+        stats.put("failed", failed.get());
+        stats.put("batches", batches.get());
+        return stats;
+    }
+
+    private void enqueue(HistoryEvent event) {
+        if (queue.offer(event)) {
+            enqueued.incrementAndGet();
+        } else {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void runFlusher() {
+        List<HistoryEvent> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                // 等第一条记录，之后在刷新间隔内继续收集，攒够一批提前写入
+                HistoryEvent first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.currentTimeMillis() + flushIntervalMs;
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    HistoryEvent next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+                flush(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                // 停机：未写入的记录放回队列，由 shutdown 统一写完
+                for (HistoryEvent event : batch) {
+                    if (!queue.offer(event)) {
+                        dropped.incrementAndGet();
+                    }
+                }
+                return;
+            } catch (Exception e) {
+                System.err.println("搜索历史写入线程异常: " + e.getMessage());
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<HistoryEvent> events) {
+        List<HistoryEvent> searches = new ArrayList<>();
+        List<HistoryEvent> voices = new ArrayList<>();
+        for (HistoryEvent event : events) {
+            (event.voice ? voices : searches).add(event);
+        }
+        for (HistoryEvent event : searches) {
+            trendingService.record(event.text, event.category, event.timestamp.getTime());
+        }
+        if (insert("INSERT INTO search_history (user_id, keyword, search_type, result_count, timestamp) VALUES ", searches)) {
+            List<SearchStatsRollupService.Sample> samples = new ArrayList<>(searches.size());
+            for (HistoryEvent event : searches) {
+                samples.add(new SearchStatsRollupService.Sample(event.userId, event.category, event.resultCount,
+                        event.timestamp.toLocalDateTime()));
+            }
+            rollupService.apply(samples);
+        }
+        insert("INSERT INTO voice_search_history (user_id, recognized_text, language, result_count, timestamp) VALUES ", voices);
+    }
+
+    private boolean insert(String prefix, List<HistoryEvent> events) {
+        if (events.isEmpty()) {
+            return false;
+        }
+        StringBuilder sql = new StringBuilder(prefix);
+        sql.append(String.join(", ", Collections.nCopies(events.size(), "(?, ?, ?, ?, ?)")));
+        List<Object> params = new ArrayList<>(events.size() * 5);
+        for (HistoryEvent event : events) {
+            params.add(event.userId);
+            params.add(event.text);
+            params.add(event.category);
+            params.add(event.resultCount);
+            params.add(event.timestamp);
+        }
+        try {
+            jdbcTemplate.update(sql.toString(), params.toArray());
+            written.addAndGet(events.size());
+            batches.incrementAndGet();
+            return true;
+        } catch (Exception e) {
+            failed.addAndGet(events.size());
+            System.err.println("批量写入搜索历史失败（" + events.size() + " 条）: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private String truncate(String text) {
+        if (text.length() <= MAX_TEXT_LENGTH) {
+            return text;
+        }
+        // 不截断在代理对中间
+        int end = Character.isHighSurrogate(text.charAt(MAX_TEXT_LENGTH - 1)) ? MAX_TEXT_LENGTH - 1 : MAX_TEXT_LENGTH;
+        return text.substring(0, end);
+    }
+}
@@ -0,0 +1,462 @@
+package com.vue.readingapp.search.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import javax.annotation.PostConstruct;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 全局搜索的倒排索引
+ * 文档、笔记、高亮按用户分别建索引，首次搜索时从数据库加载，之后由各写接口调用 refresh 增量维护（同时交给常驻查询匹配，
+ * 文档的页面全文另外排进磁盘段索引 PageIndexService）；
+ * 词典（words）是全局数据，单独建一个共享索引并定时重建。
+ * 索引项带上分面取值：文档的语言、标签、创建月份，单词的语言、难度，笔记和高亮的创建月份。
+ */
+@Service
+public class SearchIndexService {
+
+    public static final String TYPE_DOCUMENT = "document";
+    public static final String TYPE_VOCABULARY = "vocabulary";
+    public static final String TYPE_NOTE = "note";
+    public static final String TYPE_HIGHLIGHT = "highlight";
+
+    // 与原搜索接口保持一致：只有处理完成且未删除的文档参与搜索
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyy-MM");
+    private static final String DOCUMENT_VISIBLE = "d.status = 'processed' AND d.deleted_at IS NULL";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AutocompleteService autocompleteService;
+
+    @Autowired
+    private SearchResultCache resultCache;
+
+    @Autowired
+    private FuzzyVocabularyService fuzzyVocabularyService;
+
+    @Autowired
+    private SavedSearchPercolator percolator;
+
+    @Autowired
+    private PageIndexService pageIndex;
+
+    @Value("${app.search.index.max-users:2000}")
+    private long maxUsers;
+
+    @Value("${app.search.index.idle-minutes:30}")
+    private long idleMinutes;
+
+    @Value("${app.search.index.max-age-minutes:60}")
+    private long maxAgeMinutes;
+
+    @Value("${app.search.index.max-document-chars:200000}")
+    private int maxDocumentChars;
+
+    private Cache<Long, InvertedIndex> userIndexes;
+    // 正在全量加载的索引，加载期间的增量更新也要写入，避免丢失
+    private final Map<Long, InvertedIndex> building = new ConcurrentHashMap<>();
+    private volatile InvertedIndex wordIndex;
+
+    private final AtomicLong userIndexBuilds = new AtomicLong();
+    private final AtomicLong incrementalUpdates = new AtomicLong();
+    private volatile String wordIndexBuiltAt;
+
+    @PostConstruct
+    public void init() {
+        // 空闲用户的索引自动释放；最长存活时间兜底其他节点上的写入
+        userIndexes = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterAccess(idleMinutes, TimeUnit.MINUTES)
+                .expireAfterWrite(maxAgeMinutes, TimeUnit.MINUTES)
+                .build();
+    }
+
+    /**
+     * 在当前用户的文档、笔记、高亮中检索，返回排在 after 之后的前 limit 条
+     */
+    public InvertedIndex.TopHits searchUser(long userId, String query, Set<String> types,
+                                            Comparator<InvertedIndex.Hit> order, InvertedIndex.Hit after, int limit) {
+        return userIndex(userId).top(SearchTokenizer.tokenizeQuery(query), types, true, order, after, limit);
+    }
+
+    /**
+     * 在词典中检索，返回排在 after 之后的前 limit 条
+     */
+    public InvertedIndex.TopHits searchWords(String query, Comparator<InvertedIndex.Hit> order,
+                                             InvertedIndex.Hit after, int limit) {
+        InvertedIndex.TopHits hits = wordIndex().top(SearchTokenizer.tokenizeQuery(query), null, true, order, after, limit);
+        if (hits.getTotal() > 0 || after != null) {
+            return hits;
+        }
+        // 没有命中时改找拼写相近的单词，只返回一页
+        List<InvertedIndex.Hit> similar = new ArrayList<>();
+        Map<String, Map<String, Integer>> facets = new HashMap<>();
+        for (FuzzyWordIndex.Match match : fuzzyVocabularyService.lookup(query, null, limit)) {
+            long wordId = match.getEntry().getId();
+            similar.add(new InvertedIndex.Hit("word_" + wordId, TYPE_VOCABULARY, wordId, 1.0 / (1 + match.getDistance()), 0L));
+            for (Map.Entry<String, List<String>> facet : wordFacets(match.getEntry().getLanguage(),
+                    match.getEntry().getDifficulty()).entrySet()) {
+                String value = facet.getValue().get(0);
+                if (value != null) {
+                    facets.computeIfAbsent(facet.getKey(), k -> new HashMap<>()).merge(value, 1, Integer::sum);
+                }
+            }
+        }
+        return new InvertedIndex.TopHits(similar, similar.size(), facets);
+    }
+
+    private InvertedIndex userIndex(long userId) {
+        while (true) {
+            InvertedIndex index = userIndexes.get(userId, this::buildUserIndex);
+            // 放入缓存之后才移出加载表，中间不会有增量更新落空
+            building.remove(userId, index);
+            if (index.isCurrent()) {
+                return index;
+            }
+            // 构建期间切换了分词方式（invalidateAll 不会取消进行中的加载），丢弃后按新的分词方式重建
+            userIndexes.asMap().remove(userId, index);
+        }
+    }
+
+    private InvertedIndex wordIndex() {
+        InvertedIndex index = wordIndex;
+        if (index == null || !index.isCurrent()) {
+            synchronized (this) {
+                if (wordIndex == null || !wordIndex.isCurrent()) {
+                    rebuildWordIndex();
+                }
+                index = wordIndex;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * 写接口在新增、修改、删除后调用；该用户的索引尚未加载时不做任何事，首次搜索时会全量加载
+     */
+    public void refresh(Object userId, String type, Object id) {
+        if (userId == null || id == null) {
+            return;
+        }
+        resultCache.bumpVersion(userId);
+        if (TYPE_DOCUMENT.equals(type)) {
+            autocompleteService.refreshDocument(userId, id);
+            pageIndex.refresh(userId, id);
+        }
+        // 新内容与该用户保存的搜索匹配，不依赖索引是否已加载
+        percolator.percolate(userId, type, id);
+        long key = ((Number) userId).longValue();
+        InvertedIndex index = userIndexes.getIfPresent(key);
+        if (index == null) {
+            index = building.get(key);
+        }
+        if (index == null) {
+            return;
+        }
+        long sourceId = ((Number) id).longValue();
+        try {
+            switch (type) {
+                case TYPE_DOCUMENT:
+                    refreshDocument(index, sourceId);
+                    break;
+                case TYPE_NOTE:
+                    refreshNote(index, sourceId);
+                    break;
+                case TYPE_HIGHLIGHT:
+                    refreshHighlight(index, sourceId);
+                    break;
+                default:
+                    return;
+            }
+            incrementalUpdates.incrementAndGet();
+        } catch (Exception e) {
+            // 增量失败时丢弃整个索引，下次搜索重新加载
+            System.err.println("更新搜索索引失败: " + e.getMessage());
+            userIndexes.invalidate(((Number) userId).longValue());
+        }
+    }
+
+    /**
+     * 只知道文档编号的写接口（如文档标签的增删）调用，按文档所属用户刷新
+     */
+    public void refreshDocument(Object documentId) {
+        try {
+            List<Long> owners = jdbcTemplate.queryForList("SELECT user_id FROM documents WHERE document_id = ?",
+                    Long.class, documentId);
+            if (!owners.isEmpty()) {
+                refresh(owners.get(0), TYPE_DOCUMENT, documentId);
+            }
+        } catch (Exception e) {
+            System.err.println("刷新文档搜索索引失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 批量修改或注销账号后丢弃该用户的索引
+     */
+    public void invalidateUser(Object userId) {
+        if (userId != null) {
+            userIndexes.invalidate(((Number) userId).longValue());
+            autocompleteService.invalidateUser(userId);
+            pageIndex.refreshUser(userId);
+            resultCache.bumpVersion(userId);
+        }
+    }
+
+    /**
+     * 分析链变化（如切换了中日韩分词方式）后调用：丢弃所有用户索引和缓存的搜索结果，
+     * 按新的分词方式重新切分常驻查询，已加载的词典索引立即重建。
+     * 切换前开始、之后才完成的索引构建由分析链版本识别，取用时丢弃
+     */
+    public void reanalyze() {
+        userIndexes.invalidateAll();
+        resultCache.invalidateAll();
+        percolator.reload();
+        if (wordIndex != null) {
+            rebuildWordIndex();
+        }
+    }
+
+    @Scheduled(initialDelayString = "${app.search.index.word-rebuild-interval-ms:3600000}",
+            fixedDelayString = "${app.search.index.word-rebuild-interval-ms:3600000}")
+    public void scheduledWordRebuild() {
+        if (wordIndex == null) {
+            return;
+        }
+        try {
+            rebuildWordIndex();
+        } catch (Exception e) {
+            System.err.println("重建词典索引失败: " + e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("userIndexes", userIndexes.estimatedSize());
+        stats.put("userIndexBuilds", userIndexBuilds.get());
+        stats.put("incrementalUpdates", incrementalUpdates.get());
+        InvertedIndex words = wordIndex;
+        stats.put("wordIndexSize", words == null ? 0 : words.size());
+        stats.put("wordIndexBuiltAt", wordIndexBuiltAt);
+        return stats;
+    }
+
+    private InvertedIndex buildUserIndex(Long userId) {
+        InvertedIndex index = new InvertedIndex();
+        index.beginBuild();
+        building.put(userId, index);
+        try {
+            loadDocuments(index, userId);
+            jdbcTemplate.query("SELECT note_id, content, created_at FROM document_notes WHERE user_id = ?",
+                    (RowCallbackHandler) rs -> index.load(noteKey(rs.getLong("note_id")), TYPE_NOTE, rs.getLong("note_id"),
+                            toMillis(rs.getTimestamp("created_at")), noteFields(rs.getString("content")),
+                            monthFacet(rs.getTimestamp("created_at"))),
+                    userId);
+            jdbcTemplate.query("SELECT highlight_id, text, note, created_at FROM document_highlights WHERE user_id = ?",
+                    (RowCallbackHandler) rs -> index.load(highlightKey(rs.getLong("highlight_id")), TYPE_HIGHLIGHT,
+                            rs.getLong("highlight_id"), toMillis(rs.getTimestamp("created_at")),
+                            highlightFields(rs.getString("text"), rs.getString("note")),
+                            monthFacet(rs.getTimestamp("created_at"))),
+                    userId);
+        } catch (RuntimeException e) {
+            building.remove(userId);
+            throw e;
+        } finally {
+            index.endBuild();
+        }
+        userIndexBuilds.incrementAndGet();
+        return index;
+    }
+
+    private void loadDocuments(InvertedIndex index, long userId) {
+        Map<Long, StringBuilder> pageText = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT p.document_id, p.content FROM document_pages p " +
+                        "JOIN documents d ON p.document_id = d.document_id " +
+                        "WHERE d.user_id = ? AND " + DOCUMENT_VISIBLE + " ORDER BY p.document_id, p.page_number",
+                (RowCallbackHandler) rs -> appendPage(pageText, rs.getLong("document_id"), rs.getString("content")),
+                userId);
+
+        Map<Long, List<String>> tags = new HashMap<>();
+        jdbcTemplate.query("SELECT r.document_id, t.tag_name FROM document_tag_relations r " +
+                        "JOIN document_tags t ON r.tag_id = t.tag_id JOIN documents d ON r.document_id = d.document_id " +
+                        "WHERE d.user_id = ? AND " + DOCUMENT_VISIBLE,
+                (RowCallbackHandler) rs -> tags.computeIfAbsent(rs.getLong("document_id"), k -> new ArrayList<>())
+                        .add(rs.getString("tag_name")),
+                userId);
+
+        jdbcTemplate.query("SELECT d.document_id, d.title, d.author, d.description, d.language, d.created_at FROM documents d " +
+                        "WHERE d.user_id = ? AND " + DOCUMENT_VISIBLE,
+                (RowCallbackHandler) rs -> {
+                    long documentId = rs.getLong("document_id");
+                    StringBuilder pages = pageText.remove(documentId);
+                    index.load(documentKey(documentId), TYPE_DOCUMENT, documentId, toMillis(rs.getTimestamp("created_at")),
+                            documentFields(rs.getString("title"), rs.getString("author"), rs.getString("description"),
+                                    pages == null ? null : pages.toString()),
+                            documentFacets(rs.getString("language"), rs.getTimestamp("created_at"), tags.get(documentId)));
+                },
+                userId);
+    }
+
+    private void refreshDocument(InvertedIndex index, long documentId) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT d.document_id, d.title, d.author, d.description, d.language, d.created_at FROM documents d " +
+                        "WHERE d.document_id = ? AND " + DOCUMENT_VISIBLE, documentId);
+        if (rows.isEmpty()) {
+            index.remove(documentKey(documentId));
+            return;
+        }
+        Map<Long, StringBuilder> pageText = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT document_id, content FROM document_pages WHERE document_id = ? ORDER BY page_number",
+                (RowCallbackHandler) rs -> appendPage(pageText, rs.getLong("document_id"), rs.getString("content")),
+                documentId);
+        List<String> tags = jdbcTemplate.queryForList("SELECT t.tag_name FROM document_tag_relations r " +
+                "JOIN document_tags t ON r.tag_id = t.tag_id WHERE r.document_id = ?", String.class, documentId);
+        Map<String, Object> row = rows.get(0);
+        StringBuilder pages = pageText.get(documentId);
+        index.upsert(documentKey(documentId), TYPE_DOCUMENT, documentId, toMillis(row.get("created_at")),
+                documentFields((String) row.get("title"), (String) row.get("author"), (String) row.get("description"),
+                        pages == null ? null : pages.toString()),
+                documentFacets((String) row.get("language"), row.get("created_at"), tags));
+    }
+
+    private void refreshNote(InvertedIndex index, long noteId) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT note_id, content, created_at FROM document_notes WHERE note_id = ?", noteId);
+        if (rows.isEmpty()) {
+            index.remove(noteKey(noteId));
+            return;
+        }
+        Map<String, Object> row = rows.get(0);
+        index.upsert(noteKey(noteId), TYPE_NOTE, noteId, toMillis(row.get("created_at")),
+                noteFields((String) row.get("content")), monthFacet(row.get("created_at")));
+    }
+
+    private void refreshHighlight(InvertedIndex index, long highlightId) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT highlight_id, text, note, created_at FROM document_highlights WHERE highlight_id = ?", highlightId);
+        if (rows.isEmpty()) {
+            index.remove(highlightKey(highlightId));
+            return;
+        }
+        Map<String, Object> row = rows.get(0);
+        index.upsert(highlightKey(highlightId), TYPE_HIGHLIGHT, highlightId, toMillis(row.get("created_at")),
+                highlightFields((String) row.get("text"), (String) row.get("note")), monthFacet(row.get("created_at")));
+    }
+
+    private synchronized void rebuildWordIndex() {
+        InvertedIndex index = new InvertedIndex();
+        Map<Long, StringBuilder> definitions = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT word_id, definition FROM word_definitions ORDER BY word_id, order_index",
+                (RowCallbackHandler) rs -> definitions.computeIfAbsent(rs.getLong("word_id"), k -> new StringBuilder())
+                        .append(rs.getString("definition")).append('\n'));
+        jdbcTemplate.query("SELECT word_id, word, language, difficulty FROM words",
+                (RowCallbackHandler) rs -> {
+                    long wordId = rs.getLong("word_id");
+                    StringBuilder definition = definitions.remove(wordId);
+                    index.load("word_" + wordId, TYPE_VOCABULARY, wordId, 0L, Arrays.asList(
+                            new InvertedIndex.Field(rs.getString("word"), 3.0f),
+                            new InvertedIndex.Field(definition == null ? null : definition.toString(), 1.0f)),
+                            wordFacets(rs.getString("language"), rs.getString("difficulty")));
+                });
+        wordIndex = index;
+        wordIndexBuiltAt = LocalDateTime.now().toString();
+    }
+
+    private void appendPage(Map<Long, StringBuilder> pageText, long documentId, String content) {
+        if (content == null) {
+            return;
+        }
+        StringBuilder text = pageText.computeIfAbsent(documentId, k -> new StringBuilder());
+        int remaining = maxDocumentChars - text.length();
+        if (remaining > 0) {
+            text.append(content, 0, Math.min(content.length(), remaining)).append('\n');
+        }
+    }
+
+    private List<InvertedIndex.Field> documentFields(String title, String author, String description, String pages) {
+        List<InvertedIndex.Field> fields = new ArrayList<>(4);
+        fields.add(new InvertedIndex.Field(title, 3.0f));
+        fields.add(new InvertedIndex.Field(author, 1.5f));
+        fields.add(new InvertedIndex.Field(description, 1.0f));
+        fields.add(new InvertedIndex.Field(pages, 1.0f));
+        return fields;
+    }
+
+    private List<InvertedIndex.Field> noteFields(String content) {
+        return Collections.singletonList(new InvertedIndex.Field(content, 1.0f));
+    }
+
+    private List<InvertedIndex.Field> highlightFields(String text, String note) {
+        return Arrays.asList(new InvertedIndex.Field(text, 1.0f), new InvertedIndex.Field(note, 1.0f));
+    }
+
+    private Map<String, List<String>> documentFacets(String language, Object createdAt, List<String> tags) {
+        Map<String, List<String>> facets = monthFacet(createdAt);
+        facets.put(FacetCounts.LANGUAGE, Collections.singletonList(language));
+        if (tags != null) {
+            facets.put(FacetCounts.TAG, tags);
+        }
+        return facets;
+    }
+
+    private Map<String, List<String>> wordFacets(String language, String difficulty) {
+        Map<String, List<String>> facets = new HashMap<>();
+        facets.put(FacetCounts.LANGUAGE, Collections.singletonList(language));
+        facets.put(FacetCounts.DIFFICULTY, Collections.singletonList(difficulty));
+        return facets;
+    }
+
+    private Map<String, List<String>> monthFacet(Object createdAt) {
+        Map<String, List<String>> facets = new HashMap<>();
+        long millis = toMillis(createdAt);
+        if (millis > 0) {
+            facets.put(FacetCounts.MONTH, Collections.singletonList(
+                    new Timestamp(millis).toLocalDateTime().format(MONTH)));
+        }
+        return facets;
+    }
+
+    private static String documentKey(long id) {
+        return "doc_" + id;
+    }
+
+    private static String noteKey(long id) {
+        return "note_" + id;
+    }
+
+    private static String highlightKey(long id) {
+        return "highlight_" + id;
+    }
+
+    private long toMillis(Object value) {
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).getTime();
+        }
+        if (value instanceof LocalDateTime) {
+            return Timestamp.valueOf((LocalDateTime) value).getTime();
+        }
+        return 0L;
+    }
+}
@@ -0,0 +1,165 @@
+package com.vue.readingapp.search.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import javax.annotation.PostConstruct;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 登录用户的搜索结果缓存
+ * 键为（用户, 规范化后的查询条件），值带有写入时该用户的数据版本；文档、笔记、高亮、生词本发生写操作时版本递增，
+ * 版本不一致的缓存视为未命中。调用方必须在开始查询之前取版本，查询期间发生的写入会让这次的结果直接作废。
+ */
+@Service
+public class SearchResultCache {
+
+    @Value("${app.search.result-cache.max-entries:10000}")
+    private long maxEntries;
+
+    @Value("${app.search.result-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private Cache<String, CachedResult> results;
+
+    // 版本号取自全局递增序列，同一用户的版本只增不减；记录被清理后回落到 0 也不会和旧结果的版本相同
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<Long, long[]> versions = new ConcurrentHashMap<>();
+    // 全部失效时取一个新序号，所有用户的版本都不低于它
+    private volatile long globalVersion;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+    private final AtomicLong bumps = new AtomicLong();
+
+    private static final class CachedResult {
+        private final long version;
+        private final Object value;
+
+        CachedResult(long version, Object value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        results = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 当前数据版本，在执行查询之前调用
+     */
+    public long version(long userId) {
+        long[] stamp = versions.get(userId);
+        return Math.max(stamp == null ? 0L : stamp[0], globalVersion);
+    }
+
+    /**
+     * 取缓存结果；不存在或版本已过期时返回 null
+     */
+    public Object get(long userId, String key) {
+        String cacheKey = cacheKey(userId, key);
+        CachedResult cached = results.getIfPresent(cacheKey);
+        if (cached == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (cached.version != version(userId)) {
+            results.invalidate(cacheKey);
+            stale.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return cached.value;
+    }
+
+    /**
+     * 写入结果，version 为查询开始前取到的版本；期间已有写操作时不再缓存
+     */
+    public void put(long userId, String key, long version, Object value) {
+        if (value == null || version != version(userId)) {
+            return;
+        }
+        results.put(cacheKey(userId, key), new CachedResult(version, value));
+    }
+
+    /**
+     * 用户数据发生变化，之前缓存的结果全部失效
+     */
+    public void bumpVersion(Object userId) {
+        if (userId == null) {
+            return;
+        }
+        long key;
+        try {
+            key = userId instanceof Number ? ((Number) userId).longValue() : Long.parseLong(userId.toString());
+        } catch (NumberFormatException e) {
+            return;
+        }
+        versions.put(key, new long[]{sequence.incrementAndGet(), System.currentTimeMillis()});
+        bumps.incrementAndGet();
+    }
+
+    /**
+     * 所有用户的结果全部失效（如分词方式变化）；进行中的查询取到的是旧版本，结果不会再写入
+     */
+    public void invalidateAll() {
+        globalVersion = sequence.incrementAndGet();
+        results.invalidateAll();
+        bumps.incrementAndGet();
+    }
+
+    /**
+     * 由查询条件拼出缓存键；直接拼接而不取哈希，不同条件不会撞到同一个键
+     */
+    public static String key(Object... parts) {
+        StringBuilder key = new StringBuilder();
+        for (Object part : parts) {
+            key.append(part).append('\u0001');
+        }
+        return key.toString();
+    }
+
+    /**
+     * 规范化查询词：去掉首尾空白、合并连续空白并转小写
+     */
+    public static String normalizeQuery(String query) {
+        return query == null ? "" : query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 清理早于缓存有效期的版本记录：在那之前写入的结果都已过期，回落到 0 只会多一次未命中
+     */
+    @Scheduled(fixedDelayString = "${app.search.result-cache.version-cleanup-interval-ms:600000}")
+    public void cleanupVersions() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(ttlSeconds) * 2;
+        versions.entrySet().removeIf(entry -> entry.getValue()[1] < cutoff);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", results.estimatedSize());
+        stats.put("trackedUsers", versions.size());
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("stale", stale.get());
+        stats.put("versionBumps", bumps.get());
+        return stats;
+    }
+
+    private String cacheKey(long userId, String key) {
+        return userId + "\u0000" + key;
+    }
+}
@@ -0,0 +1,221 @@
+package com.vue.readingapp.search.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 搜索统计汇总表维护
+ * 按（用户, 搜索类型）分小时和天两级汇总次数、结果数之和、最小值和最大值，搜索历史写入时增量累加；
+ * 统计接口只读汇总表，不再扫描 search_history。
+ * 启动后用原始历史重算一次已关闭的桶（覆盖写入，可重复执行，也能修正写入失败造成的偏差）；删除历史后按用户重算。
+ * 重算不与增量累加加锁：写历史和累加之间有时间差，重算恰好落在中间的搜索会被算两次，所以只重算
+ * 截止时间之前的桶（当前时间减去 reconcile-grace-ms 后取整到小时/天），这些桶不会再有增量写入。
+ * 桶边界统一用应用时钟：历史时间戳由应用写入，截止时间也在应用里计算，不用数据库的 NOW()。
+ */
+@Service
+public class SearchStatsRollupService {
+
+    private static final String UPSERT_SUFFIX = " ON DUPLICATE KEY UPDATE " +
+            "search_count = search_count + VALUES(search_count), " +
+            "result_sum = result_sum + VALUES(result_sum), " +
+            "result_min = LEAST(result_min, VALUES(result_min)), " +
+            "result_max = GREATEST(result_max, VALUES(result_max))";
+
+    // 重算时以原始历史为准，直接覆盖
+    private static final String REPLACE_SUFFIX = " ON DUPLICATE KEY UPDATE " +
+            "search_count = VALUES(search_count), " +
+            "result_sum = VALUES(result_sum), " +
+            "result_min = VALUES(result_min), " +
+            "result_max = VALUES(result_max)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.search.stats.hourly-retention-days:400}")
+    private int hourlyRetentionDays;
+
+    @Value("${app.search.stats.reconcile-on-startup:true}")
+    private boolean reconcileOnStartup;
+
+    // 一次搜索从写历史到累加完成的最长时间（含历史写入线程的攒批间隔），更早的桶才会被重算
+    @Value("${app.search.stats.reconcile-grace-ms:600000}")
+    private long reconcileGraceMs;
+
+    private final AtomicLong appliedSamples = new AtomicLong();
+    private final AtomicLong failedSamples = new AtomicLong();
+    private volatile String reconcileStatus = "pending";
+
+    /**
+     * 一次搜索
+     */
+    public static final class Sample {
+        private final long userId;
+        private final String searchType;
+        private final int resultCount;
+        private final LocalDateTime at;
+
+        public Sample(long userId, String searchType, int resultCount, LocalDateTime at) {
+            this.userId = userId;
+            this.searchType = searchType == null ? "" : searchType;
+            this.resultCount = resultCount;
+            this.at = at;
+        }
+    }
+
+    private static final class Bucket {
+        private final long userId;
+        private final String searchType;
+        private final Object start;
+        private long count;
+        private long sum;
+        private int min = Integer.MAX_VALUE;
+        private int max = Integer.MIN_VALUE;
+
+        Bucket(long userId, String searchType, Object start) {
+            this.userId = userId;
+            this.searchType = searchType;
+            this.start = start;
+        }
+
+        void add(int resultCount) {
+            count++;
+            sum += resultCount;
+            min = Math.min(min, resultCount);
+            max = Math.max(max, resultCount);
+        }
+    }
+
+    /**
+     * 把一批搜索累加到汇总表；先在内存中按桶合并，每张表只执行一条多行 INSERT
+     */
+    public void apply(List<Sample> samples) {
+        if (samples.isEmpty()) {
+            return;
+        }
+        Map<String, Bucket> hourly = new LinkedHashMap<>();
+        Map<String, Bucket> daily = new LinkedHashMap<>();
+        for (Sample sample : samples) {
+            LocalDateTime hour = sample.at.truncatedTo(ChronoUnit.HOURS);
+            LocalDate day = sample.at.toLocalDate();
+            hourly.computeIfAbsent(sample.userId + "|" + sample.searchType + "|" + hour,
+                    k -> new Bucket(sample.userId, sample.searchType, Timestamp.valueOf(hour))).add(sample.resultCount);
+            daily.computeIfAbsent(sample.userId + "|" + sample.searchType + "|" + day,
+                    k -> new Bucket(sample.userId, sample.searchType, java.sql.Date.valueOf(day))).add(sample.resultCount);
+        }
+        try {
+            upsert("search_stats_hourly", "bucket_hour", hourly.values());
+            upsert("search_stats_daily", "bucket_date", daily.values());
+            appliedSamples.addAndGet(samples.size());
+        } catch (Exception e) {
+            failedSamples.addAndGet(samples.size());
+            System.err.println("累加搜索统计失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 删除历史后按用户重算汇总
+     */
+    public void rebuildUser(long userId) {
+        try {
+            jdbcTemplate.update("DELETE FROM search_stats_hourly WHERE user_id = ?", userId);
+            jdbcTemplate.update("DELETE FROM search_stats_daily WHERE user_id = ?", userId);
+            jdbcTemplate.update(aggregateSql("search_stats_hourly", "bucket_hour",
+                    "DATE_FORMAT(timestamp, '%Y-%m-%d %H:00:00')", "WHERE user_id = ?") + REPLACE_SUFFIX, userId);
+            jdbcTemplate.update(aggregateSql("search_stats_daily", "bucket_date",
+                    "DATE(timestamp)", "WHERE user_id = ?") + REPLACE_SUFFIX, userId);
+        } catch (Exception e) {
+            System.err.println("重算用户搜索统计失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 启动后重算已关闭的桶：首次启用时相当于回填，之后每次启动修正偏差；成功一次后不再执行，数据库不可用时下个周期重试
+     */
+    @Scheduled(initialDelayString = "${app.search.stats.reconcile-delay-ms:30000}",
+            fixedDelayString = "${app.search.stats.reconcile-retry-ms:600000}")
+    public void reconcile() {
+        if (!reconcileOnStartup || "done".equals(reconcileStatus)) {
+            return;
+        }
+        try {
+            long begin = System.currentTimeMillis();
+            LocalDateTime closedBefore = LocalDateTime.now().minus(reconcileGraceMs, ChronoUnit.MILLIS);
+            Timestamp hourCutoff = Timestamp.valueOf(closedBefore.truncatedTo(ChronoUnit.HOURS));
+            Timestamp dayCutoff = Timestamp.valueOf(closedBefore.truncatedTo(ChronoUnit.DAYS));
+            int hours = jdbcTemplate.update(aggregateSql("search_stats_hourly", "bucket_hour",
+                    "DATE_FORMAT(timestamp, '%Y-%m-%d %H:00:00')", "WHERE timestamp < ?") + REPLACE_SUFFIX, hourCutoff);
+            int days = jdbcTemplate.update(aggregateSql("search_stats_daily", "bucket_date",
+                    "DATE(timestamp)", "WHERE timestamp < ?") + REPLACE_SUFFIX, dayCutoff);
+            reconcileStatus = "done";
+            System.out.println("搜索统计重算完成: 截止=" + hourCutoff + ", 小时桶=" + hours + ", 天桶=" + days +
+                    ", 耗时=" + (System.currentTimeMillis() - begin) + "ms");
+        } catch (Exception e) {
+            reconcileStatus = "failed";
+            System.err.println("搜索统计重算失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 小时汇总只保留一段时间，天汇总长期保留
+     */
+    @Scheduled(initialDelayString = "${app.search.stats.reconcile-delay-ms:30000}", fixedDelay = 86400000)
+    public void pruneHourly() {
+        try {
+            Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minusDays(hourlyRetentionDays));
+            int deleted = jdbcTemplate.update("DELETE FROM search_stats_hourly WHERE bucket_hour < ?", cutoff);
+            if (deleted > 0) {
+                System.out.println("清理过期的小时搜索统计: " + deleted + " 行");
+            }
+        } catch (Exception e) {
+            System.err.println("清理小时搜索统计失败: " + e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("appliedSamples", appliedSamples.get());
+        stats.put("failedSamples", failedSamples.get());
+        stats.put("reconcile", reconcileStatus);
+        return stats;
+    }
+
+    private void upsert(String table, String bucketColumn, Iterable<Bucket> buckets) {
+        List<Object> params = new ArrayList<>();
+        int rows = 0;
+        for (Bucket bucket : buckets) {
+            params.add(bucket.userId);
+            params.add(bucket.searchType);
+            params.add(bucket.start);
+            params.add(bucket.count);
+            params.add(bucket.sum);
+            params.add(bucket.min);
+            params.add(bucket.max);
+            rows++;
+        }
+        String sql = "INSERT INTO " + table + " (user_id, search_type, " + bucketColumn +
+                ", search_count, result_sum, result_min, result_max) VALUES " +
+                String.join(", ", Collections.nCopies(rows, "(?, ?, ?, ?, ?, ?, ?)")) + UPSERT_SUFFIX;
+        jdbcTemplate.update(sql, params.toArray());
+    }
+
+    private String aggregateSql(String table, String bucketColumn, String bucketExpression, String where) {
+        return "INSERT INTO " + table + " (user_id, search_type, " + bucketColumn +
+                ", search_count, result_sum, result_min, result_max) " +
+                "SELECT user_id, search_type, " + bucketExpression + ", COUNT(*), " +
+                "COALESCE(SUM(result_count), 0), COALESCE(MIN(result_count), 0), COALESCE(MAX(result_count), 0) " +
+                "FROM search_history " + where + (where.isEmpty() ? "" : " ") + "GROUP BY user_id, search_type, " + bucketExpression;
+    }
+}
@@ -0,0 +1,244 @@
+package com.vue.readingapp.search.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 文本匹配条件生成
+ * 各搜索接口可以分别选择 LIKE 或 FULLTEXT（ngram 分词）后端：FULLTEXT 模式下过滤用 BOOLEAN MODE 的 MATCH，
+ * 排序用自然语言模式的 MATCH 相关度；查询中有词短于 ngram 长度时索引里没有对应的词元，退回 LIKE。
+ * FULLTEXT 的列必须与 init.sql 中建立的索引列完全一致；关联表上的列（如文档的页面正文）同样用自己的 FULLTEXT 索引，
+ * 不再 OR 一个前导通配符的 LIKE。
+ * 文档搜索还可以选 segment 后端：正文由磁盘段索引检索出候选文档，这里只把候选编号和得分转成 SQL 条件与排序表达式。
+ */
+@Service
+public class SearchTextMatcher {
+
+    public static final String BACKEND_LIKE = "like";
+    public static final String BACKEND_FULLTEXT = "fulltext";
+    // 仅文档搜索：正文走 PageIndexService 的磁盘段索引，索引未就绪时按 LIKE 处理
+    public static final String BACKEND_SEGMENT = "segment";
+
+    public static final String ENDPOINT_DOCUMENTS = "documents";
+    public static final String ENDPOINT_NOTES = "notes";
+    public static final String ENDPOINT_HIGHLIGHTS = "highlights";
+    public static final String ENDPOINT_FEEDBACK = "feedback";
+
+    // BOOLEAN MODE 中有特殊含义的字符，用户输入里的这些字符按分隔符处理
+    private static final String BOOLEAN_OPERATORS = "+-<>()~*\"@";
+
+    @Value("${app.search.backend.documents:like}")
+    private String documentsBackend;
+
+    @Value("${app.search.backend.notes:like}")
+    private String notesBackend;
+
+    @Value("${app.search.backend.highlights:like}")
+    private String highlightsBackend;
+
+    @Value("${app.search.backend.feedback:like}")
+    private String feedbackBackend;
+
+    // 与 MySQL 的 ngram_token_size 保持一致
+    @Value("${app.search.fulltext.min-token-length:2}")
+    private int minTokenLength;
+
+    /**
+     * 一次匹配的 SQL 片段和参数
+     */
+    public static final class Match {
+        private final boolean fulltext;
+        private final String condition;
+        private final List<Object> conditionParams;
+        private final String score;
+        private final List<Object> scoreParams;
+
+        private Match(boolean fulltext, String condition, List<Object> conditionParams,
+                      String score, List<Object> scoreParams) {
+            this.fulltext = fulltext;
+            this.condition = condition;
+            this.conditionParams = conditionParams;
+            this.score = score;
+            this.scoreParams = scoreParams;
+        }
+
+        public boolean isFulltext() { return fulltext; }
+
+        /**
+         * WHERE 中使用的条件（已带括号）
+         */
+        public String getCondition() { return condition; }
+        public List<Object> getConditionParams() { return conditionParams; }
+
+        /**
+         * 相关度表达式，FULLTEXT 和段索引模式下有值；LIKE 模式由调用方保留原来的排序
+         */
+        public String getScore() { return score; }
+        public List<Object> getScoreParams() { return scoreParams; }
+
+        /**
+         * 在原条件上再 OR 一个条件（如不在索引列上的关联表），相关度表达式不变
+         */
+        public Match or(String extraCondition, List<Object> extraParams) {
+            List<Object> params = new ArrayList<>(conditionParams);
+            params.addAll(extraParams);
+            return new Match(fulltext, "(" + condition + " OR " + extraCondition + ")", params, score, scoreParams);
+        }
+
+        /**
+         * 再 OR 一个关联表上的匹配，相关度表达式不变；两边都走 FULLTEXT 时才算 FULLTEXT 匹配
+         */
+        public Match or(Match other) {
+            List<Object> params = new ArrayList<>(conditionParams);
+            params.addAll(other.conditionParams);
+            return new Match(fulltext && other.fulltext, "(" + condition + " OR " + other.condition + ")",
+                    params, score, scoreParams);
+        }
+
+        /**
+         * 把条件放进关联表的子查询，template 中用 %s 表示条件的位置；子查询里没有相关度
+         */
+        public Match within(String template) {
+            return new Match(fulltext, String.format(template, condition), conditionParams, null, Collections.emptyList());
+        }
+    }
+
+    /**
+     * 两种后端使用相同的列
+     */
+    public Match match(String endpoint, String query, String... columns) {
+        return match(endpoint, query, columns, columns);
+    }
+
+    /**
+     * likeColumns 用于 LIKE 后端，fulltextColumns 必须对应一个 FULLTEXT 索引
+     */
+    public Match match(String endpoint, String query, String[] likeColumns, String[] fulltextColumns) {
+        if (BACKEND_FULLTEXT.equals(backendOf(endpoint))) {
+            String booleanQuery = toBooleanQuery(query);
+            if (booleanQuery != null) {
+                String columns = String.join(", ", fulltextColumns);
+                return new Match(true,
+                        "(MATCH(" + columns + ") AGAINST (? IN BOOLEAN MODE))",
+                        Collections.singletonList(booleanQuery),
+                        "MATCH(" + columns + ") AGAINST (?)",
+                        Collections.singletonList(query.trim()));
+            }
+        }
+        return like(query, likeColumns);
+    }
+
+    private static Match like(String query, String[] columns) {
+        List<String> conditions = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        for (String column : columns) {
+            conditions.add(column + " LIKE ?");
+            params.add("%" + query + "%");
+        }
+        return new Match(false, "(" + String.join(" OR ", conditions) + ")", params, null, Collections.emptyList());
+    }
+
+    /**
+     * 按连续文本匹配的短语（含空格）：FULLTEXT 模式下先用 MATCH 按索引找出含有每个词的行，再用 LIKE 只在这些行上核对连续文本；
+     * LIKE 模式下直接 LIKE
+     */
+    public Match phrase(String endpoint, String phrase, String... columns) {
+        Match like = like(phrase, columns);
+        if (BACKEND_FULLTEXT.equals(backendOf(endpoint))) {
+            String booleanQuery = toBooleanQuery(phrase);
+            if (booleanQuery != null) {
+                String indexed = String.join(", ", columns);
+                List<Object> params = new ArrayList<>();
+                params.add(booleanQuery);
+                params.addAll(like.conditionParams);
+                return new Match(true,
+                        "(MATCH(" + indexed + ") AGAINST (? IN BOOLEAN MODE) AND " + like.condition + ")", params,
+                        "MATCH(" + indexed + ") AGAINST (?)", Collections.singletonList(phrase.trim()));
+            }
+        }
+        return like;
+    }
+
+    /**
+     * 段索引检索出的候选文档（编号 -> 得分）作为匹配条件：标题 LIKE 或编号在候选中；
+     * 相关度为候选得分，标题命中的排在只有正文命中的前面
+     */
+    public Match rankedIds(String query, String titleColumn, String idColumn, Map<Long, Double> scores) {
+        List<Object> params = new ArrayList<>();
+        params.add("%" + query + "%");
+        if (scores.isEmpty()) {
+            return new Match(false, "(" + titleColumn + " LIKE ?)", params,
+                    "CASE WHEN " + titleColumn + " LIKE ? THEN 1 ELSE 0 END", Collections.singletonList("%" + query + "%"));
+        }
+        params.addAll(scores.keySet());
+        String condition = "(" + titleColumn + " LIKE ? OR " + idColumn + " IN ("
+                + String.join(",", Collections.nCopies(scores.size(), "?")) + "))";
+
+        double titleBonus = 1.0;
+        StringBuilder score = new StringBuilder("(CASE ").append(idColumn);
+        List<Object> scoreParams = new ArrayList<>();
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            score.append(" WHEN ? THEN ?");
+            scoreParams.add(entry.getKey());
+            scoreParams.add(entry.getValue());
+            titleBonus = Math.max(titleBonus, entry.getValue() + 1.0);
+        }
+        score.append(" ELSE 0 END + CASE WHEN ").append(titleColumn).append(" LIKE ? THEN ? ELSE 0 END)");
+        scoreParams.add("%" + query + "%");
+        scoreParams.add(titleBonus);
+        return new Match(false, condition, params, score.toString(), scoreParams);
+    }
+
+    public String backendOf(String endpoint) {
+        String backend;
+        switch (endpoint) {
+            case ENDPOINT_DOCUMENTS:
+                backend = documentsBackend;
+                break;
+            case ENDPOINT_NOTES:
+                backend = notesBackend;
+                break;
+            case ENDPOINT_HIGHLIGHTS:
+                backend = highlightsBackend;
+                break;
+            case ENDPOINT_FEEDBACK:
+                backend = feedbackBackend;
+                break;
+            default:
+                backend = BACKEND_LIKE;
+        }
+        return backend == null ? BACKEND_LIKE : backend.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 把用户输入转成 BOOLEAN MODE 查询：每个词都必须出现，按短语匹配（ngram 下即连续的 n 元组）；
+     * 有词短于 ngram 长度或没有可用的词时返回 null，由调用方退回 LIKE
+     */
+    String toBooleanQuery(String query) {
+        if (query == null) {
+            return null;
+        }
+        StringBuilder cleaned = new StringBuilder();
+        for (int i = 0; i < query.length(); ) {
+            int codePoint = query.codePointAt(i);
+            cleaned.appendCodePoint(BOOLEAN_OPERATORS.indexOf(codePoint) >= 0 ? ' ' : codePoint);
+            i += Character.charCount(codePoint);
+        }
+        List<String> terms = new ArrayList<>();
+        for (String token : cleaned.toString().trim().split("\\s+")) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            if (token.codePointCount(0, token.length()) < minTokenLength) {
+                return null;
+            }
+            terms.add("+\"" + token + "\"");
+        }
+        return terms.isEmpty() ? null : String.join(" ", terms);
+    }
+}
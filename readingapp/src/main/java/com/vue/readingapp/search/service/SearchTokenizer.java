@@ -0,0 +1,144 @@
+package com.vue.readingapp.search.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 搜索分词
+ * 索引构建、摘要高亮、相关度计算和文档内搜索共用的分析链入口：规范化、英文停用词、轻量词干化，
+ * 中日韩文字默认按二元组切分，词典加载后由 TextAnalysisService 换成基于 words 表的最大匹配分词。
+ * 索引端额外保留中日韩单字和词干化前的原词，查询端只输出二元组（或词典词）和词干。
+ */
+public final class SearchTokenizer {
+
+    private static volatile TextAnalyzer indexAnalyzer = analyzer(TextAnalyzer.BIGRAM, true);
+    private static volatile TextAnalyzer queryAnalyzer = analyzer(TextAnalyzer.BIGRAM, false);
+    // 每次切换分析链加一；内存索引记下构建开始时的版本，版本不同的索引不能再用当前的查询分词检索
+    private static volatile long analyzerVersion;
+
+    private SearchTokenizer() {
+    }
+
+    /**
+     * 索引端分词
+     */
+    public static List<String> tokenize(String text) {
+        return indexAnalyzer.terms(text);
+    }
+
+    /**
+     * 查询端分词：连续的中日韩文字只产生二元组（单字片段保留单字），避免单字放大匹配范围
+     */
+    public static List<String> tokenizeQuery(String text) {
+        return queryAnalyzer.terms(text);
+    }
+
+    /**
+     * 索引端分词，逐个回调词项和它在原文中的位置，不生成中间列表
+     */
+    public static void analyze(CharSequence text, TextAnalyzer.TokenSink sink) {
+        indexAnalyzer.analyze(text, sink);
+    }
+
+    /**
+     * 查询词在文本中出现的比例（0 ~ 1），按分析后的词项比较，中文和词形变化也能匹配；
+     * 查询分析后没有词项（如只有停用词）时退回忽略大小写的子串判断
+     */
+    public static double coverage(String query, String text) {
+        if (query == null || text == null || text.isEmpty()) {
+            return 0.0;
+        }
+        Set<String> terms = new HashSet<>(tokenizeQuery(query));
+        if (terms.isEmpty()) {
+            String trimmed = query.trim().toLowerCase(Locale.ROOT);
+            return !trimmed.isEmpty() && text.toLowerCase(Locale.ROOT).contains(trimmed) ? 1.0 : 0.0;
+        }
+        int total = terms.size();
+        indexAnalyzer.analyze(text, (term, start, end) -> {
+            if (!terms.isEmpty()) {
+                terms.remove(term.toString());
+            }
+        });
+        return (double) (total - terms.size()) / total;
+    }
+
+    /**
+     * 按分词结果查找查询在文本中作为连续词组出现的位置 {开始, 结束}；
+     * 相邻查询词之间只允许空白、标点和停用词（中日韩二元组彼此重叠一个字）
+     */
+    public static List<int[]> findPhrase(String query, String text) {
+        List<int[]> matches = new ArrayList<>();
+        List<String> terms = tokenizeQuery(query);
+        if (terms.isEmpty() || text == null || text.isEmpty()) {
+            return matches;
+        }
+        // 每个查询词在文本中的出现位置
+        List<List<int[]>> positions = new ArrayList<>();
+        for (int i = 0; i < terms.size(); i++) {
+            positions.add(new ArrayList<>());
+        }
+        indexAnalyzer.analyze(text, (term, start, end) -> {
+            for (int i = 0; i < terms.size(); i++) {
+                if (terms.get(i).contentEquals(term)) {
+                    positions.get(i).add(new int[]{start, end});
+                }
+            }
+        });
+        for (int[] first : positions.get(0)) {
+            int[] previous = first;
+            for (int i = 1; i < terms.size() && previous != null; i++) {
+                previous = following(positions.get(i), previous, text);
+            }
+            if (previous != null && (matches.isEmpty() || first[0] >= matches.get(matches.size() - 1)[1])) {
+                matches.add(new int[]{first[0], previous[1]});
+            }
+        }
+        return matches;
+    }
+
+    public static boolean isCjk(int codePoint) {
+        return TextAnalyzer.isCjk(codePoint);
+    }
+
+    /**
+     * 切换中日韩分词方式；索引需要重建后才会按新的分词方式生效。
+     * 先换分析器再增加版本号：切换过程中开始构建的索引记下的是旧版本，会被当作过期丢弃
+     */
+    static synchronized void useSegmenter(TextAnalyzer.CjkSegmenter segmenter) {
+        indexAnalyzer = analyzer(segmenter, true);
+        queryAnalyzer = analyzer(segmenter, false);
+        analyzerVersion++;
+    }
+
+    static long analyzerVersion() {
+        return analyzerVersion;
+    }
+
+    static TextAnalyzer.CjkSegmenter currentSegmenter() {
+        return indexAnalyzer.getSegmenter();
+    }
+
+    private static TextAnalyzer analyzer(TextAnalyzer.CjkSegmenter segmenter, boolean indexSide) {
+        return new TextAnalyzer(segmenter, Arrays.asList(LatinTokenFilters.ENGLISH_STOP),
+                LatinTokenFilters.ENGLISH_STEM, indexSide);
+    }
+
+    // 紧跟在 previous 之后的出现位置：与 previous 重叠（中日韩二元组）或中间没有其他词项
+    private static int[] following(List<int[]> candidates, int[] previous, String text) {
+        for (int[] candidate : candidates) {
+            if (candidate[0] <= previous[0]) {
+                continue;
+            }
+            if (candidate[0] <= previous[1]) {
+                return candidate;
+            }
+            // 中间的内容分析后没有词项（标点、停用词）也算相邻，例如 "cup of tea"
+            return indexAnalyzer.terms(text.subSequence(previous[1], candidate[0])).isEmpty() ? candidate : null;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,263 @@
+package com.vue.readingapp.search.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 搜索摘要和高亮区间
+ * 按与索引相同的分析链找出每个查询词在原文中的出现位置，用滑动窗口选出覆盖不同查询词最多、出现次数最多的片段作为摘要；
+ * 高亮以 [开始, 结束) 字符区间返回（相对于返回的文本），不再返回加了标记的全文。
+ */
+public final class SnippetBuilder {
+
+    private static final String ELLIPSIS = "...";
+    // 片段边界向空白处对齐时最多移动的字符数，避免切断单词
+    private static final int BOUNDARY_SLACK = 12;
+
+    private SnippetBuilder() {
+    }
+
+    /**
+     * 一个摘要片段
+     */
+    public static final class Snippet {
+        private final String text;
+        private final int offset;
+        private final List<int[]> ranges;
+
+        Snippet(String text, int offset, List<int[]> ranges) {
+            this.text = text;
+            this.offset = offset;
+            this.ranges = ranges;
+        }
+
+        /**
+         * 片段文本；截断处带省略号
+         */
+        public String getText() { return text; }
+
+        /**
+         * 片段在原文中的起始位置（不含省略号）
+         */
+        public int getOffset() { return offset; }
+
+        /**
+         * 片段文本中的命中区间
+         */
+        public List<int[]> getRanges() { return ranges; }
+    }
+
+    /**
+     * 查询词：分词结果去重；查询中没有可用的词时用整个查询串
+     */
+    public static List<String> terms(String query) {
+        Set<String> terms = new LinkedHashSet<>(SearchTokenizer.tokenizeQuery(query));
+        if (terms.isEmpty() && query != null && !query.trim().isEmpty()) {
+            terms.add(query.trim().toLowerCase(Locale.ROOT));
+        }
+        return new ArrayList<>(terms);
+    }
+
+    /**
+     * 短字段（标题、单词、释义）的全部命中区间，重叠的区间合并
+     */
+    public static List<int[]> ranges(String query, String text) {
+        if (text == null || text.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<int[]> occurrences = occurrences(query, text);
+        return merge(occurrences, 0, text.length(), 0);
+    }
+
+    /**
+     * 最佳的一个片段，长度约为 size 个字符；原文不长于 size 时返回全文
+     */
+    public static Snippet snippet(String query, String text, int size) {
+        List<Snippet> snippets = snippets(query, text, size, 1);
+        return snippets.isEmpty() ? new Snippet(null, 0, Collections.emptyList()) : snippets.get(0);
+    }
+
+    /**
+     * 最多 maxFragments 个互不重叠的片段，按在原文中的位置排列；没有命中时返回开头的一段
+     */
+    public static List<Snippet> snippets(String query, String text, int size, int maxFragments) {
+        List<Snippet> result = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return result;
+        }
+        List<int[]> occurrences = occurrences(query, text);
+        if (text.length() <= size) {
+            result.add(new Snippet(text, 0, merge(occurrences, 0, text.length(), 0)));
+            return result;
+        }
+
+        List<int[]> remaining = new ArrayList<>(occurrences);
+        List<int[]> windows = new ArrayList<>();
+        while (windows.size() < Math.max(1, maxFragments) && !remaining.isEmpty()) {
+            int[] best = bestWindow(remaining, size);
+            int[] window = expand(text, best[0], best[1], size);
+            windows.add(window);
+            remaining.removeIf(o -> o[0] < window[1] && o[1] > window[0]);
+        }
+        if (windows.isEmpty()) {
+            windows.add(expand(text, 0, 0, size));
+        }
+        windows.sort((a, b) -> Integer.compare(a[0], b[0]));
+
+        for (int[] window : windows) {
+            String prefix = window[0] > 0 ? ELLIPSIS : "";
+            String suffix = window[1] < text.length() ? ELLIPSIS : "";
+            String body = text.substring(window[0], window[1]);
+            result.add(new Snippet(prefix + body + suffix, window[0],
+                    merge(occurrences, window[0], window[1], prefix.length())));
+        }
+        return result;
+    }
+
+    // 每个查询词在原文中的出现位置 {开始, 结束, 查询词序号}，按开始位置排序；
+    // 查询词来自分析链时按原文的分词结果比较，这样词形变化和全角字符也能高亮
+    private static List<int[]> occurrences(String query, String text) {
+        List<int[]> result = new ArrayList<>();
+        List<String> terms = terms(query);
+        List<String> analyzed = SearchTokenizer.tokenizeQuery(query);
+        if (!analyzed.isEmpty()) {
+            Map<String, Integer> index = new HashMap<>();
+            for (int t = 0; t < terms.size(); t++) {
+                index.put(terms.get(t), t);
+            }
+            SearchTokenizer.analyze(text, (term, start, end) -> {
+                Integer t = index.get(term.toString());
+                if (t != null) {
+                    result.add(new int[]{start, end, t});
+                }
+            });
+        } else {
+            substringOccurrences(terms, text, result);
+        }
+        result.sort((a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(b[1], a[1]));
+        return result;
+    }
+
+    // 查询中没有可分析的词（只有停用词或符号）时按忽略大小写的子串查找
+    private static void substringOccurrences(List<String> terms, String text, List<int[]> result) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        // 个别字符转小写后长度会变，此时逐位置忽略大小写比较，保证区间对应原文
+        boolean aligned = lower.length() == text.length();
+        for (int t = 0; t < terms.size(); t++) {
+            String term = terms.get(t);
+            if (term.isEmpty()) {
+                continue;
+            }
+            if (aligned) {
+                for (int at = lower.indexOf(term); at >= 0; at = lower.indexOf(term, at + term.length())) {
+                    result.add(new int[]{at, at + term.length(), t});
+                }
+            } else {
+                for (int at = 0; at + term.length() <= text.length(); at++) {
+                    if (text.regionMatches(true, at, term, 0, term.length())) {
+                        result.add(new int[]{at, at + term.length(), t});
+                        at += term.length() - 1;
+                    }
+                }
+            }
+        }
+    }
+
+    // 双指针找出跨度不超过 size 的最佳命中区间：先比覆盖的不同查询词数，再比命中次数
+    private static int[] bestWindow(List<int[]> occurrences, int size) {
+        int[] best = {occurrences.get(0)[0], occurrences.get(0)[1]};
+        int bestDistinct = 0;
+        int bestCount = 0;
+        int[] termCounts = new int[maxTerm(occurrences) + 1];
+        int distinct = 0;
+        int left = 0;
+        for (int right = 0; right < occurrences.size(); right++) {
+            int[] entering = occurrences.get(right);
+            if (termCounts[entering[2]]++ == 0) {
+                distinct++;
+            }
+            while (left < right && entering[1] - occurrences.get(left)[0] > size) {
+                if (--termCounts[occurrences.get(left)[2]] == 0) {
+                    distinct--;
+                }
+                left++;
+            }
+            int count = right - left + 1;
+            if (distinct > bestDistinct || (distinct == bestDistinct && count > bestCount)) {
+                bestDistinct = distinct;
+                bestCount = count;
+                int end = 0;
+                for (int i = left; i <= right; i++) {
+                    end = Math.max(end, occurrences.get(i)[1]);
+                }
+                best = new int[]{occurrences.get(left)[0], Math.min(end, occurrences.get(left)[0] + size)};
+            }
+        }
+        return best;
+    }
+
+    private static int maxTerm(List<int[]> occurrences) {
+        int max = 0;
+        for (int[] occurrence : occurrences) {
+            max = Math.max(max, occurrence[2]);
+        }
+        return max;
+    }
+
+    // 命中区间两侧平均补足到 size，再把边界对齐到附近的空白，不切断代理对
+    private static int[] expand(String text, int start, int end, int size) {
+        int padding = Math.max(0, size - (end - start));
+        int from = Math.max(0, start - padding / 2);
+        int to = Math.min(text.length(), from + Math.max(size, end - start));
+        from = Math.max(0, Math.min(from, to - size));
+
+        if (from > 0) {
+            for (int i = from; i < Math.min(start, from + BOUNDARY_SLACK); i++) {
+                if (Character.isWhitespace(text.charAt(i))) {
+                    from = i + 1;
+                    break;
+                }
+            }
+            if (Character.isLowSurrogate(text.charAt(from)) && from > 0) {
+                from--;
+            }
+        }
+        if (to < text.length()) {
+            for (int i = to; i > Math.max(end, to - BOUNDARY_SLACK); i--) {
+                if (Character.isWhitespace(text.charAt(i - 1))) {
+                    to = i - 1;
+                    break;
+                }
+            }
+            if (to > 0 && Character.isHighSurrogate(text.charAt(to - 1))) {
+                to++;
+            }
+        }
+        return new int[]{from, Math.max(from, to)};
+    }
+
+    // 落在 [from, to) 内的命中区间，裁剪、合并后平移到片段文本坐标（shift 为前缀省略号长度）
+    private static List<int[]> merge(List<int[]> occurrences, int from, int to, int shift) {
+        List<int[]> ranges = new ArrayList<>();
+        for (int[] occurrence : occurrences) {
+            int start = Math.max(occurrence[0], from);
+            int end = Math.min(occurrence[1], to);
+            if (start >= end) {
+                continue;
+            }
+            int[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+            if (last != null && start <= last[1] - shift + from) {
+                last[1] = Math.max(last[1], end - from + shift);
+            } else {
+                ranges.add(new int[]{start - from + shift, end - from + shift});
+            }
+        }
+        return ranges;
+    }
+}
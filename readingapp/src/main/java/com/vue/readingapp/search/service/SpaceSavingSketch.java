@@ -0,0 +1,105 @@
+package com.vue.readingapp.search.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving 高频项统计
+ * 最多保留 capacity 个计数器；新键到来且计数器已满时，替换当前计数最小的键，新计数 = 最小计数 + 1，
+ * 原最小计数记为误差上界。真实次数在 [count - error, count] 之间，真实次数超过 总数/capacity 的键一定在表中。
+ * 容量较小（几百），计数器满时线性查找最小值，不维护额外的有序结构。非线程安全，由调用方加锁。
+ */
+public class SpaceSavingSketch {
+
+    private final int capacity;
+    private final Map<String, Counter> counters;
+    private long total;
+
+    /**
+     * 一个计数器；keyword 保留最近一次出现时的原始写法
+     */
+    public static final class Counter {
+        private final String key;
+        private String keyword;
+        private final String type;
+        private long count;
+        private long error;
+        private long lastSeen;
+
+        public Counter(String key, String keyword, String type, long count, long error, long lastSeen) {
+            this.key = key;
+            this.keyword = keyword;
+            this.type = type;
+            this.count = count;
+            this.error = error;
+            this.lastSeen = lastSeen;
+        }
+
+        public String getKey() { return key; }
+        public String getKeyword() { return keyword; }
+        public String getType() { return type; }
+        public long getCount() { return count; }
+        public long getError() { return error; }
+        public long getLastSeen() { return lastSeen; }
+    }
+
+    public SpaceSavingSketch(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.counters = new HashMap<>(this.capacity * 2);
+    }
+
+    /**
+     * 记录一次出现
+     */
+    public void offer(String key, String keyword, String type, long at) {
+        total++;
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            counter.count++;
+            counter.keyword = keyword;
+            counter.lastSeen = Math.max(counter.lastSeen, at);
+            return;
+        }
+        if (counters.size() < capacity) {
+            counters.put(key, new Counter(key, keyword, type, 1, 0, at));
+            return;
+        }
+        Counter min = null;
+        for (Counter candidate : counters.values()) {
+            if (min == null || candidate.count < min.count) {
+                min = candidate;
+            }
+        }
+        counters.remove(min.key);
+        counters.put(key, new Counter(key, keyword, type, min.count + 1, min.count, at));
+    }
+
+    /**
+     * 从检查点恢复计数器；超过容量的部分丢弃
+     */
+    public void restore(Counter counter) {
+        if (counters.size() < capacity) {
+            counters.put(counter.key, counter);
+            total += counter.count;
+        }
+    }
+
+    public Collection<Counter> counters() {
+        return counters.values();
+    }
+
+    public List<Counter> snapshot() {
+        return new ArrayList<>(counters.values());
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return counters.isEmpty();
+    }
+}
@@ -0,0 +1,220 @@
+package com.vue.readingapp.search.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 零结果时的“您是不是要找”
+ * 两路候选都在内存中，请求内不访问数据库：
+ * 1. 成功过的查询：定时从 search_history 汇总有结果的查询（至少 min-users 个用户搜过，避免把个人查询推荐给别人），
+ *    整句建一个 n 元组模糊索引，热度为成功次数；
+ * 2. 词典：逐词用 FuzzyVocabularyService（words 的 n 元组索引）找拼写相近的单词，同距离时优先在成功查询里出现更多的词。
+ * 整句候选的编辑距离不大于逐词纠正的总编辑数时优先整句，它已知能搜到结果。
+ */
+@Service
+public class SpellingSuggestionService {
+
+    public static final String SOURCE_HISTORY = "history";
+    public static final String SOURCE_DICTIONARY = "dictionary";
+
+    // 超过这个长度的查询不做纠错
+    private static final int MAX_QUERY_LENGTH = 100;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private FuzzyVocabularyService fuzzyVocabularyService;
+
+    @Value("${app.search.suggestion.history-days:90}")
+    private int historyDays;
+
+    @Value("${app.search.suggestion.min-users:2}")
+    private int minUsers;
+
+    @Value("${app.search.suggestion.max-queries:50000}")
+    private int maxQueries;
+
+    // 与拼写容错检索一致：短词只允许 1 次编辑
+    @Value("${app.search.fuzzy.short-query-length:5}")
+    private int shortQueryLength;
+
+    @Value("${app.search.fuzzy.max-distance:2}")
+    private int maxDistance;
+
+    private volatile QueryModel model;
+    private volatile String builtAt;
+    private final AtomicLong suggestions = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * 一条纠错建议
+     */
+    public static final class Suggestion {
+        private final String text;
+        private final String source;
+        private final int distance;
+
+        Suggestion(String text, String source, int distance) {
+            this.text = text;
+            this.source = source;
+            this.distance = distance;
+        }
+
+        public String getText() { return text; }
+        public String getSource() { return source; }
+        public int getDistance() { return distance; }
+    }
+
+    // 成功查询的整句索引和其中各个词出现的次数
+    private static final class QueryModel {
+        private final FuzzyWordIndex queries;
+        private final Map<String, Long> termHits;
+
+        QueryModel(FuzzyWordIndex queries, Map<String, Long> termHits) {
+            this.queries = queries;
+            this.termHits = termHits;
+        }
+    }
+
+    /**
+     * 纠正后的查询；没有把握时返回 null
+     */
+    public Suggestion suggest(String query) {
+        String normalized = normalizeQuery(query);
+        if (normalized.isEmpty() || normalized.length() > MAX_QUERY_LENGTH) {
+            return null;
+        }
+        QueryModel current = model;
+        Suggestion fromHistory = current == null ? null : fromHistory(current, normalized);
+        Suggestion fromDictionary = fromDictionary(current, normalized);
+        Suggestion best = fromHistory != null && (fromDictionary == null || fromHistory.distance <= fromDictionary.distance)
+                ? fromHistory : fromDictionary;
+        (best == null ? misses : suggestions).incrementAndGet();
+        return best;
+    }
+
+    @Scheduled(initialDelayString = "${app.search.suggestion.startup-delay-ms:18000}",
+            fixedDelayString = "${app.search.suggestion.refresh-interval-ms:600000}")
+    public void refresh() {
+        try {
+            long begin = System.currentTimeMillis();
+            FuzzyWordIndex queries = new FuzzyWordIndex();
+            Map<String, Long> termHits = new HashMap<>();
+            long[] id = {0};
+            Timestamp since = Timestamp.valueOf(LocalDateTime.now().minusDays(historyDays));
+            jdbcTemplate.query("SELECT keyword, COUNT(*) AS hits FROM search_history " +
+                            "WHERE timestamp >= ? AND result_count > 0 GROUP BY keyword " +
+                            "HAVING COUNT(DISTINCT user_id) >= ? ORDER BY hits DESC LIMIT ?",
+                    (RowCallbackHandler) rs -> {
+                        String keyword = normalizeQuery(rs.getString("keyword"));
+                        long hits = rs.getLong("hits");
+                        if (keyword.isEmpty() || keyword.length() > MAX_QUERY_LENGTH) {
+                            return;
+                        }
+                        queries.put(new FuzzyWordIndex.Entry(++id[0], keyword, null, null, hits));
+                        for (String term : keyword.split("\\s+")) {
+                            termHits.merge(term, hits, Long::sum);
+                        }
+                    },
+                    since, minUsers, maxQueries);
+            model = new QueryModel(queries, termHits);
+            builtAt = LocalDateTime.now().toString();
+            System.out.println("搜索纠错候选已加载: 成功查询 " + queries.size() + " 条, 耗时 "
+                    + (System.currentTimeMillis() - begin) + "ms");
+        } catch (Exception e) {
+            System.err.println("加载搜索纠错候选失败: " + e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        QueryModel current = model;
+        stats.put("historyQueries", current == null ? 0 : current.queries.size());
+        stats.put("historyTerms", current == null ? 0 : current.termHits.size());
+        stats.put("builtAt", builtAt);
+        stats.put("suggestions", suggestions.get());
+        stats.put("misses", misses.get());
+        return stats;
+    }
+
+    // 拼写相近的成功查询；距离为 0 说明同样的查询以前有结果（数据已变化），不算建议
+    private Suggestion fromHistory(QueryModel current, String normalized) {
+        for (FuzzyWordIndex.Match match : current.queries.search(normalized, distanceFor(normalized), null, 5)) {
+            if (match.getDistance() > 0) {
+                return new Suggestion(match.getEntry().getWord(), SOURCE_HISTORY, match.getDistance());
+            }
+        }
+        return null;
+    }
+
+    // 逐词纠正：词典里有的词保留，没有的换成距离最近的单词
+    private Suggestion fromDictionary(QueryModel current, String normalized) {
+        if (!fuzzyVocabularyService.isLoaded()) {
+            return null;
+        }
+        String[] terms = normalized.split("\\s+");
+        List<String> corrected = new ArrayList<>(terms.length);
+        int edits = 0;
+        for (String term : terms) {
+            String replacement = correctTerm(current, term);
+            if (replacement == null) {
+                corrected.add(term);
+            } else {
+                corrected.add(replacement);
+                edits += FuzzyWordIndex.distance(term.codePoints().toArray(), replacement.codePoints().toArray(),
+                        maxDistance);
+            }
+        }
+        return edits == 0 ? null : new Suggestion(String.join(" ", corrected), SOURCE_DICTIONARY, edits);
+    }
+
+    // 不需要纠正或找不到候选时返回 null
+    private String correctTerm(QueryModel current, String term) {
+        if (term.codePointCount(0, term.length()) < 2) {
+            return null;
+        }
+        List<FuzzyWordIndex.Match> matches = fuzzyVocabularyService.lookup(term, null, 10);
+        if (matches.isEmpty() || matches.get(0).getDistance() == 0) {
+            return null;
+        }
+        // 候选已按距离、收藏人数排序；同一距离内优先在成功查询里出现次数多的词
+        int distance = matches.get(0).getDistance();
+        String best = null;
+        long bestHits = -1;
+        for (FuzzyWordIndex.Match match : matches) {
+            if (match.getDistance() != distance) {
+                break;
+            }
+            String word = FuzzyWordIndex.normalize(match.getEntry().getWord());
+            long hits = current == null ? 0 : current.termHits.getOrDefault(word, 0L);
+            if (hits > bestHits) {
+                best = word;
+                bestHits = hits;
+            }
+        }
+        return best;
+    }
+
+    // 小写并合并连续空白，历史查询与当前查询按同样方式比较
+    private static String normalizeQuery(String query) {
+        return FuzzyWordIndex.normalize(query).replaceAll("\\s+", " ");
+    }
+
+    private int distanceFor(String normalized) {
+        int length = normalized.codePointCount(0, normalized.length());
+        return length <= shortQueryLength ? Math.min(1, maxDistance) : maxDistance;
+    }
+}
@@ -0,0 +1,81 @@
+package com.vue.readingapp.search.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 搜索分析链的中日韩分词配置
+ * cjk-segmenter=dictionary 时启动后从 words 表加载中日韩词语，构建基于词典的最大匹配分词并替换默认的二元组切分；
+ * 词表有变化（单词数或最大编号变了）才重新构建。分词方式变化后内存索引、结果缓存和常驻查询的词项全部按新的分词方式重建；
+ * 切换时正在构建的用户索引带着旧的分析链版本，取用时会被丢弃重建，不会混用两种分词。
+ */
+@Service
+public class TextAnalysisService {
+
+    public static final String SEGMENTER_BIGRAM = "bigram";
+    public static final String SEGMENTER_DICTIONARY = "dictionary";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    @Value("${app.search.analysis.cjk-segmenter:bigram}")
+    private String segmenterName;
+
+    private volatile String wordSignature;
+    private volatile int dictionaryWords;
+    private volatile String loadedAt;
+
+    @Scheduled(initialDelayString = "${app.search.analysis.startup-delay-ms:12000}",
+            fixedDelayString = "${app.search.analysis.refresh-interval-ms:3600000}")
+    public void refresh() {
+        if (!SEGMENTER_DICTIONARY.equalsIgnoreCase(segmenterName)) {
+            return;
+        }
+        try {
+            String signature = jdbcTemplate.queryForObject("SELECT CONCAT(COUNT(*), '-', COALESCE(MAX(word_id), 0)) FROM words",
+                    String.class);
+            if (signature == null || signature.equals(wordSignature)) {
+                return;
+            }
+            long begin = System.currentTimeMillis();
+            List<String> words = new ArrayList<>();
+            jdbcTemplate.query("SELECT word FROM words", (RowCallbackHandler) rs -> {
+                String word = rs.getString("word");
+                if (word != null && !word.isEmpty() && TextAnalyzer.isCjk(word.codePointAt(0))) {
+                    words.add(word);
+                }
+            });
+            CjkDictionarySegmenter segmenter = new CjkDictionarySegmenter(words);
+            SearchTokenizer.useSegmenter(segmenter);
+            searchIndexService.reanalyze();
+            wordSignature = signature;
+            dictionaryWords = segmenter.size();
+            loadedAt = LocalDateTime.now().toString();
+            System.out.println("中文分词词典已加载: 词语 " + segmenter.size() + " 个, 耗时 "
+                    + (System.currentTimeMillis() - begin) + "ms");
+        } catch (Exception e) {
+            System.err.println("加载中文分词词典失败: " + e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        boolean dictionary = SearchTokenizer.currentSegmenter() instanceof CjkDictionarySegmenter;
+        stats.put("cjkSegmenter", dictionary ? SEGMENTER_DICTIONARY : SEGMENTER_BIGRAM);
+        stats.put("dictionaryWords", dictionaryWords);
+        stats.put("loadedAt", loadedAt);
+        return stats;
+    }
+}
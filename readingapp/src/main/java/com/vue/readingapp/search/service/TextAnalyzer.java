@@ -0,0 +1,286 @@
+package com.vue.readingapp.search.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 文本分析链：字符规范化 → 切分 → 词项过滤 → 词干化
+ * 规范化把全角字符转半角、拉丁字母去掉重音并转小写；拉丁字母和数字按连续片段切分，
+ * 连续的中日韩文字交给可替换的 CjkSegmenter（二元组或基于词典的最大匹配）。
+ * 词项通过 TokenSink 回调输出，附带在原文中的 [开始, 结束) 位置；回调拿到的是复用的缓冲区，需要保留时自行复制。
+ * 分析器本身不可变，可以被多个线程同时使用。
+ */
+public final class TextAnalyzer {
+
+    // 超长的字母数字片段（链接、编码数据）不作为词项
+    private static final int MAX_WORD_LENGTH = 64;
+
+    // U+00C0 ~ U+017F 去掉重音后的小写字母
+    private static final int LATIN_FOLD_START = 0xC0;
+    private static final int[] LATIN_FOLD = new int[0x180 - LATIN_FOLD_START];
+
+    static {
+        for (int i = 0; i < LATIN_FOLD.length; i++) {
+            String decomposed = Normalizer.normalize(new String(Character.toChars(LATIN_FOLD_START + i)),
+                    Normalizer.Form.NFD);
+            LATIN_FOLD[i] = Character.toLowerCase(decomposed.codePointAt(0));
+        }
+    }
+
+    /**
+     * 二元组切分：单字片段输出单字；索引端同时输出每个单字，支持单字查询
+     */
+    public static final CjkSegmenter BIGRAM = (codePoints, length, indexSide, emitter) -> {
+        if (length == 1) {
+            emitter.emit(0, 1);
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            if (indexSide) {
+                emitter.emit(i, i + 1);
+            }
+            if (i + 1 < length) {
+                emitter.emit(i, i + 2);
+            }
+        }
+    };
+
+    /**
+     * 接收词项
+     */
+    public interface TokenSink {
+        void token(CharSequence term, int start, int end);
+    }
+
+    /**
+     * 词项过滤（如停用词）；可以原地修改 term，返回 false 表示丢弃
+     */
+    public interface TokenFilter {
+        boolean accept(StringBuilder term);
+    }
+
+    /**
+     * 中日韩文字切分
+     */
+    public interface CjkSegmenter {
+        /**
+         * 对 codePoints[0, length) 这段连续文字分词，每个词通过 emitter 以下标区间输出
+         */
+        void segment(int[] codePoints, int length, boolean indexSide, Emitter emitter);
+    }
+
+    public interface Emitter {
+        void emit(int from, int to);
+    }
+
+    /**
+     * 带位置的词项
+     */
+    public static final class Token {
+        private final String term;
+        private final int start;
+        private final int end;
+
+        public Token(String term, int start, int end) {
+            this.term = term;
+            this.start = start;
+            this.end = end;
+        }
+
+        public String getTerm() { return term; }
+        public int getStart() { return start; }
+        public int getEnd() { return end; }
+
+        @Override
+        public String toString() {
+            return term + "[" + start + "," + end + ")";
+        }
+    }
+
+    private final CjkSegmenter segmenter;
+    private final List<TokenFilter> filters;
+    private final TokenFilter stemmer;
+    private final boolean indexSide;
+
+    /**
+     * indexSide 为 true 时是索引端：中日韩文字额外输出单字，词干化后原词也一并输出（同一位置），
+     * 这样查询端的词干能命中，前缀匹配也仍然能用原词
+     */
+    public TextAnalyzer(CjkSegmenter segmenter, List<TokenFilter> filters, TokenFilter stemmer, boolean indexSide) {
+        this.segmenter = segmenter;
+        this.filters = filters == null ? Collections.emptyList() : new ArrayList<>(filters);
+        this.stemmer = stemmer;
+        this.indexSide = indexSide;
+    }
+
+    public CjkSegmenter getSegmenter() {
+        return segmenter;
+    }
+
+    public void analyze(CharSequence text, TokenSink sink) {
+        if (text == null || text.length() == 0) {
+            return;
+        }
+        new Run(text, sink).run();
+    }
+
+    public List<String> terms(CharSequence text) {
+        List<String> terms = new ArrayList<>();
+        analyze(text, (term, start, end) -> terms.add(term.toString()));
+        return terms;
+    }
+
+    public List<Token> tokens(CharSequence text) {
+        List<Token> tokens = new ArrayList<>();
+        analyze(text, (term, start, end) -> tokens.add(new Token(term.toString(), start, end)));
+        return tokens;
+    }
+
+    public static boolean isCjk(int codePoint) {
+        if (codePoint < 0x1100) {
+            return false;
+        }
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+
+    /**
+     * 单个码点的规范化：全角转半角、拉丁字母去重音、转小写
+     */
+    static int fold(int codePoint) {
+        if (codePoint < 0x80) {
+            return codePoint >= 'A' && codePoint <= 'Z' ? codePoint + 32 : codePoint;
+        }
+        if (codePoint >= 0xFF01 && codePoint <= 0xFF5E) {
+            return fold(codePoint - 0xFEE0);
+        }
+        if (codePoint == 0x3000) {
+            return ' ';
+        }
+        if (codePoint >= LATIN_FOLD_START && codePoint < 0x180) {
+            return LATIN_FOLD[codePoint - LATIN_FOLD_START];
+        }
+        return Character.toLowerCase(codePoint);
+    }
+
+    // 一次分析的状态：复用同一个词项缓冲区和中日韩片段数组
+    private final class Run implements Emitter {
+        private final CharSequence text;
+        private final TokenSink sink;
+        private final StringBuilder term = new StringBuilder(16);
+        private final StringBuilder original = new StringBuilder(16);
+        private int wordStart = -1;
+        private int wordEnd;
+        private int[] cjk = new int[16];
+        // cjkOffsets[i] 为第 i 个字在原文中的位置，cjkOffsets[cjkLength] 为片段结束位置
+        private int[] cjkOffsets = new int[17];
+        private int cjkLength;
+
+        Run(CharSequence text, TokenSink sink) {
+            this.text = text;
+            this.sink = sink;
+        }
+
+        void run() {
+            int i = 0;
+            int length = text.length();
+            while (i < length) {
+                int codePoint = Character.codePointAt(text, i);
+                int next = i + Character.charCount(codePoint);
+                int folded = fold(codePoint);
+                if (isCjk(folded)) {
+                    flushWord();
+                    if (cjkLength + 1 >= cjkOffsets.length) {
+                        cjk = Arrays.copyOf(cjk, cjk.length * 2);
+                        cjkOffsets = Arrays.copyOf(cjkOffsets, cjkOffsets.length * 2);
+                    }
+                    cjk[cjkLength] = folded;
+                    cjkOffsets[cjkLength++] = i;
+                    cjkOffsets[cjkLength] = next;
+                } else if (Character.isLetterOrDigit(folded)) {
+                    flushCjk();
+                    if (wordStart < 0) {
+                        wordStart = i;
+                    }
+                    term.appendCodePoint(folded);
+                    wordEnd = next;
+                } else {
+                    flushWord();
+                    flushCjk();
+                }
+                i = next;
+            }
+            flushWord();
+            flushCjk();
+        }
+
+        private void flushWord() {
+            if (wordStart < 0) {
+                return;
+            }
+            if (term.length() <= MAX_WORD_LENGTH) {
+                emitTerm(wordStart, wordEnd);
+            }
+            term.setLength(0);
+            wordStart = -1;
+        }
+
+        private void flushCjk() {
+            if (cjkLength > 0) {
+                segmenter.segment(cjk, cjkLength, indexSide, this);
+                cjkLength = 0;
+            }
+        }
+
+        @Override
+        public void emit(int from, int to) {
+            term.setLength(0);
+            for (int i = from; i < to; i++) {
+                term.appendCodePoint(cjk[i]);
+            }
+            emitTerm(cjkOffsets[from], cjkOffsets[to]);
+            term.setLength(0);
+        }
+
+        private void emitTerm(int start, int end) {
+            for (TokenFilter filter : filters) {
+                if (!filter.accept(term)) {
+                    return;
+                }
+            }
+            if (stemmer == null) {
+                sink.token(term, start, end);
+                return;
+            }
+            if (indexSide) {
+                original.setLength(0);
+                original.append(term);
+            }
+            if (!stemmer.accept(term) || term.length() == 0) {
+                return;
+            }
+            sink.token(term, start, end);
+            if (indexSide && !contentEquals(original, term)) {
+                sink.token(original, start, end);
+            }
+        }
+    }
+
+    private static boolean contentEquals(StringBuilder a, StringBuilder b) {
+        if (a.length() != b.length()) {
+            return false;
+        }
+        for (int i = 0; i < a.length(); i++) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
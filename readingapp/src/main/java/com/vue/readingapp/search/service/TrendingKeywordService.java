@@ -0,0 +1,335 @@
+package com.vue.readingapp.search.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 全站热门搜索词（内存统计）
+ * 搜索历史写入线程把每次文本搜索喂给这里，按时间片各维护一个 Space-Saving 统计：
+ * 5 分钟一片的环用于最近一小时，1 小时一片的环用于最近一天和一周；查询时合并窗口内的时间片取前 N，
+ * 再与上一个等长窗口比较得出趋势。统计定期写入检查点文件，重启后恢复，不再对 search_history 做全表 GROUP BY。
+ * 合并后的次数是上界估计，误差不超过各时间片误差之和。
+ */
+@Service
+public class TrendingKeywordService {
+
+    public static final String WINDOW_HOUR = "hour";
+    public static final String WINDOW_DAY = "day";
+    public static final String WINDOW_WEEK = "week";
+
+    private static final long MINUTE_SLICE_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final long HOUR_SLICE_MS = TimeUnit.HOURS.toMillis(1);
+
+    // 两个环都多保留一个窗口的时间片，用来计算趋势
+    private static final int MINUTE_SLICES = 24;
+    private static final int HOUR_SLICES = 24 * 7 * 2;
+
+    // 趋势判定：当前窗口比上一个窗口多（少）这个比例以上算上升（下降）
+    private static final double TREND_THRESHOLD = 0.2;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${app.search.trending.slice-capacity:128}")
+    private int sliceCapacity;
+
+    @Value("${app.search.trending.checkpoint-file:data/search-trending.json}")
+    private String checkpointFile;
+
+    private Ring minuteRing;
+    private Ring hourRing;
+    private volatile boolean dirty;
+    private volatile long lastCheckpointAt;
+
+    /**
+     * 一个热门搜索词
+     */
+    public static final class Trend {
+        private final String keyword;
+        private final String type;
+        private final long count;
+        private final long previousCount;
+        private final String trend;
+        private final long lastSeen;
+
+        Trend(String keyword, String type, long count, long previousCount, String trend, long lastSeen) {
+            this.keyword = keyword;
+            this.type = type;
+            this.count = count;
+            this.previousCount = previousCount;
+            this.trend = trend;
+            this.lastSeen = lastSeen;
+        }
+
+        public String getKeyword() { return keyword; }
+        public String getType() { return type; }
+        public long getCount() { return count; }
+        public long getPreviousCount() { return previousCount; }
+        public String getTrend() { return trend; }
+        public long getLastSeen() { return lastSeen; }
+    }
+
+    // 定长时间片环，槽位按 时间片起点 / 时间片长度 取模，起点对不上的槽位视为过期并重置
+    private final class Ring {
+        private final long sliceMs;
+        private final long[] starts;
+        private final SpaceSavingSketch[] sketches;
+
+        Ring(long sliceMs, int slices) {
+            this.sliceMs = sliceMs;
+            this.starts = new long[slices];
+            this.sketches = new SpaceSavingSketch[slices];
+        }
+
+        SpaceSavingSketch slice(long at, boolean create) {
+            long start = at - Math.floorMod(at, sliceMs);
+            int index = (int) Math.floorMod(start / sliceMs, (long) starts.length);
+            if (sketches[index] == null || starts[index] != start) {
+                // 槽位里是更新的时间片时，说明这条记录已经滑出了环
+                if (!create || (sketches[index] != null && starts[index] > start)) {
+                    return null;
+                }
+                starts[index] = start;
+                sketches[index] = new SpaceSavingSketch(sliceCapacity);
+            }
+            return sketches[index];
+        }
+
+        // 从当前时间片往前数 skip 片之后的 count 片（包含当前正在进行的一片）
+        void collect(long now, int skip, int count, Map<String, long[]> totals, Map<String, SpaceSavingSketch.Counter> samples) {
+            for (int i = skip; i < skip + count && i < starts.length; i++) {
+                SpaceSavingSketch sketch = slice(now - i * sliceMs, false);
+                if (sketch == null) {
+                    continue;
+                }
+                for (SpaceSavingSketch.Counter counter : sketch.counters()) {
+                    long[] total = totals.computeIfAbsent(counter.getKey(), k -> new long[2]);
+                    total[0] += counter.getCount();
+                    total[1] = Math.max(total[1], counter.getLastSeen());
+                    if (samples != null) {
+                        SpaceSavingSketch.Counter sample = samples.get(counter.getKey());
+                        if (sample == null || counter.getLastSeen() >= sample.getLastSeen()) {
+                            samples.put(counter.getKey(), counter);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        minuteRing = new Ring(MINUTE_SLICE_MS, MINUTE_SLICES);
+        hourRing = new Ring(HOUR_SLICE_MS, HOUR_SLICES);
+        restore();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        checkpoint();
+    }
+
+    /**
+     * 记录一次搜索
+     */
+    public synchronized void record(String keyword, String type, long at) {
+        String normalized = SearchResultCache.normalizeQuery(keyword);
+        if (normalized.isEmpty()) {
+            return;
+        }
+        String searchType = type == null ? "" : type;
+        String key = searchType + '\u0001' + normalized;
+        String display = keyword.trim();
+        for (Ring ring : new Ring[]{minuteRing, hourRing}) {
+            SpaceSavingSketch sketch = ring.slice(at, true);
+            if (sketch != null) {
+                sketch.offer(key, display, searchType, at);
+            }
+        }
+        dirty = true;
+    }
+
+    public static boolean supportsWindow(String window) {
+        return WINDOW_HOUR.equals(window) || WINDOW_DAY.equals(window) || WINDOW_WEEK.equals(window);
+    }
+
+    /**
+     * 窗口内次数最多的前 limit 个搜索词；type 为空表示不限类型
+     */
+    public synchronized List<Trend> top(String window, String type, int limit) {
+        Ring ring;
+        int slices;
+        switch (window) {
+            case WINDOW_HOUR:
+                ring = minuteRing;
+                slices = (int) (HOUR_SLICE_MS / MINUTE_SLICE_MS);
+                break;
+            case WINDOW_DAY:
+                ring = hourRing;
+                slices = 24;
+                break;
+            default:
+                ring = hourRing;
+                slices = 24 * 7;
+                break;
+        }
+        long now = System.currentTimeMillis();
+        Map<String, long[]> current = new HashMap<>();
+        Map<String, SpaceSavingSketch.Counter> samples = new HashMap<>();
+        ring.collect(now, 0, slices, current, samples);
+        Map<String, long[]> previous = new HashMap<>();
+        ring.collect(now, slices, slices, previous, null);
+
+        List<Map.Entry<String, long[]>> ranked = new ArrayList<>();
+        for (Map.Entry<String, long[]> entry : current.entrySet()) {
+            if (type == null || type.equals(samples.get(entry.getKey()).getType())) {
+                ranked.add(entry);
+            }
+        }
+        ranked.sort((a, b) -> {
+            int byCount = Long.compare(b.getValue()[0], a.getValue()[0]);
+            return byCount != 0 ? byCount : Long.compare(b.getValue()[1], a.getValue()[1]);
+        });
+
+        List<Trend> result = new ArrayList<>();
+        for (Map.Entry<String, long[]> entry : ranked.subList(0, Math.min(Math.max(limit, 0), ranked.size()))) {
+            SpaceSavingSketch.Counter sample = samples.get(entry.getKey());
+            long count = entry.getValue()[0];
+            long[] before = previous.get(entry.getKey());
+            long previousCount = before == null ? 0 : before[0];
+            result.add(new Trend(sample.getKeyword(), sample.getType(), count, previousCount,
+                    trendOf(count, previousCount), entry.getValue()[1]));
+        }
+        return result;
+    }
+
+    /**
+     * 定期写检查点；没有新数据时跳过
+     */
+    @Scheduled(initialDelayString = "${app.search.trending.checkpoint-interval-ms:60000}",
+            fixedDelayString = "${app.search.trending.checkpoint-interval-ms:60000}")
+    public void checkpoint() {
+        if (!dirty) {
+            return;
+        }
+        List<Map<String, Object>> slices;
+        synchronized (this) {
+            slices = new ArrayList<>();
+            exportRing("minute", minuteRing, slices);
+            exportRing("hour", hourRing, slices);
+            dirty = false;
+        }
+        try {
+            Path target = Paths.get(checkpointFile);
+            Path parent = target.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            // 先写临时文件再替换，写到一半停机不会留下损坏的检查点
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            objectMapper.writeValue(temp.toFile(), slices);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            lastCheckpointAt = System.currentTimeMillis();
+        } catch (Exception e) {
+            dirty = true;
+            System.err.println("写入热门搜索检查点失败: " + e.getMessage());
+        }
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sliceCapacity", sliceCapacity);
+        stats.put("lastHourSearches", sumTotals(minuteRing, (int) (HOUR_SLICE_MS / MINUTE_SLICE_MS)));
+        stats.put("lastWeekSearches", sumTotals(hourRing, 24 * 7));
+        stats.put("lastCheckpointAt", lastCheckpointAt);
+        return stats;
+    }
+
+    private long sumTotals(Ring ring, int slices) {
+        long now = System.currentTimeMillis();
+        long total = 0;
+        for (int i = 0; i < slices; i++) {
+            SpaceSavingSketch sketch = ring.slice(now - i * ring.sliceMs, false);
+            if (sketch != null) {
+                total += sketch.getTotal();
+            }
+        }
+        return total;
+    }
+
+    private String trendOf(long count, long previousCount) {
+        if (count > previousCount * (1 + TREND_THRESHOLD)) {
+            return "rising";
+        }
+        if (count < previousCount * (1 - TREND_THRESHOLD)) {
+            return "falling";
+        }
+        return "stable";
+    }
+
+    private void exportRing(String name, Ring ring, List<Map<String, Object>> slices) {
+        for (int i = 0; i < ring.starts.length; i++) {
+            if (ring.sketches[i] == null || ring.sketches[i].isEmpty()) {
+                continue;
+            }
+            List<Object[]> counters = new ArrayList<>();
+            for (SpaceSavingSketch.Counter counter : ring.sketches[i].counters()) {
+                counters.add(new Object[]{counter.getKey(), counter.getKeyword(), counter.getType(),
+                        counter.getCount(), counter.getError(), counter.getLastSeen()});
+            }
+            Map<String, Object> slice = new LinkedHashMap<>();
+            slice.put("ring", name);
+            slice.put("start", ring.starts[i]);
+            slice.put("counters", counters);
+            slices.add(slice);
+        }
+    }
+
+    // 恢复检查点；已经滑出环的时间片会在下次写入同一槽位时被覆盖，查询时按起点判断也不会被计入
+    private void restore() {
+        Path target = Paths.get(checkpointFile);
+        if (!Files.exists(target)) {
+            return;
+        }
+        try {
+            List<Map<String, Object>> slices = objectMapper.readValue(target.toFile(),
+                    new TypeReference<List<Map<String, Object>>>() {});
+            int restored = 0;
+            for (Map<String, Object> slice : slices) {
+                Ring ring = "minute".equals(slice.get("ring")) ? minuteRing : hourRing;
+                long start = ((Number) slice.get("start")).longValue();
+                if (start < System.currentTimeMillis() - ring.sliceMs * ring.starts.length) {
+                    continue;
+                }
+                SpaceSavingSketch sketch = ring.slice(start, true);
+                if (sketch == null) {
+                    continue;
+                }
+                @SuppressWarnings("unchecked")
+                List<List<Object>> counters = (List<List<Object>>) slice.get("counters");
+                for (List<Object> c : counters) {
+                    sketch.restore(new SpaceSavingSketch.Counter((String) c.get(0), (String) c.get(1), (String) c.get(2),
+                            ((Number) c.get(3)).longValue(), ((Number) c.get(4)).longValue(), ((Number) c.get(5)).longValue()));
+                }
+                restored++;
+            }
+            System.out.println("热门搜索检查点已恢复: " + restored + " 个时间片");
+        } catch (Exception e) {
+            System.err.println("读取热门搜索检查点失败: " + e.getMessage());
+        }
+    }
+}
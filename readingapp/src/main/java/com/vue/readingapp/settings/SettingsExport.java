@@ -13,6 +13,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Date;
 import java.text.SimpleDateFormat;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
 
 @RestController
 @RequestMapping("/api/v1/user/settings/export")
@@ -21,6 +22,9 @@ public class SettingsExport {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
     private ObjectMapper objectMapper = new ObjectMapper();
 
     private void printRequest(Object request) {
@@ -61,8 +65,7 @@ public class SettingsExport {
             String accessToken = authHeader.substring(7);
 
             // 2. 查询会话信息
-            String sessionSql = "SELECT user_id, expires_at FROM user_sessions WHERE access_token = ?";
-            List<Map<String, Object>> sessions = jdbcTemplate.queryForList(sessionSql, accessToken);
+            List<Map<String, Object>> sessions = sessionResolver.findSession(accessToken);
 
             if (sessions.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -13,6 +13,7 @@ import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.List;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
 
 @RestController
 @RequestMapping("/api/v1/user/settings")
@@ -21,6 +22,9 @@ public class SettingsGet {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到获取用户设置请求 ===");
@@ -157,8 +161,7 @@ public class SettingsGet {
             String accessToken = authHeader.substring(7);
 
             // 2. 查询会话信息
-            String sessionSql = "SELECT user_id, expires_at FROM user_sessions WHERE access_token = ?";
-            List<Map<String, Object>> sessions = jdbcTemplate.queryForList(sessionSql, accessToken);
+            List<Map<String, Object>> sessions = sessionResolver.findSession(accessToken);
 
             if (sessions.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
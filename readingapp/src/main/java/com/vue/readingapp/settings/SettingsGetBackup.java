@@ -9,6 +9,7 @@ import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.List;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
 
 @RestController
 @RequestMapping("/api/v1/user/settings/backup")
@@ -17,6 +18,9 @@ public class SettingsGetBackup {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
     private void printRequest(Object request) {
         System.out.println("=== 收到获取备份设置请求 ===");
         System.out.println("请求数据: " + request);
@@ -146,8 +150,7 @@ public class SettingsGetBackup {
             String accessToken = authHeader.substring(7);
 
             // 2. 查询会话信息
-            String sessionSql = "SELECT user_id, expires_at FROM user_sessions WHERE access_token = ?";
-            List<Map<String, Object>> sessions = jdbcTemplate.queryForList(sessionSql, accessToken);
+            List<Map<String, Object>> sessions = sessionResolver.findSession(accessToken);
 
             if (sessions.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -14,6 +14,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Date;
 import java.text.SimpleDateFormat;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.auth.service.CurrentUserSnapshotCache;
 
 @RestController
 @RequestMapping("/api/v1/user/settings/import")
@@ -22,6 +24,12 @@ public class SettingsImport {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private CurrentUserSnapshotCache currentUserCache;
+
     private ObjectMapper objectMapper = new ObjectMapper();
 
     private void printRequest(Object request) {
@@ -107,8 +115,7 @@ public class SettingsImport {
             String accessToken = authHeader.substring(7);
 
             // 2. 查询会话信息
-            String sessionSql = "SELECT user_id, expires_at FROM user_sessions WHERE access_token = ?";
-            List<Map<String, Object>> sessions = jdbcTemplate.queryForList(sessionSql, accessToken);
+            List<Map<String, Object>> sessions = sessionResolver.findSession(accessToken);
 
             if (sessions.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -183,6 +190,8 @@ public class SettingsImport {
                 }
             }
 
+            currentUserCache.invalidate(userId);
+
             // 7. 记录导入历史
             String insertHistorySql = "INSERT INTO import_history (user_id, file_name, file_size, imported_count, import_date) VALUES (?, ?, ?, ?, ?)";
             jdbcTemplate.update(insertHistorySql, userId, originalFilename, file.getSize(), importedCount, now);
@@ -9,6 +9,8 @@ import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.List;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.auth.service.CurrentUserSnapshotCache;
 
 @RestController
 @RequestMapping("/api/v1/user/settings")
@@ -17,6 +19,12 @@ public class SettingsResetToDefault {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private CurrentUserSnapshotCache currentUserCache;
+
     private void printRequest(Object request) {
         System.out.println("=== 收到重置设置请求 ===");
         System.out.println("请求数据: " + request);
@@ -84,8 +92,7 @@ public class SettingsResetToDefault {
             String accessToken = authHeader.substring(7);
 
             // 2. 查询会话信息
-            String sessionSql = "SELECT user_id, expires_at FROM user_sessions WHERE access_token = ?";
-            List<Map<String, Object>> sessions = jdbcTemplate.queryForList(sessionSql, accessToken);
+            List<Map<String, Object>> sessions = sessionResolver.findSession(accessToken);
 
             if (sessions.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -106,6 +113,7 @@ public class SettingsResetToDefault {
             // 3. 删除用户的所有设置
             String deleteSql = "DELETE FROM user_settings WHERE user_id = ?";
             int deletedRows = jdbcTemplate.update(deleteSql, userId);
+            currentUserCache.invalidate(userId);
             printQueryResult("删除了 " + deletedRows + " 条设置记录");
 
             // 4. 准备响应
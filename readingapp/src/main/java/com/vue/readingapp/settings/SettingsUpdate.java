@@ -9,6 +9,8 @@ import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.List;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.auth.service.CurrentUserSnapshotCache;
 
 @RestController
 @RequestMapping("/api/v1/user/settings")
@@ -17,6 +19,12 @@ public class SettingsUpdate {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private CurrentUserSnapshotCache currentUserCache;
+
     private void printRequest(Object request) {
         System.out.println("=== 收到更新用户设置请求 ===");
         System.out.println("请求数据: " + request);
@@ -125,8 +133,7 @@ public class SettingsUpdate {
             String accessToken = authHeader.substring(7);
 
             // 2. 查询会话信息
-            String sessionSql = "SELECT user_id, expires_at FROM user_sessions WHERE access_token = ?";
-            List<Map<String, Object>> sessions = jdbcTemplate.queryForList(sessionSql, accessToken);
+            List<Map<String, Object>> sessions = sessionResolver.findSession(accessToken);
 
             if (sessions.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -291,6 +298,7 @@ public class SettingsUpdate {
                 String updateSql = "UPDATE user_settings SET setting_value = ?, updated_at = ? WHERE user_id = ? AND setting_type = 'general' AND setting_key = ?";
                 jdbcTemplate.update(updateSql, value, now, userId, key);
             }
+            currentUserCache.invalidate(userId);
         }
     }
 
@@ -9,6 +9,8 @@ import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.List;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.auth.service.CurrentUserSnapshotCache;
 
 @RestController
 @RequestMapping("/api/v1/user/settings/font")
@@ -17,6 +19,12 @@ public class SettingsUpdateFont {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private CurrentUserSnapshotCache currentUserCache;
+
     private void printRequest(Object request) {
         System.out.println("=== 收到更新字体设置请求 ===");
         System.out.println("请求数据: " + request);
@@ -118,8 +126,7 @@ public class SettingsUpdateFont {
             String accessToken = authHeader.substring(7);
 
             // 2. 查询会话信息
-            String sessionSql = "SELECT user_id, expires_at FROM user_sessions WHERE access_token = ?";
-            List<Map<String, Object>> sessions = jdbcTemplate.queryForList(sessionSql, accessToken);
+            List<Map<String, Object>> sessions = sessionResolver.findSession(accessToken);
 
             if (sessions.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -279,6 +286,7 @@ public class SettingsUpdateFont {
                 String updateSql = "UPDATE user_settings SET setting_value = ?, updated_at = ? WHERE user_id = ? AND setting_type = 'font' AND setting_key = ?";
                 jdbcTemplate.update(updateSql, value, now, userId, key);
             }
+            currentUserCache.invalidate(userId);
         }
     }
 
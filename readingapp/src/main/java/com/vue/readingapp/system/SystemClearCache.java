@@ -11,6 +11,7 @@ import java.util.Map;
 import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
+import com.vue.readingapp.auth.service.ExpiredSessionReaper;
 
 @RestController
 @RequestMapping("/api/v1/system")
@@ -19,6 +20,9 @@ public class SystemClearCache {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private ExpiredSessionReaper expiredSessionReaper;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到清理系统缓存请求 ===");
@@ -195,14 +199,11 @@ public class SystemClearCache {
             }
 
             // 3. 模拟清理数据库中的缓存相关数据
-            // 清理过期的会话
-            String clearSessionsSql = "DELETE FROM user_sessions WHERE expires_at < NOW()";
-            int sessionsCleared = jdbcTemplate.update(clearSessionsSql);
+            // 清理过期的会话和密码重置令牌（分批删除，其他节点正在清理时跳过）
+            Map<String, Integer> reaped = expiredSessionReaper.runOnce();
+            int sessionsCleared = reaped != null ? reaped.get("user_sessions") : 0;
+            int tokensCleared = reaped != null ? reaped.get("password_reset_tokens") : 0;
             System.out.println("清理过期会话: " + sessionsCleared + " 条");
-
-            // 清理过期的密码重置令牌
-            String clearTokensSql = "DELETE FROM password_reset_tokens WHERE expires_at < NOW()";
-            int tokensCleared = jdbcTemplate.update(clearTokensSql);
             System.out.println("清理过期令牌: " + tokensCleared + " 条");
 
             // 清理旧的搜索历史（保留最近30天）
@@ -11,6 +11,10 @@ import java.util.Map;
 import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
+import com.vue.readingapp.auth.service.PasswordHashingService;
+import com.vue.readingapp.auth.service.ExpiredSessionReaper;
+import com.vue.readingapp.auth.service.MailOutboxService;
+import com.vue.readingapp.search.service.SearchHistoryWriter;
 
 @RestController
 @RequestMapping("/api/v1/system")
@@ -19,6 +23,18 @@ public class SystemGetHealth {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private ExpiredSessionReaper expiredSessionReaper;
+
+    @Autowired
+    private MailOutboxService mailOutboxService;
+
+    @Autowired
+    private SearchHistoryWriter searchHistoryWriter;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到获取系统健康状态请求 ===");
@@ -141,7 +157,22 @@ public class SystemGetHealth {
             boolean apiHealthy = true;
             String apiDetails = "API服务运行正常";
 
-            // 5. 构建健康检查列表
+            // 5. 检查密码哈希线程池（队列接近满时登录会被拒绝）
+            int hashQueueDepth = passwordHashingService.getQueueDepth();
+            boolean hashingHealthy = hashQueueDepth < passwordHashingService.getQueueCapacity() * 0.8;
+            String hashingDetails = "密码哈希线程池: " + passwordHashingService.getStats();
+
+            // 6. 过期会话清理任务
+            String reaperDetails = "过期会话清理: " + expiredSessionReaper.getStats();
+
+            // 7. 邮件发件箱
+            String mailOutboxDetails = "邮件发件箱: " + mailOutboxService.getStats();
+
+            // 8. 搜索历史写入队列（积压接近上限时新记录会被丢弃）
+            boolean historyHealthy = searchHistoryWriter.getBacklog() < searchHistoryWriter.getQueueCapacity() * 0.8;
+            String historyDetails = "搜索历史写入队列: " + searchHistoryWriter.getStats();
+
+            // 9. 构建健康检查列表
             List<HealthCheck> checks = new ArrayList<>();
 
             checks.add(new HealthCheck(
@@ -172,7 +203,35 @@ public class SystemGetHealth {
                     LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME)
             ));
 
-            // 6. 确定整体状态
+            checks.add(new HealthCheck(
+                    "passwordHashing",
+                    hashingHealthy ? "healthy" : "warning",
+                    hashingDetails,
+                    LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME)
+            ));
+
+            checks.add(new HealthCheck(
+                    "sessionReaper",
+                    "healthy",
+                    reaperDetails,
+                    LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME)
+            ));
+
+            checks.add(new HealthCheck(
+                    "mailOutbox",
+                    "healthy",
+                    mailOutboxDetails,
+                    LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME)
+            ));
+
+            checks.add(new HealthCheck(
+                    "searchHistoryWriter",
+                    historyHealthy ? "healthy" : "warning",
+                    historyDetails,
+                    LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME)
+            ));
+
+            // 10. 确定整体状态
             String overallStatus = "healthy";
             for (HealthCheck check : checks) {
                 if ("unhealthy".equals(check.getStatus())) {
@@ -183,7 +242,7 @@ public class SystemGetHealth {
                 }
             }
 
-            // 7. 构建响应数据
+            // 11. 构建响应数据
             HealthData healthData = new HealthData(
                     overallStatus,
                     checks,
@@ -12,6 +12,7 @@ import java.sql.Statement;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.Map;
+import com.vue.readingapp.search.service.SearchIndexService;
 
 @RestController
 @RequestMapping("/api/v1/documents")
@@ -20,6 +21,9 @@ public class TagAddToDocument {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private SearchIndexService searchIndexService;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到为文档添加标签请求 ===");
@@ -106,6 +110,7 @@ public class TagAddToDocument {
                 ps.setTimestamp(3, timestamp);
                 return ps;
             }, keyHolder);
+            searchIndexService.refreshDocument(Integer.parseInt(documentId));
 
             // 创建响应
             AddTagToDocumentResponse response = new AddTagToDocumentResponse(true, "标签添加成功");
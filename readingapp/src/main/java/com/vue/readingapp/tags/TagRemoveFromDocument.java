@@ -6,6 +6,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.util.Map;
+import com.vue.readingapp.search.service.SearchIndexService;
 
 @RestController
 @RequestMapping("/api/v1/documents")
@@ -14,6 +15,9 @@ public class TagRemoveFromDocument {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private SearchIndexService searchIndexService;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到从文档移除标签请求 ===");
@@ -96,6 +100,7 @@ public class TagRemoveFromDocument {
                         new RemoveTagFromDocumentResponse(false, "标签移除失败")
                 );
             }
+            searchIndexService.refreshDocument(Integer.parseInt(documentId));
 
             // 创建响应
             RemoveTagFromDocumentResponse response = new RemoveTagFromDocumentResponse(true, "标签移除成功");
@@ -3,12 +3,18 @@ package com.vue.readingapp.user;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpHeaders;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.auth.service.PasswordHashingService;
+import com.vue.readingapp.auth.service.CurrentUserSnapshotCache;
+import com.vue.readingapp.search.service.SearchIndexService;
 
 @RestController
 @RequestMapping("/api/v1/user")
@@ -17,6 +23,18 @@ public class UserDeleteAccount {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private CurrentUserSnapshotCache currentUserCache;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到删除账户请求 ===");
@@ -82,8 +100,7 @@ public class UserDeleteAccount {
             String accessToken = authHeader.substring(7);
 
             // 2. 验证token有效性
-            String tokenSql = "SELECT user_id, expires_at FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-            List<Map<String, Object>> sessions = jdbcTemplate.queryForList(tokenSql, accessToken);
+            List<Map<String, Object>> sessions = sessionResolver.findSession(accessToken);
 
             if (sessions.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -102,7 +119,7 @@ public class UserDeleteAccount {
             }
 
             // 查询用户密码
-            String passwordSql = "SELECT password_hash FROM users WHERE user_id = ?";
+            String passwordSql = "SELECT password_hash, email, username FROM users WHERE user_id = ?";
             List<Map<String, Object>> users = jdbcTemplate.queryForList(passwordSql, userId);
 
             if (users.isEmpty()) {
@@ -114,8 +131,8 @@ public class UserDeleteAccount {
             Map<String, Object> user = users.get(0);
             String passwordHash = (String) user.get("password_hash");
 
-            // 验证密码（课设简单处理，实际应该使用加密验证）
-            if (!passwordHash.equals(request.getPassword())) {
+            // 验证密码（兼容BCrypt哈希和尚未迁移的明文密码）
+            if (!passwordHashingService.matches(request.getPassword(), passwordHash)) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
                         new DeleteAccountResponse(false, "密码错误")
                 );
@@ -126,6 +143,7 @@ public class UserDeleteAccount {
             // 4.1 删除用户会话
             String deleteSessionsSql = "DELETE FROM user_sessions WHERE user_id = ?";
             jdbcTemplate.update(deleteSessionsSql, userId);
+            sessionResolver.revokeUser(userId);
 
             // 4.2 删除第三方登录
             String deleteThirdPartySql = "DELETE FROM third_party_logins WHERE user_id = ?";
@@ -258,6 +276,9 @@ public class UserDeleteAccount {
                 );
             }
 
+            currentUserCache.invalidate(userId);
+            searchIndexService.invalidateUser(userId);
+
             // 5. 准备响应数据
             DeleteAccountResponse response = new DeleteAccountResponse(true, "账户删除成功");
 
@@ -266,6 +287,11 @@ public class UserDeleteAccount {
 
             return ResponseEntity.ok(response);
 
+        } catch (RejectedExecutionException e) {
+            System.err.println("密码哈希线程池繁忙，拒绝删除账户请求: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(passwordHashingService.getRetryAfterSeconds()))
+                    .body(new DeleteAccountResponse(false, "请求过多，请稍后重试"));
         } catch (Exception e) {
             System.err.println("删除账户过程中发生错误: " + e.getMessage());
             e.printStackTrace();
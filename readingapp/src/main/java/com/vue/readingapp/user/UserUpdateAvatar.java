@@ -12,6 +12,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.io.IOException;
 import java.util.Base64;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.auth.service.CurrentUserSnapshotCache;
 
 @RestController
 @RequestMapping("/api/v1/user")
@@ -20,6 +22,12 @@ public class UserUpdateAvatar {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private CurrentUserSnapshotCache currentUserCache;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到更新头像请求 ===");
@@ -223,8 +231,7 @@ public class UserUpdateAvatar {
             String accessToken = authHeader.substring(7);
 
             // 2. 验证token有效性
-            String tokenSql = "SELECT user_id, expires_at FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-            List<Map<String, Object>> sessions = jdbcTemplate.queryForList(tokenSql, accessToken);
+            List<Map<String, Object>> sessions = sessionResolver.findSession(accessToken);
 
             if (sessions.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -279,6 +286,7 @@ public class UserUpdateAvatar {
                         new UpdateAvatarResponse(false, "用户不存在", null)
                 );
             }
+            currentUserCache.invalidate(userId);
 
             // 6. 查询更新后的用户信息
             String userSql = "SELECT user_id, username, email, nickname, avatar_url, bio, location, website, " +
@@ -9,6 +9,8 @@ import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.List;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.auth.service.CurrentUserSnapshotCache;
 
 @RestController
 @RequestMapping("/api/v1/user")
@@ -17,6 +19,12 @@ public class UserUpdateProfile {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private CurrentUserSnapshotCache currentUserCache;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到更新用户信息请求 ===");
@@ -240,8 +248,7 @@ public class UserUpdateProfile {
             String accessToken = authHeader.substring(7);
 
             // 2. 验证token有效性
-            String tokenSql = "SELECT user_id, expires_at FROM user_sessions WHERE access_token = ? AND expires_at > NOW()";
-            List<Map<String, Object>> sessions = jdbcTemplate.queryForList(tokenSql, accessToken);
+            List<Map<String, Object>> sessions = sessionResolver.findSession(accessToken);
 
             if (sessions.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -304,6 +311,7 @@ public class UserUpdateProfile {
                             new UpdateProfileResponse(false, "用户不存在", null)
                     );
                 }
+                currentUserCache.invalidate(userId);
             } else {
                 // 没有要更新的字段
                 return ResponseEntity.badRequest().body(
@@ -12,6 +12,8 @@ import java.sql.PreparedStatement;
 import java.sql.Statement;
 import java.util.*;
 import java.time.LocalDateTime;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.SearchResultCache;
 
 @RestController
 @RequestMapping("/api/v1/vocabulary")
@@ -20,6 +22,12 @@ public class VocabularyAddTo {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private SearchResultCache searchResultCache;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到添加到生词本请求 ===");
@@ -194,9 +202,8 @@ public class VocabularyAddTo {
             }
 
             String token = authHeader.substring(7);
-            String userSql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > ?";
             LocalDateTime now = LocalDateTime.now();
-            List<Map<String, Object>> sessions = jdbcTemplate.queryForList(userSql, token, now);
+            List<Map<String, Object>> sessions = sessionResolver.findSession(token);
 
             if (sessions.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -277,6 +284,8 @@ public class VocabularyAddTo {
                 }
             }
 
+            searchResultCache.bumpVersion(userId);
+
             // 6. 查询刚添加的生词详情
             String detailSql = "SELECT uv.user_vocab_id, uv.word, uv.language, uv.definition, uv.example, uv.notes, " +
                     "uv.status, uv.mastery_level, uv.review_count, uv.last_reviewed_at, uv.next_review_at, " +
@@ -8,6 +8,8 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
 import java.time.LocalDateTime;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.SearchResultCache;
 
 @RestController
 @RequestMapping("/api/v1/vocabulary")
@@ -16,6 +18,12 @@ public class VocabularyBatchAction {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private SearchResultCache searchResultCache;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到批量操作生词请求 ===");
@@ -133,9 +141,8 @@ public class VocabularyBatchAction {
             }
 
             String token = authHeader.substring(7);
-            String userSql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > ?";
             LocalDateTime now = LocalDateTime.now();
-            List<Map<String, Object>> sessions = jdbcTemplate.queryForList(userSql, token, now);
+            List<Map<String, Object>> sessions = sessionResolver.findSession(token);
 
             if (sessions.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -202,6 +209,10 @@ public class VocabularyBatchAction {
                 }
             }
 
+            if (successCount > 0) {
+                searchResultCache.bumpVersion(userId);
+            }
+
             // 4. 创建结果数据
             BatchResultData resultData = new BatchResultData(
                     ids.size(),
@@ -12,6 +12,8 @@ import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.*;
 import java.time.LocalDateTime;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.SearchResultCache;
 
 @RestController
 @RequestMapping("/api/v1/vocabulary")
@@ -20,6 +22,12 @@ public class VocabularyBatchUpdate {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private SearchResultCache searchResultCache;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到批量更新生词请求 ===");
@@ -157,9 +165,8 @@ public class VocabularyBatchUpdate {
             }
 
             String token = authHeader.substring(7);
-            String userSql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > ?";
             LocalDateTime now = LocalDateTime.now();
-            List<Map<String, Object>> sessions = jdbcTemplate.queryForList(userSql, token, now);
+            List<Map<String, Object>> sessions = sessionResolver.findSession(token);
 
             if (sessions.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -296,6 +303,10 @@ public class VocabularyBatchUpdate {
                 }
             }
 
+            if (successCount > 0) {
+                searchResultCache.bumpVersion(userId);
+            }
+
             // 4. 创建结果数据
             BatchUpdateResultData resultData = new BatchUpdateResultData(
                     request.getItems().size(),
@@ -7,6 +7,8 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
 import java.time.LocalDateTime;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.SearchResultCache;
 
 @RestController
 @RequestMapping("/api/v1/vocabulary")
@@ -15,6 +17,12 @@ public class VocabularyDeleteItem {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private SearchResultCache searchResultCache;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到删除生词请求 ===");
@@ -95,9 +103,8 @@ public class VocabularyDeleteItem {
             }
 
             String token = authHeader.substring(7);
-            String userSql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > ?";
             LocalDateTime now = LocalDateTime.now();
-            List<Map<String, Object>> sessions = jdbcTemplate.queryForList(userSql, token, now);
+            List<Map<String, Object>> sessions = sessionResolver.findSession(token);
 
             if (sessions.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -136,6 +143,8 @@ public class VocabularyDeleteItem {
                 );
             }
 
+            searchResultCache.bumpVersion(userId);
+
             // 5. 创建响应数据
             DeleteData deleteData = new DeleteData(userVocabId, word, LocalDateTime.now().toString());
             DeleteVocabularyResponse response = new DeleteVocabularyResponse(true, "生词删除成功", deleteData);
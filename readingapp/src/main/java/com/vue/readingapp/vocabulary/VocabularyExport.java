@@ -8,6 +8,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
 
 @RestController
 @RequestMapping("/api/v1/vocabulary")
@@ -16,6 +17,9 @@ public class VocabularyExport {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到导出生词本请求 ===");
@@ -128,9 +132,8 @@ public class VocabularyExport {
             }
 
             String token = authHeader.substring(7);
-            String userSql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > ?";
             LocalDateTime now = LocalDateTime.now();
-            List<Map<String, Object>> sessions = jdbcTemplate.queryForList(userSql, token, now);
+            List<Map<String, Object>> sessions = sessionResolver.findSession(token);
 
             if (sessions.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
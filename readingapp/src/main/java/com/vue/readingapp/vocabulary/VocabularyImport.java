@@ -14,6 +14,8 @@ import java.sql.PreparedStatement;
 import java.sql.Statement;
 import java.util.*;
 import java.time.LocalDateTime;
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.SearchResultCache;
 
 @RestController
 @RequestMapping("/api/v1/vocabulary")
@@ -22,6 +24,12 @@ public class VocabularyImport {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuthSessionResolver sessionResolver;
+
+    @Autowired
+    private SearchResultCache searchResultCache;
+
     // 打印接收到的请求
     private void printRequest(Object request) {
         System.out.println("=== 收到导入生词本请求 ===");
@@ -152,9 +160,8 @@ public class VocabularyImport {
             }
 
             String token = authHeader.substring(7);
-            String userSql = "SELECT user_id FROM user_sessions WHERE access_token = ? AND expires_at > ?";
             LocalDateTime now = LocalDateTime.now();
-            List<Map<String, Object>> sessions = jdbcTemplate.queryForList(userSql, token, now);
+            List<Map<String, Object>> sessions = sessionResolver.findSession(token);
 
             if (sessions.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
@@ -265,6 +272,10 @@ public class VocabularyImport {
                 }
             }
 
+            if (successfullyImported > 0) {
+                searchResultCache.bumpVersion(userId);
+            }
+
             // 5. 创建结果数据
             ImportResultData resultData = new ImportResultData(
                     totalProcessed,
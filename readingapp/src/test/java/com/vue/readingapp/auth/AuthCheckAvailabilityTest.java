@@ -0,0 +1,62 @@
+package com.vue.readingapp.auth;
+
+import com.vue.readingapp.auth.service.UserIdentityFilter;
+import com.vue.readingapp.support.SchemaDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 过滤器只用来判定"一定可用"，可能存在时以查库结果为准
+ */
+class AuthCheckAvailabilityTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private UserIdentityFilter filter;
+    private AuthCheckAvailability controller;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = SchemaDatabase.create();
+        jdbcTemplate.update("INSERT INTO users (user_id, username, email, password_hash) VALUES (1, 'reader', 'reader@reading.test', 'x')");
+
+        filter = new UserIdentityFilter();
+        ReflectionTestUtils.setField(filter, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(filter, "falsePositiveRate", 0.01);
+        ReflectionTestUtils.setField(filter, "minCapacity", 1000);
+
+        controller = new AuthCheckAvailability();
+        ReflectionTestUtils.setField(controller, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(controller, "userIdentityFilter", filter);
+    }
+
+    @Test
+    void beforeFilterIsBuiltEveryAnswerComesFromTheDatabase() {
+        assertTrue(available("fresh@reading.test", "fresh"));
+        assertFalse(available("reader@reading.test", "reader"));
+    }
+
+    @Test
+    void definitelyAbsentSkipsTheQueryAndPositivesAreConfirmed() {
+        filter.rebuild();
+
+        assertFalse(available("reader@reading.test", "reader"));
+        assertTrue(available("fresh@reading.test", "fresh"));
+        assertEquals(2L, filter.getStats().get("definitelyAbsent"));
+
+        // 注销的账号仍在过滤器里，查库后报告可用
+        jdbcTemplate.update("DELETE FROM users WHERE user_id = 1");
+        assertTrue(available("reader@reading.test", "reader"));
+    }
+
+    private boolean available(String email, String username) {
+        AuthCheckAvailability.AvailabilityData data = controller.checkAvailability(email, username).getBody().getData();
+        assertEquals(data.getEmail().getAvailable(), data.getUsername().getAvailable());
+        return data.getEmail().getAvailable();
+    }
+}
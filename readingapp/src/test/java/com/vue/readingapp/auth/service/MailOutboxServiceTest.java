@@ -0,0 +1,190 @@
+package com.vue.readingapp.auth.service;
+
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+import javax.mail.internet.MimeMessage;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 发件箱通过真实的 SMTP 会话（GreenMail 本地服务器）发送；数据库由记录 SQL 的 JdbcTemplate 代替
+ */
+class MailOutboxServiceTest {
+
+    private GreenMail smtp;
+    private RecordingJdbcTemplate jdbcTemplate;
+    private MailOutboxService service;
+
+    @BeforeEach
+    void setUp() {
+        smtp = new GreenMail(ServerSetupTest.SMTP.dynamicPort());
+        smtp.start();
+
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("127.0.0.1");
+        mailSender.setPort(smtp.getSmtp().getPort());
+
+        jdbcTemplate = new RecordingJdbcTemplate();
+        service = new MailOutboxService();
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "mailSender", mailSender);
+        ReflectionTestUtils.setField(service, "fromEmail", "noreply@reading.test");
+        ReflectionTestUtils.setField(service, "threads", 1);
+        ReflectionTestUtils.setField(service, "batchSize", 100);
+        ReflectionTestUtils.setField(service, "messagesPerConnection", 20);
+        ReflectionTestUtils.setField(service, "maxAttempts", 3);
+        ReflectionTestUtils.setField(service, "backoffBaseSeconds", 30);
+        ReflectionTestUtils.setField(service, "backoffMaxSeconds", 3600);
+        ReflectionTestUtils.setField(service, "lockSeconds", 300);
+        ReflectionTestUtils.setField(service, "redactCategories", new String[]{"password_reset"});
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+        smtp.stop();
+    }
+
+    @Test
+    void deliversClaimedMailAndRedactsResetCodeAfterSending() throws Exception {
+        jdbcTemplate.pending.add(row(1L, "alice@reading.test", "密码重置验证码", "您的密码重置验证码是：\n\n4821\n", 0));
+        jdbcTemplate.pending.add(row(2L, "bob@reading.test", "通知", "欢迎使用阅读应用", 0));
+
+        assertEquals(2, service.drain());
+        assertTrue(smtp.waitForIncomingEmail(5000, 2));
+
+        MimeMessage[] received = smtp.getReceivedMessages();
+        assertEquals(2, received.length);
+        assertEquals("alice@reading.test", received[0].getAllRecipients()[0].toString());
+        assertEquals("密码重置验证码", received[0].getSubject());
+        assertTrue(received[0].getContent().toString().contains("4821"));
+        assertEquals("bob@reading.test", received[1].getAllRecipients()[0].toString());
+
+        // 一条 UPDATE 标记两封邮件已发送，同时清除敏感类别的正文
+        Update sent = jdbcTemplate.single("status = 'sent'");
+        assertTrue(sent.sql.contains("body = CASE WHEN category IN (?) THEN ? ELSE body END"));
+        assertEquals(Arrays.asList("password_reset", MailOutboxService.REDACTED_BODY, 1L, 2L), sent.args);
+    }
+
+    @Test
+    void schedulesRetryWithoutRedactingWhenSmtpIsDown() {
+        smtp.stop();
+        jdbcTemplate.pending.add(row(3L, "carol@reading.test", "密码重置验证码", "您的密码重置验证码是：\n\n1357\n", 0));
+
+        assertEquals(1, service.drain());
+
+        // 还要重试，正文保留
+        Update retry = jdbcTemplate.single("status = 'pending'");
+        assertFalse(retry.sql.contains("body"));
+        assertEquals(1, retry.args.get(0));
+        assertTrue(jdbcTemplate.find("status = 'sent'").isEmpty());
+    }
+
+    @Test
+    void redactsBodyWhenGivingUp() {
+        smtp.stop();
+        jdbcTemplate.pending.add(row(4L, "dave@reading.test", "密码重置验证码", "您的密码重置验证码是：\n\n2468\n", 2));
+
+        service.drain();
+
+        Update failed = jdbcTemplate.single("status = 'failed'");
+        assertTrue(failed.sql.contains("body = CASE WHEN category IN (?) THEN ? ELSE body END"));
+        assertEquals(3, failed.args.get(0));
+        assertEquals(Arrays.asList("password_reset", MailOutboxService.REDACTED_BODY, 4L),
+                failed.args.subList(2, failed.args.size()));
+    }
+
+    @Test
+    void stopsRetryingResetMailAtTokenExpiry() {
+        smtp.stop();
+        Map<String, Object> expiring = row(5L, "erin@reading.test", "密码重置验证码", "您的密码重置验证码是：\n\n9753\n", 0);
+        // 验证码在最短的退避时间之前就过期了
+        expiring.put("expires_at", Timestamp.valueOf(LocalDateTime.now().plusSeconds(10)));
+        jdbcTemplate.pending.add(expiring);
+
+        service.drain();
+
+        assertTrue(jdbcTemplate.find("status = 'pending'").isEmpty());
+        Update dead = jdbcTemplate.single("status = 'dead', attempts = ?");
+        assertTrue(dead.sql.contains("body = CASE WHEN category IN (?) THEN ? ELSE body END"));
+        assertEquals(Arrays.asList("password_reset", MailOutboxService.REDACTED_BODY, 5L),
+                dead.args.subList(2, dead.args.size()));
+    }
+
+    private static Map<String, Object> row(long outboxId, String to, String subject, String body, int attempts) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("outbox_id", outboxId);
+        row.put("to_address", to);
+        row.put("subject", subject);
+        row.put("body", body);
+        row.put("attempts", attempts);
+        return row;
+    }
+
+    private static final class Update {
+        private final String sql;
+        private final List<Object> args;
+
+        Update(String sql, Object[] args) {
+            this.sql = sql;
+            this.args = Arrays.asList(args);
+        }
+    }
+
+    // 领取时交出预置的发件箱行，其余 UPDATE 只记录下来
+    private static final class RecordingJdbcTemplate extends JdbcTemplate {
+        private final List<Map<String, Object>> pending = new ArrayList<>();
+        private final List<Map<String, Object>> claimed = new ArrayList<>();
+        private final List<Update> updates = new ArrayList<>();
+
+        @Override
+        public synchronized int update(String sql, Object... args) {
+            if (sql.startsWith("UPDATE mail_outbox SET status = 'sending'")) {
+                claimed.addAll(pending);
+                pending.clear();
+                return claimed.size();
+            }
+            updates.add(new Update(sql, args));
+            return 1;
+        }
+
+        @Override
+        public synchronized List<Map<String, Object>> queryForList(String sql, Object... args) {
+            List<Map<String, Object>> rows = new ArrayList<>(claimed);
+            claimed.clear();
+            return rows;
+        }
+
+        synchronized List<Update> find(String fragment) {
+            List<Update> found = new ArrayList<>();
+            for (Update update : updates) {
+                if (update.sql.contains(fragment)) {
+                    found.add(update);
+                }
+            }
+            return found;
+        }
+
+        Update single(String fragment) {
+            List<Update> found = find(fragment);
+            assertEquals(1, found.size(), "包含 " + fragment + " 的更新");
+            return found.get(0);
+        }
+    }
+}
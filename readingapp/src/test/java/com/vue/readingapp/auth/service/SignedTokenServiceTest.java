@@ -0,0 +1,38 @@
+package com.vue.readingapp.auth.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 开启签名令牌但没有配置密钥时退回随机令牌，不阻止启动
+ */
+class SignedTokenServiceTest {
+
+    @Test
+    void missingSecretFallsBackToOpaqueTokens() {
+        SignedTokenService service = service("");
+        service.checkSecret();
+        assertFalse(service.isEnabled());
+
+        SignedTokenService weak = service("short-secret");
+        weak.checkSecret();
+        assertFalse(weak.isEnabled());
+    }
+
+    @Test
+    void configuredSecretKeepsSignedTokens() {
+        SignedTokenService service = service("test-only-signed-token-secret-0123456789abcdef");
+        service.checkSecret();
+        assertTrue(service.isEnabled());
+    }
+
+    private SignedTokenService service(String secret) {
+        SignedTokenService service = new SignedTokenService();
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "secret", secret);
+        return service;
+    }
+}
@@ -0,0 +1,124 @@
+package com.vue.readingapp.search;
+
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.AdvancedQueryPlanner;
+import com.vue.readingapp.search.service.SearchEnrichmentService;
+import com.vue.readingapp.search.service.SearchHistoryWriter;
+import com.vue.readingapp.search.service.SearchTextMatcher;
+import com.vue.readingapp.support.SchemaDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 高级搜索各来源的完整查询在按 init.sql 建表的库上执行
+ */
+class SearchAdvancedTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private SearchAdvanced controller;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = SchemaDatabase.create();
+        jdbcTemplate.update("INSERT INTO users (user_id, username, email, password_hash) VALUES (1, 'reader', 'reader@reading.test', 'x')");
+        for (int i = 0; i < 5; i++) {
+            long documentId = 10 + i;
+            jdbcTemplate.update("INSERT INTO documents (document_id, user_id, title, description, file_path, file_name, status, language) " +
+                    "VALUES (?, 1, ?, 'Short summary', '/tmp/doc', 'doc.txt', 'processed', 'en')", documentId, "Volume " + i);
+            jdbcTemplate.update("INSERT INTO document_pages (page_id, document_id, page_number, content, word_count) " +
+                    "VALUES (?, ?, 1, 'the whale surfaced near the ship', 6)", documentId + "_1", documentId);
+        }
+        jdbcTemplate.update("INSERT INTO document_notes (user_id, document_id, page, content) VALUES (1, 10, 1, 'the whale again')");
+        jdbcTemplate.update("INSERT INTO document_highlights (user_id, document_id, page, text) VALUES (1, 10, 1, 'whale surfaced')");
+        jdbcTemplate.update("INSERT INTO words (word_id, word, language, difficulty) VALUES (100, 'whale', 'en', 'easy')");
+        jdbcTemplate.update("INSERT INTO word_definitions (word_id, definition, order_index) VALUES (100, 'a large sea mammal', 0)");
+        jdbcTemplate.update("INSERT INTO word_definitions (word_id, definition, order_index) VALUES (100, 'something very large', 1)");
+
+        AdvancedQueryPlanner planner = new AdvancedQueryPlanner();
+        ReflectionTestUtils.setField(planner, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(planner, "textMatcher", new SearchTextMatcher());
+        SearchEnrichmentService enrichmentService = new SearchEnrichmentService();
+        ReflectionTestUtils.setField(enrichmentService, "jdbcTemplate", jdbcTemplate);
+
+        controller = new SearchAdvanced();
+        ReflectionTestUtils.setField(controller, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(controller, "queryPlanner", planner);
+        ReflectionTestUtils.setField(controller, "enrichmentService", enrichmentService);
+        ReflectionTestUtils.setField(controller, "sessionResolver", new AuthSessionResolver() {
+            @Override
+            public List<Map<String, Object>> findSession(String accessToken) {
+                return Collections.singletonList(Collections.singletonMap("user_id", 1L));
+            }
+        });
+        ReflectionTestUtils.setField(controller, "historyWriter", new SearchHistoryWriter() {
+            @Override
+            public void record(Long userId, String keyword, String searchType, int resultCount) {
+            }
+        });
+    }
+
+    @Test
+    void everySourceReturnsRowsAndTotalCountsBeyondTheFetchedPage() {
+        SearchAdvanced.AdvancedSearchData data = search("whale", "all", 1, 2);
+
+        // 文档 5 + 单词 1 + 笔记 1 + 高亮 1；文档只取了 2 行，总数仍是准确的
+        assertEquals(8, data.getTotal());
+        assertEquals(4, data.getTotalPages());
+        List<String> types = new ArrayList<>();
+        for (Map<String, Object> plan : sourcePlans(data)) {
+            assertEquals(false, plan.get("skipped"), String.valueOf(plan));
+            assertTrue(((Number) plan.get("rows")).intValue() > 0, String.valueOf(plan));
+            types.add((String) plan.get("source"));
+        }
+        assertEquals(AdvancedQueryPlanner.SOURCES, types);
+    }
+
+    @Test
+    void vocabularyReturnsOneRowPerWordWithFirstDefinition() {
+        SearchAdvanced.AdvancedSearchData data = search("whale", "vocabulary", 1, 20);
+
+        assertEquals(1, data.getTotal());
+        SearchAdvanced.AdvancedSearchItem item = data.getItems().get(0);
+        assertEquals("a large sea mammal", item.getDefinition());
+        assertEquals("easy", item.getDifficulty());
+    }
+
+    @Test
+    void documentsUsePageTextForExcerptAndWordCount() {
+        SearchAdvanced.AdvancedSearchData data = search("surfaced", "documents", 1, 20);
+
+        assertEquals(5, data.getTotal());
+        SearchAdvanced.AdvancedSearchItem item = data.getItems().get(0);
+        assertTrue(item.getExcerpt().contains("surfaced"));
+        assertEquals(6, item.getWordCount());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> sourcePlans(SearchAdvanced.AdvancedSearchData data) {
+        return (List<Map<String, Object>>) data.getPlan().get("sources");
+    }
+
+    private SearchAdvanced.AdvancedSearchData search(String query, String type, int page, int pageSize) {
+        SearchAdvanced.AdvancedSearchRequest request = new SearchAdvanced.AdvancedSearchRequest();
+        request.setQuery(query);
+        request.setType(type);
+        request.setPage(page);
+        request.setPageSize(pageSize);
+        request.setFilters(new HashMap<>());
+        request.setExplain(true);
+        ResponseEntity<SearchAdvanced.AdvancedSearchResponse> response = controller.advancedSearch(request, "Bearer test");
+        assertEquals(200, response.getStatusCodeValue(), response.getBody().getMessage());
+        return response.getBody().getData();
+    }
+}
@@ -0,0 +1,83 @@
+package com.vue.readingapp.search;
+
+import com.vue.readingapp.search.service.SearchTextMatcher;
+import com.vue.readingapp.support.SchemaDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 文档搜索在按 init.sql 建表的库上执行：匹配标题、简介和各页正文
+ */
+class SearchDocumentsTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private SearchDocuments controller;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = SchemaDatabase.create();
+        jdbcTemplate.update("INSERT INTO users (user_id, username, email, password_hash) VALUES (1, 'reader', 'reader@reading.test', 'x')");
+        insertDocument(10, "Pride and Prejudice", "A novel of manners", "processed", "en");
+        insertDocument(11, "Moby Dick", "Whaling voyage", "processed", "en");
+        insertDocument(12, "Draft", "Unprocessed upload", "uploaded", "en");
+        insertPage(10, 1, "It is a truth universally acknowledged", 6);
+        insertPage(10, 2, "that a single man in possession of a good fortune", 10);
+        insertPage(11, 1, "Call me Ishmael. Some years ago", 6);
+        insertPage(12, 1, "a good fortune that nobody should find", 7);
+
+        SearchTextMatcher textMatcher = new SearchTextMatcher();
+        ReflectionTestUtils.setField(textMatcher, "documentsBackend", SearchTextMatcher.BACKEND_LIKE);
+
+        controller = new SearchDocuments();
+        ReflectionTestUtils.setField(controller, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(controller, "textMatcher", textMatcher);
+    }
+
+    @Test
+    void findsDocumentsByPageContentAndReportsPageWordCounts() {
+        SearchDocuments.DocumentSearchData data = search("good fortune", null, null);
+
+        assertEquals(1, data.getTotal());
+        SearchDocuments.DocumentItem item = data.getItems().get(0);
+        assertEquals("doc_10", item.getId());
+        assertEquals(16, item.getWordCount());
+        assertTrue(item.getExcerpt().contains("good fortune"));
+
+        List<?> languages = (List<?>) data.getFacets().get("languages");
+        assertEquals(1, languages.size());
+        assertEquals(1L, ((Number) ((Map<?, ?>) languages.get(0)).get("count")).longValue());
+    }
+
+    @Test
+    void matchesTitleAndDescriptionAndFiltersByWordCount() {
+        assertEquals(1, search("Moby", null, null).getTotal());
+        assertEquals(1, search("Whaling", null, null).getTotal());
+        assertEquals(0, search("Moby", 10, null).getTotal());
+        assertEquals(1, search("Pride", 10, 20).getTotal());
+    }
+
+    private SearchDocuments.DocumentSearchData search(String query, Integer minWordCount, Integer maxWordCount) {
+        ResponseEntity<SearchDocuments.DocumentSearchResponse> response = controller.searchDocuments(
+                query, 1, 20, "relevance", "desc", null, null, minWordCount, maxWordCount, null, null, null);
+        assertEquals(200, response.getStatusCodeValue(), response.getBody().getMessage());
+        return response.getBody().getData();
+    }
+
+    private void insertDocument(long id, String title, String description, String status, String language) {
+        jdbcTemplate.update("INSERT INTO documents (document_id, user_id, title, description, file_path, file_name, status, language) " +
+                "VALUES (?, 1, ?, ?, '/tmp/doc', 'doc.txt', ?, ?)", id, title, description, status, language);
+    }
+
+    private void insertPage(long documentId, int pageNumber, String content, int wordCount) {
+        jdbcTemplate.update("INSERT INTO document_pages (page_id, document_id, page_number, content, word_count) " +
+                "VALUES (?, ?, ?, ?, ?)", documentId + "_" + pageNumber, documentId, pageNumber, content, wordCount);
+    }
+}
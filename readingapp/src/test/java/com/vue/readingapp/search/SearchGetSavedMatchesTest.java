@@ -0,0 +1,84 @@
+package com.vue.readingapp.search;
+
+import com.vue.readingapp.auth.service.AuthSessionResolver;
+import com.vue.readingapp.search.service.SearchIndexService;
+import com.vue.readingapp.support.SchemaDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 同一秒内的命中跨越分页边界、或在查看之后同一秒到达时都不能被跳过
+ */
+class SearchGetSavedMatchesTest {
+
+    private static final String SAME_SECOND = "2024-06-01 12:00:00";
+
+    private JdbcTemplate jdbcTemplate;
+    private SearchGetSavedMatches controller;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = SchemaDatabase.create();
+        jdbcTemplate.update("INSERT INTO users (user_id, username, email, password_hash) VALUES (1, 'reader', 'reader@reading.test', 'x')");
+        jdbcTemplate.update("INSERT INTO documents (document_id, user_id, title, file_path, file_name, status) " +
+                "VALUES (10, 1, 'Moby Dick', '/tmp/a', 'a.txt', 'processed')");
+        jdbcTemplate.update("INSERT INTO search_history (search_id, user_id, keyword, search_type) VALUES (1, 1, 'whale', 'all')");
+        jdbcTemplate.update("INSERT INTO saved_search_results (saved_id, user_id, search_id, saved_data) VALUES (1, 1, 1, '{}')");
+        for (int i = 1; i <= 205; i++) {
+            addMatch(i);
+        }
+
+        controller = new SearchGetSavedMatches();
+        ReflectionTestUtils.setField(controller, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(controller, "sessionResolver", new AuthSessionResolver() {
+            @Override
+            public List<Map<String, Object>> findSession(String accessToken) {
+                return Collections.singletonList(Collections.singletonMap("user_id", 1L));
+            }
+        });
+    }
+
+    @Test
+    void matchesInTheCheckpointSecondAreNotSkipped() {
+        Set<Long> seen = new HashSet<>();
+
+        SearchGetSavedMatches.SavedMatchesData first = matches();
+        assertEquals(200, first.getItems().size());
+        assertTrue(first.isHasMore());
+        first.getItems().forEach(item -> seen.add(item.getId()));
+
+        // 查看之后，同一秒又到达一条
+        addMatch(206);
+        SearchGetSavedMatches.SavedMatchesData second = matches();
+        assertEquals(6, second.getItems().size());
+        assertFalse(second.isHasMore());
+        second.getItems().forEach(item -> assertTrue(seen.add(item.getId()), "重复返回 " + item.getId()));
+
+        assertEquals(206, seen.size());
+        assertEquals(0, matches().getItems().size());
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT new_match_count FROM saved_search_results WHERE saved_id = 1", Integer.class));
+    }
+
+    private void addMatch(long noteId) {
+        jdbcTemplate.update("INSERT INTO document_notes (note_id, user_id, document_id, page, content) VALUES (?, 1, 10, 1, 'a whale')", noteId);
+        jdbcTemplate.update("INSERT INTO saved_search_matches (saved_id, item_type, item_id, matched_at) VALUES (1, ?, ?, ?)",
+                SearchIndexService.TYPE_NOTE, noteId, SAME_SECOND);
+        jdbcTemplate.update("UPDATE saved_search_results SET new_match_count = new_match_count + 1 WHERE saved_id = 1");
+    }
+
+    private SearchGetSavedMatches.SavedMatchesData matches() {
+        return controller.getSavedMatches(1L, true, "Bearer test").getBody().getData();
+    }
+}
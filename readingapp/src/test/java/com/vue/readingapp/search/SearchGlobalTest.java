@@ -0,0 +1,143 @@
+package com.vue.readingapp.search;
+
+import com.vue.readingapp.search.service.SearchEnrichmentService;
+import com.vue.readingapp.search.service.SearchFanOutExecutor;
+import com.vue.readingapp.search.service.SpellingSuggestionService;
+import com.vue.readingapp.support.SchemaDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 匿名全局搜索（走数据库）的查询和分面统计在按 init.sql 建表的库上执行，只能看到词汇和公开文档
+ */
+class SearchGlobalTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private SearchFanOutExecutor fanOutExecutor;
+    private SearchGlobal controller;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = SchemaDatabase.create();
+        jdbcTemplate.update("INSERT INTO users (user_id, username, email, password_hash) VALUES (1, 'reader', 'reader@reading.test', 'x')");
+        jdbcTemplate.update("INSERT INTO users (user_id, username, email, password_hash) VALUES (2, 'other', 'other@reading.test', 'x')");
+        jdbcTemplate.update("INSERT INTO documents (document_id, user_id, title, description, file_path, file_name, status, language, is_public, created_at) " +
+                "VALUES (10, 1, 'Moby Dick', 'A voyage', '/tmp/a', 'a.txt', 'processed', 'en', 1, '2024-03-01 10:00:00')");
+        jdbcTemplate.update("INSERT INTO documents (document_id, user_id, title, description, file_path, file_name, status, language, is_public, deleted_at) " +
+                "VALUES (11, 1, 'Deleted whale book', 'gone', '/tmp/b', 'b.txt', 'processed', 'en', 1, '2024-03-05 10:00:00')");
+        // 另一个用户的私有文档、笔记和高亮，匿名请求一条都不能看到
+        jdbcTemplate.update("INSERT INTO documents (document_id, user_id, title, description, file_path, file_name, status, language, created_at) " +
+                "VALUES (20, 2, 'Private whale diary', 'mine', '/tmp/c', 'c.txt', 'processed', 'en', '2024-05-01 10:00:00')");
+        jdbcTemplate.update("INSERT INTO document_pages (page_id, document_id, page_number, content, word_count) " +
+                "VALUES ('20_1', 20, 1, 'a whale in my private diary', 6)");
+        jdbcTemplate.update("INSERT INTO document_pages (page_id, document_id, page_number, content, word_count) " +
+                "VALUES ('10_1', 10, 1, 'Call me Ishmael', 3)");
+        jdbcTemplate.update("INSERT INTO document_pages (page_id, document_id, page_number, content, word_count) " +
+                "VALUES ('10_2', 10, 2, 'the white whale rose', 4)");
+        jdbcTemplate.update("INSERT INTO document_notes (user_id, document_id, page, content, created_at) " +
+                "VALUES (2, 20, 1, 'my private whale note', '2024-05-02 10:00:00')");
+        jdbcTemplate.update("INSERT INTO document_highlights (user_id, document_id, page, text, note, created_at) " +
+                "VALUES (2, 20, 1, 'a whale', 'private', '2024-05-03 10:00:00')");
+        jdbcTemplate.update("INSERT INTO words (word_id, word, language, difficulty) VALUES (100, 'whale', 'en', 'easy')");
+        jdbcTemplate.update("INSERT INTO word_definitions (word_id, definition, order_index) VALUES (100, 'a large sea mammal', 0)");
+        jdbcTemplate.update("INSERT INTO word_definitions (word_id, definition, order_index) VALUES (100, 'a whale-like thing', 1)");
+
+        fanOutExecutor = new SearchFanOutExecutor();
+        ReflectionTestUtils.setField(fanOutExecutor, "threads", 4);
+        ReflectionTestUtils.setField(fanOutExecutor, "queueCapacity", 16);
+        ReflectionTestUtils.setField(fanOutExecutor, "defaultDeadlineMs", 10000L);
+        fanOutExecutor.init();
+        SearchEnrichmentService enrichmentService = new SearchEnrichmentService();
+        ReflectionTestUtils.setField(enrichmentService, "jdbcTemplate", jdbcTemplate);
+
+        controller = new SearchGlobal();
+        ReflectionTestUtils.setField(controller, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(controller, "fanOutExecutor", fanOutExecutor);
+        ReflectionTestUtils.setField(controller, "enrichmentService", enrichmentService);
+        ReflectionTestUtils.setField(controller, "suggestionService", new SpellingSuggestionService() {
+            @Override
+            public Suggestion suggest(String query) {
+                return null;
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        fanOutExecutor.shutdown();
+    }
+
+    @Test
+    void anonymousSearchOnlySeesVocabularyAndPublicDocuments() {
+        SearchGlobal.SearchData data = search("whale", "all");
+
+        assertFalse(data.isPartial(), String.valueOf(data.getSources()));
+        // 已删除的文档不算；两条释义的单词只算一次；别人的私有文档、笔记、高亮都不算
+        assertEquals(2, data.getTotal());
+        assertEquals(Arrays.asList("documents", "vocabulary"), new ArrayList<>(data.getSources().keySet()));
+        Map<String, Long> types = facet(data, "type");
+        assertEquals(1L, types.get("documents"));
+        assertEquals(1L, types.get("vocabulary"));
+        assertEquals(0L, types.get("notes"));
+        assertEquals(0L, types.get("highlights"));
+        assertEquals(1L, facet(data, "difficulty").get("easy"));
+        assertEquals(Collections.singleton("2024-03"), facet(data, "month").keySet());
+
+        Map<String, SearchGlobal.SearchItem> items = new HashMap<>();
+        for (SearchGlobal.SearchItem item : data.getItems()) {
+            items.put(item.getType(), item);
+        }
+        assertEquals(new HashSet<>(Arrays.asList("document", "vocabulary")), items.keySet());
+        SearchGlobal.SearchItem document = items.get("document");
+        assertEquals("doc_10", document.getId());
+        assertTrue(document.getExcerpt().contains("white whale"), document.getExcerpt());
+        assertEquals(7, document.getWordCount());
+        assertEquals("a large sea mammal", items.get("vocabulary").getDefinition());
+    }
+
+    @Test
+    void anonymousSearchSkipsPrivateSources() {
+        assertEquals(0, search("whale", "notes").getTotal());
+        assertEquals(0, search("whale", "highlights").getTotal());
+        assertEquals(0, search("diary", "documents").getTotal());
+    }
+
+    @Test
+    void failingSourceIsReportedInsteadOfCountedAsEmpty() {
+        jdbcTemplate.execute("ALTER TABLE words RENAME TO words_old");
+
+        SearchGlobal.SearchData data = search("whale", "all");
+
+        assertTrue(data.isPartial());
+        assertEquals(SearchFanOutExecutor.STATUS_ERROR, data.getSources().get("vocabulary").get("status"));
+        assertEquals(SearchFanOutExecutor.STATUS_OK, data.getSources().get("documents").get("status"));
+        assertEquals(1, data.getTotal());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Long> facet(SearchGlobal.SearchData data, String name) {
+        return (Map<String, Long>) data.getFacets().get(name);
+    }
+
+    private SearchGlobal.SearchData search(String query, String type) {
+        ResponseEntity<SearchGlobal.SearchResponse> response =
+                controller.globalSearch(query, type, 1, 20, "relevance", "desc", null, null);
+        assertEquals(200, response.getStatusCodeValue(), response.getBody().getMessage());
+        return response.getBody().getData();
+    }
+}
@@ -0,0 +1,137 @@
+package com.vue.readingapp.search.service;
+
+import com.vue.readingapp.support.SchemaDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 每个来源编译出的条件在按 init.sql 建表的库上执行
+ */
+class AdvancedQueryPlannerTest {
+
+    private static final long USER_ID = 1L;
+
+    private JdbcTemplate jdbcTemplate;
+    private AdvancedQueryPlanner planner;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = SchemaDatabase.create();
+        jdbcTemplate.update("INSERT INTO users (user_id, username, email, password_hash) VALUES (1, 'reader', 'reader@reading.test', 'x')");
+        jdbcTemplate.update("INSERT INTO documents (document_id, user_id, title, description, file_path, file_name, status, language, created_at) " +
+                "VALUES (10, 1, 'Pride and Prejudice', 'A novel of manners', '/tmp/a', 'a.txt', 'processed', 'en', '2024-03-01 10:00:00')");
+        jdbcTemplate.update("INSERT INTO documents (document_id, user_id, title, description, file_path, file_name, status, language, created_at) " +
+                "VALUES (11, 1, 'Moby Dick', 'Whaling voyage', '/tmp/b', 'b.txt', 'processed', 'en', '2023-06-01 10:00:00')");
+        jdbcTemplate.update("INSERT INTO document_pages (page_id, document_id, page_number, content, word_count) " +
+                "VALUES ('10_1', 10, 1, 'a single man in possession of a good fortune', 10)");
+        jdbcTemplate.update("INSERT INTO document_tags (tag_id, tag_name) VALUES (1, 'classic')");
+        jdbcTemplate.update("INSERT INTO document_tag_relations (document_id, tag_id) VALUES (10, 1)");
+        jdbcTemplate.update("INSERT INTO document_notes (user_id, document_id, page, content, created_at) " +
+                "VALUES (1, 10, 1, 'fortune and marriage', '2024-03-02 10:00:00')");
+        jdbcTemplate.update("INSERT INTO document_highlights (user_id, document_id, page, text, note, created_at) " +
+                "VALUES (1, 10, 1, 'a good fortune', 'famous opening', '2024-03-02 10:00:00')");
+        jdbcTemplate.update("INSERT INTO words (word_id, word, language, difficulty) VALUES (100, 'fortune', 'en', 'easy')");
+        jdbcTemplate.update("INSERT INTO words (word_id, word, language, difficulty) VALUES (101, 'whale', 'en', 'hard')");
+        jdbcTemplate.update("INSERT INTO word_definitions (word_id, definition, order_index) VALUES (100, 'chance or luck', 0)");
+        jdbcTemplate.update("INSERT INTO user_vocabulary (user_vocab_id, user_id, word_id, word) VALUES (1, 1, 100, 'fortune')");
+        jdbcTemplate.update("INSERT INTO vocabulary_tags (tag_id, tag_name) VALUES (1, 'fav')");
+        jdbcTemplate.update("INSERT INTO user_vocabulary_tags (user_vocab_id, tag_id) VALUES (1, 1)");
+        // 另一个用户的公开文档和私有单词标签
+        jdbcTemplate.update("INSERT INTO users (user_id, username, email, password_hash) VALUES (2, 'other', 'other@reading.test', 'x')");
+        jdbcTemplate.update("INSERT INTO documents (document_id, user_id, title, description, file_path, file_name, status, language, is_public) " +
+                "VALUES (20, 2, 'Public fortune', 'shared', '/tmp/c', 'c.txt', 'processed', 'en', 1)");
+        jdbcTemplate.update("INSERT INTO user_vocabulary (user_vocab_id, user_id, word_id, word) VALUES (2, 2, 101, 'whale')");
+        jdbcTemplate.update("INSERT INTO vocabulary_tags (tag_id, tag_name) VALUES (2, 'secret')");
+        jdbcTemplate.update("INSERT INTO user_vocabulary_tags (user_vocab_id, tag_id) VALUES (2, 2)");
+
+        SearchTextMatcher textMatcher = new SearchTextMatcher();
+        planner = new AdvancedQueryPlanner();
+        ReflectionTestUtils.setField(planner, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(planner, "textMatcher", textMatcher);
+        planner.refreshStats();
+    }
+
+    @Test
+    void compiledConditionsRunOnEverySource() {
+        Map<String, Integer> fortune = counts("fortune");
+        assertEquals(1, fortune.get(AdvancedQueryPlanner.SOURCE_DOCUMENTS));
+        assertEquals(1, fortune.get(AdvancedQueryPlanner.SOURCE_VOCABULARY));
+        assertEquals(1, fortune.get(AdvancedQueryPlanner.SOURCE_NOTES));
+        assertEquals(1, fortune.get(AdvancedQueryPlanner.SOURCE_HIGHLIGHTS));
+
+        // 释义、简介、带空格的短语
+        assertEquals(1, counts("luck").get(AdvancedQueryPlanner.SOURCE_VOCABULARY));
+        assertEquals(1, counts("Whaling").get(AdvancedQueryPlanner.SOURCE_DOCUMENTS));
+        assertEquals(1, counts("\"good fortune\"").get(AdvancedQueryPlanner.SOURCE_HIGHLIGHTS));
+        assertEquals(1, counts("\"good fortune\"").get(AdvancedQueryPlanner.SOURCE_DOCUMENTS));
+
+        Map<String, Integer> tagged = counts("tag:classic OR tag:fav");
+        assertEquals(1, tagged.get(AdvancedQueryPlanner.SOURCE_DOCUMENTS));
+        assertEquals(1, tagged.get(AdvancedQueryPlanner.SOURCE_VOCABULARY));
+        assertEquals(1, tagged.get(AdvancedQueryPlanner.SOURCE_NOTES));
+        assertEquals(1, tagged.get(AdvancedQueryPlanner.SOURCE_HIGHLIGHTS));
+
+        Map<String, Integer> filtered = counts("lang:en -title:moby date:2024 doc:10");
+        assertEquals(1, filtered.get(AdvancedQueryPlanner.SOURCE_DOCUMENTS));
+        assertEquals(1, filtered.get(AdvancedQueryPlanner.SOURCE_NOTES));
+        assertEquals(1, filtered.get(AdvancedQueryPlanner.SOURCE_HIGHLIGHTS));
+
+        // 难度只存在于单词上，其他来源直接跳过
+        Map<String, Integer> easy = counts("difficulty:easy");
+        assertEquals(1, easy.get(AdvancedQueryPlanner.SOURCE_VOCABULARY));
+        assertEquals(-1, easy.get(AdvancedQueryPlanner.SOURCE_DOCUMENTS));
+    }
+
+    @Test
+    void anonymousCallersOnlySeePublicDocumentsAndNoVocabularyTags() {
+        Map<String, Integer> fortune = counts("fortune", null);
+        assertEquals(1, fortune.get(AdvancedQueryPlanner.SOURCE_DOCUMENTS));
+        assertEquals(1, fortune.get(AdvancedQueryPlanner.SOURCE_VOCABULARY));
+        assertEquals(-1, fortune.get(AdvancedQueryPlanner.SOURCE_NOTES));
+        assertEquals(-1, fortune.get(AdvancedQueryPlanner.SOURCE_HIGHLIGHTS));
+        assertEquals(0, counts("Prejudice", null).get(AdvancedQueryPlanner.SOURCE_DOCUMENTS));
+
+        assertEquals(-1, counts("tag:fav", null).get(AdvancedQueryPlanner.SOURCE_VOCABULARY));
+        assertEquals(-1, counts("tag:secret", null).get(AdvancedQueryPlanner.SOURCE_VOCABULARY));
+    }
+
+    @Test
+    void vocabularyTagsOnlyMatchTheCallersOwnEntries() {
+        assertEquals(0, counts("tag:secret").get(AdvancedQueryPlanner.SOURCE_VOCABULARY));
+        assertEquals(1, counts("tag:secret", 2L).get(AdvancedQueryPlanner.SOURCE_VOCABULARY));
+        assertEquals(0, counts("tag:fav", 2L).get(AdvancedQueryPlanner.SOURCE_VOCABULARY));
+    }
+
+    @Test
+    void statisticsLoadFromRealTables() {
+        AdvancedQueryPlanner.Plan plan = planner.plan(AdvancedQueryPlanner.SOURCE_VOCABULARY,
+                AdvancedQuery.parse("tag:fav difficulty:easy"), USER_ID);
+        for (AdvancedQueryPlanner.Step step : plan.getSteps()) {
+            assertEquals(0.5, step.getSelectivity(), 1e-9, step.getPredicate());
+        }
+        assertTrue(planner.getStatsLoadedAt() != null);
+    }
+
+    private Map<String, Integer> counts(String query) {
+        return counts(query, USER_ID);
+    }
+
+    // 来源 -> 匹配行数，跳过的来源为 -1
+    private Map<String, Integer> counts(String query, Long userId) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (String source : AdvancedQueryPlanner.SOURCES) {
+            AdvancedQueryPlanner.Plan plan = planner.plan(source, AdvancedQuery.parse(query), userId);
+            counts.put(source, plan.isSkipped() ? -1 : jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM " + plan.getFrom() + " WHERE " + plan.getWhere(), Integer.class,
+                    plan.getParams().toArray()));
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,33 @@
+package com.vue.readingapp.search.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AdvancedQueryTest {
+
+    @Test
+    void longNegationChainsCollapseWithoutRecursion() {
+        StringBuilder odd = new StringBuilder();
+        for (int i = 0; i < 50001; i++) {
+            odd.append('-');
+        }
+        assertEquals("NOT fortune", AdvancedQuery.parse(odd + "fortune").toString());
+        assertEquals("fortune", AdvancedQuery.parse("-" + odd + "fortune").toString());
+        assertEquals("NOT title:moby", AdvancedQuery.parse("NOT NOT NOT title:moby").toString());
+    }
+
+    @Test
+    void parenthesesStillCountAgainstDepth() {
+        StringBuilder nested = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            nested.append("-(");
+        }
+        nested.append("fortune");
+        for (int i = 0; i < 20; i++) {
+            nested.append(')');
+        }
+        assertThrows(IllegalArgumentException.class, () -> AdvancedQuery.parse(nested.toString()));
+    }
+}
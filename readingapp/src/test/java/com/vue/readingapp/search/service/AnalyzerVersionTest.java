@@ -0,0 +1,52 @@
+package com.vue.readingapp.search.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 切换分词方式后，之前开始构建的索引和之前开始的查询结果都不能再用
+ */
+class AnalyzerVersionTest {
+
+    @AfterEach
+    void restoreBigram() {
+        SearchTokenizer.useSegmenter(TextAnalyzer.BIGRAM);
+    }
+
+    @Test
+    void indexStartedBeforeSwitchIsStale() {
+        InvertedIndex before = new InvertedIndex();
+        assertTrue(before.isCurrent());
+
+        SearchTokenizer.useSegmenter(new CjkDictionarySegmenter(Arrays.asList("搜索", "引擎")));
+
+        assertFalse(before.isCurrent());
+        assertTrue(new InvertedIndex().isCurrent());
+    }
+
+    @Test
+    void invalidateAllRejectsResultsOfQueriesStartedEarlier() {
+        SearchResultCache cache = new SearchResultCache();
+        ReflectionTestUtils.setField(cache, "maxEntries", 100L);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 300L);
+        cache.init();
+
+        cache.put(1L, "cached", cache.version(1L), "old");
+        long inFlight = cache.version(2L);
+
+        cache.invalidateAll();
+
+        assertNull(cache.get(1L, "cached"));
+        cache.put(2L, "late", inFlight, "mixed");
+        assertNull(cache.get(2L, "late"));
+        cache.put(2L, "fresh", cache.version(2L), "new");
+        assertEquals("new", cache.get(2L, "fresh"));
+    }
+}
@@ -0,0 +1,52 @@
+package com.vue.readingapp.search.service;
+
+import org.junit.jupiter.api.Test;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 前缀扩展超过上限时按文档频率选词项，并报告截断
+ */
+class InvertedIndexTest {
+
+    private static final String LETTERS = "bcfhkmnpqrtv";
+
+    @Test
+    void prefixExpansionKeepsTheMostFrequentTermsAndReportsTruncation() {
+        InvertedIndex index = new InvertedIndex();
+        long id = 0;
+        // 70 个只出现一次的扩展词，字典序都排在高频词之前
+        for (int i = 0; i < 70; i++) {
+            String word = "wa" + LETTERS.charAt(i / LETTERS.length()) + LETTERS.charAt(i % LETTERS.length()) + "x";
+            add(index, ++id, word);
+        }
+        for (int i = 0; i < 5; i++) {
+            add(index, ++id, "wazzx");
+        }
+
+        InvertedIndex.TopHits hits = top(index, "wa");
+
+        assertTrue(hits.isTruncated());
+        Set<Long> ids = new HashSet<>();
+        hits.getHits().forEach(hit -> ids.add(hit.getId()));
+        for (long frequent = 71; frequent <= 75; frequent++) {
+            assertTrue(ids.contains(frequent), "高频扩展词的文档 " + frequent + " 没有命中");
+        }
+        assertFalse(top(index, "wazz").isTruncated());
+        assertEquals(5, top(index, "wazz").getTotal());
+    }
+
+    private static void add(InvertedIndex index, long id, String text) {
+        index.upsert("note_" + id, SearchIndexService.TYPE_NOTE, id, id,
+                Collections.singletonList(new InvertedIndex.Field(text, 1f)), Collections.emptyMap());
+    }
+
+    private static InvertedIndex.TopHits top(InvertedIndex index, String prefix) {
+        return index.top(Collections.singletonList(prefix), null, true, InvertedIndex.order(false, true), null, 100);
+    }
+}
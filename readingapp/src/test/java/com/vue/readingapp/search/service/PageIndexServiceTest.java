@@ -0,0 +1,111 @@
+package com.vue.readingapp.search.service;
+
+import com.vue.readingapp.support.SchemaDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 在按 init.sql 建表的库上回填页面全文索引
+ */
+class PageIndexServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private JdbcTemplate jdbcTemplate;
+    private PageIndexService service;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = SchemaDatabase.create();
+        jdbcTemplate.update("INSERT INTO users (user_id, username, email, password_hash) VALUES (1, 'reader', 'reader@reading.test', 'x')");
+        jdbcTemplate.update("INSERT INTO documents (document_id, user_id, title, file_path, file_name, status) " +
+                "VALUES (10, 1, 'Moby Dick', '/tmp/a', 'a.txt', 'processed')");
+        jdbcTemplate.update("INSERT INTO document_pages (page_id, document_id, page_number, content, word_count) " +
+                "VALUES ('10_1', 10, 1, 'Call me Ishmael', 3)");
+        jdbcTemplate.update("INSERT INTO document_pages (page_id, document_id, page_number, content, word_count) " +
+                "VALUES ('10_2', 10, 2, 'the white whale rose', 4)");
+        // 没有页的文档和已删除的文档都不进索引，也不能卡住回填
+        jdbcTemplate.update("INSERT INTO documents (document_id, user_id, title, file_path, file_name, status) " +
+                "VALUES (11, 1, 'Unpaged whale', '/tmp/b', 'b.txt', 'processed')");
+        jdbcTemplate.update("INSERT INTO documents (document_id, user_id, title, file_path, file_name, status, deleted_at) " +
+                "VALUES (12, 1, 'Deleted', '/tmp/c', 'c.txt', 'processed', CURRENT_TIMESTAMP)");
+        jdbcTemplate.update("INSERT INTO document_pages (page_id, document_id, page_number, content, word_count) " +
+                "VALUES ('12_1', 12, 1, 'a deleted whale', 3)");
+
+        service = new PageIndexService();
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "directoryName", directory.toString());
+        ReflectionTestUtils.setField(service, "startupDelayMs", 0L);
+        ReflectionTestUtils.setField(service, "maintenanceIntervalMs", 10L);
+        ReflectionTestUtils.setField(service, "flushPages", 2000);
+        ReflectionTestUtils.setField(service, "flushIntervalMs", 10000L);
+        ReflectionTestUtils.setField(service, "backfillBatch", 1);
+        ReflectionTestUtils.setField(service, "mergeFactor", 8);
+        ReflectionTestUtils.setField(service, "maxSegmentMb", 1024L);
+        ReflectionTestUtils.setField(service, "expungeDeletesRatio", 0.3);
+        ReflectionTestUtils.setField(service, "maxDocumentHits", 1000);
+        ReflectionTestUtils.setField(service, "segmenterName", TextAnalysisService.SEGMENTER_BIGRAM);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+        SearchTokenizer.useSegmenter(TextAnalyzer.BIGRAM);
+    }
+
+    @Test
+    void backfillIndexesDocumentPagesAndBecomesReady() throws InterruptedException {
+        service.init();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!service.isReady() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertTrue(service.isReady(), String.valueOf(service.getStats()));
+        PageIndexService.PageHits hits = service.searchPages(1L, "whale", 0, 10);
+        assertEquals(1, hits.getTotal());
+        assertEquals(10, hits.getHits().get(0).getDocumentId());
+        assertEquals(2, hits.getHits().get(0).getPageNumber());
+
+        List<PageIndexService.DocumentHit> documents = service.searchDocuments(null, "Ishmael");
+        assertEquals(1, documents.size());
+        assertEquals(1, documents.get(0).getBestPage());
+    }
+
+    @Test
+    void reloadedDictionaryRebuildsTheSegments() throws InterruptedException {
+        jdbcTemplate.update("INSERT INTO document_pages (page_id, document_id, page_number, content, word_count) " +
+                "VALUES ('10_3', 10, 3, '全文检索引擎', 1)");
+        ReflectionTestUtils.setField(service, "segmenterName", TextAnalysisService.SEGMENTER_DICTIONARY);
+        SearchTokenizer.useSegmenter(new CjkDictionarySegmenter(Arrays.asList("全文", "引擎")));
+        service.init();
+        awaitReady();
+
+        // 词典换了一份，按旧词典切出的段不能再用，重建后能查到新词
+        SearchTokenizer.useSegmenter(new CjkDictionarySegmenter(Arrays.asList("全文", "引擎", "检索引擎")));
+        assertFalse(service.isReady());
+        awaitReady();
+        assertEquals(1, service.searchPages(1L, "检索引擎", 0, 10).getTotal());
+    }
+
+    private void awaitReady() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!service.isReady() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(service.isReady(), String.valueOf(service.getStats()));
+    }
+}
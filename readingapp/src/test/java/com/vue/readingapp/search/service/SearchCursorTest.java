@@ -0,0 +1,45 @@
+package com.vue.readingapp.search.service;
+
+import org.junit.jupiter.api.Test;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 被篡改的游标在解析时按格式错误拒绝
+ */
+class SearchCursorTest {
+
+    private static final String FINGERPRINT = SearchCursor.fingerprint("whale", "all");
+
+    @Test
+    void encodedCursorRoundTrips() {
+        SearchCursor cursor = new SearchCursor(FINGERPRINT);
+        cursor.setHit("documents", InvertedIndex.position("document:10", 1.5, 1000L));
+        cursor.setOffset("vocabulary", 20);
+
+        SearchCursor decoded = SearchCursor.decode(cursor.encode(), FINGERPRINT);
+
+        assertEquals(1.5, decoded.getHit("documents").getScore());
+        assertEquals(20, decoded.getOffset("vocabulary"));
+    }
+
+    @Test
+    void tamperedPositionTypesAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> decode("{\"documents\":{\"key\":\"document:10\",\"score\":\"high\",\"time\":1000}}"));
+        assertThrows(IllegalArgumentException.class,
+                () -> decode("{\"documents\":{\"key\":\"document:10\",\"score\":1.5}}"));
+        assertThrows(IllegalArgumentException.class,
+                () -> decode("{\"documents\":{\"key\":10,\"score\":1.5,\"time\":1000}}"));
+        assertThrows(IllegalArgumentException.class,
+                () -> decode("{\"vocabulary\":{\"offset\":\"20\"}}"));
+    }
+
+    private SearchCursor decode(String positions) {
+        String json = "{\"f\":\"" + FINGERPRINT + "\",\"p\":" + positions + "}";
+        return SearchCursor.decode(Base64.getUrlEncoder().encodeToString(json.getBytes(StandardCharsets.UTF_8)), FINGERPRINT);
+    }
+}
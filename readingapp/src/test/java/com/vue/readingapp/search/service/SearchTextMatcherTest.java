@@ -0,0 +1,46 @@
+package com.vue.readingapp.search.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * FULLTEXT 模式下页面正文也走 MATCH，不再带前导通配符的 LIKE
+ */
+class SearchTextMatcherTest {
+
+    private static final String PAGES = "EXISTS (SELECT 1 FROM document_pages dp WHERE dp.document_id = d.document_id AND %s)";
+
+    private SearchTextMatcher matcher;
+
+    @BeforeEach
+    void setUp() {
+        matcher = new SearchTextMatcher();
+        ReflectionTestUtils.setField(matcher, "documentsBackend", SearchTextMatcher.BACKEND_FULLTEXT);
+        ReflectionTestUtils.setField(matcher, "minTokenLength", 2);
+    }
+
+    @Test
+    void pageContentIsMatchedThroughItsFulltextIndex() {
+        SearchTextMatcher.Match match = matcher.match(SearchTextMatcher.ENDPOINT_DOCUMENTS, "white whale", "d.title", "d.description")
+                .or(matcher.match(SearchTextMatcher.ENDPOINT_DOCUMENTS, "white whale", "dp.content").within(PAGES));
+
+        assertTrue(match.isFulltext());
+        assertFalse(match.getCondition().contains("LIKE"), match.getCondition());
+        assertTrue(match.getCondition().contains("MATCH(dp.content) AGAINST (? IN BOOLEAN MODE)"), match.getCondition());
+        assertEquals(Arrays.asList("+\"white\" +\"whale\"", "+\"white\" +\"whale\""), match.getConditionParams());
+    }
+
+    @Test
+    void phraseIsNarrowedByTheIndexBeforeTheLikeCheck() {
+        SearchTextMatcher.Match match = matcher.phrase(SearchTextMatcher.ENDPOINT_DOCUMENTS, "white whale", "dp.content");
+
+        assertEquals("(MATCH(dp.content) AGAINST (? IN BOOLEAN MODE) AND (dp.content LIKE ?))", match.getCondition());
+        assertEquals(Arrays.asList("+\"white\" +\"whale\"", "%white whale%"), match.getConditionParams());
+    }
+}
@@ -0,0 +1,95 @@
+package com.vue.readingapp.support;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 按 init.sql 建表的 H2 内存库（MySQL 兼容模式），用来在测试里执行各服务拼出的真实 SQL
+ * 只做 H2 不认的语法转换：跳过 FULLTEXT 索引，索引名加表名前缀（H2 的索引名全库唯一），拆开一次加多列的 ALTER。
+ * init.sql 中本来就执行不了的语句（引用不存在列的索引）会被跳过，与在 MySQL 上执行的结果一致。
+ * 另外注册 MySQL 的 DATE_FORMAT，按月分组统计的 SQL 不用改写。
+ */
+public final class SchemaDatabase {
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+    private static final Pattern CREATE_TABLE = Pattern.compile("^CREATE TABLE (?:IF NOT EXISTS )?`(\\w+)`");
+
+    private SchemaDatabase() {
+    }
+
+    /**
+     * 每次调用都是一个独立的新库
+     */
+    public static JdbcTemplate create() {
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+                "jdbc:h2:mem:schema" + SEQUENCE.incrementAndGet() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;"
+                        + "NON_KEYWORDS=VALUE,KEY,TIMESTAMP,USER,YEAR,MONTH,DAY",
+                "sa", "", true);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE ALIAS DATE_FORMAT FOR \"" + SchemaDatabase.class.getName() + ".dateFormat\"");
+        for (String statement : statements()) {
+            execute(jdbcTemplate, statement);
+        }
+        return jdbcTemplate;
+    }
+
+    /**
+     * MySQL DATE_FORMAT 的子集：%Y、%m、%d、%H
+     */
+    public static String dateFormat(Timestamp value, String pattern) {
+        if (value == null) {
+            return null;
+        }
+        String javaPattern = pattern.replace("%Y", "yyyy").replace("%m", "MM").replace("%d", "dd").replace("%H", "HH");
+        return new SimpleDateFormat(javaPattern).format(value);
+    }
+
+    private static String[] statements() {
+        String script;
+        try {
+            script = new String(Files.readAllBytes(Paths.get("init.sql")), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("读取 init.sql 失败", e);
+        }
+        StringBuilder cleaned = new StringBuilder();
+        for (String line : script.split("\n")) {
+            int comment = line.indexOf("--");
+            cleaned.append(comment >= 0 ? line.substring(0, comment) : line).append('\n');
+        }
+        return cleaned.toString().split(";");
+    }
+
+    private static void execute(JdbcTemplate jdbcTemplate, String raw) {
+        String statement = raw.trim();
+        if (statement.isEmpty() || statement.startsWith("CREATE FULLTEXT")) {
+            return;
+        }
+        Matcher table = CREATE_TABLE.matcher(statement);
+        if (table.find()) {
+            statement = statement.replaceAll("(?m)^(\\s*(?:UNIQUE )?KEY )`(\\w+)`", "$1`" + table.group(1) + "_$2`");
+        }
+        if (statement.startsWith("ALTER TABLE") && statement.contains(",\n")) {
+            String head = statement.substring(0, statement.indexOf("ADD"));
+            for (String part : statement.substring(statement.indexOf("ADD")).split(",\\s*\n\\s*")) {
+                jdbcTemplate.execute(head + part);
+            }
+            return;
+        }
+        try {
+            jdbcTemplate.execute(statement);
+        } catch (RuntimeException e) {
+            if (!statement.startsWith("CREATE INDEX")) {
+                throw e;
+            }
+        }
+    }
+}